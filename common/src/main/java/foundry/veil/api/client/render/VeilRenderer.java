@@ -164,7 +164,7 @@ public class VeilRenderer implements NativeResource {
         this.framebufferManager.free();
         this.postProcessingManager.free();
         this.deferredRenderer.free();
-        this.quasarParticleManager.clear();
+        this.quasarParticleManager.free();
         this.cameraMatrices.free();
         this.guiInfo.free();
     }
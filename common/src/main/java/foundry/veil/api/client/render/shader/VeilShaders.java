@@ -13,6 +13,8 @@ public final class VeilShaders {
 
     public static final ResourceLocation PARTICLE = quasar("particle");
     public static final ResourceLocation PARTICLE_ADD = quasar("particle_add");
+    public static final ResourceLocation PARTICLE_INSTANCED = quasar("particle_instanced");
+    public static final ResourceLocation PARTICLE_INSTANCED_ADD = quasar("particle_instanced_add");
 
     public static final ResourceLocation LIGHT_AMBIENT = light("ambient");
     public static final ResourceLocation LIGHT_DIRECTIONAL = light("directional");
@@ -0,0 +1,61 @@
+package foundry.veil.api.quasar.data;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Distance-based level of detail for an emitter. Emitters closer than the first tier are simulated at full detail.
+ *
+ * @param tiers The detail tiers, sorted from nearest to farthest
+ */
+public record EmitterLodSettings(List<Tier> tiers) {
+
+    public static final EmitterLodSettings NONE = new EmitterLodSettings(List.of());
+    public static final EmitterLodSettings DEFAULT = new EmitterLodSettings(List.of(
+            new Tier(48.0F, 2, 0.75F, true),
+            new Tier(96.0F, 4, 0.5F, true),
+            new Tier(192.0F, 8, 0.25F, false)));
+
+    public static final Codec<EmitterLodSettings> CODEC = Tier.CODEC.listOf().xmap(EmitterLodSettings::new, EmitterLodSettings::tiers);
+
+    public EmitterLodSettings {
+        tiers = tiers.stream().sorted(Comparator.comparingDouble(Tier::distance)).toList();
+    }
+
+    /**
+     * Finds the farthest tier that applies at the specified distance.
+     *
+     * @param distanceSq The squared distance from the camera to the emitter
+     * @return The tier to use or <code>null</code> to use full detail
+     */
+    public @Nullable Tier getTier(double distanceSq) {
+        Tier result = null;
+        for (Tier tier : this.tiers) {
+            if (distanceSq < (double) tier.distance * tier.distance) {
+                break;
+            }
+            result = tier;
+        }
+        return result;
+    }
+
+    /**
+     * @param distance        The distance from the camera this tier starts at
+     * @param tickDivisor     Particles are only simulated every <code>tickDivisor</code> ticks, stepping that many ticks at once
+     * @param spawnMultiplier The factor to multiply the number of spawned particles by
+     * @param render          Whether particles should be rendered at all
+     */
+    public record Tier(float distance, int tickDivisor, float spawnMultiplier, boolean render) {
+
+        public static final Codec<Tier> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+                Codec.floatRange(0.0F, Float.MAX_VALUE).fieldOf("distance").forGetter(Tier::distance),
+                Codec.intRange(1, Integer.MAX_VALUE).optionalFieldOf("tick_divisor", 1).forGetter(Tier::tickDivisor),
+                Codec.floatRange(0.0F, 1.0F).optionalFieldOf("spawn_multiplier", 1.0F).forGetter(Tier::spawnMultiplier),
+                Codec.BOOL.optionalFieldOf("render", true).forGetter(Tier::render)
+        ).apply(instance, Tier::new));
+    }
+}
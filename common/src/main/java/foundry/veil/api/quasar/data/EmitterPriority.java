@@ -0,0 +1,41 @@
+package foundry.veil.api.quasar.data;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+
+import java.util.Locale;
+
+/**
+ * The share of the global particle budget an emitter receives compared to other emitters.
+ */
+public enum EmitterPriority {
+    LOW(0.25F),
+    NORMAL(1.0F),
+    HIGH(4.0F),
+    /**
+     * Never throttled or evicted. Emitters with {@link EmitterSettings#forceSpawn()} always use this priority.
+     */
+    CRITICAL(0.0F);
+
+    public static final Codec<EmitterPriority> CODEC = Codec.STRING.flatXmap(name -> {
+        for (EmitterPriority value : EmitterPriority.values()) {
+            if (value.name().equalsIgnoreCase(name)) {
+                return DataResult.success(value);
+            }
+        }
+        return DataResult.error(() -> "Unknown Emitter Priority: " + name);
+    }, priority -> DataResult.success(priority.name().toLowerCase(Locale.ROOT)));
+
+    private final float weight;
+
+    EmitterPriority(float weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * @return The relative weight used to split the particle budget
+     */
+    public float getWeight() {
+        return this.weight;
+    }
+}
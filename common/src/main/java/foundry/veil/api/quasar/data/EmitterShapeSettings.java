@@ -30,6 +30,21 @@ public record EmitterShapeSettings(EmitterShape shape,
         return this.shape.getPoint(randomSource, this.dimensions, this.rotation, pos, this.fromSurface);
     }
 
+    /**
+     * Generates many positions at once without allocating a vector for each of them.
+     *
+     * @param randomSource The source of randomness
+     * @param count        The number of positions to generate
+     * @param out          The array to write <code>x, y, z</code> triplets into
+     * @param offset       The index of the first position in the array
+     * @param stride       The distance between consecutive positions in the array
+     * @param pos          The center of the shape
+     * @see EmitterShape#getPoints(RandomSource, int, double[], int, int, Vector3fc, Vector3fc, Vector3dc, boolean)
+     */
+    public void getPositions(RandomSource randomSource, int count, double[] out, int offset, int stride, Vector3dc pos) {
+        this.shape.getPoints(randomSource, count, out, offset, stride, this.dimensions, this.rotation, pos, this.fromSurface);
+    }
+
     public @Nullable ResourceLocation getRegistryId() {
         return QuasarParticles.registryAccess().registry(QuasarParticles.EMITTER_SHAPE_SETTINGS).map(registry -> registry.getKey(this)).orElse(null);
     }
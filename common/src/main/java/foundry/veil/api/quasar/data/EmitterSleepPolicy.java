@@ -0,0 +1,29 @@
+package foundry.veil.api.quasar.data;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+
+import java.util.Locale;
+
+/**
+ * What happens to the particles of an emitter while it is asleep in an unloaded or unobserved region.
+ */
+public enum EmitterSleepPolicy {
+    /**
+     * Particles are kept as they are and continue where they left off once the emitter wakes.
+     */
+    FREEZE,
+    /**
+     * Particles are released immediately and the emitter starts spawning from scratch once it wakes.
+     */
+    DROP;
+
+    public static final Codec<EmitterSleepPolicy> CODEC = Codec.STRING.flatXmap(name -> {
+        for (EmitterSleepPolicy value : EmitterSleepPolicy.values()) {
+            if (value.name().equalsIgnoreCase(name)) {
+                return DataResult.success(value);
+            }
+        }
+        return DataResult.error(() -> "Unknown Emitter Sleep Policy: " + name);
+    }, policy -> DataResult.success(policy.name().toLowerCase(Locale.ROOT)));
+}
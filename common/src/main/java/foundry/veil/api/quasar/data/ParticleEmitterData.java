@@ -18,6 +18,9 @@ import java.util.List;
  * @param maxParticles       The maximum number of particles to have alive
  * @param emitterSettings    The settings for how to emit particles
  * @param particleDataHolder The particle to emit
+ * @param lodSettings        The level of detail to use for particles far away from the camera
+ * @param priority           The share of the global particle budget this emitter receives
+ * @param sleepPolicy        What happens to particles while the emitter is asleep in an unloaded or distant region
  */
 public record ParticleEmitterData(int maxLifetime,
                                   boolean loop,
@@ -25,7 +28,10 @@ public record ParticleEmitterData(int maxLifetime,
                                   int count,
                                   int maxParticles,
                                   EmitterSettings emitterSettings,
-                                  Holder<QuasarParticleData> particleDataHolder) {
+                                  Holder<QuasarParticleData> particleDataHolder,
+                                  EmitterLodSettings lodSettings,
+                                  EmitterPriority priority,
+                                  EmitterSleepPolicy sleepPolicy) {
 
     public static final Codec<ParticleEmitterData> DIRECT_CODEC = RecordCodecBuilder.create(instance -> instance.group(
             Codec.INT.fieldOf("max_lifetime").forGetter(ParticleEmitterData::maxLifetime),
@@ -34,7 +40,10 @@ public record ParticleEmitterData(int maxLifetime,
             Codec.INT.fieldOf("count").forGetter(ParticleEmitterData::count),
             Codec.intRange(0, Integer.MAX_VALUE).optionalFieldOf("count", Integer.MAX_VALUE).forGetter(ParticleEmitterData::maxParticles),
             EmitterSettings.CODEC.fieldOf("emitter_settings").forGetter(ParticleEmitterData::emitterSettings),
-            QuasarParticleData.CODEC.fieldOf("particle_data").forGetter(ParticleEmitterData::particleDataHolder)
+            QuasarParticleData.CODEC.fieldOf("particle_data").forGetter(ParticleEmitterData::particleDataHolder),
+            EmitterLodSettings.CODEC.optionalFieldOf("lod", EmitterLodSettings.DEFAULT).forGetter(ParticleEmitterData::lodSettings),
+            EmitterPriority.CODEC.optionalFieldOf("priority", EmitterPriority.NORMAL).forGetter(ParticleEmitterData::priority),
+            EmitterSleepPolicy.CODEC.optionalFieldOf("sleep", EmitterSleepPolicy.FREEZE).forGetter(ParticleEmitterData::sleepPolicy)
     ).apply(instance, ParticleEmitterData::new));
     public static final Codec<Holder<ParticleEmitterData>> CODEC = RegistryFileCodec.create(QuasarParticles.EMITTER, DIRECT_CODEC);
 
@@ -22,5 +22,12 @@ public interface ParticleModuleData {
 
     void addModules(ParticleModuleSet.Builder builder);
 
+    /**
+     * @return Whether the modules created from this data read blocks from the level while particles tick
+     */
+    default boolean readsLevel() {
+        return false;
+    }
+
     ModuleType<?> getType();
 }
@@ -1,32 +1,25 @@
 package foundry.veil.api.quasar.data.module.collision;
 
 import com.mojang.serialization.Codec;
-import foundry.veil.api.client.render.VeilRenderSystem;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
 import foundry.veil.api.quasar.data.ParticleModuleTypeRegistry;
 import foundry.veil.api.quasar.data.module.ModuleType;
 import foundry.veil.api.quasar.data.module.ParticleModuleData;
 import foundry.veil.api.quasar.emitters.module.CollisionParticleModule;
-import foundry.veil.api.quasar.particle.ParticleEmitter;
+import foundry.veil.api.quasar.emitters.module.StatelessParticleModule;
 import foundry.veil.api.quasar.particle.ParticleModuleSet;
-import foundry.veil.api.quasar.particle.ParticleSystemManager;
 import net.minecraft.resources.ResourceLocation;
 
-public record CollisionSubEmitterData(ResourceLocation subEmitter) implements ParticleModuleData {
+public record CollisionSubEmitterData(ResourceLocation subEmitter, boolean batched) implements ParticleModuleData {
 
-    public static final Codec<CollisionSubEmitterData> CODEC = ResourceLocation.CODEC.fieldOf("subemitter").xmap(CollisionSubEmitterData::new, CollisionSubEmitterData::subEmitter).codec();
+    public static final Codec<CollisionSubEmitterData> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            ResourceLocation.CODEC.fieldOf("subemitter").forGetter(CollisionSubEmitterData::subEmitter),
+            Codec.BOOL.optionalFieldOf("batched", false).forGetter(CollisionSubEmitterData::batched)
+    ).apply(instance, CollisionSubEmitterData::new));
 
     @Override
     public void addModules(ParticleModuleSet.Builder builder) {
-        builder.addModule((CollisionParticleModule) (particle -> {
-            ParticleSystemManager particleManager = VeilRenderSystem.renderer().getParticleManager();
-            ParticleEmitter instance = particleManager.createEmitter(this.subEmitter);
-            if (instance == null) {
-                return;
-            }
-
-            instance.setPosition(particle.getPosition());
-            particleManager.addParticleSystem(instance);
-        }));
+        builder.addModule((CollisionParticleModule & StatelessParticleModule) (particle -> particle.getEmitter().spawnSubEmitter(this.subEmitter, particle.getPosition(), this.batched)));
     }
 
     @Override
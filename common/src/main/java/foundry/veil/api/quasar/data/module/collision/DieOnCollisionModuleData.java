@@ -5,6 +5,7 @@ import foundry.veil.api.quasar.data.ParticleModuleTypeRegistry;
 import foundry.veil.api.quasar.data.module.ModuleType;
 import foundry.veil.api.quasar.data.module.ParticleModuleData;
 import foundry.veil.api.quasar.emitters.module.CollisionParticleModule;
+import foundry.veil.api.quasar.emitters.module.StatelessParticleModule;
 import foundry.veil.api.quasar.particle.ParticleModuleSet;
 import foundry.veil.api.quasar.particle.QuasarParticle;
 
@@ -14,7 +15,7 @@ public class DieOnCollisionModuleData implements ParticleModuleData {
 
     @Override
     public void addModules(ParticleModuleSet.Builder builder) {
-        builder.addModule((CollisionParticleModule) QuasarParticle::remove);
+        builder.addModule((CollisionParticleModule & StatelessParticleModule) QuasarParticle::remove);
     }
 
     @Override
@@ -5,6 +5,7 @@ import foundry.veil.api.quasar.data.ParticleModuleTypeRegistry;
 import foundry.veil.api.quasar.data.module.ModuleType;
 import foundry.veil.api.quasar.data.module.ParticleModuleData;
 import foundry.veil.api.quasar.emitters.module.InitParticleModule;
+import foundry.veil.api.quasar.emitters.module.StatelessParticleModule;
 import foundry.veil.api.quasar.emitters.module.UpdateParticleModule;
 import foundry.veil.api.quasar.particle.ParticleModuleSet;
 import net.minecraft.client.Minecraft;
@@ -16,14 +17,14 @@ public record BlockParticleModuleData(boolean dynamic) implements ParticleModule
 
     @Override
     public void addModules(ParticleModuleSet.Builder builder) {
-        builder.addModule((InitParticleModule) particle -> {
+        builder.addModule((InitParticleModule & StatelessParticleModule) particle -> {
             BlockState state = particle.getBlockStateInOrUnder();
             if (!state.isAir()) {
                 particle.getRenderData().setAtlasSprite(Minecraft.getInstance().getBlockRenderer().getBlockModelShaper().getParticleIcon(state));
             }
         });
         if (this.dynamic) {
-            builder.addModule((UpdateParticleModule) particle -> {
+            builder.addModule((UpdateParticleModule & StatelessParticleModule) particle -> {
                 BlockState state = particle.getBlockStateInOrUnder();
                 if (!state.isAir()) {
                     particle.getRenderData().setAtlasSprite(Minecraft.getInstance().getBlockRenderer().getBlockModelShaper().getParticleIcon(state));
@@ -32,6 +33,11 @@ public record BlockParticleModuleData(boolean dynamic) implements ParticleModule
         }
     }
 
+    @Override
+    public boolean readsLevel() {
+        return this.dynamic;
+    }
+
     @Override
     public ModuleType<?> getType() {
         return ParticleModuleTypeRegistry.BLOCK_PARTICLE;
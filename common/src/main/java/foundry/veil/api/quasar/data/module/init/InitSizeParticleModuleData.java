@@ -6,6 +6,7 @@ import foundry.veil.api.quasar.data.ParticleModuleTypeRegistry;
 import foundry.veil.api.quasar.data.module.ModuleType;
 import foundry.veil.api.quasar.data.module.ParticleModuleData;
 import foundry.veil.api.quasar.emitters.module.InitParticleModule;
+import foundry.veil.api.quasar.emitters.module.StatelessParticleModule;
 import foundry.veil.api.quasar.particle.ParticleModuleSet;
 import gg.moonflower.molangcompiler.api.MolangExpression;
 import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
@@ -16,7 +17,13 @@ public record InitSizeParticleModuleData(MolangExpression size) implements Parti
 
     @Override
     public void addModules(ParticleModuleSet.Builder builder) {
-        builder.addModule((InitParticleModule) particle -> {
+        if (this.size.isConstant()) {
+            float size = this.size.getConstant();
+            builder.addModule((InitParticleModule & StatelessParticleModule) particle -> particle.setRadius(size));
+            return;
+        }
+
+        builder.addModule((InitParticleModule & StatelessParticleModule) particle -> {
             try {
                 particle.setRadius(particle.getEnvironment().resolve(this.size));
             } catch (MolangRuntimeException e) {
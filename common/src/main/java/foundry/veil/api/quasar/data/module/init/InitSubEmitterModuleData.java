@@ -1,32 +1,25 @@
 package foundry.veil.api.quasar.data.module.init;
 
 import com.mojang.serialization.Codec;
-import foundry.veil.api.client.render.VeilRenderSystem;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
 import foundry.veil.api.quasar.data.ParticleModuleTypeRegistry;
 import foundry.veil.api.quasar.data.module.ModuleType;
 import foundry.veil.api.quasar.data.module.ParticleModuleData;
 import foundry.veil.api.quasar.emitters.module.InitParticleModule;
-import foundry.veil.api.quasar.particle.ParticleEmitter;
+import foundry.veil.api.quasar.emitters.module.StatelessParticleModule;
 import foundry.veil.api.quasar.particle.ParticleModuleSet;
-import foundry.veil.api.quasar.particle.ParticleSystemManager;
 import net.minecraft.resources.ResourceLocation;
 
-public record InitSubEmitterModuleData(ResourceLocation subEmitter) implements ParticleModuleData {
+public record InitSubEmitterModuleData(ResourceLocation subEmitter, boolean batched) implements ParticleModuleData {
 
-    public static final Codec<InitSubEmitterModuleData> CODEC = ResourceLocation.CODEC.fieldOf("subemitter").xmap(InitSubEmitterModuleData::new, InitSubEmitterModuleData::subEmitter).codec();
+    public static final Codec<InitSubEmitterModuleData> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+            ResourceLocation.CODEC.fieldOf("subemitter").forGetter(InitSubEmitterModuleData::subEmitter),
+            Codec.BOOL.optionalFieldOf("batched", false).forGetter(InitSubEmitterModuleData::batched)
+    ).apply(instance, InitSubEmitterModuleData::new));
 
     @Override
     public void addModules(ParticleModuleSet.Builder builder) {
-        builder.addModule((InitParticleModule) (particle -> {
-            ParticleSystemManager particleManager = VeilRenderSystem.renderer().getParticleManager();
-            ParticleEmitter instance = particleManager.createEmitter(this.subEmitter);
-            if (instance == null) {
-                return;
-            }
-
-            instance.setPosition(particle.getPosition());
-            particleManager.addParticleSystem(instance);
-        }));
+        builder.addModule((InitParticleModule & StatelessParticleModule) (particle -> particle.getEmitter().spawnSubEmitter(this.subEmitter, particle.getPosition(), this.batched)));
     }
 
     @Override
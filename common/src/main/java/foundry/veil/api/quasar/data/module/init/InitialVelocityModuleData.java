@@ -6,6 +6,7 @@ import foundry.veil.api.quasar.data.ParticleModuleTypeRegistry;
 import foundry.veil.api.quasar.data.module.ModuleType;
 import foundry.veil.api.quasar.data.module.ParticleModuleData;
 import foundry.veil.api.quasar.emitters.module.InitParticleModule;
+import foundry.veil.api.quasar.emitters.module.StatelessParticleModule;
 import foundry.veil.api.quasar.particle.ParticleModuleSet;
 import foundry.veil.api.util.CodecUtil;
 import org.joml.Vector3d;
@@ -25,7 +26,7 @@ public record InitialVelocityModuleData(Vector3dc velocityDirection,
     @Override
     public void addModules(ParticleModuleSet.Builder builder) {
         // TODO takesParentRotation
-        builder.addModule((InitParticleModule) particle -> particle.getVelocity().add(this.velocityDirection.normalize(this.strength, new Vector3d())));
+        builder.addModule((InitParticleModule & StatelessParticleModule) particle -> particle.getVelocity().add(this.velocityDirection.normalize(this.strength, new Vector3d())));
     }
 
     @Override
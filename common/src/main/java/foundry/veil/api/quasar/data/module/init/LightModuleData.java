@@ -7,24 +7,45 @@ import foundry.veil.api.quasar.data.ParticleModuleTypeRegistry;
 import foundry.veil.api.quasar.data.module.ModuleType;
 import foundry.veil.api.quasar.data.module.ParticleModuleData;
 import foundry.veil.api.quasar.emitters.module.render.DynamicLightModule;
+import foundry.veil.api.quasar.emitters.module.render.PooledLightModule;
 import foundry.veil.api.quasar.emitters.module.render.StaticLightModule;
 import foundry.veil.api.quasar.particle.ParticleModuleSet;
 import foundry.veil.impl.quasar.ColorGradient;
 import gg.moonflower.molangcompiler.api.MolangExpression;
 
+/**
+ * Adds a light to every particle.
+ *
+ * @param color       The color of the light over the lifetime of the particle
+ * @param brightness  The brightness of the light
+ * @param radius      The radius of the light
+ * @param pooled      Whether the light is taken from the shared {@link foundry.veil.api.quasar.particle.ParticleLightPool}
+ *                    instead of adding a light for every particle
+ * @param clusterSize The size of the cells pooled lights of the same emitter are merged in or <code>0</code> to never merge them
+ */
 public record LightModuleData(ColorGradient color,
                               MolangExpression brightness,
-                              MolangExpression radius) implements ParticleModuleData {
+                              MolangExpression radius,
+                              boolean pooled,
+                              float clusterSize) implements ParticleModuleData {
 
     public static final Codec<LightModuleData> CODEC = RecordCodecBuilder.create(instance -> instance.group(
             ColorGradient.CODEC.fieldOf("gradient").forGetter(LightModuleData::color),
             MolangExpressionCodec.CODEC.fieldOf("brightness").forGetter(LightModuleData::brightness),
-            MolangExpressionCodec.CODEC.fieldOf("radius").forGetter(LightModuleData::radius)
+            MolangExpressionCodec.CODEC.fieldOf("radius").forGetter(LightModuleData::radius),
+            Codec.BOOL.optionalFieldOf("pooled", false).forGetter(LightModuleData::pooled),
+            Codec.floatRange(0.0F, 64.0F).optionalFieldOf("cluster_size", 1.0F).forGetter(LightModuleData::clusterSize)
     ).apply(instance, LightModuleData::new));
 
+    public LightModuleData(ColorGradient color, MolangExpression brightness, MolangExpression radius) {
+        this(color, brightness, radius, false, 1.0F);
+    }
+
     @Override
     public void addModules(ParticleModuleSet.Builder builder) {
-        if (this.color.isConstant() && this.brightness.isConstant() && this.radius.isConstant()) {
+        if (this.pooled) {
+            builder.addModule(new PooledLightModule(this));
+        } else if (this.color.isConstant() && this.brightness.isConstant() && this.radius.isConstant()) {
             StaticLightModule module = new StaticLightModule(this);
             if (module.isVisible()) {
                 builder.addModule(module);
@@ -7,10 +7,12 @@ import foundry.veil.api.quasar.data.ParticleModuleTypeRegistry;
 import foundry.veil.api.quasar.data.module.ModuleType;
 import foundry.veil.api.quasar.data.module.ParticleModuleData;
 import foundry.veil.api.quasar.emitters.module.InitParticleModule;
+import foundry.veil.api.quasar.emitters.module.StatelessParticleModule;
 import foundry.veil.api.quasar.emitters.module.render.ColorRenderModule;
 import foundry.veil.api.quasar.particle.ParticleModuleSet;
 import foundry.veil.impl.quasar.ColorGradient;
 import gg.moonflower.molangcompiler.api.MolangExpression;
+import org.joml.Vector4fc;
 
 public record ColorParticleModuleData(ColorGradient gradient, MolangExpression interpolant) implements ParticleModuleData {
 
@@ -23,7 +25,9 @@ public record ColorParticleModuleData(ColorGradient gradient, MolangExpression i
     @Override
     public void addModules(ParticleModuleSet.Builder builder) {
         if (this.gradient.isConstant() || this.interpolant.isConstant()) {
-            builder.addModule((InitParticleModule) particle -> particle.getRenderData().setColor(this.gradient.getColor(particle.getEnvironment().safeResolve(this.interpolant))));
+            // The color never changes, so it only needs to be calculated once
+            Vector4fc color = this.gradient.getColor(this.interpolant.isConstant() ? this.interpolant.getConstant() : 0.0F);
+            builder.addModule((InitParticleModule & StatelessParticleModule) particle -> particle.getRenderData().setColor(color));
         } else {
             builder.addModule(new ColorRenderModule(this.gradient, this.interpolant));
         }
@@ -9,11 +9,12 @@ import foundry.veil.api.quasar.emitters.module.update.TickSubEmitterModule;
 import foundry.veil.api.quasar.particle.ParticleModuleSet;
 import net.minecraft.resources.ResourceLocation;
 
-public record TickSubEmitterModuleData(ResourceLocation subEmitter, int frequency) implements ParticleModuleData {
+public record TickSubEmitterModuleData(ResourceLocation subEmitter, int frequency, boolean batched) implements ParticleModuleData {
 
     public static final Codec<TickSubEmitterModuleData> CODEC = RecordCodecBuilder.create(instance -> instance.group(
             ResourceLocation.CODEC.fieldOf("subemitter").forGetter(TickSubEmitterModuleData::subEmitter),
-            Codec.INT.fieldOf("frequency").forGetter(TickSubEmitterModuleData::frequency)
+            Codec.INT.fieldOf("frequency").forGetter(TickSubEmitterModuleData::frequency),
+            Codec.BOOL.optionalFieldOf("batched", false).forGetter(TickSubEmitterModuleData::batched)
     ).apply(instance, TickSubEmitterModuleData::new));
 
     @Override
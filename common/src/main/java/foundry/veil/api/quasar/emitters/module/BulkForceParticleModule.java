@@ -0,0 +1,21 @@
+package foundry.veil.api.quasar.emitters.module;
+
+import foundry.veil.api.quasar.particle.ParticleStorage;
+
+/**
+ * <p>A force module that is able to apply its force to a range of packed particles at once.</p>
+ * <p>Bulk modules are shared by every particle of an emitter using packed storage, so they must not hold any per-particle state.</p>
+ *
+ * @see ParticleStorage
+ */
+public interface BulkForceParticleModule extends ForceParticleModule, StatelessParticleModule {
+
+    /**
+     * Applies this force to every particle in the specified range.
+     *
+     * @param storage The storage to modify
+     * @param from    The first row, inclusive
+     * @param to      The last row, exclusive
+     */
+    void applyForce(ParticleStorage storage, int from, int to);
+}
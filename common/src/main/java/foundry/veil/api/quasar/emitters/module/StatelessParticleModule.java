@@ -0,0 +1,14 @@
+package foundry.veil.api.quasar.emitters.module;
+
+/**
+ * <p>Marks a module as holding no per-particle state.</p>
+ * <p>Stateless modules are created once when an emitter compiles its module plan and the same instance is shared by
+ * every particle the emitter spawns. They must not have any mutable fields that are written while particles are
+ * ticked or rendered, since particles and emitters may be ticked on several threads at once. Temporary values belong in
+ * locals or a {@link ThreadLocal}. Configuration like {@link ForceParticleModule#setStrength(float)} may only be changed
+ * while the emitter isn't ticking. {@link #onRemove()} may be called once for every particle sharing the module.</p>
+ *
+ * @see foundry.veil.api.quasar.particle.ParticleModulePlan
+ */
+public interface StatelessParticleModule extends ParticleModule {
+}
@@ -1,11 +1,12 @@
 package foundry.veil.api.quasar.emitters.module.force;
 
-import foundry.veil.api.quasar.emitters.module.ForceParticleModule;
+import foundry.veil.api.quasar.emitters.module.BulkForceParticleModule;
+import foundry.veil.api.quasar.particle.ParticleStorage;
 import foundry.veil.api.quasar.particle.QuasarParticle;
 import org.joml.Vector3d;
 import org.joml.Vector3dc;
 
-public class ConstantForceModule implements ForceParticleModule {
+public class ConstantForceModule implements BulkForceParticleModule {
 
     private final Vector3d acceleration;
     private float strength;
@@ -24,6 +25,21 @@ public class ConstantForceModule implements ForceParticleModule {
         particle.getVelocity().add(this.acceleration.x * this.strength, this.acceleration.y * this.strength, this.acceleration.z * this.strength);
     }
 
+    @Override
+    public void applyForce(ParticleStorage storage, int from, int to) {
+        double x = this.acceleration.x * this.strength;
+        double y = this.acceleration.y * this.strength;
+        double z = this.acceleration.z * this.strength;
+        double[] velocityX = storage.getVelocityX();
+        double[] velocityY = storage.getVelocityY();
+        double[] velocityZ = storage.getVelocityZ();
+        for (int i = from; i < to; i++) {
+            velocityX[i] += x;
+            velocityY[i] += y;
+            velocityZ[i] += z;
+        }
+    }
+
     @Override
     public void setStrength(float strength) {
         this.strength = strength;
@@ -32,4 +48,8 @@ public class ConstantForceModule implements ForceParticleModule {
     public Vector3d getAcceleration() {
         return this.acceleration;
     }
+
+    public float getStrength() {
+        return this.strength;
+    }
 }
@@ -1,6 +1,7 @@
 package foundry.veil.api.quasar.emitters.module.force;
 
 import foundry.veil.api.quasar.data.module.force.PointForceData;
+import foundry.veil.api.quasar.particle.ParticleStorage;
 import foundry.veil.api.quasar.particle.QuasarParticle;
 import org.joml.Vector3d;
 import org.joml.Vector3dc;
@@ -38,10 +39,43 @@ public class PointForceModule extends SimplePositionedForce {
         particle.getVelocity().add(diff.normalize(this.strength));
     }
 
+    @Override
+    public void applyForce(ParticleStorage storage, int from, int to) {
+        Vector3d origin = this.getOrigin(storage, new Vector3d());
+        double[] x = storage.getX();
+        double[] y = storage.getY();
+        double[] z = storage.getZ();
+        double[] velocityX = storage.getVelocityX();
+        double[] velocityY = storage.getVelocityY();
+        double[] velocityZ = storage.getVelocityZ();
+        for (int i = from; i < to; i++) {
+            double dx = origin.x - x[i];
+            double dy = origin.y - y[i];
+            double dz = origin.z - z[i];
+            double distanceSq = dx * dx + dy * dy + dz * dz;
+            if (distanceSq >= this.rangeSq) {
+                continue;
+            }
+
+            double scale = this.strength / Math.sqrt(distanceSq);
+            velocityX[i] += dx * scale;
+            velocityY[i] += dy * scale;
+            velocityZ[i] += dz * scale;
+        }
+    }
+
+    public double getRange() {
+        return Math.sqrt(this.rangeSq);
+    }
+
     public void setRange(double range) {
         this.rangeSq = range * range;
     }
 
+    public float getStrength() {
+        return this.strength;
+    }
+
     @Override
     public void setStrength(float strength) {
         this.strength = strength;
@@ -1,11 +1,12 @@
 package foundry.veil.api.quasar.emitters.module.force;
 
-import foundry.veil.api.quasar.emitters.module.ForceParticleModule;
+import foundry.veil.api.quasar.emitters.module.BulkForceParticleModule;
+import foundry.veil.api.quasar.particle.ParticleStorage;
 import foundry.veil.api.quasar.particle.QuasarParticle;
 import org.joml.Vector3d;
 import org.joml.Vector3dc;
 
-public class ScaleForceModule implements ForceParticleModule {
+public class ScaleForceModule implements BulkForceParticleModule {
 
     private final Vector3d scale;
     private float strength;
@@ -28,6 +29,21 @@ public class ScaleForceModule implements ForceParticleModule {
                 1.0 + (this.scale.z - 1.0) * this.strength);
     }
 
+    @Override
+    public void applyForce(ParticleStorage storage, int from, int to) {
+        double x = 1.0 + (this.scale.x - 1.0) * this.strength;
+        double y = 1.0 + (this.scale.y - 1.0) * this.strength;
+        double z = 1.0 + (this.scale.z - 1.0) * this.strength;
+        double[] velocityX = storage.getVelocityX();
+        double[] velocityY = storage.getVelocityY();
+        double[] velocityZ = storage.getVelocityZ();
+        for (int i = from; i < to; i++) {
+            velocityX[i] *= x;
+            velocityY[i] *= y;
+            velocityZ[i] *= z;
+        }
+    }
+
     @Override
     public void setStrength(float strength) {
         this.strength = strength;
@@ -36,4 +52,8 @@ public class ScaleForceModule implements ForceParticleModule {
     public Vector3d getScale() {
         return this.scale;
     }
+
+    public float getStrength() {
+        return this.strength;
+    }
 }
@@ -1,31 +1,54 @@
 package foundry.veil.api.quasar.emitters.module.force;
 
-import foundry.veil.api.quasar.emitters.module.ForceParticleModule;
+import foundry.veil.api.quasar.emitters.module.BulkForceParticleModule;
+import foundry.veil.api.quasar.particle.ParticleStorage;
 import foundry.veil.api.quasar.particle.QuasarParticle;
 import org.joml.Vector3d;
 import org.joml.Vector3dc;
 
-public abstract class SimplePositionedForce implements ForceParticleModule, PositionedForce {
+public abstract class SimplePositionedForce implements BulkForceParticleModule, PositionedForce {
+
+    private static final ThreadLocal<Vector3d> DELTA = ThreadLocal.withInitial(Vector3d::new);
 
     protected final Vector3d position;
     protected boolean localPosition;
-    private final Vector3d tempPos;
 
     protected SimplePositionedForce(Vector3d position, boolean localPosition) {
         this.position = position;
         this.localPosition = localPosition;
-        this.tempPos = new Vector3d();
     }
 
     protected SimplePositionedForce(Vector3dc position, boolean localPosition) {
         this(new Vector3d(position), localPosition);
     }
 
+    /**
+     * Calculates the offset from the specified particle to this force. The vector is reused by every call on the same
+     * thread, so it must be used immediately.
+     *
+     * @param particle The particle to get the offset of
+     * @return The offset from the particle to this force
+     */
     protected Vector3d getDeltaPosition(QuasarParticle particle) {
+        Vector3d delta = DELTA.get();
+        if (this.localPosition) {
+            return this.position.add(particle.getEmitter().getPosition(), delta).sub(particle.getPosition());
+        }
+        return this.position.sub(particle.getPosition(), delta);
+    }
+
+    /**
+     * Calculates the world-space origin of this force for all particles in the specified storage.
+     *
+     * @param storage The storage to get the emitter from
+     * @param store   The vector to store the origin in
+     * @return The origin of this force
+     */
+    protected Vector3d getOrigin(ParticleStorage storage, Vector3d store) {
         if (this.localPosition) {
-            return this.position.add(particle.getEmitter().getPosition(), this.tempPos).sub(particle.getPosition());
+            return this.position.add(storage.getEmitter().getPosition(), store);
         }
-        return this.position.sub(particle.getPosition(), this.tempPos);
+        return store.set(this.position);
     }
 
     @Override
@@ -1,36 +1,83 @@
 package foundry.veil.api.quasar.emitters.module.force;
 
 import foundry.veil.api.quasar.data.module.force.VectorFieldForceData;
-import foundry.veil.api.quasar.emitters.module.ForceParticleModule;
+import foundry.veil.api.quasar.emitters.module.BulkForceParticleModule;
+import foundry.veil.api.quasar.emitters.module.update.BakedVectorField;
 import foundry.veil.api.quasar.emitters.module.update.VectorField;
+import foundry.veil.api.quasar.particle.ParticleStorage;
 import foundry.veil.api.quasar.particle.QuasarParticle;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector3d;
+import org.joml.Vector3dc;
 
-public class VectorFieldForceModule implements ForceParticleModule {
+public class VectorFieldForceModule implements BulkForceParticleModule {
+
+    private static final ThreadLocal<Vector3d> VECTOR = ThreadLocal.withInitial(Vector3d::new);
+    private static final ThreadLocal<Vector3d> POSITION = ThreadLocal.withInitial(Vector3d::new);
 
     private VectorField vectorField;
+    private BakedVectorField baked;
     private float strength;
 
-    private final Vector3d temp;
-
     public VectorFieldForceModule(VectorFieldForceData data) {
         this(data.vectorField(), data.strength());
     }
 
     public VectorFieldForceModule(VectorField vectorField, float strength) {
         this.vectorField = vectorField;
+        this.baked = vectorField.getBaked();
         this.strength = strength;
-        this.temp = new Vector3d();
+    }
+
+    // Every thread reads the shared lattice with its own sampler
+    private @Nullable BakedVectorField.Sampler getSampler() {
+        return this.baked != null ? this.baked.getSampler() : null;
     }
 
     @Override
     public void applyForce(QuasarParticle particle) {
-        Vector3d vector = this.vectorField.getVector(particle.getPosition(), this.temp);
+        BakedVectorField.Sampler sampler = this.getSampler();
+        Vector3dc position = particle.getPosition();
+        Vector3d vector = sampler != null ?
+                sampler.sample(position.x(), position.y(), position.z(), particle.getLevel().getGameTime(), VECTOR.get()) :
+                this.vectorField.getVector(position, VECTOR.get());
         particle.getVelocity().add(vector.mul(this.strength));
     }
 
+    @Override
+    public void applyForce(ParticleStorage storage, int from, int to) {
+        double[] x = storage.getX();
+        double[] y = storage.getY();
+        double[] z = storage.getZ();
+        double[] velocityX = storage.getVelocityX();
+        double[] velocityY = storage.getVelocityY();
+        double[] velocityZ = storage.getVelocityZ();
+
+        Vector3d vector = VECTOR.get();
+        BakedVectorField.Sampler sampler = this.getSampler();
+        if (sampler != null && from < to) {
+            long time = storage.get(from).getLevel().getGameTime();
+            for (int i = from; i < to; i++) {
+                sampler.sample(x[i], y[i], z[i], time, vector);
+                velocityX[i] += vector.x * this.strength;
+                velocityY[i] += vector.y * this.strength;
+                velocityZ[i] += vector.z * this.strength;
+            }
+            return;
+        }
+
+        Vector3d pos = POSITION.get();
+        for (int i = from; i < to; i++) {
+            this.vectorField.getVector(pos.set(x[i], y[i], z[i]), vector);
+            velocityX[i] += vector.x * this.strength;
+            velocityY[i] += vector.y * this.strength;
+            velocityZ[i] += vector.z * this.strength;
+        }
+    }
+
     public void setVectorField(VectorField vectorField) {
         this.vectorField = vectorField;
+        this.baked = vectorField.getBaked();
     }
 
     @Override
@@ -1,6 +1,7 @@
 package foundry.veil.api.quasar.emitters.module.force;
 
 import foundry.veil.api.quasar.data.module.force.VortexForceData;
+import foundry.veil.api.quasar.particle.ParticleStorage;
 import foundry.veil.api.quasar.particle.QuasarParticle;
 import org.joml.Vector3d;
 import org.joml.Vector3dc;
@@ -11,8 +12,6 @@ public class VortexForceModule extends SimplePositionedForce {
     private double rangeSq;
     private float strength;
 
-    private final Vector3d dot;
-
     public VortexForceModule(VortexForceData data) {
         this(data.vortexAxis(), data.vortexCenter(), data.localPosition(), data.range(), data.strength());
     }
@@ -26,7 +25,6 @@ public class VortexForceModule extends SimplePositionedForce {
         this.vortexAxis = vortexAxis.normalize(new Vector3d());
         this.rangeSq = range * range;
         this.strength = strength;
-        this.dot = new Vector3d();
     }
 
     @Override
@@ -38,12 +36,51 @@ public class VortexForceModule extends SimplePositionedForce {
         }
 
         // apply force to particle to move around the vortex center on the vortex axis, but do not modify outwards/inwards velocity
-        Vector3d particleToCenterOnAxis = diff.sub(this.vortexAxis.mul(diff.dot(this.vortexAxis), this.dot));
+        Vector3dc axis = this.vortexAxis;
+        double dot = diff.dot(axis);
+        Vector3d particleToCenterOnAxis = diff.sub(axis.x() * dot, axis.y() * dot, axis.z() * dot);
         particleToCenterOnAxis.normalize();
         particleToCenterOnAxis.cross(this.vortexAxis).mul(this.strength);
         particle.getVelocity().add(particleToCenterOnAxis);
     }
 
+    @Override
+    public void applyForce(ParticleStorage storage, int from, int to) {
+        Vector3d origin = this.getOrigin(storage, new Vector3d());
+        double axisX = this.vortexAxis.x;
+        double axisY = this.vortexAxis.y;
+        double axisZ = this.vortexAxis.z;
+        double[] x = storage.getX();
+        double[] y = storage.getY();
+        double[] z = storage.getZ();
+        double[] velocityX = storage.getVelocityX();
+        double[] velocityY = storage.getVelocityY();
+        double[] velocityZ = storage.getVelocityZ();
+        for (int i = from; i < to; i++) {
+            double dx = origin.x - x[i];
+            double dy = origin.y - y[i];
+            double dz = origin.z - z[i];
+            double distanceSq = dx * dx + dy * dy + dz * dz;
+            if (distanceSq >= this.rangeSq) {
+                continue;
+            }
+
+            // Remove the component along the axis, then rotate around it
+            double dot = dx * axisX + dy * axisY + dz * axisZ;
+            double px = dx - axisX * dot;
+            double py = dy - axisY * dot;
+            double pz = dz - axisZ * dot;
+            double scale = 1.0 / Math.sqrt(px * px + py * py + pz * pz);
+            px *= scale;
+            py *= scale;
+            pz *= scale;
+
+            velocityX[i] += (py * axisZ - pz * axisY) * this.strength;
+            velocityY[i] += (pz * axisX - px * axisZ) * this.strength;
+            velocityZ[i] += (px * axisY - py * axisX) * this.strength;
+        }
+    }
+
     public Vector3dc getVortexAxis() {
         return this.vortexAxis;
     }
@@ -56,10 +93,18 @@ public class VortexForceModule extends SimplePositionedForce {
         this.setVortexAxis(axis.x(), axis.y(), axis.z());
     }
 
+    public double getRange() {
+        return Math.sqrt(this.rangeSq);
+    }
+
     public void setRange(double range) {
         this.rangeSq = range * range;
     }
 
+    public float getStrength() {
+        return this.strength;
+    }
+
     @Override
     public void setStrength(float strength) {
         this.strength = strength;
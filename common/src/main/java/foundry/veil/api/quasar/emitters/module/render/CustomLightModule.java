@@ -41,8 +41,9 @@ public class CustomLightModule implements UpdateParticleModule, RenderParticleMo
             this.onRemove();
         } else {
             if (this.light == null) {
-                this.light = new PointLight().setRadius(this.radius);
-                deferredRenderer.getLightRenderer().addLight(this.light);
+                PointLight light = new PointLight().setRadius(this.radius);
+                VeilRenderSystem.renderer().getParticleManager().runOrDefer(() -> deferredRenderer.getLightRenderer().addLight(light));
+                this.light = light;
             }
             this.light.setColor(this.color.x, this.color.y, this.color.z);
             this.light.setBrightness(this.brightness * this.color.w);
@@ -66,7 +67,8 @@ public class CustomLightModule implements UpdateParticleModule, RenderParticleMo
         if (this.light != null) {
             VeilDeferredRenderer deferredRenderer = VeilRenderSystem.renderer().getDeferredRenderer();
             if (deferredRenderer.isEnabled()) {
-                deferredRenderer.getLightRenderer().removeLight(this.light);
+                PointLight light = this.light;
+                VeilRenderSystem.renderer().getParticleManager().runOrDefer(() -> deferredRenderer.getLightRenderer().removeLight(light));
             }
             this.light = null;
         }
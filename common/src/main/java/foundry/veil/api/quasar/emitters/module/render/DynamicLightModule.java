@@ -45,6 +45,15 @@ public class DynamicLightModule implements UpdateParticleModule, RenderParticleM
             this.lastColor.set(this.color);
             this.renderColor.set(this.color);
         }
+        // Constant expressions are resolved once here and never evaluated per-particle
+        if (this.constantBrightness) {
+            this.brightness = data.brightness().getConstant();
+            this.lastBrightness = this.brightness;
+        }
+        if (this.constantRadius) {
+            this.radius = data.radius().getConstant();
+            this.lastRadius = this.radius;
+        }
     }
 
     @Override
@@ -84,9 +93,10 @@ public class DynamicLightModule implements UpdateParticleModule, RenderParticleM
                 this.light.setBrightness(this.brightness * this.renderColor.w);
             }
             if (this.constantRadius) {
-                this.light.setBrightness(this.radius);
+                this.light.setRadius(this.radius);
             }
-            deferredRenderer.getLightRenderer().addLight(this.light);
+            PointLight light = this.light;
+            VeilRenderSystem.renderer().getParticleManager().runOrDefer(() -> deferredRenderer.getLightRenderer().addLight(light));
         }
         this.lastBrightness = brightness;
     }
@@ -116,7 +126,8 @@ public class DynamicLightModule implements UpdateParticleModule, RenderParticleM
         if (this.light != null) {
             VeilDeferredRenderer deferredRenderer = VeilRenderSystem.renderer().getDeferredRenderer();
             if (deferredRenderer.isEnabled()) {
-                deferredRenderer.getLightRenderer().removeLight(this.light);
+                PointLight light = this.light;
+                VeilRenderSystem.renderer().getParticleManager().runOrDefer(() -> deferredRenderer.getLightRenderer().removeLight(light));
             }
             this.light = null;
         }
@@ -0,0 +1,46 @@
+package foundry.veil.api.quasar.emitters.module.render;
+
+import foundry.veil.api.client.render.VeilRenderSystem;
+import foundry.veil.api.quasar.data.module.init.LightModuleData;
+import foundry.veil.api.quasar.emitters.module.RenderParticleModule;
+import foundry.veil.api.quasar.emitters.module.StatelessParticleModule;
+import foundry.veil.api.quasar.particle.ParticleLightPool;
+import foundry.veil.api.quasar.particle.QuasarParticle;
+import org.joml.Vector3dc;
+import org.joml.Vector4f;
+
+/**
+ * Submits the light of each particle to the clusters of its emitter instead of giving every particle its own light.
+ *
+ * @see ParticleLightPool
+ */
+public class PooledLightModule implements RenderParticleModule, StatelessParticleModule {
+
+    // Snapshots are captured on the tick workers and one module is shared by every particle of a plan
+    private static final ThreadLocal<Vector4f> COLOR = ThreadLocal.withInitial(Vector4f::new);
+
+    private final LightModuleData data;
+
+    public PooledLightModule(LightModuleData data) {
+        this.data = data;
+    }
+
+    @Override
+    public void render(QuasarParticle particle, float partialTicks) {
+        LightModuleData data = this.data;
+        Vector4f color = data.color().getColor((float) particle.getAge() / (float) particle.getLifetime(), COLOR.get());
+        float brightness = particle.getEnvironment().safeResolve(data.brightness()) * color.w;
+        if (color.lengthSquared() < 0.1 && brightness < 0.1) {
+            return;
+        }
+
+        float radius = particle.getEnvironment().safeResolve(data.radius());
+        Vector3dc position = particle.getRenderData().getRenderPosition();
+        particle.getEmitter().getCapturedLights().add(position.x(), position.y(), position.z(), color.x, color.y, color.z, brightness, radius, data.clusterSize());
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return VeilRenderSystem.renderer().getDeferredRenderer().isEnabled();
+    }
+}
@@ -58,7 +58,8 @@ public class StaticLightModule implements RenderParticleModule {
         if (this.light != null) {
             VeilDeferredRenderer deferredRenderer = VeilRenderSystem.renderer().getDeferredRenderer();
             if (deferredRenderer.isEnabled()) {
-                deferredRenderer.getLightRenderer().removeLight(this.light);
+                PointLight light = this.light;
+                VeilRenderSystem.renderer().getParticleManager().runOrDefer(() -> deferredRenderer.getLightRenderer().removeLight(light));
             }
             this.light = null;
         }
@@ -0,0 +1,374 @@
+package foundry.veil.api.quasar.emitters.module.update;
+
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import foundry.veil.Veil;
+import foundry.veil.api.util.FastNoiseLite;
+import net.minecraft.core.SectionPos;
+import org.joml.Vector3d;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>A {@link VectorField} sampled into a lattice of world-space tiles.</p>
+ * <p>Each tile stores the noise of all three axes at regularly spaced points. Tiles are baked lazily the first time a
+ * particle reads from them. Values between lattice points are trilinearly interpolated. Once too many tiles are baked,
+ * the least recently used tiles are evicted.</p>
+ * <p>The noise doesn't depend on time, so tiles stay valid until the settings of the noise are changed. Every rebake
+ * interval the settings are compared to the ones the tiles were baked with and all tiles are baked again if they
+ * differ. The lattice spacing chosen when the field was created is kept.</p>
+ * <p>When the field is created, the lattice spacing is halved until the interpolated noise is within the tolerance of
+ * direct evaluation at random points in several probe tiles spread across the field. The tolerance is therefore an
+ * estimate of the error for noise that looks the same everywhere, not a bound checked for every tile. If the noise is
+ * too detailed to ever reach the tolerance, the field is evaluated directly instead.</p>
+ * <p>Tiles can be read from multiple threads. Each reader should use its own {@link Sampler}, for example the one
+ * returned by {@link #getSampler()}.</p>
+ */
+public class BakedVectorField {
+
+    public static final int TILE_SIZE = 8;
+    private static final int TILE_POINTS = TILE_SIZE + 1;
+    private static final int MAX_TILES = 1024;
+    private static final int EVICTED_TILES = MAX_TILES / 4;
+    private static final float MIN_SPACING = 1.0F / 16.0F;
+    private static final int PROBE_TILES = 8;
+    private static final int PROBE_RANGE = 64;
+    private static final int TOLERANCE_SAMPLES = 256;
+
+    private final VectorField field;
+    private final Settings settings;
+    private final Map<Long, Tile> tiles;
+    private final ThreadLocal<Sampler> samplers;
+    private final float spacing;
+    private final float error;
+    private final boolean direct;
+    private List<Object> noiseSettings;
+    private volatile long checkTime;
+    private volatile int generation;
+
+    public BakedVectorField(VectorField field, Settings settings) {
+        // Only keep the noise, so baked fields can be cached by the field without keeping it alive
+        this.field = new VectorField(field.noise(), field.strength());
+        this.settings = settings;
+        this.tiles = new ConcurrentHashMap<>();
+        this.samplers = ThreadLocal.withInitial(Sampler::new);
+        this.noiseSettings = getNoiseSettings(field.noise());
+        this.checkTime = 0L;
+        this.generation = 0;
+
+        // Refine the lattice until it is close enough to the real noise
+        float spacing = 1.0F / settings.resolution();
+        float error = measureError(field, spacing);
+        while (error > settings.tolerance() && spacing / 2.0F >= MIN_SPACING) {
+            spacing /= 2.0F;
+            error = measureError(field, spacing);
+        }
+        this.spacing = spacing;
+        this.error = error;
+        this.direct = error > settings.tolerance();
+        if (this.direct) {
+            Veil.LOGGER.warn("Vector field noise is too detailed to bake within a tolerance of {}, evaluating directly", settings.tolerance());
+        }
+    }
+
+    private static float measureError(VectorField field, float spacing) {
+        Random random = new Random(0L);
+        Vector3d direct = new Vector3d();
+        float[] interpolated = new float[3];
+        float error = 0.0F;
+        for (int probe = 0; probe < PROBE_TILES; probe++) {
+            int tileX = probe == 0 ? 0 : random.nextInt(PROBE_RANGE * 2) - PROBE_RANGE;
+            int tileY = probe == 0 ? 0 : random.nextInt(PROBE_RANGE * 2) - PROBE_RANGE;
+            int tileZ = probe == 0 ? 0 : random.nextInt(PROBE_RANGE * 2) - PROBE_RANGE;
+            Tile tile = new Tile(tileX, tileY, tileZ, 0, 0L);
+            tile.bake(field, spacing);
+
+            for (int i = 0; i < TOLERANCE_SAMPLES; i++) {
+                float x = random.nextFloat() * TILE_SIZE;
+                float y = random.nextFloat() * TILE_SIZE;
+                float z = random.nextFloat() * TILE_SIZE;
+                tile.interpolate(x, y, z, interpolated);
+                field.getNoise((tileX * TILE_SIZE + x) * spacing, (tileY * TILE_SIZE + y) * spacing, (tileZ * TILE_SIZE + z) * spacing, direct);
+                error = Math.max(error, (float) Math.abs(interpolated[0] - direct.x));
+                error = Math.max(error, (float) Math.abs(interpolated[1] - direct.y));
+                error = Math.max(error, (float) Math.abs(interpolated[2] - direct.z));
+            }
+        }
+        return error;
+    }
+
+    /**
+     * Every value that changes the output of the noise. {@link FastNoiseLite} has no equality of its own.
+     */
+    private static List<Object> getNoiseSettings(FastNoiseLite noise) {
+        return List.of(noise.GetSeed(), noise.GetFrequency(), noise.GetNoiseType(), noise.GetRotationType3D(),
+                noise.GetFractalType(), noise.GetFractalOctaves(), noise.GetFractalLacunarity(), noise.GetFractalGain(),
+                noise.GetFractalWeightedStrength(), noise.GetFractalPingPongStrength(), noise.GetCellularDistanceFunction(),
+                noise.GetCellularReturnType(), noise.GetCellularJitterModifier(), noise.GetDomainWarpType(), noise.GetDomainWarpAmp());
+    }
+
+    /**
+     * Compares the noise settings to the ones the tiles were baked with and discards all tiles if they changed.
+     */
+    private synchronized void checkNoise(long time) {
+        // Another thread may have already checked this interval
+        if (time - this.checkTime < this.settings.rebakeInterval()) {
+            return;
+        }
+
+        List<Object> noiseSettings = getNoiseSettings(this.field.noise());
+        if (!noiseSettings.equals(this.noiseSettings)) {
+            this.noiseSettings = noiseSettings;
+            this.generation++;
+            this.tiles.clear();
+        }
+        this.checkTime = time;
+    }
+
+    private Tile getTile(int tileX, int tileY, int tileZ, long time) {
+        long key = SectionPos.asLong(tileX, tileY, tileZ);
+        Tile tile = this.tiles.get(key);
+        int generation = this.generation;
+        if (tile == null || tile.generation != generation) {
+            if (this.tiles.size() >= MAX_TILES) {
+                this.evictTiles();
+            }
+
+            // Readers still holding the old tile can keep using it until they move on
+            tile = new Tile(tileX, tileY, tileZ, generation, time);
+            tile.bake(this.field, this.spacing);
+            this.tiles.put(key, tile);
+        }
+        return tile;
+    }
+
+    /**
+     * Removes the least recently used tiles, so the tiles particles are currently reading from don't have to be baked again.
+     */
+    private synchronized void evictTiles() {
+        // Another thread may have already made room
+        if (this.tiles.size() < MAX_TILES) {
+            return;
+        }
+
+        List<Map.Entry<Long, Tile>> entries = new ArrayList<>(this.tiles.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().lastUsed));
+        for (int i = 0; i < EVICTED_TILES && i < entries.size(); i++) {
+            Map.Entry<Long, Tile> entry = entries.get(i);
+            this.tiles.remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * @return A new sampler to read this field with
+     */
+    public Sampler sampler() {
+        return new Sampler();
+    }
+
+    /**
+     * @return The sampler owned by the current thread
+     */
+    public Sampler getSampler() {
+        return this.samplers.get();
+    }
+
+    /**
+     * Removes all baked tiles.
+     */
+    public void clear() {
+        this.tiles.clear();
+    }
+
+    /**
+     * @return The field this lattice samples, without any bake settings
+     */
+    public VectorField getField() {
+        return this.field;
+    }
+
+    /**
+     * @return The distance between lattice points in blocks
+     */
+    public float getSpacing() {
+        return this.spacing;
+    }
+
+    /**
+     * @return The largest difference from direct evaluation found in the probe tiles while creating the lattice
+     */
+    public float getError() {
+        return this.error;
+    }
+
+    /**
+     * @return Whether the noise is evaluated directly because it couldn't be baked within the tolerance
+     */
+    public boolean isDirect() {
+        return this.direct;
+    }
+
+    /**
+     * @return The number of tiles currently baked
+     */
+    public int getTileCount() {
+        return this.tiles.size();
+    }
+
+    /**
+     * Reads values from the lattice. Remembers the last tile used, so it must only be used by a single thread.
+     */
+    public class Sampler {
+
+        private final float[] values;
+        private Tile tile;
+
+        private Sampler() {
+            this.values = new float[3];
+            this.tile = null;
+        }
+
+        /**
+         * Samples the raw noise of each axis at the specified position.
+         *
+         * @param x      The x position
+         * @param y      The y position
+         * @param z      The z position
+         * @param time   The current game time, used to decide when the noise settings are checked for changes
+         * @param result The vector to store the noise in
+         * @return The result vector
+         */
+        public Vector3d sampleNoise(double x, double y, double z, long time, Vector3d result) {
+            BakedVectorField field = BakedVectorField.this;
+            if (field.direct) {
+                return field.field.getNoise((float) x, (float) y, (float) z, result);
+            }
+
+            float spacing = field.spacing;
+            double latticeX = x / spacing;
+            double latticeY = y / spacing;
+            double latticeZ = z / spacing;
+            int tileX = Math.floorDiv((int) Math.floor(latticeX), TILE_SIZE);
+            int tileY = Math.floorDiv((int) Math.floor(latticeY), TILE_SIZE);
+            int tileZ = Math.floorDiv((int) Math.floor(latticeZ), TILE_SIZE);
+
+            int rebakeInterval = field.settings.rebakeInterval();
+            if (rebakeInterval > 0 && time - field.checkTime >= rebakeInterval) {
+                field.checkNoise(time);
+            }
+
+            Tile tile = this.tile;
+            if (tile == null || tile.tileX != tileX || tile.tileY != tileY || tile.tileZ != tileZ || tile.generation != field.generation) {
+                tile = this.tile = field.getTile(tileX, tileY, tileZ, time);
+            }
+            // Only written once per tick, so readers on other threads rarely touch the same cache line
+            if (tile.lastUsed != time) {
+                tile.lastUsed = time;
+            }
+
+            float[] values = this.values;
+            tile.interpolate(
+                    (float) (latticeX - (double) tileX * TILE_SIZE),
+                    (float) (latticeY - (double) tileY * TILE_SIZE),
+                    (float) (latticeZ - (double) tileZ * TILE_SIZE),
+                    values);
+            return result.set(values[0], values[1], values[2]);
+        }
+
+        /**
+         * Samples the force vector at the specified position. This matches {@link VectorField#getVector(org.joml.Vector3dc, Vector3d)}
+         * within the tolerance of the lattice.
+         *
+         * @param x      The x position
+         * @param y      The y position
+         * @param z      The z position
+         * @param time   The current game time, used to decide when the noise settings are checked for changes
+         * @param result The vector to store the force in
+         * @return The result vector
+         */
+        public Vector3d sample(double x, double y, double z, long time, Vector3d result) {
+            return this.sampleNoise(x, y, z, time, result).normalize(BakedVectorField.this.field.strength());
+        }
+    }
+
+    private static class Tile {
+
+        private final int tileX;
+        private final int tileY;
+        private final int tileZ;
+        private final int generation;
+        private final float[] xValues;
+        private final float[] yValues;
+        private final float[] zValues;
+        private long lastUsed;
+
+        private Tile(int tileX, int tileY, int tileZ, int generation, long time) {
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.tileZ = tileZ;
+            this.generation = generation;
+            this.lastUsed = time;
+            this.xValues = new float[TILE_POINTS * TILE_POINTS * TILE_POINTS];
+            this.yValues = new float[TILE_POINTS * TILE_POINTS * TILE_POINTS];
+            this.zValues = new float[TILE_POINTS * TILE_POINTS * TILE_POINTS];
+        }
+
+        private void bake(VectorField field, float spacing) {
+            field.getNoiseGrid(
+                    this.tileX * TILE_SIZE * spacing,
+                    this.tileY * TILE_SIZE * spacing,
+                    this.tileZ * TILE_SIZE * spacing,
+                    TILE_POINTS, spacing, this.xValues, this.yValues, this.zValues);
+        }
+
+        /**
+         * Trilinearly interpolates the lattice at the specified position relative to this tile in lattice units.
+         */
+        private void interpolate(float x, float y, float z, float[] result) {
+            int x0 = Math.min((int) x, TILE_SIZE - 1);
+            int y0 = Math.min((int) y, TILE_SIZE - 1);
+            int z0 = Math.min((int) z, TILE_SIZE - 1);
+            float fx = x - x0;
+            float fy = y - y0;
+            float fz = z - z0;
+
+            int i000 = x0 + TILE_POINTS * (y0 + TILE_POINTS * z0);
+            int i100 = i000 + 1;
+            int i010 = i000 + TILE_POINTS;
+            int i110 = i010 + 1;
+            int i001 = i000 + TILE_POINTS * TILE_POINTS;
+            int i101 = i001 + 1;
+            int i011 = i001 + TILE_POINTS;
+            int i111 = i011 + 1;
+
+            result[0] = interpolate(this.xValues, i000, i100, i010, i110, i001, i101, i011, i111, fx, fy, fz);
+            result[1] = interpolate(this.yValues, i000, i100, i010, i110, i001, i101, i011, i111, fx, fy, fz);
+            result[2] = interpolate(this.zValues, i000, i100, i010, i110, i001, i101, i011, i111, fx, fy, fz);
+        }
+
+        private static float interpolate(float[] values, int i000, int i100, int i010, int i110, int i001, int i101, int i011, int i111, float fx, float fy, float fz) {
+            float c00 = values[i000] + (values[i100] - values[i000]) * fx;
+            float c10 = values[i010] + (values[i110] - values[i010]) * fx;
+            float c01 = values[i001] + (values[i101] - values[i001]) * fx;
+            float c11 = values[i011] + (values[i111] - values[i011]) * fx;
+            float c0 = c00 + (c10 - c00) * fy;
+            float c1 = c01 + (c11 - c01) * fy;
+            return c0 + (c1 - c0) * fz;
+        }
+    }
+
+    /**
+     * @param resolution     The number of lattice points per block
+     * @param rebakeInterval The number of ticks between checks for changed noise settings or <code>0</code> to never rebake tiles
+     * @param tolerance      The largest difference from direct evaluation allowed before the lattice is refined
+     */
+    public record Settings(float resolution, int rebakeInterval, float tolerance) {
+
+        public static final Codec<Settings> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+                Codec.floatRange(1.0F / 16.0F, 16.0F).optionalFieldOf("resolution", 1.0F).forGetter(Settings::resolution),
+                Codec.intRange(0, Integer.MAX_VALUE).optionalFieldOf("rebake_interval", 0).forGetter(Settings::rebakeInterval),
+                Codec.floatRange(0.0F, 2.0F).optionalFieldOf("tolerance", 0.05F).forGetter(Settings::tolerance)
+        ).apply(instance, Settings::new));
+    }
+}
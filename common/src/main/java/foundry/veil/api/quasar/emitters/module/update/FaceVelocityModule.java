@@ -1,29 +1,41 @@
 package foundry.veil.api.quasar.emitters.module.update;
 
-import foundry.veil.api.quasar.emitters.module.UpdateParticleModule;
+import foundry.veil.api.quasar.emitters.module.BulkUpdateParticleModule;
+import foundry.veil.api.quasar.particle.ParticleStorage;
 import foundry.veil.api.quasar.particle.QuasarParticle;
 import foundry.veil.api.quasar.particle.RenderData;
 import foundry.veil.api.quasar.registry.RenderStyleRegistry;
 import net.minecraft.util.Mth;
-import org.joml.Vector3d;
+import org.joml.Vector3dc;
 import org.joml.Vector3f;
 
-public class FaceVelocityModule implements UpdateParticleModule {
-
-    private final Vector3d temp;
-
-    public FaceVelocityModule() {
-        this.temp = new Vector3d();
-    }
+public class FaceVelocityModule implements BulkUpdateParticleModule {
 
     @Override
     public void update(QuasarParticle particle) {
-        Vector3d normalizedMotion = particle.getVelocity().normalize(this.temp);
+        // The angles don't depend on the length of the velocity, so it never has to be normalized
+        Vector3dc velocity = particle.getVelocity();
         Vector3f rotation = particle.getRotation();
-        rotation.x = (float) Mth.atan2(normalizedMotion.y, Math.sqrt(normalizedMotion.x * normalizedMotion.x + normalizedMotion.z * normalizedMotion.z));
-        rotation.y = (float) Mth.atan2(normalizedMotion.x, normalizedMotion.z);
+        rotation.x = (float) Mth.atan2(velocity.y(), Math.sqrt(velocity.x() * velocity.x() + velocity.z() * velocity.z()));
+        rotation.y = (float) Mth.atan2(velocity.x(), velocity.z());
         if (particle.getData().renderStyle() == RenderStyleRegistry.BILLBOARD.get()) {
             rotation.y += (float) (Math.PI / 2.0);
         }
     }
+
+    @Override
+    public void update(ParticleStorage storage, int from, int to) {
+        float yawOffset = storage.getEmitter().getParticleData().renderStyle() == RenderStyleRegistry.BILLBOARD.get() ? (float) (Math.PI / 2.0) : 0.0F;
+        double[] velocityX = storage.getVelocityX();
+        double[] velocityY = storage.getVelocityY();
+        double[] velocityZ = storage.getVelocityZ();
+        float[] rotationX = storage.getRotationX();
+        float[] rotationY = storage.getRotationY();
+        for (int i = from; i < to; i++) {
+            double x = velocityX[i];
+            double z = velocityZ[i];
+            rotationX[i] = (float) Mth.atan2(velocityY[i], Math.sqrt(x * x + z * z));
+            rotationY[i] = (float) Mth.atan2(x, z) + yawOffset;
+        }
+    }
 }
@@ -0,0 +1,44 @@
+package foundry.veil.api.quasar.emitters.module.update;
+
+import foundry.veil.api.quasar.emitters.module.BulkUpdateParticleModule;
+import foundry.veil.api.quasar.particle.ParticleStorage;
+import foundry.veil.api.quasar.particle.QuasarParticle;
+import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.exception.MolangRuntimeException;
+
+/**
+ * Sets the size of particles to the result of a MoLang expression every tick.
+ */
+public class TickSizeModule implements BulkUpdateParticleModule {
+
+    private final MolangExpression size;
+
+    public TickSizeModule(MolangExpression size) {
+        this.size = size;
+    }
+
+    @Override
+    public void update(QuasarParticle particle) {
+        if (this.size.isConstant()) {
+            particle.setRadius(this.size.getConstant());
+            return;
+        }
+
+        try {
+            particle.setRadius(particle.getEnvironment().resolve(this.size));
+        } catch (MolangRuntimeException e) {
+            e.printStackTrace();
+            particle.setRadius(1.0F);
+        }
+    }
+
+    @Override
+    public void update(ParticleStorage storage, int from, int to) {
+        // Every row is bound before its own radius is written, so the radius column can be the result directly
+        storage.getEmitter().getMolangRuntime().evaluate(this.size, storage, from, to, storage.getRadius());
+    }
+
+    public MolangExpression getSize() {
+        return this.size;
+    }
+}
@@ -1,13 +1,11 @@
 package foundry.veil.api.quasar.emitters.module.update;
 
-import foundry.veil.api.client.render.VeilRenderSystem;
 import foundry.veil.api.quasar.data.module.update.TickSubEmitterModuleData;
+import foundry.veil.api.quasar.emitters.module.StatelessParticleModule;
 import foundry.veil.api.quasar.emitters.module.UpdateParticleModule;
-import foundry.veil.api.quasar.particle.ParticleEmitter;
-import foundry.veil.api.quasar.particle.ParticleSystemManager;
 import foundry.veil.api.quasar.particle.QuasarParticle;
 
-public class TickSubEmitterModule implements UpdateParticleModule {
+public class TickSubEmitterModule implements UpdateParticleModule, StatelessParticleModule {
 
     private final TickSubEmitterModuleData data;
 
@@ -21,13 +19,6 @@ public class TickSubEmitterModule implements UpdateParticleModule {
             return;
         }
 
-        ParticleSystemManager particleManager = VeilRenderSystem.renderer().getParticleManager();
-        ParticleEmitter instance = particleManager.createEmitter(this.data.subEmitter());
-        if (instance == null) {
-            return;
-        }
-
-        instance.setPosition(particle.getPosition());
-        particleManager.addParticleSystem(instance);
+        particle.getEmitter().spawnSubEmitter(this.data.subEmitter(), particle.getPosition(), this.data.batched());
     }
 }
@@ -3,9 +3,15 @@ package foundry.veil.api.quasar.emitters.module.update;
 import com.mojang.serialization.Codec;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
 import foundry.veil.api.util.FastNoiseLite;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector3d;
 import org.joml.Vector3dc;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+
 /**
  * A 3D vector field implementation. This is used to apply a force to a particle based on its position.
  * <p>
@@ -14,25 +20,79 @@ import org.joml.Vector3dc;
  * The strength is used to scale the noise value.
  * The vector function is used to generate a vector if a custom vector field is desired.
  * If no vector function is provided, a default one is used that generates a vector based on the noise value.
+ * <p>
+ * If bake settings are provided, the noise is sampled into a lattice once and interpolated instead of evaluated for
+ * every particle. See {@link BakedVectorField}.
  */
-public record VectorField(FastNoiseLite noise, float strength) {
+public record VectorField(FastNoiseLite noise, float strength, @Nullable BakedVectorField.Settings bakeSettings) {
 
     public static Codec<VectorField> CODEC = RecordCodecBuilder.create(instance -> instance.group(
             FastNoiseLite.CODEC.fieldOf("noise").forGetter(VectorField::noise),
-            Codec.FLOAT.fieldOf("strength").forGetter(VectorField::strength)
-    ).apply(instance, VectorField::new));
+            Codec.FLOAT.fieldOf("strength").forGetter(VectorField::strength),
+            BakedVectorField.Settings.CODEC.optionalFieldOf("bake").forGetter(field -> Optional.ofNullable(field.bakeSettings()))
+    ).apply(instance, (noise, strength, bakeSettings) -> new VectorField(noise, strength, bakeSettings.orElse(null))));
 
-    public Vector3d getVector(Vector3dc position, Vector3d result) {
-        float x = (float) position.x();
-        float y = (float) position.y();
-        float z = (float) position.z();
+    // Records can't cache anything themselves. The lattice only references the noise, so the key can still be collected
+    private static final Map<VectorField, BakedVectorField> BAKED = Collections.synchronizedMap(new WeakHashMap<>());
+
+    public VectorField(FastNoiseLite noise, float strength) {
+        this(noise, strength, null);
+    }
+
+    /**
+     * Evaluates the raw noise of each axis at the specified position.
+     *
+     * @param x      The x position
+     * @param y      The y position
+     * @param z      The z position
+     * @param result The vector to store the noise in
+     * @return The result vector
+     */
+    public Vector3d getNoise(float x, float y, float z, Vector3d result) {
         float xNoise = this.noise.GetNoise(x, y, z);
         float yNoise = this.noise.GetNoise(x + 100, y + 100, z + 100);
         float zNoise = this.noise.GetNoise(x + 200, y + 200, z + 200);
-        return result.set(xNoise, yNoise, zNoise).normalize(this.strength);
+        return result.set(xNoise, yNoise, zNoise);
+    }
+
+    /**
+     * Evaluates the raw noise of each axis for a cube of evenly spaced positions. The value at <code>(i, j, k)</code>
+     * matches {@link #getNoise(float, float, float, Vector3d)} at <code>(x + i * spacing, y + j * spacing, z + k * spacing)</code>
+     * within float rounding and is stored at <code>i + size * (j + size * k)</code>.
+     *
+     * @param x       The x position of the first sample
+     * @param y       The y position of the first sample
+     * @param z       The z position of the first sample
+     * @param size    The number of samples along each axis
+     * @param spacing The distance between samples
+     * @param xNoise  The array to store the x noise in
+     * @param yNoise  The array to store the y noise in
+     * @param zNoise  The array to store the z noise in
+     */
+    public void getNoiseGrid(float x, float y, float z, int size, float spacing, float[] xNoise, float[] yNoise, float[] zNoise) {
+        this.noise.GetNoiseGrid(xNoise, x, y, z, size, size, size, spacing);
+        this.noise.GetNoiseGrid(yNoise, x + 100, y + 100, z + 100, size, size, size, spacing);
+        this.noise.GetNoiseGrid(zNoise, x + 200, y + 200, z + 200, size, size, size, spacing);
+    }
+
+    public Vector3d getVector(Vector3dc position, Vector3d result) {
+        return this.getNoise((float) position.x(), (float) position.y(), (float) position.z(), result).normalize(this.strength);
     }
 
     public Vector3d getVector(Vector3dc position) {
         return this.getVector(position, new Vector3d());
     }
+
+    /**
+     * Retrieves the baked lattice for this field, creating it the first time this is called. Equal fields share the
+     * same lattice.
+     *
+     * @return The baked field or <code>null</code> if this field is evaluated directly
+     */
+    public @Nullable BakedVectorField getBaked() {
+        if (this.bakeSettings == null) {
+            return null;
+        }
+        return BAKED.computeIfAbsent(this, field -> new BakedVectorField(field, field.bakeSettings));
+    }
 }
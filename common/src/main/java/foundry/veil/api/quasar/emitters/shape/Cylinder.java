@@ -32,6 +32,20 @@ public class Cylinder implements EmitterShape {
         return pos.add(position);
     }
 
+    @Override
+    public void getPoints(RandomSource randomSource, int count, double[] out, int offset, int stride, Vector3fc dimensions, Vector3fc rotation, Vector3dc position, boolean fromSurface) {
+        ShapeTransform transform = new ShapeTransform(dimensions, rotation, position, fromSurface);
+        Vector3d normal = transform.normal();
+        for (int i = 0; i < count; i++) {
+            double theta = randomSource.nextDouble() * 2 * Math.PI;
+            double x = Math.cos(theta);
+            double y = Math.sin(theta);
+            double z = randomSource.nextDouble() * 2 - 1;
+            normal.set(x, y, z).normalize();
+            transform.write(randomSource, out, offset + i * stride);
+        }
+    }
+
     @Override
     public void renderShape(PoseStack stack, VertexConsumer consumer, Vector3fc dimensions, Vector3fc rotation) {
 
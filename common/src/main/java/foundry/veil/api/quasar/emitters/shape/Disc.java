@@ -31,6 +31,19 @@ public class Disc implements EmitterShape {
         return pos.add(position);
     }
 
+    @Override
+    public void getPoints(RandomSource randomSource, int count, double[] out, int offset, int stride, Vector3fc dimensions, Vector3fc rotation, Vector3dc position, boolean fromSurface) {
+        ShapeTransform transform = new ShapeTransform(dimensions, rotation, position, fromSurface);
+        Vector3d normal = transform.normal();
+        for (int i = 0; i < count; i++) {
+            double x = randomSource.nextGaussian();
+            double y = 0.0000001;
+            double z = randomSource.nextGaussian();
+            normal.set(x, y, z).normalize();
+            transform.write(randomSource, out, offset + i * stride);
+        }
+    }
+
     @Override
     public void renderShape(PoseStack stack, VertexConsumer consumer, Vector3fc dimensions, Vector3fc rotation) {
         float radius = dimensions.x();
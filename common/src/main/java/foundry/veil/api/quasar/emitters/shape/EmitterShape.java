@@ -24,6 +24,32 @@ public interface EmitterShape {
 
     Vector3d getPoint(RandomSource randomSource, Vector3fc dimensions, Vector3fc rotation, Vector3dc position, boolean fromSurface);
 
+    /**
+     * <p>Generates many points at once. Point <code>i</code> is written to <code>out[offset + i * stride]</code> as
+     * three consecutive <code>x, y, z</code> values.</p>
+     * <p>The default implementation calls {@link #getPoint(RandomSource, Vector3fc, Vector3fc, Vector3dc, boolean)}
+     * for every point. Shapes should override this to avoid allocating a vector per point.</p>
+     *
+     * @param randomSource The source of randomness
+     * @param count        The number of points to generate
+     * @param out          The array to write points into
+     * @param offset       The index of the first point in the array
+     * @param stride       The distance between consecutive points in the array. Must be at least <code>3</code>
+     * @param dimensions   The size of the shape
+     * @param rotation     The rotation of the shape in degrees
+     * @param position     The center of the shape
+     * @param fromSurface  Whether points should only be generated on the surface of the shape
+     */
+    default void getPoints(RandomSource randomSource, int count, double[] out, int offset, int stride, Vector3fc dimensions, Vector3fc rotation, Vector3dc position, boolean fromSurface) {
+        for (int i = 0; i < count; i++) {
+            Vector3d point = this.getPoint(randomSource, dimensions, rotation, position, fromSurface);
+            int index = offset + i * stride;
+            out[index] = point.x;
+            out[index + 1] = point.y;
+            out[index + 2] = point.z;
+        }
+    }
+
     void renderShape(PoseStack stack, VertexConsumer consumer, Vector3fc dimensions, Vector3fc rotation);
 
     Codec<EmitterShape> CODEC = CodecUtil.registryOrLegacyCodec(EmitterShapeRegistry.REGISTRY);
@@ -33,6 +33,21 @@ public class Hemisphere implements EmitterShape {
         return pos.add(position);
     }
 
+    @Override
+    public void getPoints(RandomSource randomSource, int count, double[] out, int offset, int stride, Vector3fc dimensions, Vector3fc rotation, Vector3dc position, boolean fromSurface) {
+        ShapeTransform transform = new ShapeTransform(dimensions, rotation, position, fromSurface);
+        Vector3d normal = transform.normal();
+        for (int i = 0; i < count; i++) {
+            double theta = randomSource.nextDouble() * 2 * Math.PI;
+            double phi = randomSource.nextDouble() * Math.PI / 2;
+            double x = Math.cos(theta) * Math.sin(phi);
+            double y = Math.sin(theta) * Math.sin(phi);
+            double z = Math.cos(phi);
+            normal.set(x, y, z).normalize();
+            transform.write(randomSource, out, offset + i * stride);
+        }
+    }
+
     @Override
     public void renderShape(PoseStack stack, VertexConsumer consumer, Vector3fc dimensions, Vector3fc rotation) {
 
@@ -14,6 +14,19 @@ public class Point implements EmitterShape {
         return new Vector3d(position);
     }
 
+    @Override
+    public void getPoints(RandomSource randomSource, int count, double[] out, int offset, int stride, Vector3fc dimensions, Vector3fc rotation, Vector3dc position, boolean fromSurface) {
+        double x = position.x();
+        double y = position.y();
+        double z = position.z();
+        for (int i = 0; i < count; i++) {
+            int index = offset + i * stride;
+            out[index] = x;
+            out[index + 1] = y;
+            out[index + 2] = z;
+        }
+    }
+
     @Override
     public void renderShape(PoseStack stack, VertexConsumer consumer, Vector3fc dimensions, Vector3fc rotation) {
 
@@ -0,0 +1,103 @@
+package foundry.veil.api.quasar.emitters.shape;
+
+import net.minecraft.util.RandomSource;
+import org.joml.Vector3d;
+import org.joml.Vector3dc;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+
+/**
+ * <p>The part of {@link EmitterShape#getPoint(RandomSource, Vector3fc, Vector3fc, Vector3dc, boolean)} shared by the
+ * built-in shapes, prepared once for a whole batch of points.</p>
+ * <p>The rotation is only converted to sines and cosines once and the same vectors are reused for every point. Random
+ * values are drawn in the same order as the single point implementations, so a batch produces the same points as
+ * calling <code>getPoint</code> repeatedly with the same random source.</p>
+ */
+final class ShapeTransform {
+
+    private final Vector3fc dimensions;
+    private final Vector3dc position;
+    private final boolean fromSurface;
+    private final boolean rotate;
+    private final double sinX;
+    private final double cosX;
+    private final double sinY;
+    private final double cosY;
+    private final double sinZ;
+    private final double cosZ;
+    private final Vector3d normal;
+    private final Vector3f scaledDimensions;
+
+    ShapeTransform(Vector3fc dimensions, Vector3fc rotation, Vector3dc position, boolean fromSurface) {
+        this.dimensions = dimensions;
+        this.position = position;
+        this.fromSurface = fromSurface;
+        this.rotate = rotation.x() != 0 || rotation.y() != 0 || rotation.z() != 0;
+
+        // Matches the float precision used by Vector3d#rotateX/Y/Z in the single point implementations
+        double angleX = (float) Math.toRadians(rotation.x());
+        double angleY = (float) Math.toRadians(rotation.y());
+        double angleZ = (float) Math.toRadians(rotation.z());
+        this.sinX = org.joml.Math.sin(angleX);
+        this.cosX = org.joml.Math.cosFromSin(this.sinX, angleX);
+        this.sinY = org.joml.Math.sin(angleY);
+        this.cosY = org.joml.Math.cosFromSin(this.sinY, angleY);
+        this.sinZ = org.joml.Math.sin(angleZ);
+        this.cosZ = org.joml.Math.cosFromSin(this.sinZ, angleZ);
+        this.normal = new Vector3d();
+        this.scaledDimensions = new Vector3f();
+    }
+
+    /**
+     * @return The vector to store the direction of the next point in before calling {@link #write(RandomSource, double[], int)}
+     */
+    Vector3d normal() {
+        return this.normal;
+    }
+
+    /**
+     * Scales, rotates, and offsets the current normal and writes the result into the array.
+     *
+     * @param randomSource The source of randomness
+     * @param out          The array to write the point into
+     * @param index        The index of the x coordinate
+     */
+    void write(RandomSource randomSource, double[] out, int index) {
+        Vector3d normal = this.normal;
+        Vector3fc dim = this.dimensions;
+        if (!this.fromSurface) {
+            normal.mul(randomSource.nextDouble()).normalize();
+            dim = this.dimensions.mul(
+                    randomSource.nextFloat(),
+                    randomSource.nextFloat(),
+                    randomSource.nextFloat(),
+                    this.scaledDimensions
+            );
+        }
+        normal.mul(dim);
+
+        double x = normal.x;
+        double y = normal.y;
+        double z = normal.z;
+        if (this.rotate) {
+            double ry = y * this.cosX - z * this.sinX;
+            double rz = y * this.sinX + z * this.cosX;
+            y = ry;
+            z = rz;
+
+            double rx = x * this.cosY + z * this.sinY;
+            rz = -x * this.sinY + z * this.cosY;
+            x = rx;
+            z = rz;
+
+            rx = x * this.cosZ - y * this.sinZ;
+            ry = x * this.sinZ + y * this.cosZ;
+            x = rx;
+            y = ry;
+        }
+
+        out[index] = x + this.position.x();
+        out[index + 1] = y + this.position.y();
+        out[index + 2] = z + this.position.z();
+    }
+}
@@ -6,18 +6,26 @@ import com.mojang.serialization.Codec;
 import com.mojang.serialization.DataResult;
 import foundry.veil.api.quasar.emitters.module.render.TrailSettings;
 import foundry.veil.impl.quasar.MathUtil;
+import it.unimi.dsi.fastutil.floats.FloatUnaryOperator;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.texture.OverlayTexture;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
 
 import java.util.Locale;
-import java.util.function.Function;
 
+/**
+ * <p>A ribbon that follows a moving point.</p>
+ * <p>Points are stored in fixed-capacity ring buffers, so pushing a point never copies the history. The width function is
+ * sampled into a curve whenever it changes and the ribbon is written directly into the vertex consumer.</p>
+ */
 public class Trail {
 
+    private static final int WIDTH_CURVE_RESOLUTION = 64;
+
     public enum TilingMode {
         NONE,
         STRETCH,
@@ -33,10 +41,14 @@ public class Trail {
         }, tilingMode1 -> DataResult.success(tilingMode1.name().toLowerCase(Locale.ROOT)));
     }
 
-    private Vec3[] points;
-    private Vec3[] rotations;
+    private double[] points;
+    private float[] rotations;
+    private int start;
+    private int size;
+    private final float[] widthCurve;
+    private final Vector3f pos;
     private int color;
-    private Function<Float, Float> widthFunction;
+    private FloatUnaryOperator widthFunction;
     private int length = 100;
     private boolean billboard = false;
     private TilingMode tilingMode = TilingMode.STRETCH;
@@ -49,21 +61,27 @@ public class Trail {
     public Trail(TrailSettings settings) {
         this(MathUtil.colorFromVec4f(settings.getTrailColor()), (ageScale) -> settings.getTrailWidthModifier().modify(ageScale, 1));
         this.billboard = settings.getBillboard();
-        this.length = settings.getTrailLength();
+        this.setLength(settings.getTrailLength());
         this.frequency = settings.getTrailFrequency();
         this.tilingMode = settings.getTilingMode();
         this.texture = settings.getTrailTexture();
         this.parentRotation = settings.getParentRotation();
     }
 
-    public Trail(Vec3[] points, int color, Function<Float, Float> widthFunction) {
-        this.points = points;
+    public Trail(Vec3[] points, int color, FloatUnaryOperator widthFunction) {
+        this.points = new double[this.length * 3];
+        this.rotations = new float[this.length * 3];
+        this.start = 0;
+        this.size = 0;
+        this.widthCurve = new float[WIDTH_CURVE_RESOLUTION + 1];
+        this.pos = new Vector3f();
         this.color = color;
-        this.widthFunction = widthFunction;
+        this.setWidthFunction(widthFunction);
+        this.setPoints(points);
     }
 
-    public Trail(int color, Function<Float, Float> widthFunction) {
-        this(new Vec3[]{Vec3.ZERO}, color, widthFunction);
+    public Trail(int color, FloatUnaryOperator widthFunction) {
+        this(new Vec3[0], color, widthFunction);
     }
 
     public void setParentRotation(boolean parentRotation) {
@@ -87,19 +105,43 @@ public class Trail {
     }
 
     public void setPoints(Vec3[] points) {
-        if (points.length > this.length) {
-            Vec3[] newPoints = new Vec3[this.length];
-            System.arraycopy(points, points.length - this.length, newPoints, 0, this.length);
-            points = newPoints;
+        this.start = 0;
+        this.size = 0;
+        for (int i = Math.max(0, points.length - this.length); i < points.length; i++) {
+            Vec3 point = points[i];
+            this.add(point.x, point.y, point.z, 0.0F, 0.0F, 0.0F);
         }
-        this.points = points;
     }
 
     public void setColor(int color) {
         this.color = color;
     }
 
+    /**
+     * Sets the maximum number of points in this trail. The newest points are kept if the trail is shortened.
+     *
+     * @param length The new maximum number of points
+     */
     public void setLength(int length) {
+        if (length < 1) {
+            throw new IllegalArgumentException("Invalid trail length: " + length);
+        }
+        if (this.length == length) {
+            return;
+        }
+
+        double[] points = new double[length * 3];
+        float[] rotations = new float[length * 3];
+        int size = Math.min(this.size, length);
+        for (int i = 0; i < size; i++) {
+            int from = this.index(this.size - size + i) * 3;
+            System.arraycopy(this.points, from, points, i * 3, 3);
+            System.arraycopy(this.rotations, from, rotations, i * 3, 3);
+        }
+        this.points = points;
+        this.rotations = rotations;
+        this.start = 0;
+        this.size = size;
         this.length = length;
     }
 
@@ -107,8 +149,11 @@ public class Trail {
         this.billboard = billboard;
     }
 
-    public void setWidthFunction(Function<Float, Float> widthFunction) {
+    public void setWidthFunction(FloatUnaryOperator widthFunction) {
         this.widthFunction = widthFunction;
+        for (int i = 0; i <= WIDTH_CURVE_RESOLUTION; i++) {
+            this.widthCurve[i] = widthFunction.apply((float) i / WIDTH_CURVE_RESOLUTION);
+        }
     }
 
     public ResourceLocation getTexture() {
@@ -119,162 +164,215 @@ public class Trail {
         return this.length;
     }
 
-    public void pushPoint(Vec3 point) {
-        if (this.timeout > Minecraft.getInstance().getWindow().getRefreshRate() * 5 && this.timeout % 3 == 0) {
-            //remove the last point in the array
-            Vec3[] newPoints = new Vec3[this.points.length - 1];
-            System.arraycopy(this.points, 1, newPoints, 0, this.points.length - 1);
-            this.points = newPoints;
-            return;
+    /**
+     * @return The number of points currently in this trail
+     */
+    public int getPointCount() {
+        return this.size;
+    }
+
+    /**
+     * Copies the points and appearance of this trail into another trail, so it can be rendered while this trail keeps changing.
+     *
+     * @param target The trail to copy into or <code>null</code> to create a new trail
+     * @return The trail the points were copied into
+     */
+    public Trail copy(@Nullable Trail target) {
+        if (target == null) {
+            target = new Trail(this.color, this.widthFunction);
+        } else if (target.widthFunction != this.widthFunction) {
+            target.widthFunction = this.widthFunction;
+            System.arraycopy(this.widthCurve, 0, target.widthCurve, 0, this.widthCurve.length);
         }
-        if (this.points.length == 0) {
-            this.points = new Vec3[]{point};
-            return;
+        if (target.points.length != this.points.length) {
+            target.points = new double[this.points.length];
+            target.rotations = new float[this.rotations.length];
         }
-        if (this.points[this.points.length - 1].distanceTo(point) < this.minDistance) {
-            this.timeout++;
-            return;
+
+        // Both trails have the same length, so the ring buffer can be copied as is
+        System.arraycopy(this.points, 0, target.points, 0, this.points.length);
+        System.arraycopy(this.rotations, 0, target.rotations, 0, this.rotations.length);
+        target.start = this.start;
+        target.size = this.size;
+        target.length = this.length;
+        target.color = this.color;
+        target.billboard = this.billboard;
+        target.tilingMode = this.tilingMode;
+        target.frequency = this.frequency;
+        target.minDistance = this.minDistance;
+        target.texture = this.texture;
+        target.parentRotation = this.parentRotation;
+        target.timeout = this.timeout;
+        return target;
+    }
+
+    private int index(int i) {
+        int index = this.start + i;
+        return index >= this.length ? index - this.length : index;
+    }
+
+    private void add(double x, double y, double z, float xRot, float yRot, float zRot) {
+        int index;
+        if (this.size < this.length) {
+            index = this.index(this.size++);
+        } else {
+            // Overwrite the oldest point
+            index = this.start;
+            this.start = this.index(1);
         }
-        // test if point is same as last point
-        if (this.points[this.points.length - 1].equals(point)) {
-            this.timeout++;
+
+        index *= 3;
+        this.points[index] = x;
+        this.points[index + 1] = y;
+        this.points[index + 2] = z;
+        this.rotations[index] = xRot;
+        this.rotations[index + 1] = yRot;
+        this.rotations[index + 2] = zRot;
+    }
+
+    private void removeOldest() {
+        if (this.size > 0) {
+            this.start = this.index(1);
+            this.size--;
+        }
+    }
+
+    private boolean isStationary(double x, double y, double z) {
+        int last = this.index(this.size - 1) * 3;
+        double dx = this.points[last] - x;
+        double dy = this.points[last + 1] - y;
+        double dz = this.points[last + 2] - z;
+        double distanceSq = dx * dx + dy * dy + dz * dz;
+        return distanceSq == 0 || distanceSq < this.minDistance * this.minDistance;
+    }
+
+    public void pushPoint(Vec3 point) {
+        this.pushPoint(point.x, point.y, point.z);
+    }
+
+    public void pushPoint(double x, double y, double z) {
+        if (this.timeout > Minecraft.getInstance().getWindow().getRefreshRate() * 5 && this.timeout % 3 == 0) {
+            this.removeOldest();
             return;
         }
-        // add point to end of array and remove first point if array is longer than length
-        if (this.points[0] == Vec3.ZERO) {
-            this.points[0] = point;
+        if (this.size > 0 && this.isStationary(x, y, z)) {
+            this.timeout++;
             return;
         }
         this.timeout = 0;
-        Vec3[] newPoints = new Vec3[this.points.length + 1];
-        System.arraycopy(this.points, 0, newPoints, 0, this.points.length);
-        newPoints[this.points.length] = point;
-        if (newPoints.length > this.length) {
-            Vec3[] newPoints2 = new Vec3[this.length];
-            System.arraycopy(newPoints, 1, newPoints2, 0, this.length);
-            newPoints = newPoints2;
-        }
-        this.points = newPoints;
+        this.add(x, y, z, 0.0F, 0.0F, 0.0F);
     }
 
     public void pushRotatedPoint(Vec3 point, Vec3 rotation) {
-        if (this.timeout > Minecraft.getInstance().getWindow().getRefreshRate() * 5 && this.timeout % 5 == 0 && this.points.length > 0) {
-            //remove the last point in the array
-            Vec3[] newPoints = new Vec3[this.points.length - 1];
-            System.arraycopy(this.points, 1, newPoints, 0, this.points.length - 1);
-            this.points = newPoints;
-            Vec3[] newRotations = new Vec3[this.rotations.length - 1];
-            System.arraycopy(this.rotations, 1, newRotations, 0, this.rotations.length - 1);
-            this.rotations = newRotations;
-            return;
-        }
-        if (this.points.length == 0) {
-            this.points = new Vec3[]{point};
-            this.rotations = new Vec3[]{rotation};
-            return;
-        }
-        if (this.points[0] == Vec3.ZERO) {
-            this.points[0] = point;
-            this.rotations = new Vec3[]{rotation};
-            return;
-        }
-        if (this.points[this.points.length - 1].distanceTo(point) < this.minDistance) {
-            this.timeout++;
+        this.pushRotatedPoint(point.x, point.y, point.z, (float) rotation.x, (float) rotation.y, (float) rotation.z);
+    }
+
+    public void pushRotatedPoint(double x, double y, double z, float xRot, float yRot, float zRot) {
+        if (this.timeout > Minecraft.getInstance().getWindow().getRefreshRate() * 5 && this.timeout % 5 == 0 && this.size > 0) {
+            this.removeOldest();
             return;
         }
-        // test if point is same as last point
-        if (this.points.length > 0 && this.points[this.points.length - 1].equals(point)) {
+        if (this.size > 0 && this.isStationary(x, y, z)) {
             this.timeout++;
             return;
         }
-        if (this.rotations == null) {
-            this.rotations = new Vec3[]{rotation};
-        }
-        // add point to end of array and remove first point if array is longer than length
-        Vec3[] newPoints = new Vec3[this.points.length + 1];
-        Vec3[] newRotations = new Vec3[this.points.length + 1];
-        System.arraycopy(this.points, 0, newPoints, 0, this.points.length);
-        System.arraycopy(this.rotations, 0, newRotations, 0, this.rotations.length);
-        newPoints[this.points.length] = point;
-        newRotations[this.rotations.length] = rotation;
-        if (newPoints.length > this.length) {
-            Vec3[] newPoints2 = new Vec3[this.length];
-            Vec3[] newRotations2 = new Vec3[this.length];
-            System.arraycopy(newPoints, 1, newPoints2, 0, this.length);
-            System.arraycopy(newRotations, 1, newRotations2, 0, this.length);
-            newPoints = newPoints2;
-            newRotations = newRotations2;
-        }
-        this.points = newPoints;
-        this.rotations = newRotations;
+        this.timeout = 0;
+        this.add(x, y, z, xRot, yRot, zRot);
+    }
+
+    private float getWidth(float delta) {
+        float scaled = Math.max(0.0F, Math.min(delta, 1.0F)) * WIDTH_CURVE_RESOLUTION;
+        int index = Math.min((int) scaled, WIDTH_CURVE_RESOLUTION - 1);
+        float a = this.widthCurve[index];
+        return a + (this.widthCurve[index + 1] - a) * (scaled - index);
     }
 
     public void render(PoseStack stack, VertexConsumer consumer, int light) {
-        Vector3f[][] corners = new Vector3f[this.points.length][2];
-        for (int i = 0; i < this.points.length; i++) {
-            if (i % this.frequency != 0) {
-                continue;
-            }
-            float width = this.widthFunction.apply((float) i / (this.points.length - 1));
-            Vector3f topOffset = new Vector3f(0, (width / 2f), 0);
-            Vector3f bottomOffset = new Vector3f(0, -(width / 2f), 0);
-            if (this.billboard) {
-                Vec3 a = Minecraft.getInstance().gameRenderer.getMainCamera().getPosition().subtract(this.points[i]).normalize();
-                Vector3f cameraDirection = new Vector3f((float) a.x, (float) a.y, (float) a.z);
-                Vec3 b = this.points[Math.min(i + this.frequency, this.points.length - 1)].subtract(this.points[i]).normalize();
-                Vector3f dirToNextPoint = new Vector3f((float) b.x(), (float) b.y(), (float) b.z());
-                Vector3f axis = new Vector3f(cameraDirection);
-                // invert the axis
-                axis.mul(-1);
-                axis.cross(dirToNextPoint);
-                topOffset = new Vector3f(axis);
-                topOffset.mul(width / 2f);
-                bottomOffset = new Vector3f(axis);
-                bottomOffset.mul(-width / 2f);
-            } else if (this.rotations[i] != null && this.parentRotation) {
-                Vec3 a = this.rotations[Math.min(i + this.frequency, this.rotations.length - 1)];
-                Vector3f cameraDirection = new Vector3f((float) a.x, (float) a.y, (float) a.z);
-                Vec3 b = this.points[Math.min(i + this.frequency, this.points.length - 1)].subtract(this.points[i]).normalize();
-                Vector3f dirToNextPoint = new Vector3f((float) b.x(), (float) b.y(), (float) b.z());
-                Vector3f axis = new Vector3f(cameraDirection);
-                // invert the axis
-                axis.mul(-1);
-                axis.cross(dirToNextPoint);
-                topOffset = new Vector3f(axis);
-                topOffset.mul(width / 2f);
-                bottomOffset = new Vector3f(axis);
-                bottomOffset.mul(-width / 2f);
-            }
-            topOffset.add((float) this.points[i].x, (float) this.points[i].y, (float) this.points[i].z);
-            bottomOffset.add((float) this.points[i].x, (float) this.points[i].y, (float) this.points[i].z);
-            corners[i / this.frequency][0] = topOffset;
-            corners[i / this.frequency][1] = bottomOffset;
-        }
-        this.renderPoints(stack, consumer, light, corners, this.color);
+        Vec3 cameraPos = Minecraft.getInstance().gameRenderer.getMainCamera().getPosition();
+        stack.pushPose();
+        stack.translate(cameraPos.x, cameraPos.y, cameraPos.z);
+        this.render(stack, consumer, light, cameraPos.x, cameraPos.y, cameraPos.z);
+        stack.popPose();
     }
 
-    private void renderPoints(PoseStack stack, VertexConsumer consumer, int light, Vector3f[][] corners, int color) {
-        int r = color >> 16 & 255;
-        int g = color >> 8 & 255;
-        int b = color & 255;
-        int a = color >> 24 & 255;
-        for (int i = 0; i < corners.length; i++) {
-            Vector3f top = corners[i][0];
-            Vector3f bottom = corners[i][1];
-//            Vector3f nextTop = corners[i + 1][0];
-//            Vector3f nextBottom = corners[i + 1][1];
-            if (top == null || bottom == null) {
-                continue;
-            }
-            float u = 0;
-            if (this.tilingMode == TilingMode.STRETCH) {
-                u = (float) i / (corners.length - 1);
+    /**
+     * Writes this trail as a triangle strip. Positions are written relative to the camera.
+     *
+     * @param stack    The pose stack to transform vertices by
+     * @param consumer The consumer to write vertices into
+     * @param light    The packed light to render with
+     * @param cameraX  The x position of the camera
+     * @param cameraY  The y position of the camera
+     * @param cameraZ  The z position of the camera
+     */
+    public void render(PoseStack stack, VertexConsumer consumer, int light, double cameraX, double cameraY, double cameraZ) {
+        int size = this.size;
+        if (size == 0) {
+            return;
+        }
+
+        Matrix4f pose = stack.last().pose();
+        Vector3f pos = this.pos;
+        double[] points = this.points;
+        float[] rotations = this.rotations;
+        int frequency = Math.max(1, this.frequency);
+        int r = this.color >> 16 & 255;
+        int g = this.color >> 8 & 255;
+        int b = this.color & 255;
+        int a = this.color >> 24 & 255;
+        int segments = (size - 1) / frequency;
+        for (int i = 0; i < size; i += frequency) {
+            int index = this.index(i) * 3;
+            int next = this.index(Math.min(i + frequency, size - 1)) * 3;
+            float x = (float) (points[index] - cameraX);
+            float y = (float) (points[index + 1] - cameraY);
+            float z = (float) (points[index + 2] - cameraZ);
+            float halfWidth = this.getWidth(size > 1 ? (float) i / (size - 1) : 0.0F) / 2.0F;
+
+            float offsetX = 0;
+            float offsetY = halfWidth;
+            float offsetZ = 0;
+            boolean rotated = this.parentRotation && !this.billboard;
+            if (this.billboard || rotated) {
+                // Direction to the next point
+                float dirX = (float) (points[next] - points[index]);
+                float dirY = (float) (points[next + 1] - points[index + 1]);
+                float dirZ = (float) (points[next + 2] - points[index + 2]);
+                float dirLength = dirX * dirX + dirY * dirY + dirZ * dirZ;
+                if (dirLength < 1.0E-8F) {
+                    dirX = dirY = dirZ = 0;
+                } else {
+                    dirLength = 1.0F / (float) Math.sqrt(dirLength);
+                    dirX *= dirLength;
+                    dirY *= dirLength;
+                    dirZ *= dirLength;
+                }
+
+                // The axis to extend the ribbon along is perpendicular to the view and the direction
+                float axisX;
+                float axisY;
+                float axisZ;
+                if (this.billboard) {
+                    float viewLength = x * x + y * y + z * z;
+                    viewLength = viewLength < 1.0E-8F ? 0 : 1.0F / (float) Math.sqrt(viewLength);
+                    axisX = x * viewLength;
+                    axisY = y * viewLength;
+                    axisZ = z * viewLength;
+                } else {
+                    axisX = -rotations[next];
+                    axisY = -rotations[next + 1];
+                    axisZ = -rotations[next + 2];
+                }
+                offsetX = (axisY * dirZ - axisZ * dirY) * halfWidth;
+                offsetY = (axisZ * dirX - axisX * dirZ) * halfWidth;
+                offsetZ = (axisX * dirY - axisY * dirX) * halfWidth;
             }
-            Matrix4f matrix4f = stack.last().pose();
-            consumer.vertex(matrix4f, bottom.x(), bottom.y(), bottom.z()).color(r, g, b, a).uv(u, 0).overlayCoords(OverlayTexture.NO_OVERLAY).uv2(light).normal(0, 1, 0).endVertex();
-            consumer.vertex(matrix4f, top.x(), top.y(), top.z()).color(r, g, b, a).uv(u, 1).overlayCoords(OverlayTexture.NO_OVERLAY).uv2(light).normal(0, 1, 0).endVertex();
-//            consumer.vertex(matrix4f, nextTop.x(), nextTop.y(), nextTop.z()).color(r, g, b, a).uv(u1, 1).overlayCoords(OverlayTexture.NO_OVERLAY).uv2(light).normal(0, 1, 0).endVertex();
-//            consumer.vertex(matrix4f, nextBottom.x(), nextBottom.y(), nextBottom.z()).color(r, g, b, a).uv(u1, 0).overlayCoords(OverlayTexture.NO_OVERLAY).uv2(light).normal(0, 1, 0).endVertex();
+
+            float u = this.tilingMode == TilingMode.STRETCH && segments > 0 ? (float) (i / frequency) / segments : 0;
+            pose.transformPosition(x - offsetX, y - offsetY, z - offsetZ, pos);
+            consumer.vertex(pos.x, pos.y, pos.z).color(r, g, b, a).uv(u, 0).overlayCoords(OverlayTexture.NO_OVERLAY).uv2(light).normal(0, 1, 0).endVertex();
+            pose.transformPosition(x + offsetX, y + offsetY, z + offsetZ, pos);
+            consumer.vertex(pos.x, pos.y, pos.z).color(r, g, b, a).uv(u, 1).overlayCoords(OverlayTexture.NO_OVERLAY).uv2(light).normal(0, 1, 0).endVertex();
         }
     }
 }
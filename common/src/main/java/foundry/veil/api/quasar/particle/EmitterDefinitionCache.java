@@ -0,0 +1,95 @@
+package foundry.veil.api.quasar.particle;
+
+import foundry.veil.Veil;
+import foundry.veil.api.quasar.data.ParticleEmitterData;
+import foundry.veil.api.quasar.data.QuasarParticles;
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Caches resolved {@link ParticleEmitterDefinition}s by name so creating an emitter doesn't have to look up the
+ * registry and resolve its holders every time.</p>
+ * <p>Unknown names are remembered as well, so they are only reported once. The whole cache is invalidated when the
+ * Quasar registries are reloaded.</p>
+ */
+public class EmitterDefinitionCache {
+
+    private final Map<ResourceLocation, ParticleEmitterDefinition> definitions;
+    private final Set<ResourceLocation> missing;
+
+    public EmitterDefinitionCache() {
+        this.definitions = new ConcurrentHashMap<>();
+        this.missing = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Retrieves the definition of the specified emitter, resolving it the first time it is requested.
+     *
+     * @param name The name of the emitter
+     * @return The definition or <code>null</code> if there is no emitter with that name
+     */
+    public @Nullable ParticleEmitterDefinition get(ResourceLocation name) {
+        ParticleEmitterDefinition definition = this.definitions.get(name);
+        if (definition != null) {
+            return definition;
+        }
+        if (this.missing.contains(name)) {
+            return null;
+        }
+        return this.resolve(name);
+    }
+
+    private @Nullable ParticleEmitterDefinition resolve(ResourceLocation name) {
+        ParticleEmitterData data = QuasarParticles.registryAccess().registry(QuasarParticles.EMITTER).map(registry -> registry.get(name)).orElse(null);
+        if (data == null) {
+            if (this.missing.add(name)) {
+                Veil.LOGGER.error("Unknown Quasar Particle Emitter: {}", name);
+            }
+            return null;
+        }
+
+        // Another thread may have resolved the same emitter in the meantime
+        ParticleEmitterDefinition definition = new ParticleEmitterDefinition(name, data);
+        ParticleEmitterDefinition existing = this.definitions.putIfAbsent(name, definition);
+        return existing != null ? existing : definition;
+    }
+
+    /**
+     * Resolves the specified emitters and compiles a module plan for each of them, so the first emitters created
+     * afterward don't have to. This is intended to be called while a loading screen is visible.
+     *
+     * @param names The names of the emitters to prepare
+     * @return The number of emitters that exist
+     */
+    public int prewarm(Collection<ResourceLocation> names) {
+        int resolved = 0;
+        for (ResourceLocation name : names) {
+            ParticleEmitterDefinition definition = this.get(name);
+            if (definition != null) {
+                definition.prewarm();
+                resolved++;
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Discards all resolved definitions. Emitters that are still alive keep using the definition they were created with.
+     */
+    public void invalidate() {
+        this.definitions.clear();
+        this.missing.clear();
+    }
+
+    /**
+     * @return The number of definitions currently resolved
+     */
+    public int size() {
+        return this.definitions.size();
+    }
+}
@@ -0,0 +1,135 @@
+package foundry.veil.api.quasar.particle;
+
+import foundry.veil.api.client.render.CullFrustum;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.SectionPos;
+import org.joml.Vector3dc;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * <p>Indexes emitters by the chunk section at the center of their bounds.</p>
+ * <p>Each bucket keeps the union of its emitters' bounds, so whole sections can be rejected with a single frustum test
+ * before any individual emitter is checked.</p>
+ */
+class EmitterSpatialHash {
+
+    private final Long2ObjectMap<Bucket> buckets;
+    private final List<Bucket> unusedBuckets;
+
+    EmitterSpatialHash() {
+        this.buckets = new Long2ObjectOpenHashMap<>();
+        this.unusedBuckets = new ArrayList<>();
+    }
+
+    /**
+     * Replaces all indexed emitters with the specified emitters.
+     *
+     * @param emitters The emitters to index
+     */
+    public void rebuild(Collection<ParticleEmitter> emitters) {
+        this.clear();
+        for (ParticleEmitter emitter : emitters) {
+            this.add(emitter);
+        }
+    }
+
+    private void add(ParticleEmitter emitter) {
+        Vector3dc min = emitter.getBoundsMin();
+        Vector3dc max = emitter.getBoundsMax();
+        long key = SectionPos.asLong(
+                SectionPos.posToSectionCoord((min.x() + max.x()) * 0.5),
+                SectionPos.posToSectionCoord((min.y() + max.y()) * 0.5),
+                SectionPos.posToSectionCoord((min.z() + max.z()) * 0.5));
+
+        Bucket bucket = this.buckets.get(key);
+        if (bucket == null) {
+            bucket = this.unusedBuckets.isEmpty() ? new Bucket() : this.unusedBuckets.remove(this.unusedBuckets.size() - 1);
+            this.buckets.put(key, bucket);
+        }
+        bucket.add(emitter, min, max);
+    }
+
+    /**
+     * Adds all emitters with bounds intersecting the specified frustum to the output list.
+     *
+     * @param frustum The frustum to test against
+     * @param output  The list to add visible emitters to
+     */
+    public void query(CullFrustum frustum, List<ParticleEmitter> output) {
+        for (Bucket bucket : this.buckets.values()) {
+            if (!frustum.testAab(bucket.minX, bucket.minY, bucket.minZ, bucket.maxX, bucket.maxY, bucket.maxZ)) {
+                continue;
+            }
+
+            // Buckets with a single emitter have the exact same bounds, so there is no need to test again
+            if (bucket.emitters.size() == 1) {
+                output.add(bucket.emitters.get(0));
+                continue;
+            }
+
+            for (ParticleEmitter emitter : bucket.emitters) {
+                if (frustum.testAab(emitter.getBoundsMin(), emitter.getBoundsMax())) {
+                    output.add(emitter);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all emitters from the index.
+     */
+    public void clear() {
+        for (Bucket bucket : this.buckets.values()) {
+            bucket.clear();
+            this.unusedBuckets.add(bucket);
+        }
+        this.buckets.clear();
+    }
+
+    /**
+     * @return The number of sections that currently contain at least one emitter
+     */
+    public int getBucketCount() {
+        return this.buckets.size();
+    }
+
+    private static class Bucket {
+
+        private final List<ParticleEmitter> emitters;
+        private double minX;
+        private double minY;
+        private double minZ;
+        private double maxX;
+        private double maxY;
+        private double maxZ;
+
+        private Bucket() {
+            this.emitters = new ArrayList<>();
+            this.clear();
+        }
+
+        private void add(ParticleEmitter emitter, Vector3dc min, Vector3dc max) {
+            this.emitters.add(emitter);
+            this.minX = Math.min(this.minX, min.x());
+            this.minY = Math.min(this.minY, min.y());
+            this.minZ = Math.min(this.minZ, min.z());
+            this.maxX = Math.max(this.maxX, max.x());
+            this.maxY = Math.max(this.maxY, max.y());
+            this.maxZ = Math.max(this.maxZ, max.z());
+        }
+
+        private void clear() {
+            this.emitters.clear();
+            this.minX = Double.POSITIVE_INFINITY;
+            this.minY = Double.POSITIVE_INFINITY;
+            this.minZ = Double.POSITIVE_INFINITY;
+            this.maxX = Double.NEGATIVE_INFINITY;
+            this.maxY = Double.NEGATIVE_INFINITY;
+            this.maxZ = Double.NEGATIVE_INFINITY;
+        }
+    }
+}
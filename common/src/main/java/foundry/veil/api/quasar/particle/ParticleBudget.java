@@ -0,0 +1,209 @@
+package foundry.veil.api.quasar.particle;
+
+import foundry.veil.api.quasar.data.EmitterPriority;
+import org.jetbrains.annotations.ApiStatus;
+import org.joml.Vector3dc;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>Splits the global particle budget between all emitters.</p>
+ * <p>Each emitter receives a quota based on its {@link EmitterPriority}, how large it appears on screen, and how far
+ * away it is. Spawn requests are throttled against that quota before any particles are created. Emitters are still
+ * allowed to spawn past their quota while the total is below the budget. If the budget is exceeded anyway, the oldest
+ * particles of emitters over their quota are evicted through the regular removal path. Emitters with the lowest priority
+ * are evicted first, starting with the ones furthest over their quota.</p>
+ * <p>Critical emitters are never throttled or evicted, but their particles still count towards the budget.</p>
+ */
+public class ParticleBudget {
+
+    public static final int DEFAULT_BUDGET = 10000;
+    private static final double MIN_SCREEN_SIZE = 0.01;
+    private static final double DISTANCE_FALLOFF = 64.0;
+    private static final Comparator<ParticleEmitter> EVICTION_ORDER = Comparator.<ParticleEmitter>comparingDouble(emitter -> emitter.getPriority().getWeight())
+            .thenComparingInt(emitter -> emitter.particleQuota - emitter.getParticleCount());
+
+    private final List<ParticleEmitter> evictionOrder;
+
+    private int budget;
+    private int activeParticles;
+    private long throttledParticles;
+    private long evictedParticles;
+
+    public ParticleBudget() {
+        this.evictionOrder = new ArrayList<>();
+        this.budget = DEFAULT_BUDGET;
+        this.activeParticles = 0;
+        this.throttledParticles = 0;
+        this.evictedParticles = 0;
+    }
+
+    /**
+     * Recalculates the quota of every emitter and evicts particles if the budget is exceeded.
+     *
+     * @param emitters The emitters to split the budget between
+     * @param cameraX  The x position of the camera
+     * @param cameraY  The y position of the camera
+     * @param cameraZ  The z position of the camera
+     */
+    @ApiStatus.Internal
+    public void allocate(List<ParticleEmitter> emitters, double cameraX, double cameraY, double cameraZ) {
+        int total = 0;
+        int critical = 0;
+        double weightSum = 0;
+        for (ParticleEmitter emitter : emitters) {
+            int count = emitter.getParticleCount();
+            total += count;
+            if (emitter.getPriority() == EmitterPriority.CRITICAL) {
+                critical += count;
+                continue;
+            }
+            weightSum += getWeight(emitter, cameraX, cameraY, cameraZ);
+        }
+
+        int available = Math.max(0, this.budget - critical);
+        for (ParticleEmitter emitter : emitters) {
+            if (emitter.getPriority() == EmitterPriority.CRITICAL) {
+                emitter.particleQuota = Integer.MAX_VALUE;
+                continue;
+            }
+            double share = weightSum > 0 ? getWeight(emitter, cameraX, cameraY, cameraZ) / weightSum : 0;
+            emitter.particleQuota = (int) (available * share);
+        }
+
+        this.activeParticles = total - this.evict(emitters, total - this.budget);
+    }
+
+    /**
+     * Evicts the oldest particles of emitters that are over their quota. Emitters within their share are unaffected.
+     *
+     * @return The number of particles evicted
+     */
+    private int evict(List<ParticleEmitter> emitters, int excess) {
+        if (excess <= 0) {
+            return 0;
+        }
+
+        List<ParticleEmitter> order = this.evictionOrder;
+        for (ParticleEmitter emitter : emitters) {
+            if (emitter.getParticleCount() > emitter.particleQuota) {
+                order.add(emitter);
+            }
+        }
+        order.sort(EVICTION_ORDER);
+
+        int total = 0;
+        for (int i = 0; i < order.size() && excess > 0; i++) {
+            ParticleEmitter emitter = order.get(i);
+            int evicted = emitter.trim(Math.min(emitter.getParticleCount() - emitter.particleQuota, excess));
+            excess -= evicted;
+            total += evicted;
+        }
+        order.clear();
+        this.evictedParticles += total;
+        return total;
+    }
+
+    /**
+     * Makes room for the specified number of particles that aren't spawned through {@link #acquire(ParticleEmitter, int)}.
+     * If the budget doesn't have enough headroom, particles are evicted from emitters that are over their quota.
+     *
+     * @param emitters  The emitters to evict particles from
+     * @param particles The number of particles being spawned
+     */
+    public void reserve(List<ParticleEmitter> emitters, int particles) {
+        if (particles <= 0) {
+            return;
+        }
+
+        int headroom = Math.max(0, this.budget - this.activeParticles);
+        if (particles > headroom) {
+            this.activeParticles -= this.evict(emitters, particles - headroom);
+        }
+        this.activeParticles += particles;
+    }
+
+    private static double getWeight(ParticleEmitter emitter, double cameraX, double cameraY, double cameraZ) {
+        Vector3dc min = emitter.getBoundsMin();
+        Vector3dc max = emitter.getBoundsMax();
+        double radius = Math.max(max.x() - min.x(), Math.max(max.y() - min.y(), max.z() - min.z())) / 2.0;
+        double distance = Math.sqrt(emitter.getPosition().distanceSquared(cameraX, cameraY, cameraZ));
+
+        // The field of view is the same for every emitter, so the angular size is enough to compare them
+        double screenSize = Math.min(radius / Math.max(distance, 1.0), 1.0);
+        return emitter.getPriority().getWeight() * Math.max(screenSize, MIN_SCREEN_SIZE) / (1.0 + distance / DISTANCE_FALLOFF);
+    }
+
+    /**
+     * Requests to spawn the specified number of particles.
+     *
+     * @param emitter   The emitter spawning particles
+     * @param requested The number of particles to spawn
+     * @return The number of particles the emitter is allowed to spawn
+     */
+    public int acquire(ParticleEmitter emitter, int requested) {
+        if (requested <= 0) {
+            return 0;
+        }
+
+        int allowed = requested;
+        if (emitter.getPriority() != EmitterPriority.CRITICAL) {
+            int quota = Math.max(0, emitter.particleQuota - emitter.getParticleCount());
+            int headroom = Math.max(0, this.budget - this.activeParticles);
+            allowed = Math.min(requested, Math.max(quota, headroom));
+            this.throttledParticles += requested - allowed;
+        }
+        this.activeParticles += allowed;
+        return allowed;
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public void resetCounters() {
+        this.throttledParticles = 0;
+        this.evictedParticles = 0;
+    }
+
+    /**
+     * @return The maximum number of particles that should be alive at once
+     */
+    public int getBudget() {
+        return this.budget;
+    }
+
+    /**
+     * Sets the maximum number of particles that should be alive at once.
+     *
+     * @param budget The new budget
+     */
+    public void setBudget(int budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Invalid particle budget: " + budget);
+        }
+        this.budget = budget;
+    }
+
+    /**
+     * @return The number of particles alive after the last allocation, including particles granted since then
+     */
+    public int getActiveParticles() {
+        return this.activeParticles;
+    }
+
+    /**
+     * @return The total number of particles that were not spawned because of the budget
+     */
+    public long getThrottledParticles() {
+        return this.throttledParticles;
+    }
+
+    /**
+     * @return The total number of particles removed early to stay within the budget
+     */
+    public long getEvictedParticles() {
+        return this.evictedParticles;
+    }
+}
@@ -0,0 +1,285 @@
+package foundry.veil.api.quasar.particle;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.shapes.Shapes;
+import net.minecraft.world.phys.shapes.VoxelShape;
+import org.jetbrains.annotations.ApiStatus;
+import org.joml.Vector3d;
+import org.joml.Vector3dc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>Collision state shared by every particle during a single tick.</p>
+ * <p>Block collision shapes are cached by position, so neighboring particles don't look up the same shapes repeatedly.
+ * Living entities are captured once at the start of the tick into a spatial hash that particles query instead of the level.</p>
+ * <p>Queries are safe to run from multiple threads while emitters tick in parallel. Each thread keeps its own shape cache.</p>
+ */
+public class ParticleCollisionContext {
+
+    private static final double EPSILON = 1.0E-7;
+
+    private final ThreadLocal<ShapeCache> shapeCaches;
+    private final Long2ObjectMap<IntArrayList> entitySections;
+    private final List<IntArrayList> unusedSections;
+    private double[] entityBoxes;
+    private int entityCount;
+    private volatile ClientLevel level;
+    private volatile int generation;
+
+    public ParticleCollisionContext() {
+        this.shapeCaches = ThreadLocal.withInitial(ShapeCache::new);
+        this.entitySections = new Long2ObjectOpenHashMap<>();
+        this.unusedSections = new ArrayList<>();
+        this.entityBoxes = new double[0];
+        this.entityCount = 0;
+        this.level = null;
+        this.generation = 0;
+    }
+
+    /**
+     * Invalidates all cached shapes and captures the living entities in the specified level.
+     *
+     * @param level The level particles are about to tick in
+     */
+    @ApiStatus.Internal
+    public void begin(ClientLevel level) {
+        this.clear();
+        this.level = level;
+
+        for (Entity entity : level.entitiesForRendering()) {
+            if (entity instanceof LivingEntity livingEntity && livingEntity.isAlive()) {
+                this.addEntity(entity.getBoundingBox());
+            }
+        }
+    }
+
+    /**
+     * Drops all references to the level and entities.
+     */
+    @ApiStatus.Internal
+    public void clear() {
+        this.generation++;
+        this.level = null;
+        this.entityCount = 0;
+        for (IntArrayList section : this.entitySections.values()) {
+            section.clear();
+            this.unusedSections.add(section);
+        }
+        this.entitySections.clear();
+    }
+
+    private void addEntity(AABB box) {
+        int index = this.entityCount++;
+        if (this.entityBoxes.length < this.entityCount * 6) {
+            this.entityBoxes = Arrays.copyOf(this.entityBoxes, Math.max(48, this.entityBoxes.length * 2));
+        }
+
+        int offset = index * 6;
+        this.entityBoxes[offset] = box.minX;
+        this.entityBoxes[offset + 1] = box.minY;
+        this.entityBoxes[offset + 2] = box.minZ;
+        this.entityBoxes[offset + 3] = box.maxX;
+        this.entityBoxes[offset + 4] = box.maxY;
+        this.entityBoxes[offset + 5] = box.maxZ;
+
+        // Entities are small, so they are added to every section they overlap to keep queries simple
+        int minX = SectionPos.posToSectionCoord(box.minX);
+        int minY = SectionPos.posToSectionCoord(box.minY);
+        int minZ = SectionPos.posToSectionCoord(box.minZ);
+        int maxX = SectionPos.posToSectionCoord(box.maxX);
+        int maxY = SectionPos.posToSectionCoord(box.maxY);
+        int maxZ = SectionPos.posToSectionCoord(box.maxZ);
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    long key = SectionPos.asLong(x, y, z);
+                    IntArrayList section = this.entitySections.get(key);
+                    if (section == null) {
+                        section = this.unusedSections.isEmpty() ? new IntArrayList() : this.unusedSections.remove(this.unusedSections.size() - 1);
+                        this.entitySections.put(key, section);
+                    }
+                    section.add(index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether any living entity captured at the start of the tick intersects the specified box.
+     *
+     * @param box The box to check
+     * @return Whether a living entity is inside the box
+     */
+    public boolean hasLivingEntity(AABB box) {
+        if (this.entityCount == 0) {
+            return false;
+        }
+
+        int minX = SectionPos.posToSectionCoord(box.minX);
+        int minY = SectionPos.posToSectionCoord(box.minY);
+        int minZ = SectionPos.posToSectionCoord(box.minZ);
+        int maxX = SectionPos.posToSectionCoord(box.maxX);
+        int maxY = SectionPos.posToSectionCoord(box.maxY);
+        int maxZ = SectionPos.posToSectionCoord(box.maxZ);
+        double[] boxes = this.entityBoxes;
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    IntArrayList section = this.entitySections.get(SectionPos.asLong(x, y, z));
+                    if (section == null) {
+                        continue;
+                    }
+
+                    for (int i = 0; i < section.size(); i++) {
+                        int offset = section.getInt(i) * 6;
+                        if (box.intersects(boxes[offset], boxes[offset + 1], boxes[offset + 2], boxes[offset + 3], boxes[offset + 4], boxes[offset + 5])) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves the specified box through the level, stopping at any block collision shapes.
+     * This matches {@link Entity#collideBoundingBox} without an entity.
+     *
+     * @param box The box to move
+     * @param dx  The desired x movement
+     * @param dy  The desired y movement
+     * @param dz  The desired z movement
+     * @return The allowed movement. Only valid until the next call from the same thread
+     */
+    public Vector3dc collide(AABB box, double dx, double dy, double dz) {
+        ShapeCache cache = this.shapeCaches.get();
+        cache.validate(this.generation);
+        Vector3d movement = cache.movement.set(dx, dy, dz);
+
+        List<VoxelShape> shapes = cache.collectShapes(this.level, box.expandTowards(dx, dy, dz));
+        if (shapes.isEmpty()) {
+            return movement;
+        }
+
+        if (dy != 0.0) {
+            dy = Shapes.collide(Direction.Axis.Y, box, shapes, dy);
+            if (dy != 0.0) {
+                box = box.move(0.0, dy, 0.0);
+            }
+        }
+
+        boolean zFirst = Math.abs(dx) < Math.abs(dz);
+        if (zFirst && dz != 0.0) {
+            dz = Shapes.collide(Direction.Axis.Z, box, shapes, dz);
+            if (dz != 0.0) {
+                box = box.move(0.0, 0.0, dz);
+            }
+        }
+
+        if (dx != 0.0) {
+            dx = Shapes.collide(Direction.Axis.X, box, shapes, dx);
+            if (!zFirst && dx != 0.0) {
+                box = box.move(dx, 0.0, 0.0);
+            }
+        }
+
+        if (!zFirst && dz != 0.0) {
+            dz = Shapes.collide(Direction.Axis.Z, box, shapes, dz);
+        }
+
+        shapes.clear();
+        return movement.set(dx, dy, dz);
+    }
+
+    /**
+     * @return The number of living entities captured this tick
+     */
+    public int getEntityCount() {
+        return this.entityCount;
+    }
+
+    private record CachedShape(VoxelShape shape, boolean large) {
+
+        private static final CachedShape EMPTY = new CachedShape(Shapes.empty(), false);
+    }
+
+    private static class ShapeCache {
+
+        private final Long2ObjectMap<CachedShape> shapes;
+        private final List<VoxelShape> collected;
+        private final BlockPos.MutableBlockPos pos;
+        private final Vector3d movement;
+        private int generation;
+
+        private ShapeCache() {
+            this.shapes = new Long2ObjectOpenHashMap<>();
+            this.collected = new ArrayList<>();
+            this.pos = new BlockPos.MutableBlockPos();
+            this.movement = new Vector3d();
+            this.generation = -1;
+        }
+
+        private void validate(int generation) {
+            if (this.generation != generation) {
+                this.generation = generation;
+                this.shapes.clear();
+            }
+        }
+
+        private List<VoxelShape> collectShapes(ClientLevel level, AABB box) {
+            this.collected.clear();
+            if (level == null) {
+                return this.collected;
+            }
+
+            // Same bounds as BlockCollisions, including a one block border for shapes taller than a block
+            int minX = (int) Math.floor(box.minX - EPSILON) - 1;
+            int minY = (int) Math.floor(box.minY - EPSILON) - 1;
+            int minZ = (int) Math.floor(box.minZ - EPSILON) - 1;
+            int maxX = (int) Math.floor(box.maxX + EPSILON) + 1;
+            int maxY = (int) Math.floor(box.maxY + EPSILON) + 1;
+            int maxZ = (int) Math.floor(box.maxZ + EPSILON) + 1;
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    for (int z = minZ; z <= maxZ; z++) {
+                        boolean edge = x == minX || x == maxX || y == minY || y == maxY || z == minZ || z == maxZ;
+                        VoxelShape shape = this.getShape(level, x, y, z, edge);
+                        if (!shape.isEmpty()) {
+                            this.collected.add(shape);
+                        }
+                    }
+                }
+            }
+            return this.collected;
+        }
+
+        private VoxelShape getShape(ClientLevel level, int x, int y, int z, boolean edge) {
+            long key = BlockPos.asLong(x, y, z);
+            CachedShape cached = this.shapes.get(key);
+            if (cached == null) {
+                this.pos.set(x, y, z);
+                BlockState state = level.getBlockState(this.pos);
+                VoxelShape shape = state.getCollisionShape(level, this.pos);
+                cached = shape.isEmpty() ? CachedShape.EMPTY : new CachedShape(shape.move(x, y, z), state.hasLargeCollisionShape());
+                this.shapes.put(key, cached);
+            }
+
+            // Blocks on the border can only be reached if their shape is taller than a block
+            return edge && !cached.large() ? Shapes.empty() : cached.shape();
+        }
+    }
+}
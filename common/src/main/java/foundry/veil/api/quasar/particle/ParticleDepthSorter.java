@@ -0,0 +1,371 @@
+package foundry.veil.api.quasar.particle;
+
+import com.mojang.blaze3d.vertex.PoseStack;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.client.Camera;
+import net.minecraft.client.renderer.MultiBufferSource;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.ApiStatus;
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Vector3d;
+import org.joml.Vector3f;
+
+import java.util.Arrays;
+
+/**
+ * <p>Sorts translucent particles from every visible emitter back to front before rendering them.</p>
+ * <p>Particles are grouped by render type and ordered by their quantized view-space depth using an LSD radix sort,
+ * so sorting is linear in the number of particles and doesn't allocate once the buffers have grown.</p>
+ * <p>Sorting can be limited to every few frames or to when the camera moved far enough. Frames that don't sort
+ * reuse the order of the last sort and draw particles that weren't sorted yet last. The order is remembered by the
+ * {@link ParticleRenderSnapshot#getId(int) particle ids} captured in snapshots, since rows move between ticks.</p>
+ */
+public class ParticleDepthSorter {
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX_SIZE = 1 << RADIX_BITS;
+    private static final int RADIX_MASK = RADIX_SIZE - 1;
+    private static final int DEPTH_BITS = 16;
+    private static final int DEPTH_MAX = (1 << DEPTH_BITS) - 1;
+
+    private final Object2IntMap<RenderType> renderTypes;
+    private final Int2IntMap ranks;
+    private final int[] histogram;
+    private final Vector3d sortPosition;
+    private final Vector3d renderPosition;
+    private final Vector3f renderOffset;
+    private ParticleRenderSnapshot[] snapshots;
+    private int[] indices;
+    private float[] partialTicks;
+    private float[] depths;
+    private int[] keys;
+    private int[] order;
+    private int[] keyScratch;
+    private int[] orderScratch;
+    private int count;
+
+    private int sortInterval;
+    private double sortDistance;
+    private boolean resort;
+    private boolean sorted;
+    private int framesSinceSort;
+    private int sortedCount;
+
+    public ParticleDepthSorter() {
+        this.renderTypes = new Object2IntOpenHashMap<>();
+        this.renderTypes.defaultReturnValue(-1);
+        this.ranks = new Int2IntOpenHashMap();
+        this.ranks.defaultReturnValue(-1);
+        this.histogram = new int[RADIX_SIZE];
+        this.sortPosition = new Vector3d();
+        this.renderPosition = new Vector3d();
+        this.renderOffset = new Vector3f();
+        this.snapshots = new ParticleRenderSnapshot[0];
+        this.indices = new int[0];
+        this.partialTicks = new float[0];
+        this.depths = new float[0];
+        this.keys = new int[0];
+        this.order = new int[0];
+        this.keyScratch = new int[0];
+        this.orderScratch = new int[0];
+        this.count = 0;
+
+        this.sortInterval = 1;
+        this.sortDistance = 0.0;
+        this.resort = true;
+        this.sorted = false;
+        this.framesSinceSort = 0;
+        this.sortedCount = 0;
+    }
+
+    /**
+     * Starts collecting particles for a new frame and decides whether this frame sorts again.
+     *
+     * @param camera The camera the frame is rendered from
+     */
+    @ApiStatus.Internal
+    public void begin(Camera camera) {
+        this.count = 0;
+        this.framesSinceSort++;
+
+        Vec3 cameraPos = camera.getPosition();
+        boolean intervalPassed = this.framesSinceSort >= this.sortInterval;
+        boolean moved = this.sortDistance <= 0 || this.sortPosition.distanceSquared(cameraPos.x, cameraPos.y, cameraPos.z) >= this.sortDistance * this.sortDistance;
+        this.resort = !this.sorted || (intervalPassed && moved);
+    }
+
+    /**
+     * Adds a particle to render after all emitters have rendered.
+     *
+     * @param snapshot     The render snapshot of the emitter the particle belongs to
+     * @param index        The row of the particle in the snapshot
+     * @param partialTicks The partial ticks the emitter renders the particle with
+     */
+    void add(ParticleRenderSnapshot snapshot, int index, float partialTicks) {
+        int i = this.count++;
+        if (i >= this.snapshots.length) {
+            int size = Math.max(256, this.snapshots.length * 2);
+            this.snapshots = Arrays.copyOf(this.snapshots, size);
+            this.indices = Arrays.copyOf(this.indices, size);
+            this.partialTicks = Arrays.copyOf(this.partialTicks, size);
+        }
+
+        this.snapshots[i] = snapshot;
+        this.indices[i] = index;
+        this.partialTicks[i] = partialTicks;
+    }
+
+    /**
+     * Renders all particles added this frame in sorted order.
+     *
+     * @param poseStack    The current pose stack
+     * @param bufferSource The source to get buffers from
+     * @param camera       The camera to render from
+     * @param writer       The writer to emit vertices with
+     */
+    @ApiStatus.Internal
+    public void render(PoseStack poseStack, MultiBufferSource bufferSource, Camera camera, ParticleVertexWriter writer) {
+        int count = this.count;
+        if (count == 0) {
+            return;
+        }
+
+        this.ensureCapacity(count);
+        if (this.resort) {
+            this.sort(camera, count);
+        } else {
+            this.reuseOrder(count);
+        }
+
+        Vec3 projectedView = camera.getPosition();
+        Matrix4f pose = poseStack.last().pose();
+        Quaternionf cameraOrientation = camera.rotation();
+        Vector3d renderPosition = this.renderPosition;
+        Vector3f renderOffset = this.renderOffset;
+        RenderType lastRenderType = null;
+        for (int i = 0; i < count; i++) {
+            int index = this.order[i];
+            ParticleRenderSnapshot snapshot = this.snapshots[index];
+            int row = this.indices[index];
+            float partialTicks = this.partialTicks[index];
+
+            snapshot.getRenderPosition(row, partialTicks, renderPosition);
+            renderOffset.set(
+                    (float) (renderPosition.x - projectedView.x()),
+                    (float) (renderPosition.y - projectedView.y()),
+                    (float) (renderPosition.z - projectedView.z()));
+
+            ParticleRenderSnapshot.Material material = snapshot.getMaterial(row);
+            RenderType renderType = material.renderType();
+            if (!renderType.equals(lastRenderType)) {
+                lastRenderType = renderType;
+                writer.end();
+                writer.begin(material.getBuffer(bufferSource), pose, cameraOrientation);
+            }
+
+            snapshot.getParticleData().renderStyle().render(poseStack, snapshot, row, renderOffset, writer, partialTicks);
+        }
+        writer.end();
+
+        // Don't keep old snapshots alive until the next frame
+        Arrays.fill(this.snapshots, 0, count, null);
+        this.count = 0;
+    }
+
+    private void ensureCapacity(int count) {
+        if (this.keys.length < count) {
+            int size = this.snapshots.length;
+            this.depths = new float[size];
+            this.keys = new int[size];
+            this.order = new int[size];
+            this.keyScratch = new int[size];
+            this.orderScratch = new int[size];
+        }
+    }
+
+    private void sort(Camera camera, int count) {
+        Vec3 cameraPos = camera.getPosition();
+        Vector3f look = camera.getLookVector();
+        float[] depths = this.depths;
+        float minDepth = Float.POSITIVE_INFINITY;
+        float maxDepth = Float.NEGATIVE_INFINITY;
+        Vector3d pos = this.renderPosition;
+        for (int i = 0; i < count; i++) {
+            this.snapshots[i].getRenderPosition(this.indices[i], this.partialTicks[i], pos);
+            float depth = (float) ((pos.x - cameraPos.x) * look.x() + (pos.y - cameraPos.y) * look.y() + (pos.z - cameraPos.z) * look.z());
+            depths[i] = depth;
+            minDepth = Math.min(minDepth, depth);
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        // Render types are the most significant bits, so each type stays in one contiguous run
+        this.renderTypes.clear();
+        float scale = maxDepth > minDepth ? DEPTH_MAX / (maxDepth - minDepth) : 0.0F;
+        for (int i = 0; i < count; i++) {
+            RenderType renderType = this.snapshots[i].getMaterial(this.indices[i]).renderType();
+            int type = this.renderTypes.getInt(renderType);
+            if (type == -1) {
+                type = this.renderTypes.size();
+                this.renderTypes.put(renderType, type);
+            }
+
+            // Farther particles get smaller keys so they are drawn first
+            int depth = Math.min((int) ((depths[i] - minDepth) * scale), DEPTH_MAX);
+            this.keys[i] = type << DEPTH_BITS | (DEPTH_MAX - depth);
+            this.order[i] = i;
+        }
+
+        this.radixSort(this.keys, this.order, count);
+
+        Int2IntMap ranks = this.ranks;
+        ranks.clear();
+        for (int i = 0; i < count; i++) {
+            int index = this.order[i];
+            ranks.put(this.snapshots[index].getId(this.indices[index]), i);
+        }
+
+        Vec3 pos = camera.getPosition();
+        this.sortPosition.set(pos.x, pos.y, pos.z);
+        this.sortedCount = count;
+        this.framesSinceSort = 0;
+        this.sorted = true;
+    }
+
+    private void reuseOrder(int count) {
+        // Place every particle at its rank from the last sort and append the ones that weren't sorted yet
+        int[] slots = this.keyScratch.length >= this.sortedCount ? this.keyScratch : (this.keyScratch = new int[this.sortedCount]);
+        int[] pending = this.orderScratch;
+        Arrays.fill(slots, 0, this.sortedCount, -1);
+        int pendingCount = 0;
+        for (int i = 0; i < count; i++) {
+            int rank = this.ranks.get(this.snapshots[i].getId(this.indices[i]));
+            if (rank >= 0 && rank < this.sortedCount && slots[rank] == -1) {
+                slots[rank] = i;
+            } else {
+                pending[pendingCount++] = i;
+            }
+        }
+
+        int index = 0;
+        for (int i = 0; i < this.sortedCount; i++) {
+            if (slots[i] != -1) {
+                this.order[index++] = slots[i];
+            }
+        }
+        System.arraycopy(pending, 0, this.order, index, pendingCount);
+    }
+
+    /**
+     * Stably sorts the specified values by their keys in ascending unsigned order. Both arrays are reordered.
+     *
+     * @param keys   The keys to sort by
+     * @param values The values to reorder along with the keys
+     * @param count  The number of elements to sort
+     */
+    public void radixSort(int[] keys, int[] values, int count) {
+        if (this.keyScratch.length < count) {
+            this.keyScratch = new int[count];
+            this.orderScratch = new int[count];
+        }
+
+        int[] histogram = this.histogram;
+        int[] srcKeys = keys;
+        int[] srcValues = values;
+        int[] dstKeys = this.keyScratch;
+        int[] dstValues = this.orderScratch;
+        for (int shift = 0; shift < Integer.SIZE && count > 1; shift += RADIX_BITS) {
+            Arrays.fill(histogram, 0);
+            for (int i = 0; i < count; i++) {
+                histogram[(srcKeys[i] >>> shift) & RADIX_MASK]++;
+            }
+
+            // Skip digits that are the same for every key
+            if (histogram[(srcKeys[0] >>> shift) & RADIX_MASK] == count) {
+                continue;
+            }
+
+            int offset = 0;
+            for (int i = 0; i < RADIX_SIZE; i++) {
+                int size = histogram[i];
+                histogram[i] = offset;
+                offset += size;
+            }
+
+            for (int i = 0; i < count; i++) {
+                int key = srcKeys[i];
+                int index = histogram[(key >>> shift) & RADIX_MASK]++;
+                dstKeys[index] = key;
+                dstValues[index] = srcValues[i];
+            }
+
+            int[] swapKeys = srcKeys;
+            int[] swapValues = srcValues;
+            srcKeys = dstKeys;
+            srcValues = dstValues;
+            dstKeys = swapKeys;
+            dstValues = swapValues;
+        }
+
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, count);
+            System.arraycopy(srcValues, 0, values, 0, count);
+        }
+    }
+
+    /**
+     * Forgets the last sorted order, so the next frame always sorts.
+     */
+    @ApiStatus.Internal
+    public void clear() {
+        Arrays.fill(this.snapshots, null);
+        this.renderTypes.clear();
+        this.ranks.clear();
+        this.count = 0;
+        this.sorted = false;
+        this.sortedCount = 0;
+    }
+
+    /**
+     * @return The minimum number of frames between sorts
+     */
+    public int getSortInterval() {
+        return this.sortInterval;
+    }
+
+    /**
+     * Sets the minimum number of frames between sorts. A value of <code>1</code> allows sorting every frame.
+     *
+     * @param sortInterval The number of frames between sorts
+     */
+    public void setSortInterval(int sortInterval) {
+        if (sortInterval < 1) {
+            throw new IllegalArgumentException("Invalid sort interval: " + sortInterval);
+        }
+        this.sortInterval = sortInterval;
+    }
+
+    /**
+     * @return The distance the camera has to move before sorting again or <code>0</code> to ignore camera movement
+     */
+    public double getSortDistance() {
+        return this.sortDistance;
+    }
+
+    /**
+     * Sets how far the camera has to move from the last sorted position before particles are sorted again.
+     * This is checked in addition to {@link #getSortInterval()}.
+     *
+     * @param sortDistance The distance in blocks or <code>0</code> to sort regardless of camera movement
+     */
+    public void setSortDistance(double sortDistance) {
+        if (sortDistance < 0) {
+            throw new IllegalArgumentException("Invalid sort distance: " + sortDistance);
+        }
+        this.sortDistance = sortDistance;
+    }
+}
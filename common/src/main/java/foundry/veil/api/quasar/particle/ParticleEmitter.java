@@ -1,19 +1,16 @@
 package foundry.veil.api.quasar.particle;
 
 import com.mojang.blaze3d.vertex.PoseStack;
-import com.mojang.blaze3d.vertex.VertexConsumer;
 import foundry.veil.Veil;
 import foundry.veil.api.TickTaskScheduler;
 import foundry.veil.api.quasar.data.*;
 import foundry.veil.api.quasar.data.module.CodeModule;
 import foundry.veil.api.quasar.data.module.ParticleModuleData;
-import foundry.veil.api.quasar.emitters.module.update.FaceVelocityModule;
+import foundry.veil.api.quasar.emitters.module.*;
 import net.minecraft.client.Camera;
 import net.minecraft.client.multiplayer.ClientLevel;
-import net.minecraft.client.renderer.LightTexture;
 import net.minecraft.client.renderer.MultiBufferSource;
 import net.minecraft.client.renderer.RenderType;
-import net.minecraft.client.renderer.texture.TextureAtlasSprite;
 import net.minecraft.core.Holder;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.util.RandomSource;
@@ -21,6 +18,8 @@ import net.minecraft.world.entity.Entity;
 import net.minecraft.world.phys.Vec3;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
 import org.joml.Vector3d;
 import org.joml.Vector3dc;
 import org.joml.Vector3f;
@@ -28,6 +27,7 @@ import org.joml.Vector3fc;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /*
  *  TODO:
@@ -44,16 +44,37 @@ import java.util.concurrent.CompletableFuture;
  */
 public class ParticleEmitter {
 
-    private static final Set<Holder<ParticleModuleData>> REPORTED_MODULES = new HashSet<>();
+    private static final Set<Holder<ParticleModuleData>> REPORTED_MODULES = ConcurrentHashMap.newKeySet();
+    private static final double BOUNDS_PADDING = 1.0;
 
     private final ParticleSystemManager particleManager;
     private final ClientLevel level;
+    private final ResourceLocation name;
+    private final ParticleEmitterDefinition definition;
     private final ParticleEmitterData emitterData;
-    private final List<ParticleModuleData> modules;
+    private List<ParticleModuleData> modules;
     private final RandomSource randomSource;
     private final Vector3d position;
     private final Vector3d offset;
     private final List<QuasarParticle> particles;
+    private final ParticleStorage storage;
+    private final List<Runnable> deferredActions;
+    private final List<QuasarParticle> removedParticles;
+    private int[] trimAges;
+    private final Vector3d boundsMin;
+    private final Vector3d boundsMax;
+    private final Vector3d tickBoundsMin;
+    private final Vector3d tickBoundsMax;
+    private final Map<ResourceLocation, ParticleEmitter> batchedSubEmitters;
+    private final Vector3d spawnOrigin;
+    private final Vector3d renderPosition;
+    private final Vector3f renderOffset;
+    private ParticleRenderSnapshot renderSnapshot;
+    private ParticleRenderSnapshot captureSnapshot;
+    private boolean snapshotCaptured;
+    private int renderLodTicks;
+    double renderDistanceSq;
+    int particleQuota;
 
     private int maxLifetime;
     private boolean loop;
@@ -63,34 +84,88 @@ public class ParticleEmitter {
     private List<EmitterShapeSettings> emitterShapeSettings;
     private ParticleSettings particleSettings;
     private boolean forceSpawn;
+    private EmitterPriority priority;
+    private EmitterSleepPolicy sleepPolicy;
     private QuasarParticleData particleData;
+    private boolean packedStorage;
+    private ParticleModulePlan modulePlan;
+    private ParticleModulePlan borrowedPlan;
+    private ParticleMolangRuntime molangRuntime;
+    private EmitterLodSettings lodSettings;
+    @Nullable
+    private EmitterLodSettings.Tier lodTier;
+    private int lodStep;
+    private int lodTicks;
+    @Nullable
+    private SubEmitterBatch subEmitterBatch;
+    private double[] spawnPoints;
 
     @Nullable
     private Entity attachedEntity;
     private CompletableFuture<?> spawnTask;
     private CompletableFuture<?> removeTask;
     private boolean removed;
+    private int expireTick;
+    private boolean sleeping;
+    private int sleepLifetime;
+    long chunk;
+    boolean chunkLoaded;
 
-    ParticleEmitter(ParticleSystemManager particleManager, ClientLevel level, ParticleEmitterData data) {
+    ParticleEmitter(ParticleSystemManager particleManager, ClientLevel level, ParticleEmitterDefinition definition, RandomSource randomSource) {
+        ParticleEmitterData data = definition.getData();
         this.particleManager = particleManager;
         this.level = level;
+        this.name = definition.getName();
+        this.definition = definition;
         this.emitterData = data;
-        this.modules = createModuleSet(data.particleData());
-        this.randomSource = RandomSource.create();
+        this.modules = definition.getModules();
+        this.randomSource = randomSource;
         this.position = new Vector3d();
         this.offset = new Vector3d();
         this.particles = new ArrayList<>();
+        this.storage = new ParticleStorage(this);
+        this.deferredActions = new ArrayList<>();
+        this.removedParticles = new ArrayList<>();
+        this.trimAges = new int[0];
+        this.boundsMin = new Vector3d();
+        this.boundsMax = new Vector3d();
+        this.tickBoundsMin = new Vector3d();
+        this.tickBoundsMax = new Vector3d();
+        this.batchedSubEmitters = new HashMap<>();
+        this.spawnOrigin = new Vector3d();
+        this.renderPosition = new Vector3d();
+        this.renderOffset = new Vector3f();
+        this.renderSnapshot = new ParticleRenderSnapshot();
+        this.captureSnapshot = new ParticleRenderSnapshot();
+        this.snapshotCaptured = false;
+        this.renderLodTicks = 0;
 
         this.maxLifetime = data.maxLifetime();
         this.loop = data.loop();
         this.rate = data.rate();
         this.count = data.count();
         this.maxParticles = data.maxParticles();
-        EmitterSettings emitterSettings = data.emitterSettings();
-        this.emitterShapeSettings = emitterSettings.emitterShapeSettings();
-        this.particleSettings = emitterSettings.particleSettings();
-        this.forceSpawn = emitterSettings.forceSpawn();
-        this.particleData = data.particleData();
+        this.emitterShapeSettings = definition.getEmitterShapeSettings();
+        this.particleSettings = definition.getParticleSettings();
+        this.forceSpawn = definition.isForceSpawn();
+        this.priority = data.priority();
+        this.sleepPolicy = data.sleepPolicy();
+        this.particleQuota = 0;
+        this.particleData = definition.getParticleData();
+        this.packedStorage = particleManager.isPackedStorage();
+        this.modulePlan = null;
+        this.borrowedPlan = null;
+        this.molangRuntime = null;
+        this.lodSettings = data.lodSettings();
+        this.lodTier = null;
+        this.lodStep = 1;
+        this.lodTicks = 0;
+        this.subEmitterBatch = null;
+        this.spawnPoints = new double[0];
+        this.sleeping = false;
+        this.sleepLifetime = -1;
+        this.chunk = Long.MAX_VALUE;
+        this.chunkLoaded = true;
 
         TickTaskScheduler scheduler = particleManager.getScheduler();
         this.spawnTask = scheduler.scheduleAtFixedRate(this::spawn, 0, data.rate());
@@ -103,11 +178,68 @@ public class ParticleEmitter {
     }
 
     private void spawn() {
+        if (this.subEmitterBatch != null) {
+            this.spawnBatch(this.subEmitterBatch);
+            return;
+        }
+        this.spawn(this.position);
+    }
+
+    private void spawnBatch(SubEmitterBatch batch) {
+        int rate = Math.max(1, this.rate);
+        Vector3d origin = this.spawnOrigin;
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.getAge(i) % rate == 0) {
+                this.spawn(origin.set(batch.getX(i), batch.getY(i), batch.getZ(i)));
+            }
+        }
+
+        batch.age(this.loop ? -1 : this.maxLifetime);
+        if (batch.isEmpty()) {
+            this.remove();
+            return;
+        }
+        this.updateBatchBounds();
+    }
+
+    /**
+     * Moves a batched sub-emitter to the center of its live origins, so level of detail, sleeping, the budget, and
+     * culling use where particles actually spawn instead of the first origin.
+     */
+    void updateBatchBounds() {
+        SubEmitterBatch batch = this.subEmitterBatch;
+        if (batch == null || batch.isEmpty()) {
+            return;
+        }
+
+        batch.updateBounds();
+        this.offset.set(batch.getMin()).add(batch.getMax()).mul(0.5);
+        this.position.set(this.offset);
+    }
+
+    private void spawn(Vector3dc origin) {
         int count = Math.min(this.maxParticles, this.count);
-        this.particleManager.reserve(count);
+        if (this.lodTier != null && this.lodTier.spawnMultiplier() < 1.0F) {
+            // Round randomly so small counts still spawn the correct number of particles on average
+            float scaled = count * this.lodTier.spawnMultiplier();
+            count = (int) scaled;
+            if (this.randomSource.nextFloat() < scaled - count) {
+                count++;
+            }
+        }
+        count = this.particleManager.getBudget().acquire(this, count);
+
+        ParticleModulePlan plan = this.getModulePlan();
+
+        // Generate the whole burst up front. Particle i uses shape i % shapes, so each shape fills every n-th slot
+        List<EmitterShapeSettings> shapes = this.emitterShapeSettings;
+        int shapeCount = shapes.size();
+        double[] points = this.getSpawnPoints(count * 3);
+        for (int i = 0; i < shapeCount && i < count; i++) {
+            shapes.get(i).getPositions(this.randomSource, (count - i + shapeCount - 1) / shapeCount, points, i * 3, shapeCount * 3, origin);
+        }
 
         for (int i = 0; i < count; i++) {
-            Vector3dc particlePos = this.emitterShapeSettings.get(i % this.emitterShapeSettings.size()).getPos(this.randomSource, this.position);
             Vector3fc particleDirection = this.particleSettings.particleDirection(this.randomSource);
 
             // TODO
@@ -122,23 +254,58 @@ public class ParticleEmitter {
 //            }
 //        });
 
-            ParticleModuleSet.Builder builder = ParticleModuleSet.builder();
-            for (ParticleModuleData module : this.modules) {
-                module.addModules(builder);
+            QuasarParticle particle = this.particleManager.getParticlePool().acquire(this.level, this.randomSource, this.particleManager.getScheduler(), this.particleData, plan.createModules(this.packedStorage), this.particleSettings, this);
+            particle.getPosition().set(points[i * 3], points[i * 3 + 1], points[i * 3 + 2]);
+            particle.getVelocity().set(particleDirection);
+            particle.init();
+            if (this.packedStorage) {
+                this.storage.add(particle);
+            } else {
+                this.particles.add(particle);
             }
-            if (this.particleData.faceVelocity()) {
-                builder.addModule(new FaceVelocityModule());
+        }
+    }
+
+    private double[] getSpawnPoints(int size) {
+        if (this.spawnPoints.length < size) {
+            this.spawnPoints = new double[Math.max(size, this.spawnPoints.length * 2)];
+        }
+        return this.spawnPoints;
+    }
+
+    /**
+     * <p>Retrieves the compiled modules for all particles spawned by this emitter.</p>
+     * <p>Unless custom modules or particle data were set, the plan is borrowed from the definition and reused by later
+     * emitters once this emitter is removed, so the modules in it must not be modified.</p>
+     *
+     * @return The compiled modules for all particles spawned by this emitter
+     */
+    public ParticleModulePlan getModulePlan() {
+        if (this.modulePlan == null) {
+            ParticleEmitterDefinition definition = this.definition;
+            if (this.modules == definition.getModules() && this.particleData == definition.getParticleData()) {
+                if (this.borrowedPlan == null) {
+                    this.borrowedPlan = definition.acquirePlan();
+                }
+                this.modulePlan = this.borrowedPlan;
+            } else {
+                this.modulePlan = ParticleModulePlan.compile(this.modules, this.particleData.faceVelocity());
             }
+        }
+        return this.modulePlan;
+    }
 
-            QuasarParticle particle = new QuasarParticle(this.level, this.randomSource, this.particleManager.getScheduler(), this.particleData, builder.build(), this.particleSettings, this);
-            particle.getPosition().set(particlePos);
-            particle.getVelocity().set(particleDirection);
-            particle.init();
-            this.particles.add(particle);
+    /**
+     * @return The MoLang environment shared by all particles of this emitter
+     */
+    public ParticleMolangRuntime getMolangRuntime() {
+        if (this.molangRuntime == null) {
+            this.molangRuntime = new ParticleMolangRuntime();
         }
+        return this.molangRuntime;
     }
 
-    private static List<ParticleModuleData> createModuleSet(QuasarParticleData data) {
+    static List<ParticleModuleData> createModuleSet(QuasarParticleData data) {
         List<ParticleModuleData> list = new ArrayList<>();
         data.allModules().forEach(module -> {
             if (!module.isBound()) {
@@ -171,8 +338,10 @@ public class ParticleEmitter {
         }
     }
 
-    @ApiStatus.Internal
-    void tick() {
+    /**
+     * Moves the emitter to the current position of the attached entity and removes it if the entity is gone.
+     */
+    void updatePosition() {
         this.position.set(0);
         if (this.attachedEntity != null) {
             if (this.attachedEntity.isAlive()) {
@@ -185,17 +354,57 @@ public class ParticleEmitter {
         }
 
         this.position.add(this.offset);
+    }
+
+    @ApiStatus.Internal
+    void tick() {
+        this.updatePosition();
+        if (!this.batchedSubEmitters.isEmpty()) {
+            this.batchedSubEmitters.values().removeIf(instance -> instance.removed);
+        }
+
+        // Far away emitters simulate several ticks at once and interpolate between them while waiting
+        if (this.lodTicks + 1 < this.lodStep) {
+            this.lodTicks++;
+            return;
+        }
+        this.lodTicks = 0;
+        this.lodStep = this.lodTier != null ? this.lodTier.tickDivisor() : 1;
+        int step = this.lodStep;
+
+        // The previous tick bounds are kept so the interpolated positions rendered this tick are still covered
+        this.boundsMin.set(this.tickBoundsMin);
+        this.boundsMax.set(this.tickBoundsMax);
+        this.tickBoundsMin.set(this.position);
+        this.tickBoundsMax.set(this.position);
+        if (this.subEmitterBatch != null) {
+            this.tickBoundsMin.min(this.subEmitterBatch.getMin());
+            this.tickBoundsMax.max(this.subEmitterBatch.getMax());
+        }
+
         Iterator<QuasarParticle> iterator = this.particles.iterator();
         while (iterator.hasNext()) {
             QuasarParticle particle = iterator.next();
-            particle.tick();
+            particle.tick(step);
 
             if (particle.isRemoved()) {
                 iterator.remove();
-                particle.onRemove();
+                this.onParticleRemoved(particle);
+                continue;
             }
+
+            Vector3dc pos = particle.getPosition();
+            this.expandBounds(pos.x(), pos.y(), pos.z(), particle.getRadius());
         }
 
+        if (!this.storage.isEmpty()) {
+            this.tickStorage(step);
+        }
+
+        this.boundsMin.min(this.tickBoundsMin).sub(BOUNDS_PADDING, BOUNDS_PADDING, BOUNDS_PADDING);
+        this.boundsMax.max(this.tickBoundsMax).add(BOUNDS_PADDING, BOUNDS_PADDING, BOUNDS_PADDING);
+        this.captureSnapshot(step);
+
 //        if (this.removed) {
 //            this.cancelTasks();
 //        } else {
@@ -210,79 +419,499 @@ public class ParticleEmitter {
 //        }
     }
 
+    /**
+     * Reads the light at every particle into the specified cache so this emitter can be ticked without touching the level.
+     *
+     * @param cache The cache to fill
+     */
+    @ApiStatus.Internal
+    void prefetchLight(ParticleLightCache cache) {
+        // Emitters waiting for their next level of detail step won't sample anything
+        if (this.lodTicks + 1 < this.lodStep) {
+            return;
+        }
+
+        for (QuasarParticle particle : this.particles) {
+            Vector3dc pos = particle.getPosition();
+            cache.prefetch(this.level, pos.x(), pos.y(), pos.z());
+        }
+
+        ParticleStorage storage = this.storage;
+        double[] x = storage.getX();
+        double[] y = storage.getY();
+        double[] z = storage.getZ();
+        for (int i = 0; i < storage.size(); i++) {
+            cache.prefetch(this.level, x[i], y[i], z[i]);
+        }
+    }
+
+    /**
+     * Reads the light of particles that ended up in blocks that weren't prefetched before an asynchronous tick.
+     * This must be called on the main thread before the snapshot is published.
+     *
+     * @param cache The cache to read light through
+     */
+    @ApiStatus.Internal
+    void resolveLight(ParticleLightCache cache) {
+        for (QuasarParticle particle : this.particles) {
+            RenderData renderData = particle.getRenderData();
+            if (renderData.getLightColor() == ParticleLightCache.MISSING_LIGHT) {
+                Vector3dc pos = particle.getPosition();
+                renderData.tick(cache.getLightColor(this.level, pos.x(), pos.y(), pos.z()));
+            }
+        }
+
+        ParticleStorage storage = this.storage;
+        double[] x = storage.getX();
+        double[] y = storage.getY();
+        double[] z = storage.getZ();
+        for (int i = 0; i < storage.size(); i++) {
+            RenderData renderData = storage.get(i).getRenderData();
+            if (renderData.getLightColor() == ParticleLightCache.MISSING_LIGHT) {
+                renderData.tick(cache.getLightColor(this.level, x[i], y[i], z[i]));
+            }
+        }
+
+        if (this.snapshotCaptured) {
+            this.captureSnapshot.resolveLight(this.level, cache);
+        }
+    }
+
+    private void tickStorage(int step) {
+        ParticleStorage storage = this.storage;
+        ParticleModulePlan plan = this.getModulePlan();
+        int size = storage.size();
+        int[] flags = storage.getFlags();
+        double[] x = storage.getX();
+        double[] y = storage.getY();
+        double[] z = storage.getZ();
+        double[] velocityX = storage.getVelocityX();
+        double[] velocityY = storage.getVelocityY();
+        double[] velocityZ = storage.getVelocityZ();
+        int[] age = storage.getAge();
+
+        storage.storePrevious(0, size);
+        for (int i = 0; i < size; i++) {
+            QuasarParticle particle = storage.get(i);
+            RenderData renderData = particle.getRenderData();
+            double velocitySq = velocityX[i] * velocityX[i] + velocityY[i] * velocityY[i] + velocityZ[i] * velocityZ[i];
+            renderData.tick(this.particleManager.sampleLight(this.level, x[i], y[i], z[i], velocitySq, age[i], renderData.getLightColor()));
+            if ((flags[i] & ParticleStorage.FLAG_RENDER) != 0) {
+                particle.getModules().updateEnabled();
+            }
+        }
+
+        // Runs alternate between bulk and per-particle modules, so everything runs in the same order as for objects
+        int first = 0;
+        for (UpdateParticleModule[] run : plan.getUpdateRuns()) {
+            if (run[0] instanceof BulkUpdateParticleModule) {
+                for (UpdateParticleModule module : run) {
+                    ((BulkUpdateParticleModule) module).update(storage, 0, size);
+                }
+                continue;
+            }
+
+            for (int i = 0; i < size; i++) {
+                if ((flags[i] & ParticleStorage.FLAG_UPDATE) != 0) {
+                    QuasarParticle particle = storage.get(i);
+                    storage.pull(i);
+                    particle.update(first, run.length);
+                    storage.push(i);
+                }
+            }
+            first += run.length;
+        }
+
+        if (step > 1) {
+            storage.storeVelocity(0, size);
+        }
+        first = 0;
+        for (ForceParticleModule[] run : plan.getForceRuns()) {
+            if (run[0] instanceof BulkForceParticleModule) {
+                ParticleForceSolver forceSolver = size >= this.particleManager.getOpenCLForceThreshold() ? this.particleManager.getForceSolver() : null;
+                if (forceSolver == null || !forceSolver.applyForces(storage, 0, size, run)) {
+                    for (ForceParticleModule module : run) {
+                        ((BulkForceParticleModule) module).applyForce(storage, 0, size);
+                    }
+                }
+                continue;
+            }
+
+            for (int i = 0; i < size; i++) {
+                if ((flags[i] & ParticleStorage.FLAG_FORCE) != 0) {
+                    QuasarParticle particle = storage.get(i);
+                    storage.pull(i);
+                    particle.applyForces(first, run.length);
+                    storage.push(i);
+                }
+            }
+            first += run.length;
+        }
+        if (step > 1) {
+            storage.scaleVelocityChange(0, size, step);
+        }
+
+        storage.move(0, size, step);
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & ParticleStorage.FLAG_COLLISION) != 0) {
+                QuasarParticle particle = storage.get(i);
+                storage.pull(i);
+                particle.move(step);
+                storage.push(i);
+            }
+        }
+        storage.age(0, size, step);
+
+        // Iterate backwards so swap-remove only moves rows that have already been checked
+        for (int i = size - 1; i >= 0; i--) {
+            if (storage.isRemoved(i)) {
+                this.onParticleRemoved(storage.remove(i));
+            }
+        }
+
+        float[] radius = storage.getRadius();
+        for (int i = 0; i < storage.size(); i++) {
+            this.expandBounds(x[i], y[i], z[i], radius[i]);
+        }
+    }
+
+    /**
+     * Captures the render state of every particle at the end of this tick. Render modules run here instead of every
+     * frame, so rendering only has to interpolate the snapshot.
+     */
+    private void captureSnapshot(int step) {
+        ParticleRenderSnapshot snapshot = this.captureSnapshot;
+        snapshot.begin(this.particleData, step);
+
+        for (QuasarParticle particle : this.particles) {
+            particle.render(1.0F);
+            particle.getRenderData().pushTrailPoints();
+            snapshot.add(particle, particle.getAge(), particle.getLifetime());
+        }
+
+        ParticleStorage storage = this.storage;
+        int[] age = storage.getAge();
+        int[] lifetime = storage.getLifetime();
+        for (int i = 0; i < storage.size(); i++) {
+            QuasarParticle particle = storage.get(i);
+            if (particle.getModules().hasEnabledRenderModules()) {
+                storage.pull(i);
+                particle.renderModules(1.0F);
+            }
+            RenderData renderData = particle.getRenderData();
+            renderData.render(storage, i, 1.0F);
+            renderData.pushTrailPoints();
+            snapshot.add(particle, age[i], lifetime[i]);
+        }
+        this.snapshotCaptured = true;
+    }
+
+    /**
+     * Makes the snapshot captured by the last tick visible to rendering. This must be called on the render thread.
+     */
+    void publishSnapshot() {
+        if (this.snapshotCaptured) {
+            ParticleRenderSnapshot snapshot = this.renderSnapshot;
+            this.renderSnapshot = this.captureSnapshot;
+            this.captureSnapshot = snapshot;
+            this.snapshotCaptured = false;
+        }
+        this.renderLodTicks = this.lodTicks;
+    }
+
+    private void onParticleRemoved(QuasarParticle particle) {
+        particle.onRemove();
+        this.removedParticles.add(particle);
+    }
+
+    private void expandBounds(double x, double y, double z, float radius) {
+        Vector3d min = this.tickBoundsMin;
+        Vector3d max = this.tickBoundsMax;
+        min.x = Math.min(min.x, x - radius);
+        min.y = Math.min(min.y, y - radius);
+        min.z = Math.min(min.z, z - radius);
+        max.x = Math.max(max.x, x + radius);
+        max.y = Math.max(max.y, y + radius);
+        max.z = Math.max(max.z, z + radius);
+    }
+
+    /**
+     * Releases all particles removed during the last tick into the specified pool. This is done separately from ticking
+     * since the pool is only accessed from the main thread.
+     *
+     * @param pool The pool to release into
+     */
+    void releaseRemovedParticles(QuasarParticlePool pool) {
+        if (this.removedParticles.isEmpty()) {
+            return;
+        }
+
+        for (QuasarParticle particle : this.removedParticles) {
+            pool.release(particle);
+        }
+        this.removedParticles.clear();
+    }
+
+    List<Runnable> getDeferredActions() {
+        return this.deferredActions;
+    }
+
+    void runDeferredActions() {
+        if (this.deferredActions.isEmpty()) {
+            return;
+        }
+
+        for (Runnable action : this.deferredActions) {
+            try {
+                action.run();
+            } catch (Throwable t) {
+                Veil.LOGGER.error("Failed to run deferred particle action", t);
+            }
+        }
+        this.deferredActions.clear();
+    }
+
     // TODO move to renderer
     @ApiStatus.Internal
     public void render(PoseStack poseStack, MultiBufferSource bufferSource, Camera camera, float partialTicks) {
+        this.render(poseStack, bufferSource, camera, partialTicks, null);
+    }
+
+    /**
+     * Renders all particles in this emitter.
+     *
+     * @param poseStack    The current pose stack
+     * @param bufferSource The source to get buffers from
+     * @param camera       The camera to render from
+     * @param partialTicks The percentage from last tick to this tick
+     * @param depthSorter  The sorter to defer translucent particles to or <code>null</code> to render them immediately
+     */
+    void render(PoseStack poseStack, MultiBufferSource bufferSource, Camera camera, float partialTicks, @Nullable ParticleDepthSorter depthSorter) {
+        ParticleRenderSnapshot snapshot = this.renderSnapshot;
+        if (snapshot.isEmpty()) {
+            return;
+        }
+
+        // Interpolate across every tick the last simulation step covered
+        partialTicks = Math.min((this.renderLodTicks + partialTicks) / snapshot.getLodStep(), 1.0F);
+
         Vec3 projectedView = camera.getPosition();
-        RenderStyle renderStyle = this.particleData.renderStyle();
+        RenderStyle renderStyle = snapshot.getParticleData().renderStyle();
 
-        Vector3f renderOffset = new Vector3f();
+        ParticleVertexWriter writer = this.particleManager.getVertexWriter();
+        ParticleInstanceRenderer instanceRenderer = renderStyle.supportsInstancing() ? this.particleManager.getInstanceRenderer() : null;
+        Matrix4f pose = poseStack.last().pose();
+        Quaternionf cameraOrientation = camera.rotation();
+
+        Vector3d renderPosition = this.renderPosition;
+        Vector3f renderOffset = this.renderOffset;
         RenderType lastRenderType = null;
-        VertexConsumer builder = null;
-        for (QuasarParticle particle : this.particles) {
-            RenderData renderData = particle.getRenderData();
+        ParticleRenderSnapshot.Material lastMaterial = null;
+        for (int i = 0; i < snapshot.size(); i++) {
+            ParticleRenderSnapshot.Material material = snapshot.getMaterial(i);
 
-            particle.render(partialTicks);
-//        double ageMultiplier = 1; //1 - Math.pow(Mth.clamp(age + partialTicks, 0, lifetime), 3) / Math.pow(lifetime, 3);
-//        float lX = (float) (Mth.lerp(partialTicks, this.xo, this.x));
-//        float lY = (float) (Mth.lerp(partialTicks, this.yo, this.y));
-//        float lZ = (float) (Mth.lerp(partialTicks, this.zo, this.z));
-//        float lerpedYaw = Mth.lerp(partialTicks, this.oYaw, this.yaw);
-//        float lerpedPitch = Mth.lerp(partialTicks, this.oPitch, this.pitch);
-//        float lerpedRoll = Mth.lerp(partialTicks, this.oRoll, this.roll);
-//        if (!this.renderData.getTrails().isEmpty()) {
-//            if (this.trails.isEmpty()) {
-//                this.renderData.getTrails().forEach(trail -> {
-//                    Trail tr = new Trail(MathUtil.colorFromVec4f(trail.getTrailColor()), (ageScale) -> trail.getTrailWidthModifier().modify(ageScale, ageMultiplier));
-//                    tr.setBillboard(trail.getBillboard());
-//                    tr.setLength(trail.getTrailLength());
-//                    tr.setFrequency(trail.getTrailFrequency());
-//                    tr.setTilingMode(trail.getTilingMode());
-//                    tr.setTexture(trail.getTrailTexture());
-//                    tr.setParentRotation(trail.getParentRotation());
-//                    tr.pushRotatedPoint(new Vec3(this.xo, this.yo, this.zo), new Vec3(lerpedYaw, lerpedPitch, lerpedRoll));
-//                    this.trails.add(tr);
-//                });
-//            }
-//            this.trails.forEach(trail -> {
-//                trail.pushRotatedPoint(new Vec3(lX, lY, lZ), new Vec3(lerpedYaw, lerpedPitch, lerpedRoll));
-//                PoseStack ps = new PoseStack();
-//                ps.pushPose();
-//                ps.translate(-projectedView.x(), -projectedView.y(), -projectedView.z());
-//                trail.render(ps, Minecraft.getInstance().renderBuffers().bufferSource().getBuffer(RenderTypeRegistry.translucentNoCull(trail.getTexture())), this.emissive ? LightTexture.FULL_BRIGHT : this.getLightColor(partialTicks));
-//                ps.popPose();
-//            });
-//        }
-            renderData.renderTrails(poseStack, bufferSource, projectedView, LightTexture.FULL_BRIGHT);
+            // Translucent particles are rendered later together with the particles of every other emitter
+            if (depthSorter != null && !material.additive()) {
+                depthSorter.add(snapshot, i, partialTicks);
+                continue;
+            }
 
-            Vector3dc renderPosition = renderData.getRenderPosition();
+            snapshot.getRenderPosition(i, partialTicks, renderPosition);
             renderOffset.set(
-                    (float) (renderPosition.x() - projectedView.x()),
-                    (float) (renderPosition.y() - projectedView.y()),
-                    (float) (renderPosition.z() - projectedView.z()));
+                    (float) (renderPosition.x - projectedView.x()),
+                    (float) (renderPosition.y - projectedView.y()),
+                    (float) (renderPosition.z - projectedView.z()));
+
+            if (instanceRenderer != null) {
+                if (material != lastMaterial) {
+                    lastMaterial = material;
+                    instanceRenderer.begin(material, pose, cameraOrientation);
+                }
+                renderStyle.renderInstance(snapshot, i, renderOffset, instanceRenderer, partialTicks);
+                continue;
+            }
 
-            RenderType renderType = renderData.getRenderType();
+            RenderType renderType = material.renderType();
             if (!renderType.equals(lastRenderType)) {
                 lastRenderType = renderType;
-                builder = bufferSource.getBuffer(renderType);
-
-                TextureAtlasSprite sprite = renderData.getAtlasSprite();
-                if (sprite != null) {
-                    builder = sprite.wrap(builder);
-                }
+                // Getting another buffer may end the previous batch, so flush before switching
+                writer.end();
+                writer.begin(material.getBuffer(bufferSource), pose, cameraOrientation);
             }
 
-            renderStyle.render(poseStack, particle, renderData, renderOffset, builder, 1, partialTicks);
+            renderStyle.render(poseStack, snapshot, i, renderOffset, writer, partialTicks);
+        }
+        writer.end();
+        if (instanceRenderer != null) {
+            instanceRenderer.end();
+        }
+
+        if (snapshot.getTrailCount() > 0) {
+            snapshot.renderTrails(poseStack, bufferSource, projectedView);
         }
     }
 
+    /**
+     * @return The clusters pooled particle lights are merged into while the current tick is captured
+     */
     @ApiStatus.Internal
-    void onRemoved() {
+    public ParticleLightClusters getCapturedLights() {
+        return this.captureSnapshot.getLightClusters();
+    }
+
+    /**
+     * @return The render state of all particles captured at the end of the last finished tick
+     */
+    public ParticleRenderSnapshot getRenderSnapshot() {
+        return this.renderSnapshot;
+    }
+
+    /**
+     * Selects the level of detail tier to use for the specified distance.
+     *
+     * @param distanceSq The squared distance from the camera or a negative value to always use full detail
+     */
+    void updateLod(double distanceSq) {
+        // Critical emitters are never reduced
+        this.lodTier = distanceSq < 0 || this.getPriority() == EmitterPriority.CRITICAL ? null : this.lodSettings.getTier(distanceSq);
+    }
+
+    /**
+     * @return Whether this emitter should be rendered at its current level of detail
+     */
+    public boolean shouldRender() {
+        return !this.sleeping && (this.lodTier == null || this.lodTier.render());
+    }
+
+    /**
+     * <p>Stops ticking and spawning until {@link #wake()} is called. The remaining lifetime is kept, so the emitter
+     * expires as if it was never asleep, only later.</p>
+     * <p>Particles are kept or released depending on the {@link #getSleepPolicy() sleep policy}.</p>
+     */
+    void sleep() {
+        if (this.sleeping) {
+            return;
+        }
+
+        this.sleeping = true;
+        this.sleepLifetime = this.removeTask != null ? Math.max(0, this.expireTick - this.particleManager.getTicks()) : -1;
         this.cancelTasks();
+        if (this.sleepPolicy == EmitterSleepPolicy.DROP) {
+            this.dropParticles();
+        }
+    }
+
+    private void dropParticles() {
+        this.releaseParticles();
+        this.renderSnapshot.begin(this.particleData, 1);
+        this.captureSnapshot.begin(this.particleData, 1);
+        this.snapshotCaptured = false;
+    }
+
+    /**
+     * Resumes spawning and ticking where the emitter left off when it was put to sleep.
+     */
+    void wake() {
+        if (!this.sleeping) {
+            return;
+        }
+
+        this.sleeping = false;
+        if (this.removed) {
+            return;
+        }
+
+        TickTaskScheduler scheduler = this.particleManager.getScheduler();
+        this.spawnTask = scheduler.scheduleAtFixedRate(this::spawn, 0, this.subEmitterBatch != null ? 1 : this.rate);
+        if (this.sleepLifetime >= 0) {
+            this.expireTick = this.particleManager.getTicks() + this.sleepLifetime;
+            this.removeTask = scheduler.schedule(this::expire, this.sleepLifetime);
+        }
+    }
+
+    private void releaseParticles() {
+        QuasarParticlePool pool = this.particleManager.getParticlePool();
         for (QuasarParticle particle : this.particles) {
             particle.onRemove();
+            pool.release(particle);
         }
         this.particles.clear();
+        for (int i = this.storage.size() - 1; i >= 0; i--) {
+            QuasarParticle particle = this.storage.remove(i);
+            particle.onRemove();
+            pool.release(particle);
+        }
+        this.releaseRemovedParticles(pool);
+    }
+
+    @ApiStatus.Internal
+    void onRemoved() {
+        this.cancelTasks();
+        this.releaseParticles();
+        this.batchedSubEmitters.clear();
+
+        // No particle references the shared modules anymore, so other emitters can reuse them
+        if (this.borrowedPlan != null) {
+            this.definition.releasePlan(this.borrowedPlan);
+            this.borrowedPlan = null;
+        }
+    }
+
+    /**
+     * <p>Spawns a sub-emitter at the specified position.</p>
+     * <p>Batched sub-emitters share a single emitter for each sub-emitter name spawned by this emitter. Every call adds
+     * another origin to that emitter instead of creating a new one, so all particles end up in a single particle list.
+     * Each origin spawns particles at the rate and for the lifetime of the sub-emitter as if it was a separate emitter.</p>
+     *
+     * @param name    The name of the emitter to spawn
+     * @param origin  The position to spawn particles at
+     * @param batched Whether to add the origin to a shared emitter
+     */
+    public void spawnSubEmitter(ResourceLocation name, Vector3dc origin, boolean batched) {
+        if (batched) {
+            ParticleEmitter instance = this.batchedSubEmitters.get(name);
+            if (instance == null || instance.removed) {
+                instance = this.createSubEmitter(name);
+                if (instance == null) {
+                    return;
+                }
+
+                instance.setPosition(origin);
+                instance.startBatch();
+                this.batchedSubEmitters.put(name, instance);
+                this.particleManager.addSubEmitter(instance);
+            }
+
+            // Origins are only read when the shared emitter spawns at the start of the next tick
+            instance.subEmitterBatch.add(origin.x(), origin.y(), origin.z());
+            return;
+        }
+
+        ParticleEmitter instance = this.createSubEmitter(name);
+        if (instance == null) {
+            return;
+        }
+
+        instance.setPosition(origin);
+        this.particleManager.addSubEmitter(instance);
+    }
+
+    /**
+     * Creates a sub-emitter seeded from this emitter. Emitters ticking in parallel would otherwise draw seeds from the
+     * shared manager source in whatever order the threads get to it.
+     */
+    private @Nullable ParticleEmitter createSubEmitter(ResourceLocation name) {
+        return this.particleManager.createEmitter(name, RandomSource.create(this.randomSource.nextLong()));
+    }
+
+    /**
+     * Switches this emitter to spawn from the origins of a sub-emitter batch every tick. The emitter removes itself once
+     * all origins have expired.
+     */
+    private void startBatch() {
+        this.cancelTasks();
+        this.subEmitterBatch = new SubEmitterBatch(this.position);
+        this.spawnTask = this.particleManager.getScheduler().scheduleAtFixedRate(this::spawn, 0, 1);
     }
 
     /**
@@ -292,31 +921,126 @@ public class ParticleEmitter {
      * @param module The module to add
      */
     public void addCodeModule(CodeModule module) {
+        if (this.modules == this.definition.getModules()) {
+            // The module list is shared by every emitter of the same definition until it is modified
+            this.modules = new ArrayList<>(this.modules);
+        }
         this.modules.add(module);
+        this.modulePlan = null;
     }
 
     /**
-     * Attempts to remove the oldest specified number of particles.
+     * Attempts to remove the oldest specified number of particles. Removed particles go through the regular removal
+     * path and are released into the pool with the rest of the particles removed this tick.
      *
      * @param count The number of particles to attempt to remove
      * @return The number of particles removed
      */
     public int trim(int count) {
-        // Don't allow high-priority particles to be trimmed
-        if (this.forceSpawn) {
+        // Don't allow critical particles to be trimmed
+        if (count <= 0 || this.getPriority() == EmitterPriority.CRITICAL) {
             return 0;
         }
+
         int removeCount = Math.min(count, this.particles.size());
+        for (int i = 0; i < removeCount; i++) {
+            QuasarParticle particle = this.particles.get(i);
+            particle.remove();
+            this.onParticleRemoved(particle);
+        }
         this.particles.subList(0, removeCount).clear();
-        return removeCount;
+
+        int packedRemoveCount = Math.min(count - removeCount, this.storage.size());
+        if (packedRemoveCount > 0) {
+            this.trimStorage(packedRemoveCount);
+        }
+        return removeCount + packedRemoveCount;
+    }
+
+    private void trimStorage(int count) {
+        // Packed storage is unordered, so find the age of the youngest particle that still has to go
+        ParticleStorage storage = this.storage;
+        int size = storage.size();
+        int[] age = storage.getAge();
+        if (this.trimAges.length < size) {
+            this.trimAges = new int[Math.max(size, this.trimAges.length * 2)];
+        }
+        int[] ages = this.trimAges;
+        System.arraycopy(age, 0, ages, 0, size);
+        int threshold = select(ages, size, size - count);
+
+        // Iterate backwards so swap-remove only moves rows that have already been checked
+        for (int i = storage.size() - 1; i >= 0; i--) {
+            if (age[i] > threshold) {
+                this.removeStored(i);
+                count--;
+            }
+        }
+        for (int i = storage.size() - 1; i >= 0 && count > 0; i--) {
+            if (age[i] == threshold) {
+                this.removeStored(i);
+                count--;
+            }
+        }
+    }
+
+    /**
+     * Partially reorders the specified values until the one at <code>k</code> is where it would be if they were sorted.
+     *
+     * @param values The values to reorder
+     * @param size   The number of values to consider
+     * @param k      The sorted index of the value to find
+     * @return The value that would be at index <code>k</code> if the values were sorted
+     */
+    private static int select(int[] values, int size, int k) {
+        int left = 0;
+        int right = size - 1;
+        while (left < right) {
+            int pivot = values[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int value = values[i];
+                    values[i] = values[j];
+                    values[j] = value;
+                    i++;
+                    j--;
+                }
+            }
+
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                break;
+            }
+        }
+        return values[k];
+    }
+
+    private void removeStored(int index) {
+        this.storage.get(index).remove();
+        this.onParticleRemoved(this.storage.remove(index));
     }
 
     /**
-     * Marks this emitter to be removed next tick.
+     * Marks this emitter to be removed next tick. Sleeping emitters release their particles immediately since frozen
+     * particles would never age.
      */
     public void remove() {
         this.removed = true;
         this.cancelTasks();
+        if (this.sleeping) {
+            this.dropParticles();
+        }
     }
 
     /**
@@ -326,7 +1050,14 @@ public class ParticleEmitter {
         this.removed = false;
         if (this.removeTask != null) {
             this.removeTask.cancel(false);
+            this.removeTask = null;
+        }
+        if (this.sleeping) {
+            // Scheduled again once the emitter wakes up
+            this.sleepLifetime = this.maxLifetime;
+            return;
         }
+        this.expireTick = this.particleManager.getTicks() + this.maxLifetime;
         this.removeTask = this.particleManager.getScheduler().schedule(this::expire, this.maxLifetime);
     }
 
@@ -338,7 +1069,14 @@ public class ParticleEmitter {
      * Whether the emitter has completed its lifetime
      */
     public boolean isRemoved() {
-        return this.removed && this.particles.isEmpty();
+        return this.removed && this.particles.isEmpty() && this.storage.isEmpty();
+    }
+
+    /**
+     * @return Whether this emitter is asleep because it is in an unloaded chunk or too far away from the camera
+     */
+    public boolean isSleeping() {
+        return this.sleeping;
     }
 
     /**
@@ -348,12 +1086,69 @@ public class ParticleEmitter {
         return this.position;
     }
 
+    /**
+     * @return The minimum corner of a conservative box containing every particle rendered this tick
+     */
+    public Vector3dc getBoundsMin() {
+        return this.boundsMin;
+    }
+
+    /**
+     * @return The maximum corner of a conservative box containing every particle rendered this tick
+     */
+    public Vector3dc getBoundsMax() {
+        return this.boundsMax;
+    }
+
+    ParticleSystemManager getParticleManager() {
+        return this.particleManager;
+    }
+
+    /**
+     * @return The name this emitter was created with
+     */
+    public ResourceLocation getName() {
+        return this.name;
+    }
+
     public ParticleEmitterData getData() {
         return this.emitterData;
     }
 
+    /**
+     * @return The resolved definition this emitter was created from
+     */
+    public ParticleEmitterDefinition getDefinition() {
+        return this.definition;
+    }
+
     public int getParticleCount() {
-        return this.particles.size();
+        return this.particles.size() + this.storage.size();
+    }
+
+    public EmitterLodSettings getLodSettings() {
+        return this.lodSettings;
+    }
+
+    /**
+     * @return The level of detail tier currently used or <code>null</code> if the emitter is at full detail
+     */
+    public @Nullable EmitterLodSettings.Tier getLodTier() {
+        return this.lodTier;
+    }
+
+    /**
+     * @return Whether newly spawned particles are stored in packed storage
+     */
+    public boolean isPackedStorage() {
+        return this.packedStorage;
+    }
+
+    /**
+     * @return The packed storage for particles spawned while {@link #isPackedStorage()} is <code>true</code>
+     */
+    public ParticleStorage getStorage() {
+        return this.storage;
     }
 
     public int getMaxLifetime() {
@@ -388,6 +1183,27 @@ public class ParticleEmitter {
         return this.forceSpawn;
     }
 
+    /**
+     * @return The share of the particle budget this emitter receives. Always {@link EmitterPriority#CRITICAL} when force spawning
+     */
+    public EmitterPriority getPriority() {
+        return this.forceSpawn ? EmitterPriority.CRITICAL : this.priority;
+    }
+
+    /**
+     * @return What happens to the particles of this emitter while it is asleep
+     */
+    public EmitterSleepPolicy getSleepPolicy() {
+        return this.sleepPolicy;
+    }
+
+    /**
+     * @return The number of particles this emitter may have alive before new spawns are throttled
+     */
+    public int getParticleQuota() {
+        return this.particleQuota;
+    }
+
     public QuasarParticleData getParticleData() {
         return this.particleData;
     }
@@ -461,8 +1277,32 @@ public class ParticleEmitter {
         this.forceSpawn = forceSpawn;
     }
 
+    public void setPriority(EmitterPriority priority) {
+        this.priority = priority;
+    }
+
+    public void setSleepPolicy(EmitterSleepPolicy sleepPolicy) {
+        this.sleepPolicy = sleepPolicy;
+    }
+
+    public void setLodSettings(EmitterLodSettings lodSettings) {
+        this.lodSettings = lodSettings;
+    }
+
     public void setParticleData(QuasarParticleData particleData) {
         this.particleData = particleData;
+        this.modulePlan = null;
+    }
+
+    /**
+     * <p>Sets whether particles spawned after this is called are stored in packed structure-of-arrays storage.</p>
+     * <p>Existing particles are kept in the storage they were spawned with.</p>
+     *
+     * @param packedStorage Whether to use packed storage
+     * @see ParticleStorage
+     */
+    public void setPackedStorage(boolean packedStorage) {
+        this.packedStorage = packedStorage;
     }
 
     /**
@@ -0,0 +1,125 @@
+package foundry.veil.api.quasar.particle;
+
+import foundry.veil.api.quasar.data.EmitterSettings;
+import foundry.veil.api.quasar.data.EmitterShapeSettings;
+import foundry.veil.api.quasar.data.ParticleEmitterData;
+import foundry.veil.api.quasar.data.ParticleSettings;
+import foundry.veil.api.quasar.data.QuasarParticleData;
+import foundry.veil.api.quasar.data.module.ParticleModuleData;
+import net.minecraft.resources.ResourceLocation;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * <p>Emitter data with all holders resolved, ready to create emitters from.</p>
+ * <p>Compiled {@link ParticleModulePlan}s are pooled. An emitter borrows a plan the first time it spawns and returns it
+ * when it is removed, so a plan is never shared by two emitters that could tick at the same time.</p>
+ *
+ * @see EmitterDefinitionCache
+ */
+public final class ParticleEmitterDefinition {
+
+    private static final int MAX_POOLED_PLANS = 16;
+
+    private final ResourceLocation name;
+    private final ParticleEmitterData data;
+    private final List<EmitterShapeSettings> emitterShapeSettings;
+    private final ParticleSettings particleSettings;
+    private final boolean forceSpawn;
+    private final QuasarParticleData particleData;
+    private final List<ParticleModuleData> modules;
+    private final Deque<ParticleModulePlan> plans;
+
+    /**
+     * Resolves the specified emitter data.
+     *
+     * @param name The name of the emitter
+     * @param data The data to resolve
+     */
+    public ParticleEmitterDefinition(ResourceLocation name, ParticleEmitterData data) {
+        this.name = name;
+        this.data = data;
+        EmitterSettings emitterSettings = data.emitterSettings();
+        this.emitterShapeSettings = emitterSettings.emitterShapeSettings();
+        this.particleSettings = emitterSettings.particleSettings();
+        this.forceSpawn = emitterSettings.forceSpawn();
+        this.particleData = data.particleData();
+        this.modules = Collections.unmodifiableList(ParticleEmitter.createModuleSet(this.particleData));
+        this.plans = new ArrayDeque<>();
+    }
+
+    /**
+     * Compiles a module plan ahead of time so the next emitter created from this definition doesn't have to.
+     */
+    public synchronized void prewarm() {
+        if (this.plans.isEmpty()) {
+            this.plans.add(this.compilePlan());
+        }
+    }
+
+    /**
+     * Takes a module plan from the pool or compiles a new one if all plans are in use.
+     *
+     * @return A plan that isn't used by any other emitter
+     */
+    synchronized ParticleModulePlan acquirePlan() {
+        ParticleModulePlan plan = this.plans.poll();
+        return plan != null ? plan : this.compilePlan();
+    }
+
+    /**
+     * Returns a plan once no particles use its modules anymore.
+     *
+     * @param plan The plan previously acquired from {@link #acquirePlan()}
+     */
+    synchronized void releasePlan(ParticleModulePlan plan) {
+        if (this.plans.size() < MAX_POOLED_PLANS) {
+            this.plans.push(plan);
+        }
+    }
+
+    private ParticleModulePlan compilePlan() {
+        return ParticleModulePlan.compile(this.modules, this.particleData.faceVelocity());
+    }
+
+    /**
+     * @return The number of compiled plans not used by any emitter
+     */
+    public synchronized int getPooledPlans() {
+        return this.plans.size();
+    }
+
+    public ResourceLocation getName() {
+        return this.name;
+    }
+
+    public ParticleEmitterData getData() {
+        return this.data;
+    }
+
+    public List<EmitterShapeSettings> getEmitterShapeSettings() {
+        return this.emitterShapeSettings;
+    }
+
+    public ParticleSettings getParticleSettings() {
+        return this.particleSettings;
+    }
+
+    public boolean isForceSpawn() {
+        return this.forceSpawn;
+    }
+
+    public QuasarParticleData getParticleData() {
+        return this.particleData;
+    }
+
+    /**
+     * @return The data of every bound module particles receive. Unbound modules have already been reported and removed
+     */
+    public List<ParticleModuleData> getModules() {
+        return this.modules;
+    }
+}
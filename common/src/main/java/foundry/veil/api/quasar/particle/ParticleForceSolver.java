@@ -0,0 +1,366 @@
+package foundry.veil.api.quasar.particle;
+
+import foundry.veil.Veil;
+import foundry.veil.api.opencl.CLBuffer;
+import foundry.veil.api.opencl.CLEnvironment;
+import foundry.veil.api.opencl.CLException;
+import foundry.veil.api.opencl.CLKernel;
+import foundry.veil.api.opencl.VeilOpenCL;
+import foundry.veil.api.quasar.emitters.module.ForceParticleModule;
+import foundry.veil.api.quasar.emitters.module.force.*;
+import net.minecraft.client.Minecraft;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.ResourceProvider;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector3d;
+import org.joml.Vector3dc;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.system.NativeResource;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static org.lwjgl.opencl.CL10.CL_MEM_READ_ONLY;
+import static org.lwjgl.opencl.CL10.CL_MEM_WRITE_ONLY;
+
+/**
+ * <p>Applies the built-in force modules of packed particles with OpenCL.</p>
+ * <p>Positions and velocities are uploaded as planes of floats, and only the velocity change caused by the forces is
+ * read back and added to the particles. Positions are made relative to the first particle so they keep their precision
+ * far away from the world origin. Emitters with any force that isn't supported are left to the regular Java path.</p>
+ * <p>Every thread applying forces at the same time gets its own kernel and buffers, so emitters ticked in parallel only
+ * wait for the device and never for each other.</p>
+ *
+ * @see ParticleSystemManager#setOpenCLForces(boolean)
+ */
+public class ParticleForceSolver implements NativeResource {
+
+    public static final ResourceLocation PROGRAM = new ResourceLocation(Veil.MODID, "quasar/particle_forces");
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int WORK_GROUP_SIZE = 64;
+
+    // Must match the kernel
+    private static final int FORCE_SIZE = 12;
+    private static final int FORCE_CONSTANT = 0;
+    private static final int FORCE_SCALE = 1;
+    private static final int FORCE_POINT = 2;
+    private static final int FORCE_POINT_ATTRACTOR = 3;
+    private static final int FORCE_VORTEX = 4;
+    private static final int ATTRACTOR_BY_DISTANCE = 1;
+    private static final int ATTRACTOR_INVERTED = 2;
+
+    private final CLEnvironment environment;
+    private final int workGroupSize;
+    private final Deque<Worker> idleWorkers;
+    private final List<Worker> workers;
+    private volatile boolean failed;
+
+    /**
+     * Creates a new solver and compiles the force kernel.
+     *
+     * @param environment The environment to run in
+     * @param provider    The provider to load the kernel source from
+     * @throws IOException If the kernel source could not be loaded
+     * @throws CLException If the kernel could not be created
+     */
+    public ParticleForceSolver(CLEnvironment environment, ResourceProvider provider) throws IOException, CLException {
+        environment.loadProgram(PROGRAM, provider);
+        this.environment = environment;
+        this.idleWorkers = new ArrayDeque<>();
+        this.workers = new ArrayList<>();
+        this.failed = false;
+
+        // The first kernel makes sure the program compiled and stays idle for the first thread to use it
+        Worker worker = new Worker(environment.createKernel(PROGRAM, "apply_forces"));
+        this.workers.add(worker);
+        this.idleWorkers.add(worker);
+        this.workGroupSize = Math.max(1, Math.min(WORK_GROUP_SIZE, worker.kernel.getMaxWorkGroupSize()));
+    }
+
+    /**
+     * Creates a solver for the default OpenCL device. This must be called on the render thread.
+     *
+     * @return A new solver or <code>null</code> if OpenCL isn't available
+     */
+    public static @Nullable ParticleForceSolver create() {
+        CLEnvironment environment = VeilOpenCL.get().getEnvironment();
+        if (environment == null) {
+            VeilOpenCL.LOGGER.info("No OpenCL device found, particle forces will be applied on the CPU");
+            return null;
+        }
+
+        try {
+            return new ParticleForceSolver(environment, Minecraft.getInstance().getResourceManager());
+        } catch (Exception e) {
+            VeilOpenCL.LOGGER.error("Failed to create particle force solver", e);
+            return null;
+        }
+    }
+
+    /**
+     * Applies the specified forces to every particle in the range of the specified storage. This can be called from
+     * several threads at once.
+     *
+     * @param storage The storage to modify
+     * @param from    The first row, inclusive
+     * @param to      The last row, exclusive
+     * @param modules The force modules to apply in order
+     * @return Whether the forces were applied. If <code>false</code> the forces have to be applied by the modules instead
+     */
+    public boolean applyForces(ParticleStorage storage, int from, int to, ForceParticleModule[] modules) {
+        if (this.failed || to - from <= 0) {
+            return false;
+        }
+
+        Worker worker = null;
+        try {
+            worker = this.acquireWorker();
+            return worker.applyForces(storage, from, to, modules);
+        } catch (CLException e) {
+            // Don't keep trying every tick if the device stopped working
+            VeilOpenCL.LOGGER.error("Failed to apply particle forces, falling back to the CPU", e);
+            this.failed = true;
+            return false;
+        } finally {
+            if (worker != null) {
+                this.releaseWorker(worker);
+            }
+        }
+    }
+
+    private synchronized Worker acquireWorker() throws CLException {
+        Worker worker = this.idleWorkers.poll();
+        if (worker == null) {
+            // Creating kernels modifies the environment, so it has to happen while holding the lock
+            worker = new Worker(this.environment.createKernel(PROGRAM, "apply_forces"));
+            this.workers.add(worker);
+        }
+        return worker;
+    }
+
+    private synchronized void releaseWorker(Worker worker) {
+        if (this.workers.contains(worker)) {
+            this.idleWorkers.push(worker);
+        }
+    }
+
+    /**
+     * @return Whether an error stopped this solver from being used
+     */
+    public boolean isFailed() {
+        return this.failed;
+    }
+
+    /**
+     * @return The number of kernels created for the threads that applied forces
+     */
+    public synchronized int getWorkerCount() {
+        return this.workers.size();
+    }
+
+    @Override
+    public synchronized void free() {
+        for (Worker worker : this.workers) {
+            worker.free();
+        }
+        this.workers.clear();
+        this.idleWorkers.clear();
+    }
+
+    /**
+     * The kernel and buffers used by a single thread at a time.
+     */
+    private class Worker {
+
+        private final CLKernel kernel;
+        private final Vector3d origin;
+        private FloatBuffer particleData;
+        private FloatBuffer velocityChange;
+        private FloatBuffer forceData;
+        private CLBuffer particleBuffer;
+        private CLBuffer velocityChangeBuffer;
+        private CLBuffer forceBuffer;
+        private int capacity;
+        private int forceCapacity;
+
+        private Worker(CLKernel kernel) {
+            this.kernel = kernel;
+            this.origin = new Vector3d();
+            this.capacity = 0;
+            this.forceCapacity = 0;
+        }
+
+        private boolean applyForces(ParticleStorage storage, int from, int to, ForceParticleModule[] modules) throws CLException {
+            int count = to - from;
+            double[] x = storage.getX();
+            double[] y = storage.getY();
+            double[] z = storage.getZ();
+            this.origin.set(x[from], y[from], z[from]);
+            if (!this.packForces(storage, modules)) {
+                return false;
+            }
+
+            this.ensureCapacity(count);
+
+            double[] velocityX = storage.getVelocityX();
+            double[] velocityY = storage.getVelocityY();
+            double[] velocityZ = storage.getVelocityZ();
+            int stride = this.capacity;
+            long data = MemoryUtil.memAddress(this.particleData);
+            double originX = this.origin.x;
+            double originY = this.origin.y;
+            double originZ = this.origin.z;
+            for (int i = 0; i < count; i++) {
+                int row = from + i;
+                MemoryUtil.memPutFloat(data + (long) i * Float.BYTES, (float) (x[row] - originX));
+                MemoryUtil.memPutFloat(data + (long) (stride + i) * Float.BYTES, (float) (y[row] - originY));
+                MemoryUtil.memPutFloat(data + (long) (stride * 2 + i) * Float.BYTES, (float) (z[row] - originZ));
+                MemoryUtil.memPutFloat(data + (long) (stride * 3 + i) * Float.BYTES, (float) velocityX[row]);
+                MemoryUtil.memPutFloat(data + (long) (stride * 4 + i) * Float.BYTES, (float) velocityY[row]);
+                MemoryUtil.memPutFloat(data + (long) (stride * 5 + i) * Float.BYTES, (float) velocityZ[row]);
+            }
+
+            // The queue is in order, so only the final read has to block
+            this.particleBuffer.writeAsync(0L, this.particleData.limit(stride * 6), null);
+            this.forceBuffer.writeAsync(0L, this.forceData, null);
+            this.kernel.setInt(3, modules.length);
+            this.kernel.setInt(4, stride);
+            this.kernel.setInt(5, count);
+            int workGroupSize = ParticleForceSolver.this.workGroupSize;
+            int globalWorkSize = (count + workGroupSize - 1) / workGroupSize * workGroupSize;
+            this.kernel.execute(globalWorkSize, workGroupSize);
+            this.velocityChangeBuffer.read(0L, this.velocityChange.limit(stride * 3));
+
+            long change = MemoryUtil.memAddress(this.velocityChange);
+            for (int i = 0; i < count; i++) {
+                int row = from + i;
+                velocityX[row] += MemoryUtil.memGetFloat(change + (long) i * Float.BYTES);
+                velocityY[row] += MemoryUtil.memGetFloat(change + (long) (stride + i) * Float.BYTES);
+                velocityZ[row] += MemoryUtil.memGetFloat(change + (long) (stride * 2 + i) * Float.BYTES);
+            }
+            return true;
+        }
+
+        private boolean packForces(ParticleStorage storage, ForceParticleModule[] modules) {
+            if (modules.length > this.forceCapacity) {
+                int newCapacity = Math.max(8, modules.length);
+                this.forceData = this.forceData == null ? MemoryUtil.memAllocFloat(newCapacity * FORCE_SIZE) : MemoryUtil.memRealloc(this.forceData, newCapacity * FORCE_SIZE);
+                this.forceCapacity = newCapacity;
+                if (this.forceBuffer != null) {
+                    this.forceBuffer.free();
+                    this.forceBuffer = null;
+                }
+            }
+
+            FloatBuffer forceData = this.forceData;
+            forceData.clear();
+            for (ForceParticleModule module : modules) {
+                int start = forceData.position();
+                if (module instanceof ConstantForceModule constant) {
+                    Vector3d acceleration = constant.getAcceleration();
+                    float strength = constant.getStrength();
+                    forceData.put(FORCE_CONSTANT)
+                            .put((float) (acceleration.x * strength))
+                            .put((float) (acceleration.y * strength))
+                            .put((float) (acceleration.z * strength));
+                } else if (module instanceof ScaleForceModule scale) {
+                    Vector3d factor = scale.getScale();
+                    float strength = scale.getStrength();
+                    forceData.put(FORCE_SCALE)
+                            .put((float) (1.0 + (factor.x - 1.0) * strength))
+                            .put((float) (1.0 + (factor.y - 1.0) * strength))
+                            .put((float) (1.0 + (factor.z - 1.0) * strength));
+                } else if (module instanceof PointForceModule point) {
+                    this.putPositioned(forceData, storage, FORCE_POINT, point, point.getRange(), point.getStrength());
+                } else if (module instanceof PointAttractorForceModule attractor) {
+                    this.putPositioned(forceData, storage, FORCE_POINT_ATTRACTOR, attractor, attractor.getRange(), attractor.getStrength());
+                    forceData.put(0).put(0).put(0);
+                    forceData.put(!attractor.isStrengthByDistance() ? 0 : attractor.isInvertDistanceModifier() ? ATTRACTOR_INVERTED : ATTRACTOR_BY_DISTANCE);
+                } else if (module instanceof VortexForceModule vortex) {
+                    this.putPositioned(forceData, storage, FORCE_VORTEX, vortex, vortex.getRange(), vortex.getStrength());
+                    Vector3dc axis = vortex.getVortexAxis();
+                    forceData.put((float) axis.x()).put((float) axis.y()).put((float) axis.z());
+                } else {
+                    return false;
+                }
+
+                while (forceData.position() < start + FORCE_SIZE) {
+                    forceData.put(0);
+                }
+            }
+            forceData.flip();
+            return true;
+        }
+
+        private void putPositioned(FloatBuffer forceData, ParticleStorage storage, int type, PositionedForce force, double range, float strength) {
+            Vector3d position = force.getPosition();
+            double x = position.x;
+            double y = position.y;
+            double z = position.z;
+            if (force.isLocalPosition()) {
+                Vector3dc emitterPosition = storage.getEmitter().getPosition();
+                x += emitterPosition.x();
+                y += emitterPosition.y();
+                z += emitterPosition.z();
+            }
+            forceData.put(type)
+                    .put((float) (x - this.origin.x))
+                    .put((float) (y - this.origin.y))
+                    .put((float) (z - this.origin.z))
+                    .put((float) (range * range))
+                    .put(strength);
+        }
+
+        private void ensureCapacity(int count) throws CLException {
+            if (this.forceBuffer == null) {
+                this.forceBuffer = this.kernel.createBuffer(CL_MEM_READ_ONLY, (long) this.forceCapacity * FORCE_SIZE * Float.BYTES);
+                this.kernel.setPointers(2, this.forceBuffer);
+            }
+            if (count <= this.capacity) {
+                return;
+            }
+
+            int newCapacity = Math.max(DEFAULT_CAPACITY, Math.max(count, this.capacity + (this.capacity >> 1)));
+            this.freeParticleBuffers();
+            this.particleData = MemoryUtil.memAllocFloat(newCapacity * 6);
+            this.velocityChange = MemoryUtil.memAllocFloat(newCapacity * 3);
+            this.particleBuffer = this.kernel.createBuffer(CL_MEM_READ_ONLY, (long) newCapacity * 6 * Float.BYTES);
+            this.velocityChangeBuffer = this.kernel.createBuffer(CL_MEM_WRITE_ONLY, (long) newCapacity * 3 * Float.BYTES);
+            this.capacity = newCapacity;
+            this.kernel.setPointers(0, this.particleBuffer);
+            this.kernel.setPointers(1, this.velocityChangeBuffer);
+        }
+
+        private void freeParticleBuffers() {
+            if (this.particleData != null) {
+                MemoryUtil.memFree(this.particleData);
+                MemoryUtil.memFree(this.velocityChange);
+                this.particleData = null;
+                this.velocityChange = null;
+            }
+            if (this.particleBuffer != null) {
+                this.particleBuffer.free();
+                this.velocityChangeBuffer.free();
+                this.particleBuffer = null;
+                this.velocityChangeBuffer = null;
+            }
+            this.capacity = 0;
+        }
+
+        private void free() {
+            this.freeParticleBuffers();
+            if (this.forceData != null) {
+                MemoryUtil.memFree(this.forceData);
+                this.forceData = null;
+                this.forceCapacity = 0;
+            }
+            this.forceBuffer = null;
+            // Freeing the kernel releases every buffer that is still allocated
+            this.kernel.free();
+        }
+    }
+}
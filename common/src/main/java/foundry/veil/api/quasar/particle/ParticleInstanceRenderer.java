@@ -0,0 +1,272 @@
+package foundry.veil.api.quasar.particle;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.BufferBuilder;
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import com.mojang.blaze3d.vertex.Tesselator;
+import com.mojang.blaze3d.vertex.VertexBuffer;
+import com.mojang.blaze3d.vertex.VertexFormat;
+import foundry.veil.api.client.render.VeilRenderSystem;
+import foundry.veil.api.client.render.shader.VeilShaders;
+import foundry.veil.api.client.render.shader.program.ShaderProgram;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.client.renderer.texture.TextureAtlasSprite;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Matrix3f;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import org.joml.Quaternionfc;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.system.NativeResource;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL11C.*;
+import static org.lwjgl.opengl.GL15C.*;
+import static org.lwjgl.opengl.GL20C.glEnableVertexAttribArray;
+import static org.lwjgl.opengl.GL20C.glVertexAttribPointer;
+import static org.lwjgl.opengl.GL30C.glVertexAttribIPointer;
+import static org.lwjgl.opengl.GL33C.glVertexAttribDivisor;
+
+/**
+ * <p>Draws billboard particles with instancing instead of writing four vertices for every particle.</p>
+ * <p>Each particle is packed into a single {@value #INSTANCE_SIZE} byte record holding its position relative to the
+ * camera, size, rotation, color, texture rectangle, and packed light. The records are streamed into a buffer once per
+ * batch and a shared quad is expanded into the particle in the vertex shader.</p>
+ * <p>Only OpenGL 3.3 features are used, so this works on software renderers such as llvmpipe.</p>
+ *
+ * @see RenderStyle#supportsInstancing()
+ */
+public class ParticleInstanceRenderer implements NativeResource {
+
+    public static final int INSTANCE_SIZE = 56;
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private final Matrix4f pose;
+    private final Matrix4f modelView;
+    private final Matrix3f cameraOrientation;
+    private ByteBuffer buffer;
+    private long pointer;
+    private int instances;
+    private int capacity;
+    private ParticleRenderSnapshot.Material material;
+
+    private VertexBuffer vbo;
+    private int instanceVbo;
+    private long instanceVboSize;
+
+    public ParticleInstanceRenderer() {
+        this.pose = new Matrix4f();
+        this.modelView = new Matrix4f();
+        this.cameraOrientation = new Matrix3f();
+        this.buffer = null;
+        this.pointer = 0L;
+        this.instances = 0;
+        this.capacity = 0;
+        this.material = null;
+        this.vbo = null;
+        this.instanceVbo = 0;
+        this.instanceVboSize = 0L;
+    }
+
+    /**
+     * Sets up the instanced attributes of the currently bound vertex array to read records from the currently bound
+     * array buffer. Attribute <code>0</code> is left for the corners of the shared quad.
+     */
+    public static void setupBufferState() {
+        for (int i = 1; i <= 6; i++) {
+            glEnableVertexAttribArray(i);
+            glVertexAttribDivisor(i, 1);
+        }
+
+        glVertexAttribPointer(1, 3, GL_FLOAT, false, INSTANCE_SIZE, 0);
+        glVertexAttribPointer(2, 2, GL_FLOAT, false, INSTANCE_SIZE, 12);
+        glVertexAttribPointer(3, 3, GL_FLOAT, false, INSTANCE_SIZE, 20);
+        glVertexAttribPointer(4, 4, GL_UNSIGNED_BYTE, true, INSTANCE_SIZE, 32);
+        glVertexAttribPointer(5, 4, GL_FLOAT, false, INSTANCE_SIZE, 36);
+        glVertexAttribIPointer(6, 2, GL_SHORT, INSTANCE_SIZE, 52);
+    }
+
+    /**
+     * @return Whether the instanced particle shaders are loaded
+     */
+    public static boolean isSupported() {
+        return VeilRenderSystem.renderer().getShaderManager().getShader(VeilShaders.PARTICLE_INSTANCED) != null;
+    }
+
+    /**
+     * Starts a batch of particles that all use the same material.
+     *
+     * @param material          The material to draw with or <code>null</code> to only pack records
+     * @param pose              The matrix to transform positions by
+     * @param cameraOrientation The rotation that faces the camera
+     */
+    public void begin(@Nullable ParticleRenderSnapshot.Material material, Matrix4fc pose, Quaternionfc cameraOrientation) {
+        this.end();
+        this.material = material;
+        this.pose.set(pose);
+        this.cameraOrientation.set(cameraOrientation);
+        this.instances = 0;
+    }
+
+    /**
+     * Adds a single billboard particle to the current batch.
+     *
+     * @param x          The x position relative to the camera
+     * @param y          The y position relative to the camera
+     * @param z          The z position relative to the camera
+     * @param rightScale The distance from the center to the left and right edges
+     * @param upScale    The distance from the center to the top and bottom edges
+     * @param rotationX  The x rotation applied after facing the camera
+     * @param rotationY  The y rotation applied after facing the camera
+     * @param rotationZ  The z rotation applied after facing the camera
+     * @param u0         The u coordinate of the right edge
+     * @param v0         The v coordinate of the bottom edge
+     * @param u1         The u coordinate of the left edge
+     * @param v1         The v coordinate of the top edge
+     * @param color      The color packed as ARGB
+     * @param light      The packed light coordinates
+     */
+    public void add(float x, float y, float z, float rightScale, float upScale, float rotationX, float rotationY, float rotationZ, float u0, float v0, float u1, float v1, int color, int light) {
+        if (this.instances >= this.capacity) {
+            int newCapacity = Math.max(DEFAULT_CAPACITY, this.capacity + (this.capacity >> 1));
+            this.buffer = this.buffer == null ? MemoryUtil.memAlloc(newCapacity * INSTANCE_SIZE) : MemoryUtil.memRealloc(this.buffer, newCapacity * INSTANCE_SIZE);
+            this.pointer = MemoryUtil.memAddress(this.buffer);
+            this.capacity = newCapacity;
+        }
+
+        // Atlas sprites are applied here since the buffer isn't wrapped like vertices are
+        TextureAtlasSprite atlasSprite = this.material != null ? this.material.atlasSprite() : null;
+        if (atlasSprite != null) {
+            u0 = atlasSprite.getU(u0 * 16.0F);
+            u1 = atlasSprite.getU(u1 * 16.0F);
+            v0 = atlasSprite.getV(v0 * 16.0F);
+            v1 = atlasSprite.getV(v1 * 16.0F);
+        }
+
+        long address = this.pointer + (long) this.instances * INSTANCE_SIZE;
+        MemoryUtil.memPutFloat(address, x);
+        MemoryUtil.memPutFloat(address + 4, y);
+        MemoryUtil.memPutFloat(address + 8, z);
+        MemoryUtil.memPutFloat(address + 12, rightScale);
+        MemoryUtil.memPutFloat(address + 16, upScale);
+        MemoryUtil.memPutFloat(address + 20, rotationX);
+        MemoryUtil.memPutFloat(address + 24, rotationY);
+        MemoryUtil.memPutFloat(address + 28, rotationZ);
+        MemoryUtil.memPutByte(address + 32, (byte) (color >> 16));
+        MemoryUtil.memPutByte(address + 33, (byte) (color >> 8));
+        MemoryUtil.memPutByte(address + 34, (byte) color);
+        MemoryUtil.memPutByte(address + 35, (byte) (color >>> 24));
+        MemoryUtil.memPutFloat(address + 36, u0);
+        MemoryUtil.memPutFloat(address + 40, v0);
+        MemoryUtil.memPutFloat(address + 44, u1);
+        MemoryUtil.memPutFloat(address + 48, v1);
+        MemoryUtil.memPutShort(address + 52, (short) (light & 0xFFFF));
+        MemoryUtil.memPutShort(address + 54, (short) (light >> 16 & 0xFFFF));
+        this.instances++;
+    }
+
+    /**
+     * Draws all particles added since the last call to {@link #begin(ParticleRenderSnapshot.Material, Matrix4fc, Quaternionfc)}.
+     */
+    public void end() {
+        ParticleRenderSnapshot.Material material = this.material;
+        this.material = null;
+        if (material == null || this.instances == 0) {
+            this.instances = 0;
+            return;
+        }
+
+        RenderType renderType = material.renderType();
+        renderType.setupRenderState();
+        ShaderProgram shader = VeilRenderSystem.setShader(material.additive() ? VeilShaders.PARTICLE_INSTANCED_ADD : VeilShaders.PARTICLE_INSTANCED);
+        if (shader != null) {
+            this.draw(shader);
+        }
+        renderType.clearRenderState();
+        this.instances = 0;
+    }
+
+    private void draw(ShaderProgram shader) {
+        if (this.vbo == null) {
+            this.init();
+        }
+
+        shader.setup();
+        shader.setMatrix("ModelViewMat", RenderSystem.getModelViewMatrix().mul(this.pose, this.modelView));
+        shader.setMatrix("ProjMat", RenderSystem.getProjectionMatrix());
+        shader.setMatrix("CameraOrientation", this.cameraOrientation);
+
+        this.vbo.bind();
+        glBindBuffer(GL_ARRAY_BUFFER, this.instanceVbo);
+        long size = (long) this.instances * INSTANCE_SIZE;
+        if (size > this.instanceVboSize) {
+            this.instanceVboSize = Math.max(size, this.instanceVboSize * 2);
+        }
+        // Orphan the old storage so the driver doesn't have to wait for the last batch to finish drawing
+        nglBufferData(GL_ARRAY_BUFFER, this.instanceVboSize, 0L, GL_STREAM_DRAW);
+        nglBufferSubData(GL_ARRAY_BUFFER, 0L, size, this.pointer);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        VeilRenderSystem.drawInstanced(this.vbo, this.instances);
+        VertexBuffer.unbind();
+        ShaderProgram.unbind();
+    }
+
+    private void init() {
+        Tesselator tesselator = RenderSystem.renderThreadTesselator();
+        BufferBuilder builder = tesselator.getBuilder();
+        builder.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION);
+        // Same corner order as the vertices written by RenderStyle.Billboard
+        builder.vertex(1.0, -1.0, 0.0).endVertex();
+        builder.vertex(-1.0, -1.0, 0.0).endVertex();
+        builder.vertex(-1.0, 1.0, 0.0).endVertex();
+        builder.vertex(1.0, 1.0, 0.0).endVertex();
+
+        this.vbo = new VertexBuffer(VertexBuffer.Usage.STATIC);
+        this.vbo.bind();
+        this.vbo.upload(builder.end());
+
+        this.instanceVbo = glGenBuffers();
+        this.instanceVboSize = (long) DEFAULT_CAPACITY * INSTANCE_SIZE;
+        glBindBuffer(GL_ARRAY_BUFFER, this.instanceVbo);
+        glBufferData(GL_ARRAY_BUFFER, this.instanceVboSize, GL_STREAM_DRAW);
+        setupBufferState();
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        VertexBuffer.unbind();
+    }
+
+    /**
+     * @return A view of all records added to the current batch
+     */
+    public ByteBuffer getInstanceBuffer() {
+        return this.buffer == null ? ByteBuffer.allocateDirect(0) : MemoryUtil.memByteBuffer(this.pointer, this.instances * INSTANCE_SIZE);
+    }
+
+    /**
+     * @return The number of particles in the current batch
+     */
+    public int getInstanceCount() {
+        return this.instances;
+    }
+
+    @Override
+    public void free() {
+        this.material = null;
+        this.instances = 0;
+        if (this.buffer != null) {
+            MemoryUtil.memFree(this.buffer);
+            this.buffer = null;
+            this.pointer = 0L;
+            this.capacity = 0;
+        }
+        if (this.vbo != null) {
+            this.vbo.close();
+            this.vbo = null;
+            glDeleteBuffers(this.instanceVbo);
+            this.instanceVbo = 0;
+            this.instanceVboSize = 0L;
+        }
+    }
+}
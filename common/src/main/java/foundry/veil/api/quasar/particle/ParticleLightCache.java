@@ -0,0 +1,112 @@
+package foundry.veil.api.quasar.particle;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.client.renderer.LevelRenderer;
+import net.minecraft.core.BlockPos;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.BlockAndTintGetter;
+
+/**
+ * <p>Caches the packed light color of block positions for the duration of a single tick.</p>
+ * <p>Most particles of an emitter are inside the same few blocks, so this avoids reading the light engine for every particle.
+ * A cache is only ever written by a single thread. Caches filled with {@link #prefetch} before an asynchronous tick are
+ * only read by the workers through {@link #getCachedLightColor}.</p>
+ */
+public class ParticleLightCache {
+
+    /**
+     * The light color returned for positions that were never read. Packed light is never negative.
+     */
+    static final int MISSING_LIGHT = -1;
+    private static final int MAX_SIZE = 4096;
+
+    private final Long2IntOpenHashMap lightColors;
+    private final BlockPos.MutableBlockPos pos;
+    private int generation;
+
+    public ParticleLightCache() {
+        this.lightColors = new Long2IntOpenHashMap();
+        this.lightColors.defaultReturnValue(MISSING_LIGHT);
+        this.pos = new BlockPos.MutableBlockPos();
+        this.generation = -1;
+    }
+
+    /**
+     * Clears all cached values if the specified generation is different from the last time this was called.
+     *
+     * @param generation The current tick generation
+     */
+    void validate(int generation) {
+        if (this.generation != generation) {
+            this.generation = generation;
+            this.lightColors.clear();
+        }
+    }
+
+    /**
+     * Retrieves the light color at the specified position, reading it from the level if it hasn't been cached yet.
+     *
+     * @param level The level to read light from
+     * @param x     The x position
+     * @param y     The y position
+     * @param z     The z position
+     * @return The packed light color
+     */
+    public int getLightColor(BlockAndTintGetter level, double x, double y, double z) {
+        int blockX = Mth.floor(x);
+        int blockY = Mth.floor(y);
+        int blockZ = Mth.floor(z);
+        long key = BlockPos.asLong(blockX, blockY, blockZ);
+
+        int lightColor = this.lightColors.get(key);
+        if (lightColor != MISSING_LIGHT) {
+            return lightColor;
+        }
+
+        if (this.lightColors.size() >= MAX_SIZE) {
+            this.lightColors.clear();
+        }
+        lightColor = LevelRenderer.getLightColor(level, this.pos.set(blockX, blockY, blockZ));
+        this.lightColors.put(key, lightColor);
+        return lightColor;
+    }
+
+    /**
+     * Reads the light color at the specified position into this cache without ever evicting previously read positions.
+     *
+     * @param level The level to read light from
+     * @param x     The x position
+     * @param y     The y position
+     * @param z     The z position
+     */
+    void prefetch(BlockAndTintGetter level, double x, double y, double z) {
+        int blockX = Mth.floor(x);
+        int blockY = Mth.floor(y);
+        int blockZ = Mth.floor(z);
+        long key = BlockPos.asLong(blockX, blockY, blockZ);
+        if (!this.lightColors.containsKey(key)) {
+            this.lightColors.put(key, LevelRenderer.getLightColor(level, this.pos.set(blockX, blockY, blockZ)));
+        }
+    }
+
+    /**
+     * Retrieves the light color at the specified position without reading the level.
+     *
+     * @param x        The x position
+     * @param y        The y position
+     * @param z        The z position
+     * @param fallback The light color to use if the position was never read
+     * @return The packed light color
+     */
+    public int getCachedLightColor(double x, double y, double z, int fallback) {
+        int lightColor = this.lightColors.get(BlockPos.asLong(Mth.floor(x), Mth.floor(y), Mth.floor(z)));
+        return lightColor != MISSING_LIGHT ? lightColor : fallback;
+    }
+
+    /**
+     * @return The number of positions currently cached
+     */
+    public int size() {
+        return this.lightColors.size();
+    }
+}
@@ -0,0 +1,193 @@
+package foundry.veil.api.quasar.particle;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.util.Mth;
+import org.jetbrains.annotations.ApiStatus;
+import org.joml.Vector3d;
+
+import java.util.Arrays;
+
+/**
+ * <p>Merges the lights of all particles in an emitter captured during one tick into a small number of clusters.</p>
+ * <p>Lights are grouped by the grid cell they fall into. Each cluster is weighted by the intensity of the lights in it,
+ * so its position and color lean towards the brightest particles and its brightness is the sum of all of them. The
+ * radius grows with how far the lights are spread from the center of the cluster.</p>
+ *
+ * @see ParticleLightPool
+ */
+public class ParticleLightClusters {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final Long2IntMap cells;
+    private float[] cellSize;
+    private double[] weight;
+    private double[] x;
+    private double[] y;
+    private double[] z;
+    private double[] distanceSq;
+    private double[] red;
+    private double[] green;
+    private double[] blue;
+    private double[] radius;
+    private int size;
+
+    public ParticleLightClusters() {
+        this.cells = new Long2IntOpenHashMap();
+        this.cells.defaultReturnValue(-1);
+        this.allocate(0);
+        this.size = 0;
+    }
+
+    private void allocate(int capacity) {
+        this.cellSize = new float[capacity];
+        this.weight = new double[capacity];
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.z = new double[capacity];
+        this.distanceSq = new double[capacity];
+        this.red = new double[capacity];
+        this.green = new double[capacity];
+        this.blue = new double[capacity];
+        this.radius = new double[capacity];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.weight.length) {
+            return;
+        }
+
+        int size = Math.max(DEFAULT_CAPACITY, Math.max(capacity, this.weight.length * 2));
+        this.cellSize = Arrays.copyOf(this.cellSize, size);
+        this.weight = Arrays.copyOf(this.weight, size);
+        this.x = Arrays.copyOf(this.x, size);
+        this.y = Arrays.copyOf(this.y, size);
+        this.z = Arrays.copyOf(this.z, size);
+        this.distanceSq = Arrays.copyOf(this.distanceSq, size);
+        this.red = Arrays.copyOf(this.red, size);
+        this.green = Arrays.copyOf(this.green, size);
+        this.blue = Arrays.copyOf(this.blue, size);
+        this.radius = Arrays.copyOf(this.radius, size);
+    }
+
+    /**
+     * Removes all clusters.
+     */
+    @ApiStatus.Internal
+    public void clear() {
+        this.cells.clear();
+        this.size = 0;
+    }
+
+    /**
+     * Adds the light of a particle to the cluster of the cell it is in.
+     *
+     * @param x          The x position of the light
+     * @param y          The y position of the light
+     * @param z          The z position of the light
+     * @param red        The red color of the light
+     * @param green      The green color of the light
+     * @param blue       The blue color of the light
+     * @param brightness The intensity of the light
+     * @param radius     The radius of the light
+     * @param cellSize   The size of the cells to merge lights in or <code>0</code> to give this light its own cluster
+     */
+    public void add(double x, double y, double z, float red, float green, float blue, float brightness, float radius, float cellSize) {
+        if (!(brightness > 0)) {
+            return;
+        }
+
+        int index = -1;
+        long cell = 0;
+        if (cellSize > 0) {
+            cell = BlockPos.asLong(Mth.floor(x / cellSize), Mth.floor(y / cellSize), Mth.floor(z / cellSize));
+            index = this.cells.get(cell);
+            // Lights with a different cell size can't be merged even if their cells happen to have the same index
+            if (index != -1 && this.cellSize[index] != cellSize) {
+                index = -1;
+            }
+        }
+
+        if (index == -1) {
+            index = this.size++;
+            this.ensureCapacity(this.size);
+            this.cellSize[index] = cellSize;
+            this.weight[index] = 0;
+            this.x[index] = 0;
+            this.y[index] = 0;
+            this.z[index] = 0;
+            this.distanceSq[index] = 0;
+            this.red[index] = 0;
+            this.green[index] = 0;
+            this.blue[index] = 0;
+            this.radius[index] = 0;
+            if (cellSize > 0) {
+                this.cells.putIfAbsent(cell, index);
+            }
+        }
+
+        this.weight[index] += brightness;
+        this.x[index] += x * brightness;
+        this.y[index] += y * brightness;
+        this.z[index] += z * brightness;
+        this.distanceSq[index] += (x * x + y * y + z * z) * brightness;
+        this.red[index] += red * brightness;
+        this.green[index] += green * brightness;
+        this.blue[index] += blue * brightness;
+        this.radius[index] += radius * brightness;
+    }
+
+    /**
+     * Calculates the intensity weighted center of a cluster.
+     *
+     * @param index  The index of the cluster
+     * @param result The vector to store the position in
+     * @return The result vector
+     */
+    public Vector3d getPosition(int index, Vector3d result) {
+        double weight = this.weight[index];
+        return result.set(this.x[index] / weight, this.y[index] / weight, this.z[index] / weight);
+    }
+
+    public float getRed(int index) {
+        return (float) (this.red[index] / this.weight[index]);
+    }
+
+    public float getGreen(int index) {
+        return (float) (this.green[index] / this.weight[index]);
+    }
+
+    public float getBlue(int index) {
+        return (float) (this.blue[index] / this.weight[index]);
+    }
+
+    /**
+     * @param index The index of the cluster
+     * @return The combined intensity of every light in the cluster
+     */
+    public float getBrightness(int index) {
+        return (float) this.weight[index];
+    }
+
+    /**
+     * @param index The index of the cluster
+     * @return The weighted radius of the lights in the cluster, extended by how far they are spread out
+     */
+    public float getRadius(int index) {
+        double weight = this.weight[index];
+        double centerX = this.x[index] / weight;
+        double centerY = this.y[index] / weight;
+        double centerZ = this.z[index] / weight;
+        double spread = this.distanceSq[index] / weight - (centerX * centerX + centerY * centerY + centerZ * centerZ);
+        return (float) (this.radius[index] / weight + Math.sqrt(Math.max(0, spread)));
+    }
+
+    /**
+     * @return The number of clusters
+     */
+    public int size() {
+        return this.size;
+    }
+}
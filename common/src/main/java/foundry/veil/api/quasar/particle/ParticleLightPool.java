@@ -0,0 +1,159 @@
+package foundry.veil.api.quasar.particle;
+
+import foundry.veil.api.client.render.VeilRenderSystem;
+import foundry.veil.api.client.render.deferred.VeilDeferredRenderer;
+import foundry.veil.api.client.render.deferred.light.PointLight;
+import foundry.veil.api.client.render.deferred.light.renderer.LightRenderer;
+import org.jetbrains.annotations.ApiStatus;
+import org.joml.Vector3d;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>A bounded set of point lights shared by the pooled light clusters of every emitter.</p>
+ * <p>Lights are added to the light renderer once and then reused every tick. Removing any light makes the renderer
+ * upload every light again, so lights that aren't needed are turned off instead and only removed after they have been
+ * unused for a while. Clusters past {@link #getMaxLights()} are dropped.</p>
+ *
+ * @see ParticleLightClusters
+ */
+public class ParticleLightPool {
+
+    public static final int DEFAULT_MAX_LIGHTS = 256;
+    private static final int RELEASE_DELAY = 100;
+
+    private final List<PointLight> lights;
+    private final Vector3d position;
+    private int maxLights;
+    private int activeLights;
+    private int idleTicks;
+
+    public ParticleLightPool() {
+        this.lights = new ArrayList<>();
+        this.position = new Vector3d();
+        this.maxLights = DEFAULT_MAX_LIGHTS;
+        this.activeLights = 0;
+        this.idleTicks = 0;
+    }
+
+    /**
+     * Moves the pooled lights to the clusters published by the specified emitters. This must be called on the render thread.
+     *
+     * @param emitters The emitters to light
+     */
+    @ApiStatus.Internal
+    public void update(List<ParticleEmitter> emitters) {
+        boolean empty = true;
+        for (ParticleEmitter emitter : emitters) {
+            if (emitter.getRenderSnapshot().getLightClusters().size() > 0) {
+                empty = false;
+                break;
+            }
+        }
+        if (empty && this.lights.isEmpty()) {
+            return;
+        }
+
+        VeilDeferredRenderer deferredRenderer = VeilRenderSystem.renderer().getDeferredRenderer();
+        if (!deferredRenderer.isEnabled()) {
+            this.free();
+            return;
+        }
+
+        LightRenderer lightRenderer = deferredRenderer.getLightRenderer();
+        Vector3d position = this.position;
+        int used = 0;
+        for (ParticleEmitter emitter : emitters) {
+            // Frozen emitters keep their snapshot, but shouldn't light anything while asleep
+            if (emitter.isSleeping()) {
+                continue;
+            }
+
+            ParticleLightClusters clusters = emitter.getRenderSnapshot().getLightClusters();
+            for (int i = 0; i < clusters.size() && used < this.maxLights; i++) {
+                PointLight light;
+                if (used < this.lights.size()) {
+                    light = this.lights.get(used);
+                } else {
+                    light = new PointLight();
+                    this.lights.add(light);
+                    lightRenderer.addLight(light);
+                }
+
+                clusters.getPosition(i, position);
+                light.setPosition(position.x, position.y, position.z)
+                        .setColor(clusters.getRed(i), clusters.getGreen(i), clusters.getBlue(i))
+                        .setBrightness(clusters.getBrightness(i))
+                        .setRadius(clusters.getRadius(i));
+                used++;
+            }
+        }
+
+        // Only lights that were on last tick have to be turned off
+        for (int i = used; i < this.activeLights; i++) {
+            this.lights.get(i).setBrightness(0.0F).setRadius(0.0F);
+        }
+        this.activeLights = used;
+
+        if (used >= this.lights.size()) {
+            this.idleTicks = 0;
+        } else if (++this.idleTicks >= RELEASE_DELAY) {
+            this.idleTicks = 0;
+            for (int i = this.lights.size() - 1; i >= used; i--) {
+                lightRenderer.removeLight(this.lights.remove(i));
+            }
+        }
+    }
+
+    /**
+     * Removes all pooled lights from the light renderer.
+     */
+    @ApiStatus.Internal
+    public void free() {
+        if (this.lights.isEmpty()) {
+            return;
+        }
+
+        VeilDeferredRenderer deferredRenderer = VeilRenderSystem.renderer().getDeferredRenderer();
+        if (deferredRenderer.isEnabled()) {
+            LightRenderer lightRenderer = deferredRenderer.getLightRenderer();
+            for (PointLight light : this.lights) {
+                lightRenderer.removeLight(light);
+            }
+        }
+        this.lights.clear();
+        this.activeLights = 0;
+        this.idleTicks = 0;
+    }
+
+    /**
+     * @return The maximum number of lights particles can use at once
+     */
+    public int getMaxLights() {
+        return this.maxLights;
+    }
+
+    /**
+     * @return The number of lights currently lighting particle clusters
+     */
+    public int getActiveLights() {
+        return this.activeLights;
+    }
+
+    /**
+     * @return The number of lights currently added to the light renderer, including lights that are turned off
+     */
+    public int getPooledLights() {
+        return this.lights.size();
+    }
+
+    /**
+     * Sets the maximum number of lights particles can use at once.
+     *
+     * @param maxLights The new limit
+     */
+    public void setMaxLights(int maxLights) {
+        this.maxLights = Math.max(0, maxLights);
+    }
+}
@@ -0,0 +1,271 @@
+package foundry.veil.api.quasar.particle;
+
+import foundry.veil.api.quasar.data.module.ParticleModuleData;
+import foundry.veil.api.quasar.emitters.module.BulkForceParticleModule;
+import foundry.veil.api.quasar.emitters.module.BulkUpdateParticleModule;
+import foundry.veil.api.quasar.emitters.module.CollisionParticleModule;
+import foundry.veil.api.quasar.emitters.module.ForceParticleModule;
+import foundry.veil.api.quasar.emitters.module.ParticleModule;
+import foundry.veil.api.quasar.emitters.module.StatelessParticleModule;
+import foundry.veil.api.quasar.emitters.module.UpdateParticleModule;
+import foundry.veil.api.quasar.emitters.module.update.FaceVelocityModule;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * <p>A precompiled description of the modules every particle of an emitter receives.</p>
+ * <p>Modules implementing {@link StatelessParticleModule} are created once when the plan is compiled and shared by every
+ * particle. Module data that creates any stateful module is run again for each particle, so only those modules are
+ * allocated when spawning.</p>
+ * <p>Shared modules never write to their fields while particles are ticked, so the particles of an emitter can be
+ * ticked on any thread. A plan is still only used by one emitter at a time, since setters like
+ * {@link foundry.veil.api.quasar.emitters.module.ForceParticleModule#setStrength(float)} configure the shared instance
+ * for the emitter that owns it.</p>
+ */
+public class ParticleModulePlan {
+
+    private static final LongAdder COMPILED_PLANS = new LongAdder();
+    private static final LongAdder CREATED_MODULE_SETS = new LongAdder();
+    private static final LongAdder CREATED_MODULES = new LongAdder();
+    private static final LongAdder SHARED_MODULES = new LongAdder();
+
+    private final ParticleModule[] sharedModules;
+    private final ParticleModuleData[] statefulData;
+    private final ParticleModuleSet bulkModules;
+    private final ParticleModuleSet template;
+    private final ParticleModuleSet packedTemplate;
+    private final UpdateParticleModule[][] updateRuns;
+    private final ForceParticleModule[][] forceRuns;
+    private final boolean readsLevel;
+
+    private ParticleModulePlan(ParticleModule[] sharedModules, ParticleModuleData[] statefulData, ParticleModuleSet bulkModules, List<ParticleModule> order, boolean readsLevel) {
+        this.sharedModules = sharedModules;
+        this.statefulData = statefulData;
+        this.bulkModules = bulkModules;
+        this.updateRuns = createRuns(order, UpdateParticleModule.class, BulkUpdateParticleModule.class).toArray(UpdateParticleModule[][]::new);
+        this.forceRuns = createRuns(order, ForceParticleModule.class, BulkForceParticleModule.class).toArray(ForceParticleModule[][]::new);
+        this.readsLevel = readsLevel;
+        if (this.statefulData.length == 0) {
+            this.template = this.createTemplate(module -> true);
+            this.packedTemplate = this.createTemplate(ParticleModulePlan::isNotBulkModule);
+        } else {
+            this.template = null;
+            this.packedTemplate = null;
+        }
+    }
+
+    private ParticleModuleSet createTemplate(Predicate<ParticleModule> filter) {
+        ParticleModuleSet.Builder builder = ParticleModuleSet.builder(filter);
+        builder.addModules(this.sharedModules);
+        return builder.build();
+    }
+
+    /**
+     * Splits modules of the specified type into runs that are either all bulk or all run per-particle. Bulk modules
+     * that can't be run in bulk as the specified type are never run by packed particles, so they are left out.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends ParticleModule> List<T[]> createRuns(List<ParticleModule> order, Class<T> type, Class<? extends T> bulkType) {
+        List<T[]> runs = new ArrayList<>();
+        List<T> run = new ArrayList<>();
+        boolean bulk = false;
+        for (ParticleModule module : order) {
+            if (!type.isInstance(module) || (isBulkModule(module) && !bulkType.isInstance(module))) {
+                continue;
+            }
+            if (isBulkModule(module) != bulk && !run.isEmpty()) {
+                runs.add(run.toArray(size -> (T[]) Array.newInstance(type, size)));
+                run.clear();
+            }
+            bulk = isBulkModule(module);
+            run.add(type.cast(module));
+        }
+        if (!run.isEmpty()) {
+            runs.add(run.toArray(size -> (T[]) Array.newInstance(type, size)));
+        }
+        return runs;
+    }
+
+    static boolean isBulkModule(ParticleModule module) {
+        return module instanceof BulkUpdateParticleModule || module instanceof BulkForceParticleModule;
+    }
+
+    private static boolean isNotBulkModule(ParticleModule module) {
+        return !isBulkModule(module);
+    }
+
+    /**
+     * Compiles a new plan from the specified module data.
+     *
+     * @param modules      The module data to create modules from
+     * @param faceVelocity Whether particles should face their velocity
+     * @return A new plan
+     */
+    public static ParticleModulePlan compile(Collection<ParticleModuleData> modules, boolean faceVelocity) {
+        List<ParticleModule> shared = new ArrayList<>();
+        List<ParticleModuleData> stateful = new ArrayList<>();
+        ParticleModuleSet.Builder bulk = ParticleModuleSet.builder(ParticleModulePlan::isBulkModule);
+        List<ParticleModule> statefulModules = new ArrayList<>();
+        boolean readsLevel = false;
+
+        for (ParticleModuleData data : modules) {
+            ParticleModuleSet.Builder builder = ParticleModuleSet.builder();
+            data.addModules(builder);
+            CREATED_MODULES.add(builder.size());
+            readsLevel |= data.readsLevel();
+
+            List<ParticleModule> created = builder.getModules();
+            boolean stateless = true;
+            for (ParticleModule module : created) {
+                if (module instanceof CollisionParticleModule) {
+                    readsLevel = true;
+                }
+                if (!(module instanceof StatelessParticleModule)) {
+                    stateless = false;
+                }
+            }
+
+            if (stateless) {
+                shared.addAll(created);
+            } else {
+                stateful.add(data);
+                statefulModules.addAll(created);
+                // Bulk modules are shared even if the rest of the data has to be created per-particle
+                for (ParticleModule module : created) {
+                    bulk.addModule(module);
+                }
+            }
+        }
+        if (faceVelocity) {
+            FaceVelocityModule module = new FaceVelocityModule();
+            CREATED_MODULES.increment();
+            shared.add(module);
+        }
+
+        for (ParticleModule module : shared) {
+            bulk.addModule(module);
+        }
+
+        // Particles stored as objects run shared modules first and then the ones created for them
+        List<ParticleModule> order = new ArrayList<>(shared);
+        order.addAll(statefulModules);
+
+        COMPILED_PLANS.increment();
+        return new ParticleModulePlan(shared.toArray(ParticleModule[]::new), stateful.toArray(ParticleModuleData[]::new), bulk.build(), order, readsLevel);
+    }
+
+    /**
+     * Creates the module set for a new particle.
+     *
+     * @param packed Whether the particle is stored in {@link ParticleStorage}.
+     *               Packed particles don't receive bulk modules since they are run from {@link #getBulkModules()} instead
+     * @return A new module set
+     */
+    public ParticleModuleSet createModules(boolean packed) {
+        CREATED_MODULE_SETS.increment();
+        SHARED_MODULES.add(this.sharedModules.length);
+        ParticleModuleSet template = packed ? this.packedTemplate : this.template;
+        if (template != null) {
+            return template.copy();
+        }
+
+        ParticleModuleSet.Builder builder = packed ? ParticleModuleSet.builder(ParticleModulePlan::isNotBulkModule) : ParticleModuleSet.builder();
+        builder.addModules(this.sharedModules);
+        int shared = builder.size();
+        for (ParticleModuleData data : this.statefulData) {
+            data.addModules(builder);
+        }
+        CREATED_MODULES.add(builder.size() - shared);
+        return builder.build();
+    }
+
+    /**
+     * @return The modules shared by every particle
+     */
+    public ParticleModule[] getSharedModules() {
+        return this.sharedModules;
+    }
+
+    /**
+     * @return The bulk modules to run over the emitter's packed storage. These are always shared
+     */
+    public ParticleModuleSet getBulkModules() {
+        return this.bulkModules;
+    }
+
+    /**
+     * <p>Retrieves the update modules in the order particles stored as objects run them, split into runs that are either
+     * all {@link BulkUpdateParticleModule bulk modules} or all run per-particle.</p>
+     * <p>Per-particle runs only hold the modules created while compiling. Packed particles run their own copy of each
+     * run, which is the next range of their own update modules since bulk modules are left out of their module set.</p>
+     *
+     * @return The update module runs of packed particles
+     */
+    public UpdateParticleModule[][] getUpdateRuns() {
+        return this.updateRuns;
+    }
+
+    /**
+     * @return The force module runs of packed particles in the same order as {@link #getUpdateRuns()}
+     */
+    public ForceParticleModule[][] getForceRuns() {
+        return this.forceRuns;
+    }
+
+    /**
+     * @return Whether every particle shares the exact same modules and nothing is allocated per-particle
+     */
+    public boolean isFullyShared() {
+        return this.template != null;
+    }
+
+    /**
+     * @return Whether particles collide with or read blocks from the level while ticking
+     */
+    public boolean readsLevel() {
+        return this.readsLevel;
+    }
+
+    /**
+     * @return The total number of plans compiled
+     */
+    public static long getCompiledPlans() {
+        return COMPILED_PLANS.sum();
+    }
+
+    /**
+     * @return The total number of module sets created for particles
+     */
+    public static long getCreatedModuleSets() {
+        return CREATED_MODULE_SETS.sum();
+    }
+
+    /**
+     * @return The total number of module instances allocated, including those created while compiling plans
+     */
+    public static long getCreatedModules() {
+        return CREATED_MODULES.sum();
+    }
+
+    /**
+     * @return The total number of times a shared module was given to a particle instead of being allocated
+     */
+    public static long getSharedModuleReuses() {
+        return SHARED_MODULES.sum();
+    }
+
+    /**
+     * Resets all allocation counters back to zero.
+     */
+    public static void resetCounters() {
+        COMPILED_PLANS.reset();
+        CREATED_MODULE_SETS.reset();
+        CREATED_MODULES.reset();
+        SHARED_MODULES.reset();
+    }
+}
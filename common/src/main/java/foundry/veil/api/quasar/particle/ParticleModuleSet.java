@@ -2,9 +2,10 @@ package foundry.veil.api.quasar.particle;
 
 import foundry.veil.api.quasar.emitters.module.*;
 
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Set;
+import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * @author Ocelot
@@ -68,6 +69,13 @@ public class ParticleModuleSet {
         return this.renderModules;
     }
 
+    /**
+     * @return Whether any render modules were enabled during the last call to {@link #updateEnabled()}
+     */
+    public boolean hasEnabledRenderModules() {
+        return this.enabledRenderModulesSize > 0;
+    }
+
     public Iterator<RenderParticleModule> getEnabledRenderModules() {
         return new Iterator<>() {
             private int cursor;
@@ -88,52 +96,113 @@ public class ParticleModuleSet {
         return new Builder();
     }
 
+    /**
+     * Creates a builder that silently ignores all modules not matching the specified filter.
+     *
+     * @param filter The filter for modules to add
+     * @return A new builder
+     */
+    public static Builder builder(Predicate<ParticleModule> filter) {
+        return new Builder(filter);
+    }
+
     public static class Builder {
 
-        private final Set<ParticleModule> modules;
-        private final Set<InitParticleModule> initModules;
-        private final Set<UpdateParticleModule> updateModules;
-        private final Set<ForceParticleModule> forceModules;
-        private final Set<CollisionParticleModule> collisionModules;
-        private final Set<RenderParticleModule> renderModules;
+        private final List<ParticleModule> modules;
+        private final Predicate<ParticleModule> filter;
+        private int initModules;
+        private int updateModules;
+        private int forceModules;
+        private int collisionModules;
+        private int renderModules;
 
         public Builder() {
-            this.modules = new HashSet<>();
-            this.initModules = new HashSet<>();
-            this.updateModules = new HashSet<>();
-            this.forceModules = new HashSet<>();
-            this.collisionModules = new HashSet<>();
-            this.renderModules = new HashSet<>();
+            this(module -> true);
+        }
+
+        public Builder(Predicate<ParticleModule> filter) {
+            this.modules = new ArrayList<>();
+            this.filter = filter;
         }
 
         public void addModule(ParticleModule module) {
-            if (!this.modules.add(module)) {
+            if (!this.filter.test(module)) {
+                return;
+            }
+            // There are only ever a handful of modules, so a linear scan is cheaper than hashing
+            if (this.modules.contains(module)) {
                 throw new IllegalArgumentException("Duplicate module: " + module.getClass());
             }
-            if (module instanceof InitParticleModule initModule) {
-                this.initModules.add(initModule);
+            this.modules.add(module);
+            if (module instanceof InitParticleModule) {
+                this.initModules++;
             }
-            if (module instanceof UpdateParticleModule updateModule) {
-                this.updateModules.add(updateModule);
+            if (module instanceof UpdateParticleModule) {
+                this.updateModules++;
             }
-            if (module instanceof ForceParticleModule forceModule) {
-                this.forceModules.add(forceModule);
+            if (module instanceof ForceParticleModule) {
+                this.forceModules++;
             }
-            if (module instanceof CollisionParticleModule collisionModule) {
-                this.collisionModules.add(collisionModule);
+            if (module instanceof CollisionParticleModule) {
+                this.collisionModules++;
             }
-            if (module instanceof RenderParticleModule renderModule) {
-                this.renderModules.add(renderModule);
+            if (module instanceof RenderParticleModule) {
+                this.renderModules++;
             }
         }
 
+        /**
+         * Adds all modules in the specified array.
+         *
+         * @param modules The modules to add
+         */
+        public void addModules(ParticleModule... modules) {
+            for (ParticleModule module : modules) {
+                this.addModule(module);
+            }
+        }
+
+        /**
+         * @return The number of modules added so far
+         */
+        public int size() {
+            return this.modules.size();
+        }
+
+        List<ParticleModule> getModules() {
+            return this.modules;
+        }
+
         public ParticleModuleSet build() {
             ParticleModule[] modules = this.modules.toArray(ParticleModule[]::new);
-            InitParticleModule[] initModules = this.initModules.toArray(InitParticleModule[]::new);
-            UpdateParticleModule[] updateModules = this.updateModules.toArray(UpdateParticleModule[]::new);
-            ForceParticleModule[] forceModules = this.forceModules.toArray(ForceParticleModule[]::new);
-            CollisionParticleModule[] collisionModules = this.collisionModules.toArray(CollisionParticleModule[]::new);
-            RenderParticleModule[] renderModules = this.renderModules.toArray(RenderParticleModule[]::new);
+            InitParticleModule[] initModules = new InitParticleModule[this.initModules];
+            UpdateParticleModule[] updateModules = new UpdateParticleModule[this.updateModules];
+            ForceParticleModule[] forceModules = new ForceParticleModule[this.forceModules];
+            CollisionParticleModule[] collisionModules = new CollisionParticleModule[this.collisionModules];
+            RenderParticleModule[] renderModules = new RenderParticleModule[this.renderModules];
+
+            int init = 0;
+            int update = 0;
+            int force = 0;
+            int collision = 0;
+            int render = 0;
+            for (ParticleModule module : modules) {
+                if (module instanceof InitParticleModule initModule) {
+                    initModules[init++] = initModule;
+                }
+                if (module instanceof UpdateParticleModule updateModule) {
+                    updateModules[update++] = updateModule;
+                }
+                if (module instanceof ForceParticleModule forceModule) {
+                    forceModules[force++] = forceModule;
+                }
+                if (module instanceof CollisionParticleModule collisionModule) {
+                    collisionModules[collision++] = collisionModule;
+                }
+                if (module instanceof RenderParticleModule renderModule) {
+                    renderModules[render++] = renderModule;
+                }
+            }
             return new ParticleModuleSet(modules, initModules, updateModules, forceModules, collisionModules, renderModules);
         }
     }
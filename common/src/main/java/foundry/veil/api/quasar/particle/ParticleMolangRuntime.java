@@ -0,0 +1,144 @@
+package foundry.veil.api.quasar.particle;
+
+import gg.moonflower.molangcompiler.api.MolangEnvironment;
+import gg.moonflower.molangcompiler.api.MolangExpression;
+import gg.moonflower.molangcompiler.api.MolangRuntime;
+import org.joml.Vector3dc;
+import org.joml.Vector3fc;
+
+import java.util.Arrays;
+
+/**
+ * <p>A MoLang environment shared by every particle of an emitter.</p>
+ * <p>Particle queries read from primitive slots that are rebound to a single particle before evaluating an expression,
+ * so particles never need to allocate their own environment. The bound particle is only valid until the next call to
+ * one of the <code>bind</code> methods.</p>
+ */
+public class ParticleMolangRuntime {
+
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int Z = 2;
+    private static final int VELOCITY_X = 3;
+    private static final int VELOCITY_Y = 4;
+    private static final int VELOCITY_Z = 5;
+    private static final int ROTATION_X = 6;
+    private static final int ROTATION_Y = 7;
+    private static final int ROTATION_Z = 8;
+    private static final int SCALE = 9;
+    private static final int AGE = 10;
+    private static final int AGE_PERCENT = 11;
+    private static final int LIFETIME = 12;
+    private static final int SLOT_COUNT = 13;
+
+    private final float[] slots;
+    private final MolangRuntime runtime;
+
+    public ParticleMolangRuntime() {
+        this.slots = new float[SLOT_COUNT];
+        this.runtime = MolangRuntime.runtime()
+                .setQuery("x", this.slot(X))
+                .setQuery("y", this.slot(Y))
+                .setQuery("z", this.slot(Z))
+                .setQuery("velX", this.slot(VELOCITY_X))
+                .setQuery("velY", this.slot(VELOCITY_Y))
+                .setQuery("velZ", this.slot(VELOCITY_Z))
+                .setQuery("speedSq", MolangExpression.of(this::getSpeedSquared))
+                .setQuery("speed", MolangExpression.of(() -> (float) Math.sqrt(this.getSpeedSquared())))
+                .setQuery("xRot", this.slot(ROTATION_X))
+                .setQuery("yRot", this.slot(ROTATION_Y))
+                .setQuery("zRot", this.slot(ROTATION_Z))
+                .setQuery("scale", this.slot(SCALE))
+                .setQuery("age", this.slot(AGE))
+                .setQuery("agePercent", this.slot(AGE_PERCENT))
+                .setQuery("lifetime", this.slot(LIFETIME))
+                .create();
+    }
+
+    private MolangExpression slot(int index) {
+        return MolangExpression.of(() -> this.slots[index]);
+    }
+
+    private float getSpeedSquared() {
+        float x = this.slots[VELOCITY_X];
+        float y = this.slots[VELOCITY_Y];
+        float z = this.slots[VELOCITY_Z];
+        return x * x + y * y + z * z;
+    }
+
+    /**
+     * Binds the queries to the render state of the specified particle.
+     *
+     * @param particle The particle to read values from
+     * @return The environment to evaluate expressions in
+     */
+    public MolangEnvironment bind(QuasarParticle particle) {
+        RenderData renderData = particle.getRenderData();
+        Vector3dc position = renderData.getRenderPosition();
+        Vector3dc velocity = particle.getVelocity();
+        Vector3fc rotation = renderData.getRenderRotation();
+        float[] slots = this.slots;
+        slots[X] = (float) position.x();
+        slots[Y] = (float) position.y();
+        slots[Z] = (float) position.z();
+        slots[VELOCITY_X] = (float) velocity.x();
+        slots[VELOCITY_Y] = (float) velocity.y();
+        slots[VELOCITY_Z] = (float) velocity.z();
+        slots[ROTATION_X] = (float) Math.toDegrees(rotation.x());
+        slots[ROTATION_Y] = (float) Math.toDegrees(rotation.y());
+        slots[ROTATION_Z] = (float) Math.toDegrees(rotation.z());
+        slots[SCALE] = renderData.getRenderRadius();
+        slots[AGE] = renderData.getRenderAge();
+        slots[AGE_PERCENT] = renderData.getAgePercent();
+        slots[LIFETIME] = particle.getMaxAge();
+        return this.runtime;
+    }
+
+    /**
+     * Binds the queries to the current tick state of the specified row in packed storage.
+     *
+     * @param storage The storage to read values from
+     * @param index   The row to read
+     * @return The environment to evaluate expressions in
+     */
+    public MolangEnvironment bind(ParticleStorage storage, int index) {
+        float[] slots = this.slots;
+        int age = storage.getAge()[index];
+        int lifetime = storage.getLifetime()[index];
+        slots[X] = (float) storage.getX()[index];
+        slots[Y] = (float) storage.getY()[index];
+        slots[Z] = (float) storage.getZ()[index];
+        slots[VELOCITY_X] = (float) storage.getVelocityX()[index];
+        slots[VELOCITY_Y] = (float) storage.getVelocityY()[index];
+        slots[VELOCITY_Z] = (float) storage.getVelocityZ()[index];
+        slots[ROTATION_X] = (float) Math.toDegrees(storage.getRotationX()[index]);
+        slots[ROTATION_Y] = (float) Math.toDegrees(storage.getRotationY()[index]);
+        slots[ROTATION_Z] = (float) Math.toDegrees(storage.getRotationZ()[index]);
+        slots[SCALE] = storage.getRadius()[index];
+        slots[AGE] = age;
+        slots[AGE_PERCENT] = Math.min((float) age / (float) lifetime, 1.0F);
+        slots[LIFETIME] = lifetime;
+        return this.runtime;
+    }
+
+    /**
+     * Evaluates the specified expression for every row in the range of packed storage.
+     * Constant expressions are only resolved once.
+     *
+     * @param expression The expression to evaluate
+     * @param storage    The storage to read particle values from
+     * @param from       The first row, inclusive
+     * @param to         The last row, exclusive
+     * @param result     The array to store the value of each row in, indexed by row
+     */
+    public void evaluate(MolangExpression expression, ParticleStorage storage, int from, int to, float[] result) {
+        if (expression.isConstant()) {
+            Arrays.fill(result, from, to, expression.getConstant());
+            return;
+        }
+
+        for (int i = from; i < to; i++) {
+            result[i] = this.bind(storage, i).safeResolve(expression);
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package foundry.veil.api.quasar.particle;
+
+import com.mojang.blaze3d.vertex.PoseStack;
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import foundry.veil.api.client.render.rendertype.VeilRenderType;
+import foundry.veil.api.quasar.data.QuasarParticleData;
+import foundry.veil.api.quasar.fx.Trail;
+import net.minecraft.client.renderer.LightTexture;
+import net.minecraft.client.renderer.MultiBufferSource;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.client.renderer.texture.TextureAtlasSprite;
+import net.minecraft.world.level.BlockAndTintGetter;
+import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector3d;
+import org.joml.Vector3dc;
+import org.joml.Vector3fc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>The render state of every particle in an emitter, captured at the end of a tick.</p>
+ * <p>Each row stores the previous and current transform, color, light, material, and age of a particle in packed
+ * arrays. Rendering only interpolates between the two states, so it never reads particles while they are ticked.</p>
+ * <p>Emitters keep two snapshots. The tick always captures into the one that isn't being rendered and the main thread
+ * swaps them once the tick has finished, so a published snapshot never changes while it is rendered.</p>
+ */
+public class ParticleRenderSnapshot {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final List<Material> materials;
+    private final ParticleLightClusters lightClusters;
+    private int[] ids;
+    private double[] prevX;
+    private double[] prevY;
+    private double[] prevZ;
+    private double[] x;
+    private double[] y;
+    private double[] z;
+    private float[] prevRotationX;
+    private float[] prevRotationY;
+    private float[] prevRotationZ;
+    private float[] rotationX;
+    private float[] rotationY;
+    private float[] rotationZ;
+    private float[] prevRadius;
+    private float[] radius;
+    private int[] prevColor;
+    private int[] color;
+    private int[] light;
+    private int[] material;
+    private int[] age;
+    private int[] lifetime;
+    private Trail[] trails;
+    private int trailCount;
+    private int size;
+
+    private QuasarParticleData particleData;
+    private int lodStep;
+    private RenderData scratchRenderData;
+
+    public ParticleRenderSnapshot() {
+        this.materials = new ArrayList<>();
+        this.lightClusters = new ParticleLightClusters();
+        this.allocate(0);
+        this.trails = new Trail[0];
+        this.trailCount = 0;
+        this.size = 0;
+        this.particleData = null;
+        this.lodStep = 1;
+        this.scratchRenderData = null;
+    }
+
+    private void allocate(int capacity) {
+        this.ids = new int[capacity];
+        this.prevX = new double[capacity];
+        this.prevY = new double[capacity];
+        this.prevZ = new double[capacity];
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.z = new double[capacity];
+        this.prevRotationX = new float[capacity];
+        this.prevRotationY = new float[capacity];
+        this.prevRotationZ = new float[capacity];
+        this.rotationX = new float[capacity];
+        this.rotationY = new float[capacity];
+        this.rotationZ = new float[capacity];
+        this.prevRadius = new float[capacity];
+        this.radius = new float[capacity];
+        this.prevColor = new int[capacity];
+        this.color = new int[capacity];
+        this.light = new int[capacity];
+        this.material = new int[capacity];
+        this.age = new int[capacity];
+        this.lifetime = new int[capacity];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.ids.length) {
+            return;
+        }
+
+        int size = Math.max(DEFAULT_CAPACITY, Math.max(capacity, this.ids.length * 2));
+        this.ids = Arrays.copyOf(this.ids, size);
+        this.prevX = Arrays.copyOf(this.prevX, size);
+        this.prevY = Arrays.copyOf(this.prevY, size);
+        this.prevZ = Arrays.copyOf(this.prevZ, size);
+        this.x = Arrays.copyOf(this.x, size);
+        this.y = Arrays.copyOf(this.y, size);
+        this.z = Arrays.copyOf(this.z, size);
+        this.prevRotationX = Arrays.copyOf(this.prevRotationX, size);
+        this.prevRotationY = Arrays.copyOf(this.prevRotationY, size);
+        this.prevRotationZ = Arrays.copyOf(this.prevRotationZ, size);
+        this.rotationX = Arrays.copyOf(this.rotationX, size);
+        this.rotationY = Arrays.copyOf(this.rotationY, size);
+        this.rotationZ = Arrays.copyOf(this.rotationZ, size);
+        this.prevRadius = Arrays.copyOf(this.prevRadius, size);
+        this.radius = Arrays.copyOf(this.radius, size);
+        this.prevColor = Arrays.copyOf(this.prevColor, size);
+        this.color = Arrays.copyOf(this.color, size);
+        this.light = Arrays.copyOf(this.light, size);
+        this.material = Arrays.copyOf(this.material, size);
+        this.age = Arrays.copyOf(this.age, size);
+        this.lifetime = Arrays.copyOf(this.lifetime, size);
+    }
+
+    /**
+     * Starts capturing a new tick. All rows of the previous capture are discarded.
+     *
+     * @param particleData The data the emitter renders particles with
+     * @param lodStep      The number of ticks the captured state spans
+     */
+    @ApiStatus.Internal
+    public void begin(QuasarParticleData particleData, int lodStep) {
+        this.materials.clear();
+        this.lightClusters.clear();
+        this.trailCount = 0;
+        this.size = 0;
+        this.particleData = particleData;
+        this.lodStep = lodStep;
+    }
+
+    /**
+     * Captures the render state of a particle. The render data must already be updated to the end of this tick.
+     *
+     * @param particle The particle to capture
+     * @param age      The age of the particle in ticks
+     * @param lifetime The lifetime of the particle in ticks
+     */
+    @ApiStatus.Internal
+    public void add(QuasarParticle particle, int age, int lifetime) {
+        RenderData renderData = particle.getRenderData();
+        int index = this.size++;
+        this.ensureCapacity(this.size);
+
+        Vector3dc prevPosition = renderData.getPrevPosition();
+        Vector3dc position = renderData.getRenderPosition();
+        Vector3fc prevRotation = renderData.getPrevRotation();
+        Vector3fc rotation = renderData.getRenderRotation();
+        this.ids[index] = particle.getId();
+        this.prevX[index] = prevPosition.x();
+        this.prevY[index] = prevPosition.y();
+        this.prevZ[index] = prevPosition.z();
+        this.x[index] = position.x();
+        this.y[index] = position.y();
+        this.z[index] = position.z();
+        this.prevRotationX[index] = prevRotation.x();
+        this.prevRotationY[index] = prevRotation.y();
+        this.prevRotationZ[index] = prevRotation.z();
+        this.rotationX[index] = rotation.x();
+        this.rotationY[index] = rotation.y();
+        this.rotationZ[index] = rotation.z();
+        this.prevRadius[index] = renderData.getPrevRadius();
+        this.radius[index] = renderData.getRenderRadius();
+
+        int color = renderData.packColor();
+        // Colors are only known once per tick, so interpolate from the color of the last capture
+        this.prevColor[index] = renderData.snapshotCaptured ? renderData.snapshotColor : color;
+        this.color[index] = color;
+        renderData.snapshotColor = color;
+        renderData.snapshotCaptured = true;
+
+        this.light[index] = renderData.getLightColor();
+        this.material[index] = this.getMaterial(renderData);
+        this.age[index] = age;
+        this.lifetime[index] = lifetime;
+
+        List<Trail> trails = renderData.getTrails();
+        for (int i = 0; i < trails.size(); i++) {
+            if (this.trailCount >= this.trails.length) {
+                this.trails = Arrays.copyOf(this.trails, Math.max(16, this.trails.length * 2));
+            }
+            this.trails[this.trailCount] = trails.get(i).copy(this.trails[this.trailCount]);
+            this.trailCount++;
+        }
+    }
+
+    private int getMaterial(RenderData renderData) {
+        RenderType renderType = renderData.getRenderType();
+        TextureAtlasSprite atlasSprite = renderData.getAtlasSprite();
+        SpriteData spriteData = renderData.getSpriteData();
+        boolean additive = renderData.isAdditive();
+
+        // Almost every particle of an emitter looks the same, so start with the newest material
+        for (int i = this.materials.size() - 1; i >= 0; i--) {
+            Material material = this.materials.get(i);
+            if (material.renderType == renderType && material.atlasSprite == atlasSprite && material.spriteData == spriteData && material.additive == additive) {
+                return i;
+            }
+        }
+
+        this.materials.add(new Material(renderType, atlasSprite, spriteData, additive));
+        return this.materials.size() - 1;
+    }
+
+    /**
+     * Calculates the interpolated position of a particle.
+     *
+     * @param index        The row of the particle
+     * @param partialTicks The percentage from the previous to the current state
+     * @param result       The vector to store the position in
+     * @return The result vector
+     */
+    public Vector3d getRenderPosition(int index, float partialTicks, Vector3d result) {
+        return result.set(
+                this.prevX[index] + (this.x[index] - this.prevX[index]) * partialTicks,
+                this.prevY[index] + (this.y[index] - this.prevY[index]) * partialTicks,
+                this.prevZ[index] + (this.z[index] - this.prevZ[index]) * partialTicks);
+    }
+
+    public float getRenderRotationX(int index, float partialTicks) {
+        return this.prevRotationX[index] + (this.rotationX[index] - this.prevRotationX[index]) * partialTicks;
+    }
+
+    public float getRenderRotationY(int index, float partialTicks) {
+        return this.prevRotationY[index] + (this.rotationY[index] - this.prevRotationY[index]) * partialTicks;
+    }
+
+    public float getRenderRotationZ(int index, float partialTicks) {
+        return this.prevRotationZ[index] + (this.rotationZ[index] - this.prevRotationZ[index]) * partialTicks;
+    }
+
+    public float getRenderRadius(int index, float partialTicks) {
+        return this.prevRadius[index] + (this.radius[index] - this.prevRadius[index]) * partialTicks;
+    }
+
+    public float getRenderAge(int index, float partialTicks) {
+        return this.age[index] + partialTicks;
+    }
+
+    public float getAgePercent(int index, float partialTicks) {
+        return Math.min(this.getRenderAge(index, partialTicks) / (float) this.lifetime[index], 1.0F);
+    }
+
+    /**
+     * Calculates the interpolated color of a particle.
+     *
+     * @param index        The row of the particle
+     * @param partialTicks The percentage from the previous to the current state
+     * @return The color packed as ARGB with 8 bits per channel
+     */
+    public int getRenderColor(int index, float partialTicks) {
+        int from = this.prevColor[index];
+        int to = this.color[index];
+        if (from == to) {
+            return to;
+        }
+
+        int color = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 8) {
+            int a = from >>> shift & 0xFF;
+            int b = to >>> shift & 0xFF;
+            color |= ((int) (a + (b - a) * partialTicks) & 0xFF) << shift;
+        }
+        return color;
+    }
+
+    public int getLightColor(int index) {
+        return this.light[index];
+    }
+
+    /**
+     * Reads the light of rows captured without light by an asynchronous tick.
+     *
+     * @param level The level to read light from
+     * @param cache The cache to read light through
+     */
+    void resolveLight(BlockAndTintGetter level, ParticleLightCache cache) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.light[i] == ParticleLightCache.MISSING_LIGHT) {
+                this.light[i] = cache.getLightColor(level, this.x[i], this.y[i], this.z[i]);
+            }
+        }
+    }
+
+    public Material getMaterial(int index) {
+        return this.materials.get(this.material[index]);
+    }
+
+    /**
+     * @param index The row of the particle
+     * @return The {@link QuasarParticle#getId() id} of the particle captured in the specified row
+     */
+    public int getId(int index) {
+        return this.ids[index];
+    }
+
+    /**
+     * Fills render data with the interpolated state of a particle. This is used to render styles that only accept render data.
+     *
+     * @param index        The row of the particle
+     * @param partialTicks The percentage from the previous to the current state
+     * @return Render data that is reused for every call
+     */
+    @ApiStatus.Internal
+    public RenderData load(int index, float partialTicks) {
+        if (this.scratchRenderData == null) {
+            this.scratchRenderData = new RenderData(this.particleData);
+        }
+        this.scratchRenderData.load(this, index, partialTicks);
+        return this.scratchRenderData;
+    }
+
+    /**
+     * Renders every trail captured in this snapshot.
+     *
+     * @param poseStack    The current pose stack
+     * @param bufferSource The source to get buffers from
+     * @param cameraPos    The position of the camera
+     */
+    public void renderTrails(PoseStack poseStack, MultiBufferSource bufferSource, Vec3 cameraPos) {
+        for (int i = 0; i < this.trailCount; i++) {
+            Trail trail = this.trails[i];
+            trail.render(poseStack, bufferSource.getBuffer(VeilRenderType.quasarTrail(trail.getTexture())), LightTexture.FULL_BRIGHT, cameraPos.x, cameraPos.y, cameraPos.z);
+        }
+    }
+
+    /**
+     * @return The pooled particle lights captured in this snapshot
+     */
+    public ParticleLightClusters getLightClusters() {
+        return this.lightClusters;
+    }
+
+    /**
+     * @return The data the emitter rendered particles with when this snapshot was captured
+     */
+    public QuasarParticleData getParticleData() {
+        return this.particleData;
+    }
+
+    /**
+     * @return The number of ticks between the previous and current state
+     */
+    public int getLodStep() {
+        return this.lodStep;
+    }
+
+    public int getTrailCount() {
+        return this.trailCount;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0 && this.trailCount == 0;
+    }
+
+    /**
+     * Everything needed to choose the buffer of a particle and the UVs it uses.
+     *
+     * @param renderType  The render type of the particle
+     * @param atlasSprite The sprite UVs are remapped into or <code>null</code> to use the whole texture
+     * @param spriteData  The sprite sheet animation or <code>null</code> for a static texture
+     * @param additive    Whether the particle is blended additively
+     */
+    public record Material(RenderType renderType, @Nullable TextureAtlasSprite atlasSprite,
+                           @Nullable SpriteData spriteData, boolean additive) {
+
+        /**
+         * Retrieves the buffer to render into from the specified source. The buffer is wrapped to remap UVs if this
+         * material uses an atlas sprite.
+         *
+         * @param bufferSource The source to get the buffer from
+         * @return The buffer for this material
+         */
+        public VertexConsumer getBuffer(MultiBufferSource bufferSource) {
+            VertexConsumer builder = bufferSource.getBuffer(this.renderType);
+            return this.atlasSprite != null ? this.atlasSprite.wrap(builder) : builder;
+        }
+    }
+}
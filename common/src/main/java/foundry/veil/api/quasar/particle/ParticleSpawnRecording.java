@@ -0,0 +1,193 @@
+package foundry.veil.api.quasar.particle;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.JsonOps;
+import com.mojang.serialization.codecs.RecordCodecBuilder;
+import foundry.veil.api.quasar.data.ParticleEmitterData;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.phys.Vec3;
+import org.joml.Vector3dc;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * <p>A list of emitters added to a {@link ParticleSystemManager} and the tick they were added on.</p>
+ * <p>Recordings are created with {@link ParticleSystemManager#startRecording()} and can be saved to a file to replay
+ * the same workload later, for example to measure performance without a display. Sub-emitters are not recorded since
+ * their parents spawn them again when replayed.</p>
+ */
+public class ParticleSpawnRecording {
+
+    public static final Codec<ParticleSpawnRecording> CODEC = Event.CODEC.listOf().xmap(ParticleSpawnRecording::new, recording -> recording.events);
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private final List<Event> events;
+
+    public ParticleSpawnRecording() {
+        this.events = new ArrayList<>();
+    }
+
+    private ParticleSpawnRecording(List<Event> events) {
+        this.events = new ArrayList<>(events);
+        this.events.sort(Comparator.comparingInt(Event::tick));
+    }
+
+    /**
+     * Records an emitter being added.
+     *
+     * @param tick     The tick relative to the start of the recording
+     * @param emitter  The name of the emitter
+     * @param position The position of the emitter
+     */
+    public void add(int tick, ResourceLocation emitter, Vector3dc position) {
+        if (!this.events.isEmpty() && tick < this.events.get(this.events.size() - 1).tick()) {
+            throw new IllegalArgumentException("Events must be recorded in order");
+        }
+        this.events.add(new Event(tick, emitter, new Vec3(position.x(), position.y(), position.z())));
+    }
+
+    /**
+     * Adds all emitters recorded on the specified tick to the manager.
+     *
+     * @param manager The manager to add emitters to
+     * @param tick    The tick relative to the start of the recording
+     * @return The number of emitters added
+     */
+    public int replay(ParticleSystemManager manager, int tick) {
+        return this.replay(manager, tick, manager::createEmitter);
+    }
+
+    /**
+     * Adds all emitters recorded on the specified tick to the manager.
+     *
+     * @param manager The manager to add emitters to
+     * @param tick    The tick relative to the start of the recording
+     * @param factory The function creating an emitter from the recorded name or returning <code>null</code> to skip it
+     * @return The number of emitters added
+     */
+    public int replay(ParticleSystemManager manager, int tick, Function<ResourceLocation, ParticleEmitter> factory) {
+        int added = 0;
+        for (int i = this.findFirst(tick); i < this.events.size(); i++) {
+            Event event = this.events.get(i);
+            if (event.tick() != tick) {
+                break;
+            }
+
+            ParticleEmitter emitter = factory.apply(event.emitter());
+            if (emitter == null) {
+                continue;
+            }
+
+            Vec3 position = event.position();
+            emitter.setPosition(position.x, position.y, position.z);
+            manager.addParticleSystem(emitter);
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * Creates a factory for {@link #replay(ParticleSystemManager, int, Function)} that creates emitters from
+     * the specified data instead of the loaded registry.
+     *
+     * @param manager The manager to create emitters with
+     * @param lookup  The function to retrieve emitter data by name
+     * @return A new emitter factory
+     */
+    public static Function<ResourceLocation, ParticleEmitter> factory(ParticleSystemManager manager, Function<ResourceLocation, ParticleEmitterData> lookup) {
+        return name -> {
+            ParticleEmitterData data = lookup.apply(name);
+            return data != null ? manager.createEmitter(name, data) : null;
+        };
+    }
+
+    private int findFirst(int tick) {
+        int low = 0;
+        int high = this.events.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.events.get(middle).tick() < tick) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return All recorded events in order
+     */
+    public List<Event> getEvents() {
+        return Collections.unmodifiableList(this.events);
+    }
+
+    /**
+     * @return The number of ticks between the start of the recording and the last event
+     */
+    public int getLength() {
+        return this.events.isEmpty() ? 0 : this.events.get(this.events.size() - 1).tick() + 1;
+    }
+
+    /**
+     * Writes this recording as JSON.
+     *
+     * @param path The file to write to
+     * @throws IOException If any error occurs writing the file
+     */
+    public void write(Path path) throws IOException {
+        DataResult<JsonElement> result = CODEC.encodeStart(JsonOps.INSTANCE, this);
+        if (result.error().isPresent()) {
+            throw new IOException("Failed to encode particle spawn recording: " + result.error().get().message());
+        }
+        try (Writer writer = Files.newBufferedWriter(path)) {
+            GSON.toJson(result.result().orElseThrow(), writer);
+        }
+    }
+
+    /**
+     * Reads a recording from JSON.
+     *
+     * @param path The file to read
+     * @return The recording in the file
+     * @throws IOException If any error occurs reading the file
+     */
+    public static ParticleSpawnRecording read(Path path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path)) {
+            DataResult<ParticleSpawnRecording> result = CODEC.parse(JsonOps.INSTANCE, JsonParser.parseReader(reader));
+            if (result.error().isPresent()) {
+                throw new JsonParseException(result.error().get().message());
+            }
+            return result.result().orElseThrow();
+        }
+    }
+
+    /**
+     * @param tick     The tick relative to the start of the recording
+     * @param emitter  The name of the emitter
+     * @param position The position of the emitter
+     */
+    public record Event(int tick, ResourceLocation emitter, Vec3 position) {
+
+        public static final Codec<Event> CODEC = RecordCodecBuilder.create(instance -> instance.group(
+                Codec.intRange(0, Integer.MAX_VALUE).fieldOf("tick").forGetter(Event::tick),
+                ResourceLocation.CODEC.fieldOf("emitter").forGetter(Event::emitter),
+                Vec3.CODEC.fieldOf("position").forGetter(Event::position)
+        ).apply(instance, Event::new));
+    }
+}
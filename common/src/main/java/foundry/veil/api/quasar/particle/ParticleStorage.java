@@ -0,0 +1,480 @@
+package foundry.veil.api.quasar.particle;
+
+import java.util.Arrays;
+
+/**
+ * <p>Packed structure-of-arrays storage for the particles of a single {@link ParticleEmitter}.</p>
+ * <p>The primitive columns are the authoritative state of every particle in the storage. Each {@link QuasarParticle}
+ * is a flyweight view over a single row. Scalar state like age and radius is read and written straight through to the
+ * columns. Position, velocity, and rotation are handed out as mutable vectors, so they are only synchronized using
+ * {@link #pull(int)} and {@link #push(int)} when a module needs to interact with the particle object directly.</p>
+ * <p>Particles are removed with a swap-remove, so the order of rows is not stable.</p>
+ */
+public class ParticleStorage {
+
+    /**
+     * The particle has at least one collision module and must be moved through the object path.
+     */
+    public static final int FLAG_COLLISION = 1;
+    /**
+     * The particle has at least one per-particle update module.
+     */
+    public static final int FLAG_UPDATE = 1 << 1;
+    /**
+     * The particle has at least one per-particle force module.
+     */
+    public static final int FLAG_FORCE = 1 << 2;
+    /**
+     * The particle has at least one render module.
+     */
+    public static final int FLAG_RENDER = 1 << 3;
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final ParticleEmitter emitter;
+    private QuasarParticle[] particles;
+    private double[] x;
+    private double[] y;
+    private double[] z;
+    private double[] prevX;
+    private double[] prevY;
+    private double[] prevZ;
+    private double[] velocityX;
+    private double[] velocityY;
+    private double[] velocityZ;
+    private float[] rotationX;
+    private float[] rotationY;
+    private float[] rotationZ;
+    private float[] prevRotationX;
+    private float[] prevRotationY;
+    private float[] prevRotationZ;
+    private float[] radius;
+    private float[] prevRadius;
+    private int[] age;
+    private int[] lifetime;
+    private int[] flags;
+    private double[] startVelocityX;
+    private double[] startVelocityY;
+    private double[] startVelocityZ;
+    private int size;
+
+    public ParticleStorage(ParticleEmitter emitter) {
+        this.emitter = emitter;
+        this.allocate(0);
+        this.size = 0;
+    }
+
+    private void allocate(int capacity) {
+        this.particles = new QuasarParticle[capacity];
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.z = new double[capacity];
+        this.prevX = new double[capacity];
+        this.prevY = new double[capacity];
+        this.prevZ = new double[capacity];
+        this.velocityX = new double[capacity];
+        this.velocityY = new double[capacity];
+        this.velocityZ = new double[capacity];
+        this.rotationX = new float[capacity];
+        this.rotationY = new float[capacity];
+        this.rotationZ = new float[capacity];
+        this.prevRotationX = new float[capacity];
+        this.prevRotationY = new float[capacity];
+        this.prevRotationZ = new float[capacity];
+        this.radius = new float[capacity];
+        this.prevRadius = new float[capacity];
+        this.age = new int[capacity];
+        this.lifetime = new int[capacity];
+        this.flags = new int[capacity];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= this.particles.length) {
+            return;
+        }
+
+        int newCapacity = Math.max(Math.max(DEFAULT_CAPACITY, capacity), this.particles.length + (this.particles.length >> 1));
+        this.particles = Arrays.copyOf(this.particles, newCapacity);
+        this.x = Arrays.copyOf(this.x, newCapacity);
+        this.y = Arrays.copyOf(this.y, newCapacity);
+        this.z = Arrays.copyOf(this.z, newCapacity);
+        this.prevX = Arrays.copyOf(this.prevX, newCapacity);
+        this.prevY = Arrays.copyOf(this.prevY, newCapacity);
+        this.prevZ = Arrays.copyOf(this.prevZ, newCapacity);
+        this.velocityX = Arrays.copyOf(this.velocityX, newCapacity);
+        this.velocityY = Arrays.copyOf(this.velocityY, newCapacity);
+        this.velocityZ = Arrays.copyOf(this.velocityZ, newCapacity);
+        this.rotationX = Arrays.copyOf(this.rotationX, newCapacity);
+        this.rotationY = Arrays.copyOf(this.rotationY, newCapacity);
+        this.rotationZ = Arrays.copyOf(this.rotationZ, newCapacity);
+        this.prevRotationX = Arrays.copyOf(this.prevRotationX, newCapacity);
+        this.prevRotationY = Arrays.copyOf(this.prevRotationY, newCapacity);
+        this.prevRotationZ = Arrays.copyOf(this.prevRotationZ, newCapacity);
+        this.radius = Arrays.copyOf(this.radius, newCapacity);
+        this.prevRadius = Arrays.copyOf(this.prevRadius, newCapacity);
+        this.age = Arrays.copyOf(this.age, newCapacity);
+        this.lifetime = Arrays.copyOf(this.lifetime, newCapacity);
+        this.flags = Arrays.copyOf(this.flags, newCapacity);
+    }
+
+    /**
+     * Adds the specified particle to the end of this storage and binds it to the new row.
+     *
+     * @param particle The particle to add
+     * @return The index of the new row
+     */
+    public int add(QuasarParticle particle) {
+        this.ensureCapacity(this.size + 1);
+        int index = this.size++;
+        this.particles[index] = particle;
+
+        ParticleModuleSet modules = particle.getModules();
+        int flags = 0;
+        if (modules.getCollisionModules().length > 0) {
+            flags |= FLAG_COLLISION;
+        }
+        if (modules.getUpdateModules().length > 0) {
+            flags |= FLAG_UPDATE;
+        }
+        if (modules.getForceModules().length > 0) {
+            flags |= FLAG_FORCE;
+        }
+        if (modules.getRenderModules().length > 0) {
+            flags |= FLAG_RENDER;
+        }
+        this.flags[index] = flags;
+
+        // Write the initial state before binding, since bound views read scalars from the columns
+        this.push(index);
+        particle.bind(this, index);
+        this.prevX[index] = this.x[index];
+        this.prevY[index] = this.y[index];
+        this.prevZ[index] = this.z[index];
+        this.prevRotationX[index] = this.rotationX[index];
+        this.prevRotationY[index] = this.rotationY[index];
+        this.prevRotationZ[index] = this.rotationZ[index];
+        this.prevRadius[index] = this.radius[index];
+        return index;
+    }
+
+    /**
+     * Removes the particle at the specified row by moving the last row into its place.
+     * The particle view is synchronized with its final state before it is unbound.
+     *
+     * @param index The row to remove
+     * @return The particle that was removed
+     */
+    public QuasarParticle remove(int index) {
+        this.pull(index);
+        QuasarParticle removed = this.particles[index];
+        int last = --this.size;
+        if (index != last) {
+            this.copyRow(last, index);
+            this.particles[index].bind(this, index);
+        }
+        this.particles[last] = null;
+        removed.unbind();
+        return removed;
+    }
+
+    private void copyRow(int from, int to) {
+        this.particles[to] = this.particles[from];
+        this.x[to] = this.x[from];
+        this.y[to] = this.y[from];
+        this.z[to] = this.z[from];
+        this.prevX[to] = this.prevX[from];
+        this.prevY[to] = this.prevY[from];
+        this.prevZ[to] = this.prevZ[from];
+        this.velocityX[to] = this.velocityX[from];
+        this.velocityY[to] = this.velocityY[from];
+        this.velocityZ[to] = this.velocityZ[from];
+        this.rotationX[to] = this.rotationX[from];
+        this.rotationY[to] = this.rotationY[from];
+        this.rotationZ[to] = this.rotationZ[from];
+        this.prevRotationX[to] = this.prevRotationX[from];
+        this.prevRotationY[to] = this.prevRotationY[from];
+        this.prevRotationZ[to] = this.prevRotationZ[from];
+        this.radius[to] = this.radius[from];
+        this.prevRadius[to] = this.prevRadius[from];
+        this.age[to] = this.age[from];
+        this.lifetime[to] = this.lifetime[from];
+        this.flags[to] = this.flags[from];
+    }
+
+    /**
+     * Removes all rows after the specified size without compacting.
+     *
+     * @param size The new number of particles
+     */
+    public void truncate(int size) {
+        for (int i = size; i < this.size; i++) {
+            this.pull(i);
+            this.particles[i].unbind();
+            this.particles[i] = null;
+        }
+        this.size = Math.min(this.size, size);
+    }
+
+    /**
+     * Removes all particles from this storage.
+     */
+    public void clear() {
+        this.truncate(0);
+    }
+
+    /**
+     * Copies the state of the specified row into the particle view.
+     *
+     * @param index The row to read
+     */
+    public void pull(int index) {
+        this.particles[index].pull(this.x[index], this.y[index], this.z[index],
+                this.velocityX[index], this.velocityY[index], this.velocityZ[index],
+                this.rotationX[index], this.rotationY[index], this.rotationZ[index],
+                this.radius[index], this.age[index]);
+    }
+
+    /**
+     * Copies the state of the particle view back into the specified row.
+     *
+     * @param index The row to write
+     */
+    public void push(int index) {
+        QuasarParticle particle = this.particles[index];
+        this.x[index] = particle.getPosition().x;
+        this.y[index] = particle.getPosition().y;
+        this.z[index] = particle.getPosition().z;
+        this.velocityX[index] = particle.getVelocity().x;
+        this.velocityY[index] = particle.getVelocity().y;
+        this.velocityZ[index] = particle.getVelocity().z;
+        this.rotationX[index] = particle.getRotation().x;
+        this.rotationY[index] = particle.getRotation().y;
+        this.rotationZ[index] = particle.getRotation().z;
+        this.radius[index] = particle.getRadius();
+        this.age[index] = particle.getAge();
+        this.lifetime[index] = particle.getMaxAge();
+    }
+
+    /**
+     * Copies the current transform of each particle in the range into the previous transform columns.
+     *
+     * @param from The first row, inclusive
+     * @param to   The last row, exclusive
+     */
+    public void storePrevious(int from, int to) {
+        int length = to - from;
+        System.arraycopy(this.x, from, this.prevX, from, length);
+        System.arraycopy(this.y, from, this.prevY, from, length);
+        System.arraycopy(this.z, from, this.prevZ, from, length);
+        System.arraycopy(this.rotationX, from, this.prevRotationX, from, length);
+        System.arraycopy(this.rotationY, from, this.prevRotationY, from, length);
+        System.arraycopy(this.rotationZ, from, this.prevRotationZ, from, length);
+        System.arraycopy(this.radius, from, this.prevRadius, from, length);
+    }
+
+    /**
+     * Copies the velocity of every particle in the range so the change applied by forces can later be scaled with
+     * {@link #scaleVelocityChange(int, int, int)}.
+     *
+     * @param from The first row, inclusive
+     * @param to   The last row, exclusive
+     */
+    public void storeVelocity(int from, int to) {
+        if (this.startVelocityX == null || this.startVelocityX.length < this.particles.length) {
+            this.startVelocityX = new double[this.particles.length];
+            this.startVelocityY = new double[this.particles.length];
+            this.startVelocityZ = new double[this.particles.length];
+        }
+
+        int length = to - from;
+        System.arraycopy(this.velocityX, from, this.startVelocityX, from, length);
+        System.arraycopy(this.velocityY, from, this.startVelocityY, from, length);
+        System.arraycopy(this.velocityZ, from, this.startVelocityZ, from, length);
+    }
+
+    /**
+     * Multiplies the velocity change since the last call to {@link #storeVelocity(int, int)} by the specified step.
+     *
+     * @param from The first row, inclusive
+     * @param to   The last row, exclusive
+     * @param step The number of ticks being simulated at once
+     */
+    public void scaleVelocityChange(int from, int to, int step) {
+        for (int i = from; i < to; i++) {
+            this.velocityX[i] = this.startVelocityX[i] + (this.velocityX[i] - this.startVelocityX[i]) * step;
+            this.velocityY[i] = this.startVelocityY[i] + (this.velocityY[i] - this.startVelocityY[i]) * step;
+            this.velocityZ[i] = this.startVelocityZ[i] + (this.velocityZ[i] - this.startVelocityZ[i]) * step;
+        }
+    }
+
+    /**
+     * Moves every particle in the range without collision by its velocity.
+     *
+     * @param from The first row, inclusive
+     * @param to   The last row, exclusive
+     */
+    public void move(int from, int to) {
+        this.move(from, to, 1);
+    }
+
+    /**
+     * Moves every particle in the range without collision by its velocity for the specified number of ticks.
+     *
+     * @param from The first row, inclusive
+     * @param to   The last row, exclusive
+     * @param step The number of ticks to move by
+     */
+    public void move(int from, int to, int step) {
+        for (int i = from; i < to; i++) {
+            if ((this.flags[i] & FLAG_COLLISION) != 0) {
+                continue;
+            }
+            this.x[i] += this.velocityX[i] * step;
+            this.y[i] += this.velocityY[i] * step;
+            this.z[i] += this.velocityZ[i] * step;
+        }
+    }
+
+    /**
+     * Ages every particle in the range by one tick and marks particles past their lifetime as removed.
+     *
+     * @param from The first row, inclusive
+     * @param to   The last row, exclusive
+     */
+    public void age(int from, int to) {
+        this.age(from, to, 1);
+    }
+
+    /**
+     * Ages every particle in the range by the specified number of ticks and marks particles past their lifetime as removed.
+     *
+     * @param from The first row, inclusive
+     * @param to   The last row, exclusive
+     * @param step The number of ticks to age by
+     */
+    public void age(int from, int to, int step) {
+        for (int i = from; i < to; i++) {
+            if ((this.age[i] += step) >= this.lifetime[i]) {
+                this.age[i] = Integer.MIN_VALUE;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the particle at the specified row has been removed.
+     *
+     * @param index The row to check
+     * @return Whether the particle is dead
+     */
+    public boolean isRemoved(int index) {
+        return this.age[index] < 0;
+    }
+
+    /**
+     * @return The emitter this storage belongs to
+     */
+    public ParticleEmitter getEmitter() {
+        return this.emitter;
+    }
+
+    /**
+     * @return The number of particles in this storage
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Retrieves the particle view for the specified row.
+     *
+     * @param index The row to get
+     * @return The particle at that row
+     */
+    public QuasarParticle get(int index) {
+        return this.particles[index];
+    }
+
+    public double[] getX() {
+        return this.x;
+    }
+
+    public double[] getY() {
+        return this.y;
+    }
+
+    public double[] getZ() {
+        return this.z;
+    }
+
+    public double[] getPrevX() {
+        return this.prevX;
+    }
+
+    public double[] getPrevY() {
+        return this.prevY;
+    }
+
+    public double[] getPrevZ() {
+        return this.prevZ;
+    }
+
+    public double[] getVelocityX() {
+        return this.velocityX;
+    }
+
+    public double[] getVelocityY() {
+        return this.velocityY;
+    }
+
+    public double[] getVelocityZ() {
+        return this.velocityZ;
+    }
+
+    public float[] getRotationX() {
+        return this.rotationX;
+    }
+
+    public float[] getRotationY() {
+        return this.rotationY;
+    }
+
+    public float[] getRotationZ() {
+        return this.rotationZ;
+    }
+
+    public float[] getPrevRotationX() {
+        return this.prevRotationX;
+    }
+
+    public float[] getPrevRotationY() {
+        return this.prevRotationY;
+    }
+
+    public float[] getPrevRotationZ() {
+        return this.prevRotationZ;
+    }
+
+    public float[] getRadius() {
+        return this.radius;
+    }
+
+    public float[] getPrevRadius() {
+        return this.prevRadius;
+    }
+
+    public int[] getAge() {
+        return this.age;
+    }
+
+    public int[] getLifetime() {
+        return this.lifetime;
+    }
+
+    public int[] getFlags() {
+        return this.flags;
+    }
+}
@@ -1,154 +1,1007 @@
 package foundry.veil.api.quasar.particle;
 
 import com.mojang.blaze3d.vertex.PoseStack;
-import foundry.veil.Veil;
 import foundry.veil.api.TickTaskScheduler;
 import foundry.veil.api.client.render.CullFrustum;
+import foundry.veil.api.quasar.data.EmitterPriority;
 import foundry.veil.api.quasar.data.ParticleEmitterData;
-import foundry.veil.api.quasar.data.QuasarParticles;
 import foundry.veil.impl.TickTaskSchedulerImpl;
+import foundry.veil.impl.quasar.DeferredTickTaskScheduler;
 import net.minecraft.client.Camera;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.client.renderer.MultiBufferSource;
+import net.minecraft.core.SectionPos;
 import net.minecraft.resources.ResourceLocation;
-import net.minecraft.util.Mth;
-import net.minecraft.world.entity.Entity;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.phys.Vec3;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
 import org.joml.Vector3d;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class ParticleSystemManager {
 
-    private static final int MAX_PARTICLES = 10000;
-    private static final double PERSISTENT_DISTANCE_SQ = 32.0 * 32.0;
-    private static final double REMOVAL_DISTANCE_SQ = 128.0 * 128.0;
+    /**
+     * @deprecated Use {@link ParticleBudget#getBudget()} instead
+     */
+    @Deprecated
+    public static final int MAX_PARTICLES = ParticleBudget.DEFAULT_BUDGET;
+    public static final int DEFAULT_OPENCL_FORCE_THRESHOLD = 4096;
+    private static final int POOL_CAPACITY = 4096;
+    private static final AtomicInteger WORKER_COUNT = new AtomicInteger(1);
+    private static final double SLOW_PARTICLE_VELOCITY_SQ = 0.05 * 0.05;
+    private static final double SLEEP_DISTANCE_PADDING = 32.0;
+    private static final double WAKE_DISTANCE_MARGIN = 8.0;
+    private static final Comparator<ParticleEmitter> BACK_TO_FRONT = (a, b) -> Double.compare(b.renderDistanceSq, a.renderDistanceSq);
 
     private final List<ParticleEmitter> particleEmitters;
-    private final Set<ResourceLocation> invalidEmitters;
+    private final EmitterDefinitionCache definitionCache;
     private final AtomicInteger particleCount;
+    private final ThreadLocal<List<Runnable>> deferredActions;
+    private final QuasarParticlePool particlePool;
+    private final ParticleCollisionContext collisionContext;
+    private final ThreadLocal<ParticleLightCache> lightCaches;
+    private final ParticleLightCache prefetchedLight;
+    private final EmitterSpatialHash spatialHash;
+    private final List<ParticleEmitter> visibleEmitters;
+    private final ParticleVertexWriter vertexWriter;
+    private final ParticleInstanceRenderer instanceRenderer;
+    private final ParticleDepthSorter depthSorter;
+    private final ParticleBudget budget;
+    private final ParticleLightPool lightPool;
+    private final Vector3d cameraPosition;
 
     private ClientLevel level;
     private TickTaskSchedulerImpl scheduler;
+    private TickTaskScheduler deferredScheduler;
+    private boolean packedStorage;
+    private boolean parallelTick;
+    private boolean asyncTick;
+    private boolean lod;
+    private boolean depthSort;
+    private boolean instancedRendering;
+    private boolean sleep;
+    private double sleepDistance;
+    private int renderDistance;
+    private int sleepingEmitters;
+    private ParticleForceSolver forceSolver;
+    private int openCLForceThreshold;
+    private int lightInterval;
+    private volatile int lightGeneration;
+    private ForkJoinPool tickPool;
+    private ForkJoinTask<?> pendingTick;
+    private boolean lightPrefetched;
+    private int ticks;
+    private RandomSource seedSource;
+    private ParticleSpawnRecording recording;
+    private int recordingStart;
 
     public ParticleSystemManager() {
         this.particleEmitters = new ArrayList<>();
-        this.invalidEmitters = new HashSet<>();
+        this.definitionCache = new EmitterDefinitionCache();
 
         this.particleCount = new AtomicInteger();
+        this.deferredActions = new ThreadLocal<>();
+        this.particlePool = new QuasarParticlePool(POOL_CAPACITY);
+        this.collisionContext = new ParticleCollisionContext();
+        this.lightCaches = ThreadLocal.withInitial(ParticleLightCache::new);
+        this.prefetchedLight = new ParticleLightCache();
+        this.spatialHash = new EmitterSpatialHash();
+        this.visibleEmitters = new ArrayList<>();
+        this.vertexWriter = new ParticleVertexWriter();
+        this.instanceRenderer = new ParticleInstanceRenderer();
+        this.depthSorter = new ParticleDepthSorter();
+        this.budget = new ParticleBudget();
+        this.lightPool = new ParticleLightPool();
+        this.cameraPosition = new Vector3d();
         this.level = null;
         this.scheduler = null;
+        this.deferredScheduler = null;
+        this.tickPool = null;
+        this.pendingTick = null;
+        this.lightPrefetched = false;
+        this.ticks = 0;
+        this.seedSource = null;
+        this.recording = null;
+        this.recordingStart = 0;
+        this.lod = true;
+        this.depthSort = false;
+        this.instancedRendering = false;
+        this.sleep = true;
+        this.sleepDistance = 0;
+        this.renderDistance = 0;
+        this.sleepingEmitters = 0;
+        this.forceSolver = null;
+        this.openCLForceThreshold = DEFAULT_OPENCL_FORCE_THRESHOLD;
+        this.lightInterval = 1;
+        this.lightGeneration = 0;
     }
 
     @ApiStatus.Internal
     public void setLevel(@Nullable ClientLevel level) {
         this.clear();
+        this.particlePool.clear();
         if (this.scheduler != null) {
             this.scheduler.shutdown();
         }
 
         this.level = level;
         this.scheduler = new TickTaskSchedulerImpl();
+        this.deferredScheduler = new DeferredTickTaskScheduler(this.scheduler, this);
     }
 
     public @Nullable ParticleEmitter createEmitter(ResourceLocation name) {
+        return this.level != null ? this.createEmitter(name, this.createRandomSource()) : null;
+    }
+
+    @Nullable ParticleEmitter createEmitter(ResourceLocation name, RandomSource randomSource) {
         if (this.level == null) {
             return null;
         }
-        ParticleEmitterData data = QuasarParticles.registryAccess().registry(QuasarParticles.EMITTER).map(registry -> registry.get(name)).orElse(null);
-        if (data == null) {
-            if (this.invalidEmitters.add(name)) {
-                Veil.LOGGER.error("Unknown Quasar Particle Emitter: {}", name);
-            }
+        ParticleEmitterDefinition definition = this.definitionCache.get(name);
+        return definition != null ? new ParticleEmitter(this, this.level, definition, randomSource) : null;
+    }
+
+    /**
+     * Creates an emitter from data that doesn't have to be registered.
+     *
+     * @param name The name to record the emitter as
+     * @param data The data to create the emitter from
+     * @return A new emitter or <code>null</code> if there is no level
+     */
+    public @Nullable ParticleEmitter createEmitter(ResourceLocation name, ParticleEmitterData data) {
+        if (this.level == null) {
             return null;
         }
-        return new ParticleEmitter(this, this.level, data);
+        return new ParticleEmitter(this, this.level, new ParticleEmitterDefinition(name, data), this.createRandomSource());
+    }
+
+    /**
+     * Resolves the specified emitters ahead of time so creating them later is cheaper.
+     *
+     * @param names The names of the emitters to prepare
+     * @return The number of emitters that exist
+     * @see EmitterDefinitionCache#prewarm(Collection)
+     */
+    public int prewarm(Collection<ResourceLocation> names) {
+        return this.definitionCache.prewarm(names);
     }
 
     public void addParticleSystem(ParticleEmitter particleEmitter) {
-        this.scheduler.execute(() -> this.particleEmitters.add(particleEmitter));
+        ParticleSpawnRecording recording = this.recording;
+        if (recording != null) {
+            recording.add(this.ticks - this.recordingStart, particleEmitter.getName(), particleEmitter.getPosition());
+        }
+        this.addSubEmitter(particleEmitter);
+    }
+
+    /**
+     * Adds an emitter spawned by another emitter. These are never recorded since the parent spawns them again when replayed.
+     */
+    void addSubEmitter(ParticleEmitter particleEmitter) {
+        this.deferredScheduler.execute(() -> this.particleEmitters.add(particleEmitter));
+    }
+
+    /**
+     * <p>Runs a structural change to the particle system, such as adding or removing lights.</p>
+     * <p>While emitters are ticked in parallel the action is deferred until every emitter has finished ticking.
+     * Deferred actions are then run on the main thread in the same order the emitters would have been ticked serially.</p>
+     *
+     * @param action The action to run
+     */
+    public void runOrDefer(Runnable action) {
+        List<Runnable> deferred = this.deferredActions.get();
+        if (deferred != null) {
+            deferred.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * @return Whether the current thread is ticking an emitter in parallel and structural changes are being deferred
+     */
+    public boolean isDeferring() {
+        return this.deferredActions.get() != null;
     }
 
     public void clear() {
+        this.finishTick();
         for (ParticleEmitter particleEmitter : this.particleEmitters) {
             particleEmitter.onRemoved();
         }
         this.particleEmitters.clear();
+        this.sleepingEmitters = 0;
+        this.particleCount.set(0);
+        this.spatialHash.clear();
+        this.visibleEmitters.clear();
+        this.collisionContext.clear();
+        this.depthSorter.clear();
+        this.lightPool.free();
+    }
+
+    /**
+     * Clears all emitters and frees all resources held by this manager.
+     */
+    @ApiStatus.Internal
+    public void free() {
+        this.clear();
+        this.vertexWriter.free();
+        this.instanceRenderer.free();
+        this.setOpenCLForces(false);
+        if (this.tickPool != null) {
+            this.tickPool.shutdown();
+            this.tickPool = null;
+        }
     }
 
     @ApiStatus.Internal
     public void tick() {
+        Minecraft client = Minecraft.getInstance();
+        Vec3 cameraPos = client.gameRenderer.getMainCamera().getPosition();
+        this.renderDistance = client.options.getEffectiveRenderDistance();
+        this.tick(cameraPos.x, cameraPos.y, cameraPos.z);
+    }
+
+    /**
+     * Ticks all emitters using the specified camera position for level of detail and the particle budget.
+     *
+     * @param cameraX The x position of the camera
+     * @param cameraY The y position of the camera
+     * @param cameraZ The z position of the camera
+     */
+    @ApiStatus.Internal
+    public void tick(double cameraX, double cameraY, double cameraZ) {
         if (this.level == null) {
             return;
         }
 
+        // The tick submitted last time has to be committed before anything else can touch the emitters
+        this.finishTick();
+
+        this.ticks++;
+        this.cameraPosition.set(cameraX, cameraY, cameraZ);
         this.scheduler.run();
-        this.particleCount.set(0);
+        this.updateLod();
+        this.updateSleep();
+        this.collisionContext.begin(this.level);
+        this.lightGeneration++;
+        if (this.asyncTick && this.getActiveEmitterCount() > 0) {
+            this.submitTick();
+            return;
+        }
+
+        if (this.parallelTick && this.getActiveEmitterCount() > 1) {
+            this.getTickPool().invoke(this.createTickAction());
+            this.commitTick(false);
+        } else {
+            this.tickSerial();
+        }
+        this.updateIndices();
+    }
+
+    /**
+     * Waits for the tick submitted by the last call to {@link #tick()} to finish and commits it.
+     * Does nothing unless {@link #isAsyncTick()} is enabled.
+     */
+    private void finishTick() {
+        ForkJoinTask<?> pendingTick = this.pendingTick;
+        if (pendingTick == null) {
+            return;
+        }
+
+        this.pendingTick = null;
+        pendingTick.join();
+        this.lightPrefetched = false;
+        this.commitTick(true);
+        this.updateIndices();
+    }
+
+    private void updateIndices() {
+        Vector3d cameraPos = this.cameraPosition;
+        this.budget.allocate(this.particleEmitters, cameraPos.x, cameraPos.y, cameraPos.z);
+
+        // Emitter bounds only change while ticking, so the index only needs to be rebuilt once per tick
+        this.spatialHash.rebuild(this.particleEmitters);
+        this.lightPool.update(this.particleEmitters);
+    }
+
+    private void updateLod() {
+        if (!this.lod) {
+            for (ParticleEmitter emitter : this.particleEmitters) {
+                emitter.updateLod(-1);
+            }
+            return;
+        }
+
+        Vector3d cameraPos = this.cameraPosition;
+        for (ParticleEmitter emitter : this.particleEmitters) {
+            emitter.updateLod(emitter.getPosition().distanceSquared(cameraPos));
+        }
+    }
+
+    /**
+     * Puts emitters in unloaded chunks or too far away from the camera to sleep and wakes up the rest. Critical emitters
+     * only sleep while their chunk is unloaded.
+     */
+    private void updateSleep() {
+        double sleepDistance = this.getEffectiveSleepDistance();
+        double sleepDistanceSq = sleepDistance * sleepDistance;
+        double wakeDistance = Math.max(0, sleepDistance - WAKE_DISTANCE_MARGIN);
+        double wakeDistanceSq = wakeDistance * wakeDistance;
+        Vector3d cameraPos = this.cameraPosition;
+        int sleeping = 0;
+        for (ParticleEmitter emitter : this.particleEmitters) {
+            if (!this.sleep) {
+                emitter.wake();
+                continue;
+            }
+
+            // Sleeping emitters don't tick, so they have to follow their entity or origins here
+            if (emitter.isSleeping()) {
+                emitter.updateBatchBounds();
+                emitter.updatePosition();
+            }
+
+            Vector3d pos = emitter.getPosition();
+            int chunkX = SectionPos.blockToSectionCoord(pos.x);
+            int chunkZ = SectionPos.blockToSectionCoord(pos.z);
+            long chunk = ChunkPos.asLong(chunkX, chunkZ);
+            if (emitter.chunk != chunk) {
+                emitter.chunk = chunk;
+                emitter.chunkLoaded = this.level.hasChunk(chunkX, chunkZ);
+            }
+
+            boolean asleep = !emitter.chunkLoaded;
+            if (!asleep && sleepDistance > 0 && emitter.getPriority() != EmitterPriority.CRITICAL) {
+                // Sleeping emitters have to come a bit closer to wake up, so they don't toggle every tick at the edge
+                asleep = pos.distanceSquared(cameraPos) > (emitter.isSleeping() ? wakeDistanceSq : sleepDistanceSq);
+            }
+
+            if (asleep) {
+                emitter.sleep();
+                sleeping++;
+            } else {
+                emitter.wake();
+            }
+        }
+        this.sleepingEmitters = sleeping;
+    }
+
+    private double getEffectiveSleepDistance() {
+        if (this.sleepDistance > 0) {
+            return this.sleepDistance;
+        }
+        return this.renderDistance > 0 ? this.renderDistance * 16 + SLEEP_DISTANCE_PADDING : 0;
+    }
+
+    /**
+     * Marks emitters in the specified chunk as loaded. They wake up next tick.
+     *
+     * @param chunkX The x position of the chunk
+     * @param chunkZ The z position of the chunk
+     */
+    @ApiStatus.Internal
+    public void onChunkLoaded(int chunkX, int chunkZ) {
+        this.setChunkLoaded(ChunkPos.asLong(chunkX, chunkZ), true);
+    }
+
+    /**
+     * Marks emitters in the specified chunk as unloaded. They are put to sleep next tick.
+     *
+     * @param chunkX The x position of the chunk
+     * @param chunkZ The z position of the chunk
+     */
+    @ApiStatus.Internal
+    public void onChunkUnloaded(int chunkX, int chunkZ) {
+        this.setChunkLoaded(ChunkPos.asLong(chunkX, chunkZ), false);
+    }
+
+    private void setChunkLoaded(long chunk, boolean loaded) {
+        for (ParticleEmitter emitter : this.particleEmitters) {
+            if (emitter.chunk == chunk) {
+                emitter.chunkLoaded = loaded;
+            }
+        }
+    }
+
+    private void tickSerial() {
+        int particleCount = 0;
         Iterator<ParticleEmitter> iterator = this.particleEmitters.iterator();
         while (iterator.hasNext()) {
             ParticleEmitter emitter = iterator.next();
-            emitter.tick();
+            if (!emitter.isSleeping()) {
+                emitter.tick();
+            }
+            emitter.releaseRemovedParticles(this.particlePool);
+            emitter.publishSnapshot();
             if (emitter.isRemoved()) {
+                if (emitter.isSleeping()) {
+                    this.sleepingEmitters--;
+                }
                 emitter.onRemoved();
                 iterator.remove();
                 continue;
             }
 
-            this.particleCount.addAndGet(emitter.getParticleCount());
+            particleCount += emitter.getParticleCount();
         }
+        this.particleCount.set(particleCount);
     }
 
-    @ApiStatus.Internal
-    public void render(PoseStack poseStack, MultiBufferSource bufferSource, Camera camera, CullFrustum frustum, float partialTicks) {
-        // TODO store emitters per-chunk and fetch them from the renderer
+    private ForkJoinPool getTickPool() {
+        if (this.tickPool == null) {
+            this.tickPool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("Quasar Particle Worker #" + WORKER_COUNT.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+        }
+        return this.tickPool;
+    }
 
-        this.particleEmitters.sort(Comparator.comparingDouble(a -> -a.getPosition().distanceSquared(camera.getPosition().x, camera.getPosition().y, camera.getPosition().z)));
+    private TickAction createTickAction() {
+        ParticleEmitter[] emitters = new ParticleEmitter[this.particleEmitters.size() - this.sleepingEmitters];
+        int count = 0;
         for (ParticleEmitter emitter : this.particleEmitters) {
-            emitter.render(poseStack, bufferSource, camera, partialTicks);
+            if (!emitter.isSleeping()) {
+                emitters[count++] = emitter;
+            }
         }
+        return new TickAction(emitters, 0, count);
     }
 
-    /**
-     * Attempts to remove particles from the most dense and farthest particle emitters to make room for closer emitters.
-     *
-     * @param particles The number of particles being spawned
-     */
-    public void reserve(int particles) {
-        int freeSpace = MAX_PARTICLES - this.particleCount.getAndAdd(-particles); // This isn't correct, but it doesn't really matter
-        if (particles <= freeSpace) {
+    private void submitTick() {
+        // The workers run while the level ticks and renders, so they must never read it. Emitters that collide with
+        // or read blocks are ticked right away and the light for everything else is read before the workers start
+        ParticleLightCache light = this.prefetchedLight;
+        light.validate(this.lightGeneration);
+        ParticleEmitter[] emitters = new ParticleEmitter[this.particleEmitters.size() - this.sleepingEmitters];
+        int count = 0;
+        for (ParticleEmitter emitter : this.particleEmitters) {
+            if (emitter.isSleeping()) {
+                continue;
+            }
+            if (emitter.getModulePlan().readsLevel()) {
+                emitter.tick();
+            } else {
+                emitter.prefetchLight(light);
+                emitters[count++] = emitter;
+            }
+        }
+
+        if (count == 0) {
+            this.commitTick(false);
+            this.updateIndices();
             return;
         }
 
-        particles -= freeSpace;
-        Entity cameraEntity = Minecraft.getInstance().cameraEntity;
-        for (ParticleEmitter emitter : this.particleEmitters) {
-            Vector3d pos = emitter.getPosition();
-            double scaleFactor = Math.min(cameraEntity != null ? (cameraEntity.distanceToSqr(pos.x, pos.y, pos.z) - PERSISTENT_DISTANCE_SQ) / REMOVAL_DISTANCE_SQ : 1.0, 1.0);
-            if (scaleFactor > 0) {
-                particles -= emitter.trim(Math.min(particles, Mth.ceil(emitter.getParticleCount() * scaleFactor)));
-                if (particles <= 0) {
-                    break;
+        this.lightPrefetched = true;
+        this.pendingTick = this.getTickPool().submit(new TickAction(emitters, 0, count));
+    }
+
+    /**
+     * Commits the tick the workers just finished.
+     *
+     * @param resolveLight Whether the workers only read prefetched light, so particles that moved into blocks that
+     *                     weren't prefetched still need their light read from the level
+     */
+    private void commitTick(boolean resolveLight) {
+        // Commit all structural changes serially in the order the emitters would have ticked
+        ParticleLightCache lightCache = resolveLight ? this.getLightCache() : null;
+        int particleCount = 0;
+        Iterator<ParticleEmitter> iterator = this.particleEmitters.iterator();
+        while (iterator.hasNext()) {
+            ParticleEmitter emitter = iterator.next();
+            emitter.runDeferredActions();
+            if (lightCache != null && !emitter.isSleeping()) {
+                emitter.resolveLight(lightCache);
+            }
+            emitter.releaseRemovedParticles(this.particlePool);
+            emitter.publishSnapshot();
+            if (emitter.isRemoved()) {
+                if (emitter.isSleeping()) {
+                    this.sleepingEmitters--;
                 }
+                emitter.onRemoved();
+                iterator.remove();
+                continue;
             }
+
+            particleCount += emitter.getParticleCount();
+        }
+        this.particleCount.set(particleCount);
+    }
+
+    @ApiStatus.Internal
+    public void render(PoseStack poseStack, MultiBufferSource bufferSource, Camera camera, CullFrustum frustum, float partialTicks) {
+        List<ParticleEmitter> emitters = this.visibleEmitters;
+        this.spatialHash.query(frustum, emitters);
+
+        emitters.removeIf(emitter -> !emitter.shouldRender());
+
+        Vec3 cameraPos = camera.getPosition();
+        for (ParticleEmitter emitter : emitters) {
+            emitter.renderDistanceSq = emitter.getPosition().distanceSquared(cameraPos.x, cameraPos.y, cameraPos.z);
         }
+        emitters.sort(BACK_TO_FRONT);
+
+        ParticleDepthSorter depthSorter = this.depthSort ? this.depthSorter : null;
+        if (depthSorter != null) {
+            depthSorter.begin(camera);
+        }
+        for (ParticleEmitter emitter : emitters) {
+            emitter.render(poseStack, bufferSource, camera, partialTicks, depthSorter);
+        }
+        if (depthSorter != null) {
+            depthSorter.render(poseStack, bufferSource, camera, this.vertexWriter);
+        }
+        emitters.clear();
+    }
+
+    /**
+     * Makes room for the specified number of particles by evicting particles from emitters that are over their quota.
+     *
+     * @param particles The number of particles being spawned
+     * @deprecated Emitters are throttled by the {@link #getBudget() budget} automatically. Use
+     * {@link ParticleBudget#reserve(List, int)} to make room for particles spawned some other way
+     */
+    @Deprecated
+    public void reserve(int particles) {
+        // Emitters can't be trimmed while they are being ticked
+        this.finishTick();
+        this.budget.reserve(this.particleEmitters, particles);
     }
 
     public ClientLevel getLevel() {
         return this.level;
     }
 
+    /**
+     * Starts recording every emitter added with {@link #addParticleSystem(ParticleEmitter)}. Any previous recording is discarded.
+     *
+     * @return The new recording
+     */
+    public ParticleSpawnRecording startRecording() {
+        this.recording = new ParticleSpawnRecording();
+        this.recordingStart = this.ticks;
+        return this.recording;
+    }
+
+    /**
+     * Stops recording emitters.
+     *
+     * @return The finished recording or <code>null</code> if nothing was being recorded
+     */
+    public @Nullable ParticleSpawnRecording stopRecording() {
+        ParticleSpawnRecording recording = this.recording;
+        this.recording = null;
+        return recording;
+    }
+
+    /**
+     * <p>Sets the seed used to create the random source of every emitter created after this is called.</p>
+     * <p>Emitters created in the same order then spawn the same particles, which makes replaying a
+     * {@link ParticleSpawnRecording} deterministic. Sub-emitters are seeded by their parent instead, so emitters
+     * ticking in parallel spawn the same particles as when ticked serially.</p>
+     *
+     * @param seed The seed to use
+     */
+    public synchronized void setRandomSeed(long seed) {
+        this.seedSource = RandomSource.create(seed);
+    }
+
+    /**
+     * @return A new random source for an emitter
+     */
+    synchronized RandomSource createRandomSource() {
+        return this.seedSource != null ? RandomSource.create(this.seedSource.nextLong()) : RandomSource.create();
+    }
+
+    /**
+     * @return The number of times this manager has ticked
+     */
+    public int getTicks() {
+        return this.ticks;
+    }
+
     public TickTaskScheduler getScheduler() {
-        return this.scheduler;
+        return this.deferredScheduler;
+    }
+
+    /**
+     * @return The cache of resolved emitter definitions used by {@link #createEmitter(ResourceLocation)}
+     */
+    public EmitterDefinitionCache getDefinitionCache() {
+        return this.definitionCache;
+    }
+
+    /**
+     * @return The pool removed particles are recycled through
+     */
+    public QuasarParticlePool getParticlePool() {
+        return this.particlePool;
+    }
+
+    /**
+     * @return The writer emitters use to write particle vertices while rendering
+     */
+    @ApiStatus.Internal
+    public ParticleVertexWriter getVertexWriter() {
+        return this.vertexWriter;
+    }
+
+    /**
+     * @return The arbiter that splits the particle budget between emitters
+     */
+    public ParticleBudget getBudget() {
+        return this.budget;
+    }
+
+    /**
+     * @return The lights shared by every emitter that uses pooled particle lights
+     */
+    public ParticleLightPool getLightPool() {
+        return this.lightPool;
+    }
+
+    /**
+     * @return The renderer emitters draw billboard particles with or <code>null</code> if instanced rendering is disabled or unavailable
+     */
+    @ApiStatus.Internal
+    public @Nullable ParticleInstanceRenderer getInstanceRenderer() {
+        return this.instancedRendering && ParticleInstanceRenderer.isSupported() ? this.instanceRenderer : null;
+    }
+
+    /**
+     * @return The solver emitters apply forces with or <code>null</code> if OpenCL forces are disabled or unavailable
+     */
+    @ApiStatus.Internal
+    public @Nullable ParticleForceSolver getForceSolver() {
+        ParticleForceSolver forceSolver = this.forceSolver;
+        return forceSolver != null && !forceSolver.isFailed() ? forceSolver : null;
+    }
+
+    /**
+     * @return The sorter used to order translucent particles when {@link #isDepthSort()} is enabled
+     */
+    public ParticleDepthSorter getDepthSorter() {
+        return this.depthSorter;
+    }
+
+    /**
+     * @return The light cache for the current thread, cleared every tick
+     */
+    public ParticleLightCache getLightCache() {
+        ParticleLightCache cache = this.lightCaches.get();
+        cache.validate(this.lightGeneration);
+        return cache;
+    }
+
+    /**
+     * Samples the light color for a particle. Slow particles only sample light every {@link #getLightInterval()} ticks
+     * and otherwise keep their previous light color.
+     *
+     * @param level         The level to read light from
+     * @param x             The x position of the particle
+     * @param y             The y position of the particle
+     * @param z             The z position of the particle
+     * @param velocitySq    The squared velocity of the particle
+     * @param age           The age of the particle in ticks
+     * @param previousLight The light color the particle had last tick
+     * @return The light color to use
+     */
+    @ApiStatus.Internal
+    public int sampleLight(ClientLevel level, double x, double y, double z, double velocitySq, int age, int previousLight) {
+        int interval = this.lightInterval;
+        if (interval > 1 && age % interval != 0 && velocitySq < SLOW_PARTICLE_VELOCITY_SQ) {
+            return previousLight;
+        }
+        if (this.lightPrefetched && this.isDeferring()) {
+            // Particles spawned or moved after the light was read are resolved on the main thread once the tick is committed
+            return this.prefetchedLight.getCachedLightColor(x, y, z, ParticleLightCache.MISSING_LIGHT);
+        }
+        return this.getLightCache().getLightColor(level, x, y, z);
+    }
+
+    /**
+     * @return The collision state shared by all particles during the current tick
+     */
+    public ParticleCollisionContext getCollisionContext() {
+        return this.collisionContext;
     }
 
     public int getEmitterCount() {
         return this.particleEmitters.size();
     }
 
+    /**
+     * @return The number of emitters that are asleep in unloaded chunks or too far away from the camera
+     */
+    public int getSleepingEmitterCount() {
+        return this.sleepingEmitters;
+    }
+
+    /**
+     * @return The number of emitters that are awake and ticking
+     */
+    public int getActiveEmitterCount() {
+        return this.particleEmitters.size() - this.sleepingEmitters;
+    }
+
+    /**
+     * @return The number of chunk sections that currently contain at least one emitter
+     */
+    public int getEmitterSectionCount() {
+        return this.spatialHash.getBucketCount();
+    }
+
     public int getParticleCount() {
         return this.particleCount.get();
     }
+
+    /**
+     * @return Whether new emitters store their particles in packed storage by default
+     */
+    public boolean isPackedStorage() {
+        return this.packedStorage;
+    }
+
+    /**
+     * Sets whether emitters created after this is called store their particles in packed storage by default.
+     *
+     * @param packedStorage Whether to use packed storage
+     * @see ParticleEmitter#setPackedStorage(boolean)
+     */
+    public void setPackedStorage(boolean packedStorage) {
+        this.packedStorage = packedStorage;
+    }
+
+    /**
+     * @return Whether emitters are ticked across multiple threads
+     */
+    public boolean isParallelTick() {
+        return this.parallelTick;
+    }
+
+    /**
+     * <p>Sets whether emitters should be ticked across multiple threads.</p>
+     * <p>Emitters are only read and modified by a single worker at a time and any structural changes
+     * are committed on the main thread once all emitters have finished ticking.</p>
+     *
+     * @param parallelTick Whether to tick in parallel
+     * @see #runOrDefer(Runnable)
+     */
+    public void setParallelTick(boolean parallelTick) {
+        this.parallelTick = parallelTick;
+    }
+
+    /**
+     * @return Whether emitters are ticked on worker threads while the next frames render
+     */
+    public boolean isAsyncTick() {
+        return this.asyncTick;
+    }
+
+    /**
+     * <p>Sets whether emitters should be ticked on worker threads without blocking the main thread.</p>
+     * <p>Each tick is submitted to the workers and only committed at the start of the next tick. Rendering always
+     * reads the last published {@link ParticleRenderSnapshot}, so particles appear one tick later than when ticking
+     * synchronously. The workers never read the level. Light is read on the main thread before the tick is submitted
+     * and emitters with modules that {@link ParticleModulePlan#readsLevel() read the level} are ticked on the main thread
+     * instead. While a tick is running, emitters must not be modified outside of {@link #runOrDefer(Runnable)} and the
+     * {@link #getScheduler() scheduler}.</p>
+     *
+     * @param asyncTick Whether to tick asynchronously
+     */
+    public void setAsyncTick(boolean asyncTick) {
+        this.asyncTick = asyncTick;
+        if (!asyncTick) {
+            this.finishTick();
+        }
+    }
+
+    /**
+     * @return Whether emitters far away from the camera use their level of detail settings
+     */
+    public boolean isLod() {
+        return this.lod;
+    }
+
+    /**
+     * Sets whether emitters should reduce their tick rate, spawn count, and rendering based on distance to the camera.
+     *
+     * @param lod Whether to use level of detail
+     * @see ParticleEmitter#setLodSettings(foundry.veil.api.quasar.data.EmitterLodSettings)
+     */
+    public void setLod(boolean lod) {
+        this.lod = lod;
+    }
+
+    /**
+     * @return The number of ticks between light samples for slow particles
+     */
+    public int getLightInterval() {
+        return this.lightInterval;
+    }
+
+    /**
+     * Sets how often slow-moving particles sample light. Particles that are moving quickly always sample every tick.
+     *
+     * @param lightInterval The number of ticks between light samples
+     */
+    public void setLightInterval(int lightInterval) {
+        if (lightInterval < 1) {
+            throw new IllegalArgumentException("Invalid light interval: " + lightInterval);
+        }
+        this.lightInterval = lightInterval;
+    }
+
+    /**
+     * @return Whether translucent particles of all visible emitters are sorted back to front
+     */
+    public boolean isDepthSort() {
+        return this.depthSort;
+    }
+
+    /**
+     * Sets whether translucent particles of all visible emitters should be sorted back to front before rendering.
+     * Otherwise, particles are only ordered by emitter.
+     *
+     * @param depthSort Whether to sort particles by depth
+     * @see #getDepthSorter()
+     */
+    public void setDepthSort(boolean depthSort) {
+        this.depthSort = depthSort;
+        if (!depthSort) {
+            this.depthSorter.clear();
+        }
+    }
+
+    /**
+     * @return Whether particles that support it are drawn with instancing instead of writing vertices for each particle
+     */
+    public boolean isInstancedRendering() {
+        return this.instancedRendering;
+    }
+
+    /**
+     * Sets whether particles with a render style that supports it are drawn with instancing. Translucent particles
+     * sorted by {@link #isDepthSort()} always write vertices.
+     *
+     * @param instancedRendering Whether to draw particles with instancing
+     * @see ParticleInstanceRenderer
+     */
+    public void setInstancedRendering(boolean instancedRendering) {
+        this.instancedRendering = instancedRendering;
+    }
+
+    /**
+     * @return Whether emitters in unloaded chunks or too far away from the camera are put to sleep
+     */
+    public boolean isSleep() {
+        return this.sleep;
+    }
+
+    /**
+     * <p>Sets whether emitters should sleep while their chunk is unloaded or they are further than
+     * {@link #getSleepDistance()} from the camera. Sleeping emitters don't tick or spawn particles and keep or drop their
+     * particles depending on their {@link ParticleEmitter#getSleepPolicy() sleep policy}.</p>
+     * <p>Critical emitters never sleep because of distance.</p>
+     *
+     * @param sleep Whether emitters can sleep
+     */
+    public void setSleep(boolean sleep) {
+        this.sleep = sleep;
+    }
+
+    /**
+     * @return The distance from the camera emitters are put to sleep at or <code>0</code> to use the render distance
+     */
+    public double getSleepDistance() {
+        return this.sleepDistance;
+    }
+
+    /**
+     * Sets the distance from the camera emitters are put to sleep at. By default, emitters sleep slightly outside the
+     * render distance.
+     *
+     * @param sleepDistance The distance in blocks or <code>0</code> to use the render distance
+     */
+    public void setSleepDistance(double sleepDistance) {
+        if (sleepDistance < 0) {
+            throw new IllegalArgumentException("Invalid sleep distance: " + sleepDistance);
+        }
+        this.sleepDistance = sleepDistance;
+    }
+
+    /**
+     * @return Whether the forces of large emitters are applied with OpenCL
+     */
+    public boolean isOpenCLForces() {
+        return this.forceSolver != null;
+    }
+
+    /**
+     * <p>Sets whether the forces of emitters with at least {@link #getOpenCLForceThreshold()} packed particles should be
+     * applied with OpenCL. This must be called on the render thread.</p>
+     * <p>If no OpenCL device is found, this stays disabled and forces are applied on the CPU. Emitters using any force
+     * that isn't supported by {@link ParticleForceSolver} also keep applying their forces on the CPU.</p>
+     *
+     * @param openCLForces Whether to apply forces with OpenCL
+     */
+    public void setOpenCLForces(boolean openCLForces) {
+        if (openCLForces == (this.forceSolver != null)) {
+            return;
+        }
+
+        // The solver may be in use by the last tick
+        this.finishTick();
+        if (openCLForces) {
+            this.forceSolver = ParticleForceSolver.create();
+        } else {
+            this.forceSolver.free();
+            this.forceSolver = null;
+        }
+    }
+
+    /**
+     * @return The minimum number of packed particles an emitter needs to have its forces applied with OpenCL
+     */
+    public int getOpenCLForceThreshold() {
+        return this.openCLForceThreshold;
+    }
+
+    /**
+     * Sets the minimum number of packed particles an emitter needs to have its forces applied with OpenCL. Smaller
+     * emitters are faster to update on the CPU than to copy to the device and back.
+     *
+     * @param openCLForceThreshold The minimum number of particles
+     */
+    public void setOpenCLForceThreshold(int openCLForceThreshold) {
+        if (openCLForceThreshold < 1) {
+            throw new IllegalArgumentException("Invalid OpenCL force threshold: " + openCLForceThreshold);
+        }
+        this.openCLForceThreshold = openCLForceThreshold;
+    }
+
+    private class TickAction extends RecursiveAction {
+
+        private final ParticleEmitter[] emitters;
+        private final int from;
+        private final int to;
+
+        private TickAction(ParticleEmitter[] emitters, int from, int to) {
+            this.emitters = emitters;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > 1) {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new TickAction(this.emitters, this.from, middle), new TickAction(this.emitters, middle, this.to));
+                return;
+            }
+
+            ParticleEmitter emitter = this.emitters[this.from];
+            ThreadLocal<List<Runnable>> deferredActions = ParticleSystemManager.this.deferredActions;
+            deferredActions.set(emitter.getDeferredActions());
+            try {
+                emitter.tick();
+            } finally {
+                deferredActions.remove();
+            }
+        }
+    }
 }
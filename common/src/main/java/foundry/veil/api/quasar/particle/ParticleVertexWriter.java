@@ -0,0 +1,227 @@
+package foundry.veil.api.quasar.particle;
+
+import com.mojang.blaze3d.vertex.BufferBuilder;
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import com.mojang.blaze3d.vertex.VertexConsumer;
+import foundry.veil.mixin.accessor.BufferBuilderAccessor;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import org.joml.Quaternionf;
+import org.joml.Quaternionfc;
+import org.joml.Vector3f;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.system.NativeResource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Writes particle vertices in the {@link DefaultVertexFormat#PARTICLE} layout.</p>
+ * <p>When the target is a {@link BufferBuilder} using the particle format, vertices are packed into native memory and
+ * copied into the builder in a single operation when the writer is ended. Any other consumer, such as one wrapped for a
+ * texture atlas sprite, receives vertices through the regular {@link VertexConsumer} calls.</p>
+ * <p>Positions are transformed by the pose matrix the writer was started with.</p>
+ */
+public class ParticleVertexWriter implements NativeResource {
+
+    public static final int VERTEX_SIZE = 28;
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private final Matrix4f pose;
+    private final Quaternionf cameraOrientation;
+    private final Vector3f transform;
+    private ByteBuffer buffer;
+    private long pointer;
+    private int vertices;
+    private int capacity;
+    private VertexConsumer consumer;
+    private BufferBuilder target;
+    private boolean packed;
+
+    public ParticleVertexWriter() {
+        this.pose = new Matrix4f();
+        this.cameraOrientation = new Quaternionf();
+        this.transform = new Vector3f();
+        this.buffer = null;
+        this.pointer = 0L;
+        this.vertices = 0;
+        this.capacity = 0;
+        this.consumer = null;
+        this.target = null;
+        this.packed = false;
+    }
+
+    /**
+     * Starts writing vertices into the specified consumer.
+     *
+     * @param consumer          The consumer to write into
+     * @param pose              The matrix to transform positions by
+     * @param cameraOrientation The rotation that faces the camera
+     */
+    public void begin(VertexConsumer consumer, Matrix4fc pose, Quaternionfc cameraOrientation) {
+        this.end();
+        this.pose.set(pose);
+        this.cameraOrientation.set(cameraOrientation);
+        this.consumer = consumer;
+        this.target = null;
+        this.packed = false;
+        this.vertices = 0;
+
+        // Mixins may not be applied in every environment, so check the accessor is present before casting
+        if (consumer instanceof BufferBuilder builder && (Object) builder instanceof BufferBuilderAccessor accessor && accessor.isBuilding() && accessor.getFormat() == DefaultVertexFormat.PARTICLE) {
+            this.target = builder;
+            this.packed = true;
+        }
+    }
+
+    /**
+     * Starts writing packed vertices without a target. The result can be retrieved with {@link #getPackedBuffer()}.
+     *
+     * @param pose              The matrix to transform positions by
+     * @param cameraOrientation The rotation that faces the camera
+     */
+    public void begin(Matrix4fc pose, Quaternionfc cameraOrientation) {
+        this.end();
+        this.pose.set(pose);
+        this.cameraOrientation.set(cameraOrientation);
+        this.consumer = null;
+        this.target = null;
+        this.packed = true;
+        this.vertices = 0;
+    }
+
+    /**
+     * Ensures there is space for at least the specified number of additional vertices.
+     *
+     * @param count The number of vertices that are about to be written
+     */
+    public void reserve(int count) {
+        if (!this.packed || this.vertices + count <= this.capacity) {
+            return;
+        }
+
+        int newCapacity = Math.max(Math.max(DEFAULT_CAPACITY, this.vertices + count), this.capacity + (this.capacity >> 1));
+        this.buffer = this.buffer == null ? MemoryUtil.memAlloc(newCapacity * VERTEX_SIZE) : MemoryUtil.memRealloc(this.buffer, newCapacity * VERTEX_SIZE);
+        this.pointer = MemoryUtil.memAddress(this.buffer);
+        this.capacity = newCapacity;
+    }
+
+    /**
+     * Writes a single vertex.
+     *
+     * @param x     The x position before transformation
+     * @param y     The y position before transformation
+     * @param z     The z position before transformation
+     * @param u     The texture u coordinate
+     * @param v     The texture v coordinate
+     * @param red   The red color from 0 to 255
+     * @param green The green color from 0 to 255
+     * @param blue  The blue color from 0 to 255
+     * @param alpha The alpha color from 0 to 255
+     * @param light The packed light coordinates
+     */
+    public void vertex(float x, float y, float z, float u, float v, int red, int green, int blue, int alpha, int light) {
+        if (!this.packed) {
+            this.consumer.vertex(this.pose, x, y, z);
+            this.consumer.uv(u, v);
+            this.consumer.color(red, green, blue, alpha);
+            this.consumer.uv2(light);
+            this.consumer.endVertex();
+            return;
+        }
+
+        if (this.vertices >= this.capacity) {
+            this.reserve(1);
+        }
+
+        Vector3f pos = this.pose.transformPosition(x, y, z, this.transform);
+        long address = this.pointer + (long) this.vertices * VERTEX_SIZE;
+        MemoryUtil.memPutFloat(address, pos.x);
+        MemoryUtil.memPutFloat(address + 4, pos.y);
+        MemoryUtil.memPutFloat(address + 8, pos.z);
+        MemoryUtil.memPutFloat(address + 12, u);
+        MemoryUtil.memPutFloat(address + 16, v);
+        MemoryUtil.memPutByte(address + 20, (byte) red);
+        MemoryUtil.memPutByte(address + 21, (byte) green);
+        MemoryUtil.memPutByte(address + 22, (byte) blue);
+        MemoryUtil.memPutByte(address + 23, (byte) alpha);
+        MemoryUtil.memPutShort(address + 24, (short) (light & 0xFFFF));
+        MemoryUtil.memPutShort(address + 26, (short) (light >> 16 & 0xFFFF));
+        this.vertices++;
+    }
+
+    /**
+     * Copies all packed vertices into the target builder. This must be called before anything else writes into the builder.
+     */
+    public void flush() {
+        if (this.target == null || this.vertices == 0) {
+            return;
+        }
+
+        BufferBuilderAccessor accessor = (BufferBuilderAccessor) (Object) this.target;
+        int size = this.vertices * VERTEX_SIZE;
+        // BufferBuilder always keeps space for one more vertex after the last one
+        accessor.invokeEnsureCapacity(size + VERTEX_SIZE);
+        int offset = accessor.getNextElementByte();
+        MemoryUtil.memCopy(this.pointer, MemoryUtil.memAddress(accessor.getBuffer(), offset), size);
+        accessor.setNextElementByte(offset + size);
+        accessor.setVertices(accessor.getVertices() + this.vertices);
+        this.vertices = 0;
+    }
+
+    /**
+     * Flushes all vertices and detaches from the current consumer.
+     */
+    public void end() {
+        this.flush();
+        this.consumer = null;
+        this.target = null;
+    }
+
+    /**
+     * @return A view of all vertices written since {@link #begin(Matrix4fc, Quaternionfc)}
+     */
+    public ByteBuffer getPackedBuffer() {
+        return this.buffer == null ? ByteBuffer.allocateDirect(0) : MemoryUtil.memByteBuffer(this.pointer, this.vertices * VERTEX_SIZE);
+    }
+
+    /**
+     * @return Whether vertices are being packed into native memory instead of written to a consumer
+     */
+    public boolean isPacked() {
+        return this.packed;
+    }
+
+    /**
+     * @return The consumer vertices are written to or <code>null</code> if only packing
+     */
+    public @Nullable VertexConsumer getConsumer() {
+        return this.consumer;
+    }
+
+    /**
+     * @return The rotation that faces the camera
+     */
+    public Quaternionfc getCameraOrientation() {
+        return this.cameraOrientation;
+    }
+
+    /**
+     * @return The number of packed vertices that haven't been flushed yet
+     */
+    public int getVertexCount() {
+        return this.vertices;
+    }
+
+    @Override
+    public void free() {
+        this.end();
+        if (this.buffer != null) {
+            MemoryUtil.memFree(this.buffer);
+            this.buffer = null;
+            this.pointer = 0L;
+            this.capacity = 0;
+        }
+        this.vertices = 0;
+    }
+}
@@ -1,57 +1,64 @@
 package foundry.veil.api.quasar.particle;
 
-import com.google.common.base.Suppliers;
 import foundry.veil.api.TickTaskScheduler;
 import foundry.veil.api.quasar.data.ParticleSettings;
 import foundry.veil.api.quasar.data.QuasarParticleData;
 import foundry.veil.api.quasar.emitters.module.*;
 import gg.moonflower.molangcompiler.api.MolangEnvironment;
-import gg.moonflower.molangcompiler.api.MolangExpression;
-import gg.moonflower.molangcompiler.api.MolangRuntime;
 import net.minecraft.client.multiplayer.ClientLevel;
-import net.minecraft.client.renderer.LevelRenderer;
 import net.minecraft.core.BlockPos;
 import net.minecraft.util.Mth;
 import net.minecraft.util.RandomSource;
-import net.minecraft.world.entity.Entity;
-import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.phys.AABB;
-import net.minecraft.world.phys.Vec3;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector3d;
+import org.joml.Vector3dc;
 import org.joml.Vector3f;
 
 import java.util.Iterator;
-import java.util.List;
-import java.util.function.Supplier;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class QuasarParticle {
 
     private static final double MAXIMUM_COLLISION_VELOCITY_SQUARED = Mth.square(100.0D);
-
-    private final ClientLevel level;
-    private final RandomSource randomSource;
-    private final TickTaskScheduler scheduler;
-    private final QuasarParticleData data;
-    private final ParticleSettings settings;
-    private final ParticleEmitter emitter;
-    private final ParticleModuleSet modules;
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private ClientLevel level;
+    private RandomSource randomSource;
+    private TickTaskScheduler scheduler;
+    private QuasarParticleData data;
+    private ParticleSettings settings;
+    private ParticleEmitter emitter;
+    private ParticleModuleSet modules;
     private final Vector3d position;
     private final Vector3d velocity;
     private final Vector3f rotation;
     private final BlockPos.MutableBlockPos blockPosition;
-    private final boolean hasCollision;
+    private boolean hasCollision;
     private float radius;
-    private final int lifetime;
+    private int lifetime;
     private int age;
     private AABB boundingBox;
+    private boolean boundingBoxDirty;
     private boolean stoppedByCollision;
+    private ParticleStorage storage;
+    private int storageIndex;
+    private int id;
 
-    private final Supplier<MolangRuntime> environment;
     private final RenderData renderData;
 
     public QuasarParticle(ClientLevel level, RandomSource randomSource, TickTaskScheduler scheduler, QuasarParticleData data, ParticleModuleSet modules, ParticleSettings settings, ParticleEmitter emitter) {
+        this.position = new Vector3d();
+        this.velocity = new Vector3d();
+        this.rotation = new Vector3f();
+        this.blockPosition = new BlockPos.MutableBlockPos();
+        this.renderData = new RenderData(data);
+        this.setup(level, randomSource, scheduler, data, modules, settings, emitter);
+    }
+
+    private void setup(ClientLevel level, RandomSource randomSource, TickTaskScheduler scheduler, QuasarParticleData data, ParticleModuleSet modules, ParticleSettings settings, ParticleEmitter emitter) {
         this.level = level;
         this.randomSource = randomSource;
         this.scheduler = scheduler;
@@ -59,34 +66,44 @@ public class QuasarParticle {
         this.settings = settings;
         this.emitter = emitter;
         this.modules = modules;
-        this.position = new Vector3d();
-        this.velocity = new Vector3d();
-        this.rotation = new Vector3f();
-        this.blockPosition = new BlockPos.MutableBlockPos();
         this.hasCollision = this.modules.getCollisionModules().length > 0;
         this.radius = settings.particleSize(this.randomSource);
         this.lifetime = settings.particleLifetime(this.randomSource);
         this.age = 0;
+        this.stoppedByCollision = false;
+        this.storage = null;
+        this.storageIndex = -1;
+        // Pooled particles get a new id, so nothing keyed by the old one carries over
+        this.id = NEXT_ID.getAndIncrement();
+    }
 
-        this.renderData = new RenderData(data);
-        // Don't create the environment if the particle never uses it
-        this.environment = Suppliers.memoize(() -> MolangRuntime.runtime()
-                .setQuery("x", MolangExpression.of(() -> (float) this.renderData.getRenderPosition().x()))
-                .setQuery("y", MolangExpression.of(() -> (float) this.renderData.getRenderPosition().y()))
-                .setQuery("z", MolangExpression.of(() -> (float) this.renderData.getRenderPosition().z()))
-                .setQuery("velX", MolangExpression.of(() -> (float) this.velocity.x()))
-                .setQuery("velY", MolangExpression.of(() -> (float) this.velocity.y()))
-                .setQuery("velZ", MolangExpression.of(() -> (float) this.velocity.z()))
-                .setQuery("speedSq", MolangExpression.of(() -> (float) this.velocity.lengthSquared()))
-                .setQuery("speed", MolangExpression.of(() -> (float) this.velocity.length()))
-                .setQuery("xRot", MolangExpression.of(() -> (float) Math.toDegrees(this.renderData.getRenderRotation().x())))
-                .setQuery("yRot", MolangExpression.of(() -> (float) Math.toDegrees(this.renderData.getRenderRotation().y())))
-                .setQuery("zRot", MolangExpression.of(() -> (float) Math.toDegrees(this.renderData.getRenderRotation().z())))
-                .setQuery("scale", MolangExpression.of(this.renderData::getRenderRadius))
-                .setQuery("age", MolangExpression.of(this.renderData::getRenderAge))
-                .setQuery("agePercent", MolangExpression.of(this.renderData::getAgePercent))
-                .setQuery("lifetime", this.lifetime)
-                .create());
+    /**
+     * <p>Resets this particle to the same state as a newly constructed particle.</p>
+     * <p>This must only be called on particles that have been removed and had {@link #onRemove()} called.</p>
+     */
+    void reset(ClientLevel level, RandomSource randomSource, TickTaskScheduler scheduler, QuasarParticleData data, ParticleModuleSet modules, ParticleSettings settings, ParticleEmitter emitter) {
+        this.position.zero();
+        this.velocity.zero();
+        this.rotation.zero();
+        this.boundingBox = null;
+        this.boundingBoxDirty = false;
+        this.renderData.reset(data);
+        this.setup(level, randomSource, scheduler, data, modules, settings, emitter);
+    }
+
+    /**
+     * Drops all references this particle holds to its emitter and level so it can sit in a pool.
+     */
+    void release() {
+        this.level = null;
+        this.scheduler = null;
+        this.data = null;
+        this.settings = null;
+        this.emitter = null;
+        this.modules = null;
+        this.storage = null;
+        this.storageIndex = -1;
+        this.renderData.release();
     }
 
     private void move(double dx, double dy, double dz) {
@@ -98,11 +115,12 @@ public class QuasarParticle {
         double d0 = dx;
         double d1 = dy;
         double d2 = dz;
-        if (this.hasCollision && dx * dx + dy * dy + dz * dz < MAXIMUM_COLLISION_VELOCITY_SQUARED) {
-            Vec3 vec3 = Entity.collideBoundingBox(null, new Vec3(dx, dy, dz), box, this.level, List.of());
-            dx = vec3.x;
-            dy = vec3.y;
-            dz = vec3.z;
+        ParticleCollisionContext collision = this.hasCollision ? this.emitter.getParticleManager().getCollisionContext() : null;
+        if (collision != null && dx * dx + dy * dy + dz * dz < MAXIMUM_COLLISION_VELOCITY_SQUARED) {
+            Vector3dc movement = collision.collide(box, dx, dy, dz);
+            dx = movement.x();
+            dy = movement.y();
+            dz = movement.z();
         }
 
         if (dx != 0.0D || dy != 0.0D || dz != 0.0D) {
@@ -110,16 +128,12 @@ public class QuasarParticle {
             this.updateBoundingBox();
         }
 
-        if (!this.hasCollision) {
+        if (collision == null) {
             return;
         }
 
-        List<Entity> entities = this.level.getEntities(null, box);
-        for (Entity entity : entities) {
-            if (entity instanceof LivingEntity livingEntity && livingEntity.isAlive()) {
-                this.stoppedByCollision = true;
-                break;
-            }
+        if (collision.hasLivingEntity(box)) {
+            this.stoppedByCollision = true;
         }
 
         if (Math.abs(d1) >= (double) 1.0E-5F && Math.abs(dy) < (double) 1.0E-5F) {
@@ -152,10 +166,11 @@ public class QuasarParticle {
     private void updateBoundingBox() {
         double r = this.radius / 2.0;
         this.boundingBox = new AABB(this.position.x - r, this.position.y - r, this.position.z - r, this.position.x + r, this.position.y + r, this.position.z + r);
+        this.boundingBoxDirty = false;
     }
 
     private int getLightColor() {
-        return LevelRenderer.getLightColor(this.level, this.getBlockPosition());
+        return this.emitter.getParticleManager().sampleLight(this.level, this.position.x, this.position.y, this.position.z, this.velocity.lengthSquared(), this.age, this.renderData.getLightColor());
     }
 
     @ApiStatus.Internal
@@ -169,32 +184,126 @@ public class QuasarParticle {
 
     @ApiStatus.Internal
     public void tick() {
+        this.tick(1);
+    }
+
+    /**
+     * Ticks this particle as if the specified number of ticks had passed. Modules are only run once,
+     * so anything they do other than changing velocity is not scaled.
+     *
+     * @param step The number of ticks to advance by
+     */
+    @ApiStatus.Internal
+    public void tick(int step) {
         this.renderData.tick(this, this.getLightColor());
         this.modules.updateEnabled();
+        this.update();
+
+        // TODO properly do forces
+        this.applyForces(step);
+
+        this.move(step);
+
+        this.age += step;
+        if (this.age >= this.lifetime) {
+            this.remove();
+        }
+    }
+
+    void update() {
         for (UpdateParticleModule updateModule : this.modules.getUpdateModules()) {
             updateModule.update(this);
         }
+    }
+
+    /**
+     * Runs a range of the update modules of this particle.
+     *
+     * @param from  The first module to run
+     * @param count The number of modules to run
+     */
+    void update(int from, int count) {
+        UpdateParticleModule[] updateModules = this.modules.getUpdateModules();
+        for (int i = from; i < from + count; i++) {
+            updateModules[i].update(this);
+        }
+    }
 
-        // TODO properly do forces
+    void applyForces() {
         for (ForceParticleModule updateModule : this.modules.getForceModules()) {
             updateModule.applyForce(this);
         }
+    }
 
-        this.move(this.velocity.x, this.velocity.y, this.velocity.z);
+    /**
+     * Applies a range of the force modules of this particle.
+     *
+     * @param from  The first module to apply
+     * @param count The number of modules to apply
+     */
+    void applyForces(int from, int count) {
+        ForceParticleModule[] forceModules = this.modules.getForceModules();
+        for (int i = from; i < from + count; i++) {
+            forceModules[i].applyForce(this);
+        }
+    }
 
-        this.age++;
-        if (this.age >= this.lifetime) {
-            this.remove();
+    void applyForces(int step) {
+        if (step == 1) {
+            this.applyForces();
+            return;
         }
+
+        // Forces only add to velocity once, so scale the change to cover the whole step
+        double vx = this.velocity.x;
+        double vy = this.velocity.y;
+        double vz = this.velocity.z;
+        this.applyForces();
+        this.velocity.sub(vx, vy, vz).mul(step).add(vx, vy, vz);
+    }
+
+    void move() {
+        this.move(1);
+    }
+
+    void move(int step) {
+        this.move(this.velocity.x * step, this.velocity.y * step, this.velocity.z * step);
     }
 
     @ApiStatus.Internal
     public void render(float partialTicks) {
+        this.renderModules(partialTicks);
+        this.renderData.render(this, partialTicks);
+    }
+
+    void renderModules(float partialTicks) {
         Iterator<RenderParticleModule> iterator = this.modules.getEnabledRenderModules();
         while (iterator.hasNext()) {
             iterator.next().render(this, partialTicks);
         }
-        this.renderData.render(this, partialTicks);
+    }
+
+    void bind(ParticleStorage storage, int index) {
+        this.storage = storage;
+        this.storageIndex = index;
+    }
+
+    void unbind() {
+        this.storage = null;
+        this.storageIndex = -1;
+    }
+
+    void pull(double x, double y, double z, double velocityX, double velocityY, double velocityZ, float rotationX, float rotationY, float rotationZ, float radius, int age) {
+        this.position.set(x, y, z);
+        this.velocity.set(velocityX, velocityY, velocityZ);
+        this.rotation.set(rotationX, rotationY, rotationZ);
+        this.radius = radius;
+        this.age = age;
+        this.boundingBoxDirty = true;
+    }
+
+    int getMaxAge() {
+        return this.lifetime;
     }
 
     @ApiStatus.Internal
@@ -205,11 +314,11 @@ public class QuasarParticle {
     }
 
     public void remove() {
-        this.age = Integer.MIN_VALUE;
+        this.setAge(Integer.MIN_VALUE);
     }
 
     public boolean isRemoved() {
-        return this.age < 0;
+        return this.getAge() < 0;
     }
 
     public ClientLevel getLevel() {
@@ -266,11 +375,11 @@ public class QuasarParticle {
     }
 
     public float getRadius() {
-        return this.radius;
+        return this.storage != null ? this.storage.getRadius()[this.storageIndex] : this.radius;
     }
 
     public int getAge() {
-        return this.age;
+        return this.storage != null ? this.storage.getAge()[this.storageIndex] : this.age;
     }
 
     public int getLifetime() {
@@ -278,6 +387,9 @@ public class QuasarParticle {
     }
 
     public AABB getBoundingBox() {
+        if (this.boundingBoxDirty) {
+            this.updateBoundingBox();
+        }
         return this.boundingBox;
     }
 
@@ -285,8 +397,35 @@ public class QuasarParticle {
         return this.renderData;
     }
 
+    /**
+     * @return The packed storage this particle is a view of or <code>null</code> if the particle is stored as an object
+     */
+    public @Nullable ParticleStorage getStorage() {
+        return this.storage;
+    }
+
+    /**
+     * @return The row of this particle in {@link #getStorage()} or <code>-1</code> if the particle is stored as an object
+     */
+    public int getStorageIndex() {
+        return this.storageIndex;
+    }
+
+    /**
+     * @return A number that identifies this particle until it is removed. Particles taken from a pool get a new id
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Retrieves the MoLang environment of the emitter bound to this particle.
+     * The environment is shared by every particle in the emitter, so it must be used immediately.
+     *
+     * @return The environment to evaluate expressions for this particle in
+     */
     public MolangEnvironment getEnvironment() {
-        return this.environment.get();
+        return this.emitter.getMolangRuntime().bind(this);
     }
 
     public void vectorToRotation(double x, double y, double z) {
@@ -295,10 +434,16 @@ public class QuasarParticle {
 
     public void setRadius(float radius) {
         this.radius = radius;
+        if (this.storage != null) {
+            this.storage.getRadius()[this.storageIndex] = radius;
+        }
         this.updateBoundingBox();
     }
 
     public void setAge(int age) {
         this.age = age;
+        if (this.storage != null) {
+            this.storage.getAge()[this.storageIndex] = age;
+        }
     }
 }
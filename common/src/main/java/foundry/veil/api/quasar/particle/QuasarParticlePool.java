@@ -0,0 +1,118 @@
+package foundry.veil.api.quasar.particle;
+
+import foundry.veil.api.TickTaskScheduler;
+import foundry.veil.api.quasar.data.ParticleSettings;
+import foundry.veil.api.quasar.data.QuasarParticleData;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.util.RandomSource;
+
+import java.util.Arrays;
+
+/**
+ * <p>A bounded pool of removed particles that can be recycled by new spawns.</p>
+ * <p>Particles must have been removed from their emitter and had {@link QuasarParticle#onRemove()} called before they
+ * are released into the pool. A released particle must not be referenced anywhere else, since it will be reset and handed
+ * to a different emitter the next time a particle is spawned.</p>
+ * <p>The pool is not thread-safe and is only accessed from the main thread.</p>
+ */
+public class QuasarParticlePool {
+
+    private final QuasarParticle[] particles;
+    private int size;
+    private long hits;
+    private long misses;
+    private long discarded;
+
+    public QuasarParticlePool(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.particles = new QuasarParticle[capacity];
+        this.size = 0;
+    }
+
+    /**
+     * Retrieves a particle from the pool and resets it or creates a new particle if the pool is empty.
+     *
+     * @return A particle in the same state as a newly constructed one
+     */
+    public QuasarParticle acquire(ClientLevel level, RandomSource randomSource, TickTaskScheduler scheduler, QuasarParticleData data, ParticleModuleSet modules, ParticleSettings settings, ParticleEmitter emitter) {
+        if (this.size == 0) {
+            this.misses++;
+            return new QuasarParticle(level, randomSource, scheduler, data, modules, settings, emitter);
+        }
+
+        this.hits++;
+        QuasarParticle particle = this.particles[--this.size];
+        this.particles[this.size] = null;
+        particle.reset(level, randomSource, scheduler, data, modules, settings, emitter);
+        return particle;
+    }
+
+    /**
+     * Releases the specified particle back into the pool. If the pool is full, the particle is left for the garbage collector.
+     *
+     * @param particle The removed particle to recycle
+     */
+    public void release(QuasarParticle particle) {
+        if (this.size >= this.particles.length) {
+            this.discarded++;
+            return;
+        }
+
+        particle.release();
+        this.particles[this.size++] = particle;
+    }
+
+    /**
+     * Removes all pooled particles.
+     */
+    public void clear() {
+        Arrays.fill(this.particles, 0, this.size, null);
+        this.size = 0;
+    }
+
+    /**
+     * Resets the hit, miss, and discard counters.
+     */
+    public void resetStats() {
+        this.hits = 0;
+        this.misses = 0;
+        this.discarded = 0;
+    }
+
+    /**
+     * @return The number of particles currently waiting in the pool
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return The maximum number of particles the pool can hold
+     */
+    public int getCapacity() {
+        return this.particles.length;
+    }
+
+    /**
+     * @return The number of spawns that reused a pooled particle
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * @return The number of spawns that had to allocate a new particle
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * @return The number of released particles that were dropped because the pool was full
+     */
+    public long getDiscarded() {
+        return this.discarded;
+    }
+}
@@ -1,6 +1,7 @@
 package foundry.veil.api.quasar.particle;
 
 import com.mojang.blaze3d.vertex.PoseStack;
+import com.mojang.blaze3d.vertex.VertexConsumer;
 import foundry.veil.Veil;
 import foundry.veil.api.client.render.rendertype.VeilRenderType;
 import foundry.veil.api.quasar.data.QuasarParticleData;
@@ -38,11 +39,13 @@ public class RenderData {
     private float alpha;
     public float renderAge;
     public float agePercent;
-    private final boolean additive;
+    private boolean additive;
     private SpriteData spriteData;
     private TextureAtlasSprite atlasSprite;
     private RenderType renderType;
     private final List<Trail> trails;
+    int snapshotColor;
+    boolean snapshotCaptured;
 
     public RenderData(QuasarParticleData data) {
         this.prevPosition = new Vector3d();
@@ -62,6 +65,43 @@ public class RenderData {
         this.atlasSprite = null;
         this.updateRenderType();
         this.trails = new ArrayList<>();
+        this.snapshotColor = 0;
+        this.snapshotCaptured = false;
+    }
+
+    /**
+     * Resets all render state back to the defaults for the specified particle data.
+     *
+     * @param data The data of the particle this render data is now for
+     */
+    @ApiStatus.Internal
+    public void reset(QuasarParticleData data) {
+        this.prevPosition.zero();
+        this.renderPosition.zero();
+        this.prevRotation.zero();
+        this.renderRotation.zero();
+        this.prevRadius = 1.0F;
+        this.renderRadius = 1.0F;
+        this.lightColor = LightTexture.FULL_BRIGHT;
+        this.red = 1.0F;
+        this.green = 1.0F;
+        this.blue = 1.0F;
+        this.alpha = 1.0F;
+        this.renderAge = 0.0F;
+        this.agePercent = 0.0F;
+        this.additive = data.additive();
+        this.spriteData = data.spriteData();
+        this.atlasSprite = null;
+        this.updateRenderType();
+        this.trails.clear();
+        this.snapshotColor = 0;
+        this.snapshotCaptured = false;
+    }
+
+    @ApiStatus.Internal
+    public void release() {
+        this.atlasSprite = null;
+        this.trails.clear();
     }
 
     private void updateRenderType() {
@@ -91,6 +131,99 @@ public class RenderData {
         this.agePercent = Math.min(this.renderAge / (float) particle.getLifetime(), 1.0F);
     }
 
+    @ApiStatus.Internal
+    public void tick(int lightColor) {
+        this.lightColor = lightColor;
+    }
+
+    @ApiStatus.Internal
+    public void render(ParticleStorage storage, int index, float partialTicks) {
+        double x = storage.getX()[index];
+        double y = storage.getY()[index];
+        double z = storage.getZ()[index];
+        float rotationX = storage.getRotationX()[index];
+        float rotationY = storage.getRotationY()[index];
+        float rotationZ = storage.getRotationZ()[index];
+        this.prevPosition.set(storage.getPrevX()[index], storage.getPrevY()[index], storage.getPrevZ()[index]);
+        this.prevRotation.set(storage.getPrevRotationX()[index], storage.getPrevRotationY()[index], storage.getPrevRotationZ()[index]);
+        this.prevRadius = storage.getPrevRadius()[index];
+        this.renderPosition.set(
+                Mth.lerp(partialTicks, this.prevPosition.x, x),
+                Mth.lerp(partialTicks, this.prevPosition.y, y),
+                Mth.lerp(partialTicks, this.prevPosition.z, z));
+        this.renderRotation.set(
+                Mth.lerp(partialTicks, this.prevRotation.x, rotationX),
+                Mth.lerp(partialTicks, this.prevRotation.y, rotationY),
+                Mth.lerp(partialTicks, this.prevRotation.z, rotationZ));
+        this.renderRadius = Mth.lerp(partialTicks, this.prevRadius, storage.getRadius()[index]);
+        this.renderAge = storage.getAge()[index] + partialTicks;
+        this.agePercent = Math.min(this.renderAge / (float) storage.get(index).getLifetime(), 1.0F);
+    }
+
+    /**
+     * Fills this render data with the interpolated state of a particle in a snapshot.
+     *
+     * @param snapshot     The snapshot to read from
+     * @param index        The row of the particle
+     * @param partialTicks The percentage from the previous to the current state
+     */
+    void load(ParticleRenderSnapshot snapshot, int index, float partialTicks) {
+        ParticleRenderSnapshot.Material material = snapshot.getMaterial(index);
+        snapshot.getRenderPosition(index, partialTicks, this.renderPosition);
+        this.renderRotation.set(
+                snapshot.getRenderRotationX(index, partialTicks),
+                snapshot.getRenderRotationY(index, partialTicks),
+                snapshot.getRenderRotationZ(index, partialTicks));
+        this.renderRadius = snapshot.getRenderRadius(index, partialTicks);
+        this.renderAge = snapshot.getRenderAge(index, partialTicks);
+        this.agePercent = snapshot.getAgePercent(index, partialTicks);
+        this.lightColor = snapshot.getLightColor(index);
+
+        int color = snapshot.getRenderColor(index, partialTicks);
+        this.red = (color >> 16 & 0xFF) / 255.0F;
+        this.green = (color >> 8 & 0xFF) / 255.0F;
+        this.blue = (color & 0xFF) / 255.0F;
+        this.alpha = (color >>> 24) / 255.0F;
+
+        this.additive = material.additive();
+        this.spriteData = material.spriteData();
+        this.atlasSprite = material.atlasSprite();
+        this.renderType = material.renderType();
+    }
+
+    /**
+     * Adds the current position of the particle to all trails.
+     */
+    @ApiStatus.Internal
+    public void pushTrailPoints() {
+        for (int i = 0; i < this.trails.size(); i++) {
+            this.trails.get(i).pushRotatedPoint(this.renderPosition.x, this.renderPosition.y, this.renderPosition.z, this.renderRotation.x, this.renderRotation.y, this.renderRotation.z);
+        }
+    }
+
+    /**
+     * @return The color packed as ARGB with 8 bits per channel
+     */
+    int packColor() {
+        int red = (int) (this.red * 255.0F) & 0xFF;
+        int green = (int) (this.green * 255.0F) & 0xFF;
+        int blue = (int) (this.blue * 255.0F) & 0xFF;
+        int alpha = (int) (this.alpha * 255.0F) & 0xFF;
+        return alpha << 24 | red << 16 | green << 8 | blue;
+    }
+
+    Vector3dc getPrevPosition() {
+        return this.prevPosition;
+    }
+
+    Vector3fc getPrevRotation() {
+        return this.prevRotation;
+    }
+
+    float getPrevRadius() {
+        return this.prevRadius;
+    }
+
     public Vector3dc getRenderPosition() {
         return this.renderPosition;
     }
@@ -143,6 +276,25 @@ public class RenderData {
         return this.renderType;
     }
 
+    /**
+     * Retrieves the buffer to render into from the specified source. The buffer is wrapped to remap UVs if this
+     * particle uses an atlas sprite.
+     *
+     * @param bufferSource The source to get the buffer from
+     * @return The buffer for the render type of this particle
+     */
+    public VertexConsumer getBuffer(MultiBufferSource bufferSource) {
+        VertexConsumer builder = bufferSource.getBuffer(this.renderType);
+        return this.atlasSprite != null ? this.atlasSprite.wrap(builder) : builder;
+    }
+
+    /**
+     * @return Whether this particle is blended additively and can be rendered in any order
+     */
+    public boolean isAdditive() {
+        return this.additive;
+    }
+
     public List<Trail> getTrails() {
         return this.trails;
     }
@@ -153,13 +305,11 @@ public class RenderData {
             return;
         }
 
-        poseStack.pushPose();
-        poseStack.translate(-cameraPos.x(), -cameraPos.y(), -cameraPos.z());
-        for (Trail trail : this.trails) {
-            trail.pushRotatedPoint(new Vec3(this.prevPosition.x, this.prevPosition.y, this.prevPosition.z), new Vec3(this.prevRotation.x, this.prevRotation.y, this.prevRotation.z));
-            trail.render(poseStack, bufferSource.getBuffer(VeilRenderType.quasarTrail(trail.getTexture())), packedLight);
+        for (int i = 0; i < this.trails.size(); i++) {
+            Trail trail = this.trails.get(i);
+            trail.pushRotatedPoint(this.prevPosition.x, this.prevPosition.y, this.prevPosition.z, this.prevRotation.x, this.prevRotation.y, this.prevRotation.z);
+            trail.render(poseStack, bufferSource.getBuffer(VeilRenderType.quasarTrail(trail.getTexture())), packedLight, cameraPos.x, cameraPos.y, cameraPos.z);
         }
-        poseStack.popPose();
     }
 
     public void setRed(float red) {
@@ -8,8 +8,8 @@ import foundry.veil.api.quasar.data.QuasarParticleData;
 import foundry.veil.api.quasar.registry.RenderStyleRegistry;
 import foundry.veil.api.util.CodecUtil;
 import net.minecraft.client.Minecraft;
-import org.joml.Matrix4f;
-import org.joml.Quaternionf;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Matrix3f;
 import org.joml.Vector3f;
 import org.joml.Vector3fc;
 
@@ -18,7 +18,65 @@ import java.util.Locale;
 public interface RenderStyle {
     Codec<RenderStyle> CODEC = CodecUtil.registryOrLegacyCodec(RenderStyleRegistry.REGISTRY);
 
-    void render(PoseStack poseStack, QuasarParticle particle, RenderData renderData, Vector3fc renderOffset, VertexConsumer builder, double ageModifier, float partialTicks);
+    void render(PoseStack poseStack, @Nullable QuasarParticle particle, RenderData renderData, Vector3fc renderOffset, VertexConsumer builder, double ageModifier, float partialTicks);
+
+    /**
+     * Renders a particle using the specified vertex writer. Styles that don't write through the writer directly
+     * have all pending vertices flushed and are passed the underlying consumer instead.
+     *
+     * @param poseStack    The current pose stack
+     * @param particle     The particle to render or <code>null</code> if it is rendered from a snapshot
+     * @param renderData   The render state of the particle
+     * @param renderOffset The position of the particle relative to the camera
+     * @param writer       The writer to emit vertices with
+     * @param ageModifier  The factor to scale the particle by
+     * @param partialTicks The percentage from last tick to this tick
+     */
+    default void render(PoseStack poseStack, @Nullable QuasarParticle particle, RenderData renderData, Vector3fc renderOffset, ParticleVertexWriter writer, double ageModifier, float partialTicks) {
+        VertexConsumer consumer = writer.getConsumer();
+        if (consumer == null) {
+            throw new IllegalStateException("Render style does not support packed vertices: " + this.getClass().getName());
+        }
+        writer.flush();
+        this.render(poseStack, particle, renderData, renderOffset, consumer, ageModifier, partialTicks);
+    }
+
+    /**
+     * <p>Renders a particle from a render snapshot using the specified vertex writer.</p>
+     * <p>Styles that don't override this are only passed the interpolated state as render data. The particle is
+     * <code>null</code> since it may be ticking on another thread while the snapshot renders.</p>
+     *
+     * @param poseStack    The current pose stack
+     * @param snapshot     The snapshot to read the particle from
+     * @param index        The row of the particle in the snapshot
+     * @param renderOffset The position of the particle relative to the camera
+     * @param writer       The writer to emit vertices with
+     * @param partialTicks The percentage from the previous to the current state of the snapshot
+     */
+    default void render(PoseStack poseStack, ParticleRenderSnapshot snapshot, int index, Vector3fc renderOffset, ParticleVertexWriter writer, float partialTicks) {
+        this.render(poseStack, null, snapshot.load(index, partialTicks), renderOffset, writer, 1, partialTicks);
+    }
+
+    /**
+     * @return Whether particles of this style can be drawn with {@link ParticleInstanceRenderer} instead of writing vertices
+     */
+    default boolean supportsInstancing() {
+        return false;
+    }
+
+    /**
+     * Adds a particle from a render snapshot to the current batch of the specified instance renderer. This is only
+     * called if {@link #supportsInstancing()} is <code>true</code>.
+     *
+     * @param snapshot     The snapshot to read the particle from
+     * @param index        The row of the particle in the snapshot
+     * @param renderOffset The position of the particle relative to the camera
+     * @param renderer     The renderer to add the particle to
+     * @param partialTicks The percentage from the previous to the current state of the snapshot
+     */
+    default void renderInstance(ParticleRenderSnapshot snapshot, int index, Vector3fc renderOffset, ParticleInstanceRenderer renderer, float partialTicks) {
+        throw new UnsupportedOperationException("Render style does not support instancing: " + this.getClass().getName());
+    }
 
     final class Cube implements RenderStyle {
         private static final Vector3fc[] CUBE_POSITIONS = {
@@ -40,107 +98,203 @@ public interface RenderStyle {
                 // RIGHT
                 new Vector3f(1, -1, 1), new Vector3f(1, 1, 1), new Vector3f(1, 1, -1), new Vector3f(1, -1, -1)};
 
+        private final Matrix3f basis = new Matrix3f();
+        private final ParticleVertexWriter writer = new ParticleVertexWriter();
+
         @Override
         public void render(PoseStack poseStack, QuasarParticle particle, RenderData renderData, Vector3fc renderOffset, VertexConsumer builder, double ageModifier, float partialTicks) {
-            Matrix4f matrix4f = poseStack.last().pose();
+            ParticleVertexWriter writer = this.writer;
+            writer.begin(builder, poseStack.last().pose(), Minecraft.getInstance().getEntityRenderDispatcher().cameraOrientation());
+            this.render(poseStack, particle, renderData, renderOffset, writer, ageModifier, partialTicks);
+            writer.end();
+        }
+
+        @Override
+        public void render(PoseStack poseStack, QuasarParticle particle, RenderData renderData, Vector3fc renderOffset, ParticleVertexWriter writer, double ageModifier, float partialTicks) {
             Vector3fc rotation = renderData.getRenderRotation();
-            Vector3f vec = new Vector3f();
-            SpriteData spriteData = renderData.getSpriteData();
-
-            for (int i = 0; i < 6; i++) {
-                for (int j = 0; j < 4; j++) {
-                    vec.set(CUBE_POSITIONS[i * 4 + j]);
-                    QuasarParticleData data = particle.getData();
-                    if (vec.z < 0 && data.velocityStretchFactor() != 0.0f) {
-                        vec.z *= 1 + data.velocityStretchFactor();
-                    }
-                    vec.rotateX(rotation.x())
-                            .rotateY(rotation.y())
-                            .rotateZ(rotation.z())
-                            .mul((float) (renderData.getRenderRadius() * ageModifier))
-                            .add(renderOffset);
-
-                    float u = (int) (j / 2.0F);
-                    float v = j % 2;
-
-                    if (spriteData != null) {
-                        u = spriteData.u(renderData.getRenderAge(), renderData.getAgePercent(), u);
-                        v = spriteData.v(renderData.getRenderAge(), renderData.getAgePercent(), v);
-                    }
-
-                    builder.vertex(matrix4f, vec.x, vec.y, vec.z);
-                    builder.uv(u, v);
-                    builder.color(renderData.getRed(), renderData.getGreen(), renderData.getBlue(), renderData.getAlpha());
-                    builder.uv2(renderData.getLightColor());
-                    builder.endVertex();
-                }
+            this.render(particle.getData(), rotation.x(), rotation.y(), rotation.z(), (float) (renderData.getRenderRadius() * ageModifier),
+                    renderData.getSpriteData(), renderData.getRenderAge(), renderData.getAgePercent(),
+                    renderData.packColor(), renderData.getLightColor(), renderOffset, writer);
+        }
+
+        @Override
+        public void render(PoseStack poseStack, ParticleRenderSnapshot snapshot, int index, Vector3fc renderOffset, ParticleVertexWriter writer, float partialTicks) {
+            this.render(snapshot.getParticleData(),
+                    snapshot.getRenderRotationX(index, partialTicks), snapshot.getRenderRotationY(index, partialTicks), snapshot.getRenderRotationZ(index, partialTicks),
+                    snapshot.getRenderRadius(index, partialTicks), snapshot.getMaterial(index).spriteData(),
+                    snapshot.getRenderAge(index, partialTicks), snapshot.getAgePercent(index, partialTicks),
+                    snapshot.getRenderColor(index, partialTicks), snapshot.getLightColor(index), renderOffset, writer);
+        }
+
+        private void render(QuasarParticleData data, float rotationX, float rotationY, float rotationZ, float scale, @Nullable SpriteData spriteData, float age, float agePercent, int color, int light, Vector3fc renderOffset, ParticleVertexWriter writer) {
+            // Rotate and scale once instead of for every vertex
+            Matrix3f basis = this.basis.rotationZ(rotationZ)
+                    .rotateY(rotationY)
+                    .rotateX(rotationX)
+                    .scale(scale);
+            float backZ = data.velocityStretchFactor() != 0.0F ? 1 + data.velocityStretchFactor() : 1.0F;
+
+            float u0 = 0.0F;
+            float u1 = 1.0F;
+            float v0 = 0.0F;
+            float v1 = 1.0F;
+            if (spriteData != null) {
+                u0 = spriteData.u(age, agePercent, u0);
+                u1 = spriteData.u(age, agePercent, u1);
+                v0 = spriteData.v(age, agePercent, v0);
+                v1 = spriteData.v(age, agePercent, v1);
+            }
+
+            int red = color >> 16 & 0xFF;
+            int green = color >> 8 & 0xFF;
+            int blue = color & 0xFF;
+            int alpha = color >>> 24;
+            float offsetX = renderOffset.x();
+            float offsetY = renderOffset.y();
+            float offsetZ = renderOffset.z();
+
+            writer.reserve(CUBE_POSITIONS.length);
+            for (int i = 0; i < CUBE_POSITIONS.length; i++) {
+                Vector3fc pos = CUBE_POSITIONS[i];
+                float x = pos.x();
+                float y = pos.y();
+                float z = pos.z() < 0 ? pos.z() * backZ : pos.z();
+                int j = i & 3;
+                writer.vertex(
+                        offsetX + basis.m00 * x + basis.m10 * y + basis.m20 * z,
+                        offsetY + basis.m01 * x + basis.m11 * y + basis.m21 * z,
+                        offsetZ + basis.m02 * x + basis.m12 * y + basis.m22 * z,
+                        j < 2 ? u0 : u1,
+                        (j & 1) == 0 ? v0 : v1,
+                        red, green, blue, alpha, light);
             }
         }
     }
 
     final class Billboard implements RenderStyle {
-        private static final Vector3fc[] PLANE_POSITIONS = {
-                // plane from -1 to 1 on Y axis and -1 to 1 on X axis
-                new Vector3f(1, -1, 0), new Vector3f(-1, -1, 0), new Vector3f(-1, 1, 0), new Vector3f(1, 1, 0)
-        };
+
+        private final Matrix3f basis = new Matrix3f();
+        private final float[] uv = new float[4];
+        private final ParticleVertexWriter writer = new ParticleVertexWriter();
 
         @Override
         public void render(PoseStack poseStack, QuasarParticle particle, RenderData renderData, Vector3fc renderOffset, VertexConsumer builder, double ageModifier, float partialTicks) {
-            //TODO fix UVs theyre fucked
-            Matrix4f matrix4f = poseStack.last().pose();
+            ParticleVertexWriter writer = this.writer;
+            writer.begin(builder, poseStack.last().pose(), Minecraft.getInstance().getEntityRenderDispatcher().cameraOrientation());
+            this.render(poseStack, particle, renderData, renderOffset, writer, ageModifier, partialTicks);
+            writer.end();
+        }
+
+        @Override
+        public void render(PoseStack poseStack, QuasarParticle particle, RenderData renderData, Vector3fc renderOffset, ParticleVertexWriter writer, double ageModifier, float partialTicks) {
             Vector3fc rotation = renderData.getRenderRotation();
+            this.render(particle.getData(), rotation.x(), rotation.y(), rotation.z(), (float) (renderData.getRenderRadius() * ageModifier),
+                    renderData.getSpriteData(), renderData.getRenderAge(), renderData.getAgePercent(),
+                    renderData.packColor(), renderData.getLightColor(), renderOffset, writer);
+        }
+
+        @Override
+        public void render(PoseStack poseStack, ParticleRenderSnapshot snapshot, int index, Vector3fc renderOffset, ParticleVertexWriter writer, float partialTicks) {
+            this.render(snapshot.getParticleData(),
+                    snapshot.getRenderRotationX(index, partialTicks), snapshot.getRenderRotationY(index, partialTicks), snapshot.getRenderRotationZ(index, partialTicks),
+                    snapshot.getRenderRadius(index, partialTicks), snapshot.getMaterial(index).spriteData(),
+                    snapshot.getRenderAge(index, partialTicks), snapshot.getAgePercent(index, partialTicks),
+                    snapshot.getRenderColor(index, partialTicks), snapshot.getLightColor(index), renderOffset, writer);
+        }
+
+        @Override
+        public boolean supportsInstancing() {
+            return true;
+        }
 
-            Quaternionf faceCameraRotation = Minecraft.getInstance().getEntityRenderDispatcher().cameraOrientation();
-            SpriteData spriteData = renderData.getSpriteData();
-
-            int red = (int) (renderData.getRed() * 255.0F) & 0xFF;
-            int green = (int) (renderData.getGreen() * 255.0F) & 0xFF;
-            int blue = (int) (renderData.getBlue() * 255.0F) & 0xFF;
-            int alpha = (int) (renderData.getAlpha() * 255.0F) & 0xFF;
-
-            // turn quat into pitch and yaw
-            Vector3f vec = new Vector3f();
-            for (int j = 0; j < 4; j++) {
-                vec.set(PLANE_POSITIONS[j]);
-                if (particle.getData().velocityStretchFactor() > 0f) {
-                    vec.set(vec.x * (1 + particle.getData().velocityStretchFactor()), vec.y, vec.z);
-                }
-                if (particle.getData().faceVelocity()) {
-                    vec.rotateX(rotation.x())
-                            .rotateY(rotation.y())
-                            .rotateZ(rotation.z());
-                }
-//                vec = vec.xRot(lerpedPitch).yRot(lerpedYaw).zRot(lerpedRoll);
-                faceCameraRotation.transform(vec).mul((float) (renderData.getRenderRadius() * ageModifier)).add(renderOffset);
-
-                float u, v;
-                if (j == 0) {
-                    u = 0;
-                    v = 0;
-                } else if (j == 1) {
-                    u = 1;
-                    v = 0;
-                } else if (j == 2) {
-                    u = 1;
-                    v = 1;
-                } else {
-                    u = 0;
-                    v = 1;
-                }
-                if (spriteData != null) {
-                    u = spriteData.u(renderData.getRenderAge(), renderData.getAgePercent(), u);
-                    v = spriteData.v(renderData.getRenderAge(), renderData.getAgePercent(), v);
-                }
-//                    if (particle.sprite != null) {
-//                        u1 = u;
-//                        v1 = v;
-//                    }
-                builder.vertex(matrix4f, vec.x, vec.y, vec.z);
-                builder.uv(u, v);
-                builder.color(red, green, blue, alpha);
-                builder.uv2(renderData.getLightColor());
-                builder.endVertex();
+        @Override
+        public void renderInstance(ParticleRenderSnapshot snapshot, int index, Vector3fc renderOffset, ParticleInstanceRenderer renderer, float partialTicks) {
+            QuasarParticleData data = snapshot.getParticleData();
+            float scale = snapshot.getRenderRadius(index, partialTicks);
+            float[] uv = this.getUV(snapshot.getMaterial(index).spriteData(), snapshot.getRenderAge(index, partialTicks), snapshot.getAgePercent(index, partialTicks));
+            boolean faceVelocity = data.faceVelocity();
+            renderer.add(renderOffset.x(), renderOffset.y(), renderOffset.z(), getRightScale(data, scale), scale,
+                    faceVelocity ? snapshot.getRenderRotationX(index, partialTicks) : 0.0F,
+                    faceVelocity ? snapshot.getRenderRotationY(index, partialTicks) : 0.0F,
+                    faceVelocity ? snapshot.getRenderRotationZ(index, partialTicks) : 0.0F,
+                    uv[0], uv[1], uv[2], uv[3], snapshot.getRenderColor(index, partialTicks), snapshot.getLightColor(index));
+        }
+
+        private float[] getUV(@Nullable SpriteData spriteData, float age, float agePercent) {
+            float[] uv = this.uv;
+            if (spriteData != null) {
+                uv[0] = spriteData.u(age, agePercent, 0.0F);
+                uv[1] = spriteData.v(age, agePercent, 0.0F);
+                uv[2] = spriteData.u(age, agePercent, 1.0F);
+                uv[3] = spriteData.v(age, agePercent, 1.0F);
+            } else {
+                uv[0] = 0.0F;
+                uv[1] = 0.0F;
+                uv[2] = 1.0F;
+                uv[3] = 1.0F;
             }
+            return uv;
+        }
+
+        private static float getRightScale(QuasarParticleData data, float scale) {
+            return data.velocityStretchFactor() > 0.0F ? scale * (1 + data.velocityStretchFactor()) : scale;
+        }
+
+        private void render(QuasarParticleData data, float rotationX, float rotationY, float rotationZ, float scale, @Nullable SpriteData spriteData, float age, float agePercent, int color, int light, Vector3fc renderOffset, ParticleVertexWriter writer) {
+            //TODO fix UVs theyre fucked
+            float[] uv = this.getUV(spriteData, age, agePercent);
+            boolean faceVelocity = data.faceVelocity();
+            writeQuad(writer, this.basis, renderOffset.x(), renderOffset.y(), renderOffset.z(), getRightScale(data, scale), scale,
+                    faceVelocity ? rotationX : 0.0F, faceVelocity ? rotationY : 0.0F, faceVelocity ? rotationZ : 0.0F,
+                    uv[0], uv[1], uv[2], uv[3], color, light);
+        }
+
+        /**
+         * Writes the four vertices of a billboard facing the camera orientation of the writer. This produces the same
+         * quad {@link ParticleInstanceRenderer} expands from a record with the same values.
+         *
+         * @param writer     The writer to emit vertices with
+         * @param basis      A matrix to use as scratch space
+         * @param x          The x position relative to the camera
+         * @param y          The y position relative to the camera
+         * @param z          The z position relative to the camera
+         * @param rightScale The distance from the center to the left and right edges
+         * @param upScale    The distance from the center to the top and bottom edges
+         * @param rotationX  The x rotation applied after facing the camera
+         * @param rotationY  The y rotation applied after facing the camera
+         * @param rotationZ  The z rotation applied after facing the camera
+         * @param u0         The u coordinate of the right edge
+         * @param v0         The v coordinate of the bottom edge
+         * @param u1         The u coordinate of the left edge
+         * @param v1         The v coordinate of the top edge
+         * @param color      The color packed as ARGB
+         * @param light      The packed light coordinates
+         */
+        public static void writeQuad(ParticleVertexWriter writer, Matrix3f basis, float x, float y, float z, float rightScale, float upScale, float rotationX, float rotationY, float rotationZ, float u0, float v0, float u1, float v1, int color, int light) {
+            // The plane only spans X and Y, so only the first two columns of the rotation are needed
+            basis.set(writer.getCameraOrientation());
+            if (rotationX != 0.0F || rotationY != 0.0F || rotationZ != 0.0F) {
+                basis.rotateZ(rotationZ)
+                        .rotateY(rotationY)
+                        .rotateX(rotationX);
+            }
+            float rightX = basis.m00 * rightScale;
+            float rightY = basis.m01 * rightScale;
+            float rightZ = basis.m02 * rightScale;
+            float upX = basis.m10 * upScale;
+            float upY = basis.m11 * upScale;
+            float upZ = basis.m12 * upScale;
+
+            int red = color >> 16 & 0xFF;
+            int green = color >> 8 & 0xFF;
+            int blue = color & 0xFF;
+            int alpha = color >>> 24;
+
+            writer.reserve(4);
+            writer.vertex(x + rightX - upX, y + rightY - upY, z + rightZ - upZ, u0, v0, red, green, blue, alpha, light);
+            writer.vertex(x - rightX - upX, y - rightY - upY, z - rightZ - upZ, u1, v0, red, green, blue, alpha, light);
+            writer.vertex(x - rightX + upX, y - rightY + upY, z - rightZ + upZ, u1, v1, red, green, blue, alpha, light);
+            writer.vertex(x + rightX + upX, y + rightY + upY, z + rightZ + upZ, u0, v1, red, green, blue, alpha, light);
         }
     }
 }
@@ -0,0 +1,134 @@
+package foundry.veil.api.quasar.particle;
+
+import org.joml.Vector3d;
+import org.joml.Vector3dc;
+
+import java.util.Arrays;
+
+/**
+ * <p>Spawn origins of a batched sub-emitter.</p>
+ * <p>Each origin behaves like a separate instance of the sub-emitter with its own age, but all of them spawn into the
+ * particles of a single {@link ParticleEmitter}.</p>
+ */
+class SubEmitterBatch {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private double[] x;
+    private double[] y;
+    private double[] z;
+    private int[] age;
+    private int size;
+    private final Vector3d min;
+    private final Vector3d max;
+
+    SubEmitterBatch(Vector3dc origin) {
+        this.x = new double[INITIAL_CAPACITY];
+        this.y = new double[INITIAL_CAPACITY];
+        this.z = new double[INITIAL_CAPACITY];
+        this.age = new int[INITIAL_CAPACITY];
+        this.size = 0;
+        this.min = new Vector3d(origin);
+        this.max = new Vector3d(origin);
+    }
+
+    /**
+     * Adds a new origin to spawn particles from.
+     *
+     * @param x The x position
+     * @param y The y position
+     * @param z The z position
+     */
+    void add(double x, double y, double z) {
+        if (this.size >= this.x.length) {
+            int capacity = this.x.length * 2;
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.z = Arrays.copyOf(this.z, capacity);
+            this.age = Arrays.copyOf(this.age, capacity);
+        }
+
+        int i = this.size++;
+        this.x[i] = x;
+        this.y[i] = y;
+        this.z[i] = z;
+        this.age[i] = 0;
+    }
+
+    /**
+     * Ages all origins by one tick and removes the ones that have expired.
+     *
+     * @param maxLifetime The number of ticks each origin spawns particles for or <code>-1</code> to never expire
+     */
+    void age(int maxLifetime) {
+        // Iterate backwards so swap-remove only moves origins that have already been checked
+        for (int i = this.size - 1; i >= 0; i--) {
+            this.age[i]++;
+            if (maxLifetime >= 0 && this.age[i] >= maxLifetime) {
+                int last = --this.size;
+                this.x[i] = this.x[last];
+                this.y[i] = this.y[last];
+                this.z[i] = this.z[last];
+                this.age[i] = this.age[last];
+            }
+        }
+    }
+
+    /**
+     * Recalculates the box containing every origin. The box is left unchanged once all origins have expired.
+     */
+    void updateBounds() {
+        if (this.size == 0) {
+            return;
+        }
+
+        Vector3d min = this.min.set(this.x[0], this.y[0], this.z[0]);
+        Vector3d max = this.max.set(min);
+        for (int i = 1; i < this.size; i++) {
+            min.x = Math.min(min.x, this.x[i]);
+            min.y = Math.min(min.y, this.y[i]);
+            min.z = Math.min(min.z, this.z[i]);
+            max.x = Math.max(max.x, this.x[i]);
+            max.y = Math.max(max.y, this.y[i]);
+            max.z = Math.max(max.z, this.z[i]);
+        }
+    }
+
+    /**
+     * @return The minimum corner of the box containing every origin the last time the bounds were updated
+     */
+    Vector3dc getMin() {
+        return this.min;
+    }
+
+    /**
+     * @return The maximum corner of the box containing every origin the last time the bounds were updated
+     */
+    Vector3dc getMax() {
+        return this.max;
+    }
+
+    double getX(int i) {
+        return this.x[i];
+    }
+
+    double getY(int i) {
+        return this.y[i];
+    }
+
+    double getZ(int i) {
+        return this.z[i];
+    }
+
+    int getAge(int i) {
+        return this.age[i];
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+}
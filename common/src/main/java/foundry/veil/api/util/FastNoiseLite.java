@@ -58,6 +58,8 @@ package foundry.veil.api.util;
 import com.mojang.serialization.Codec;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
 
+import java.util.Arrays;
+
 @SuppressWarnings("unused")
 public class FastNoiseLite {
 
@@ -568,6 +570,93 @@ public class FastNoiseLite {
     }
 
 
+    /// <summary>
+    /// 2D noise for a grid of positions using current settings
+    /// </summary>
+    /// <remarks>
+    /// The value at (i, j) is the same as GetNoise(x + i * spacing, y + j * spacing)
+    /// and is stored at output[i + width * j]
+    /// </remarks>
+    public void GetNoiseGrid(float[] output, /*FNLfloat*/ float x, /*FNLfloat*/ float y, int width, int height, /*FNLfloat*/ float spacing) {
+        int count = width * height;
+        if (output.length < count) {
+            throw new IllegalArgumentException("Expected output with at least " + count + " elements, got " + output.length);
+        }
+
+        Batch batch = new Batch(Math.min(count, BATCH_SIZE), false);
+        for (int start = 0; start < count; start += BATCH_SIZE) {
+            int size = Math.min(count - start, BATCH_SIZE);
+            for (int i = 0; i < size; i++) {
+                int index = start + i;
+                batch.x[i] = x + (index % width) * spacing;
+                batch.y[i] = y + (index / width) * spacing;
+            }
+            GenBatch2D(batch, output, start, size);
+        }
+    }
+
+    /// <summary>
+    /// 3D noise for a grid of positions using current settings
+    /// </summary>
+    /// <remarks>
+    /// The value at (i, j, k) is the same as GetNoise(x + i * spacing, y + j * spacing, z + k * spacing)
+    /// and is stored at output[i + width * (j + height * k)]
+    /// </remarks>
+    public void GetNoiseGrid(float[] output, /*FNLfloat*/ float x, /*FNLfloat*/ float y, /*FNLfloat*/ float z, int width, int height, int depth, /*FNLfloat*/ float spacing) {
+        int count = width * height * depth;
+        if (output.length < count) {
+            throw new IllegalArgumentException("Expected output with at least " + count + " elements, got " + output.length);
+        }
+
+        Batch batch = new Batch(Math.min(count, BATCH_SIZE), true);
+        int layer = width * height;
+        for (int start = 0; start < count; start += BATCH_SIZE) {
+            int size = Math.min(count - start, BATCH_SIZE);
+            for (int i = 0; i < size; i++) {
+                int index = start + i;
+                int rem = index % layer;
+                batch.x[i] = x + (rem % width) * spacing;
+                batch.y[i] = y + (rem / width) * spacing;
+                batch.z[i] = z + (index / layer) * spacing;
+            }
+            GenBatch3D(batch, output, start, size);
+        }
+    }
+
+    /// <summary>
+    /// 2D noise at each of the given positions using current settings
+    /// </summary>
+    /// <remarks>
+    /// output[i] is the same as GetNoise(xs[i], ys[i]). The input arrays are not modified
+    /// </remarks>
+    public void GetNoise(/*FNLfloat*/ float[] xs, /*FNLfloat*/ float[] ys, float[] output, int count) {
+        Batch batch = new Batch(Math.min(count, BATCH_SIZE), false);
+        for (int start = 0; start < count; start += BATCH_SIZE) {
+            int size = Math.min(count - start, BATCH_SIZE);
+            System.arraycopy(xs, start, batch.x, 0, size);
+            System.arraycopy(ys, start, batch.y, 0, size);
+            GenBatch2D(batch, output, start, size);
+        }
+    }
+
+    /// <summary>
+    /// 3D noise at each of the given positions using current settings
+    /// </summary>
+    /// <remarks>
+    /// output[i] is the same as GetNoise(xs[i], ys[i], zs[i]). The input arrays are not modified
+    /// </remarks>
+    public void GetNoise(/*FNLfloat*/ float[] xs, /*FNLfloat*/ float[] ys, /*FNLfloat*/ float[] zs, float[] output, int count) {
+        Batch batch = new Batch(Math.min(count, BATCH_SIZE), true);
+        for (int start = 0; start < count; start += BATCH_SIZE) {
+            int size = Math.min(count - start, BATCH_SIZE);
+            System.arraycopy(xs, start, batch.x, 0, size);
+            System.arraycopy(ys, start, batch.y, 0, size);
+            System.arraycopy(zs, start, batch.z, 0, size);
+            GenBatch3D(batch, output, start, size);
+        }
+    }
+
+
     /// <summary>
     /// 2D warps the input position using current domain warp settings
     /// </summary>
@@ -1062,6 +1151,295 @@ public class FastNoiseLite {
     }
 
 
+    // Batched noise gen
+    //
+    // Same operations in the same order as the single position path, but the noise type and fractal
+    // dispatch happen once per octave instead of once per position.
+
+    private static final int BATCH_SIZE = 256;
+
+    private static class Batch {
+        private final /*FNLfloat*/ float[] x;
+        private final /*FNLfloat*/ float[] y;
+        private final /*FNLfloat*/ float[] z;
+        private final float[] noise;
+        private final float[] amp;
+
+        private Batch(int size, boolean is3D) {
+            this.x = new /*FNLfloat*/ float[size];
+            this.y = new /*FNLfloat*/ float[size];
+            this.z = is3D ? new /*FNLfloat*/ float[size] : null;
+            this.noise = new float[size];
+            this.amp = new float[size];
+        }
+    }
+
+    private void GenBatch2D(Batch batch, float[] output, int offset, int count) {
+        /*FNLfloat*/ float[] x = batch.x;
+        /*FNLfloat*/ float[] y = batch.y;
+        for (int i = 0; i < count; i++) {
+            x[i] *= mFrequency;
+            y[i] *= mFrequency;
+        }
+
+        switch (mNoiseType) {
+            case OpenSimplex2:
+            case OpenSimplex2S: {
+                final /*FNLfloat*/ float SQRT3 = (/*FNLfloat*/ float) 1.7320508075688772935274463415059;
+                final /*FNLfloat*/ float F2 = 0.5f * (SQRT3 - 1);
+                for (int i = 0; i < count; i++) {
+                    /*FNLfloat*/
+                    float t = (x[i] + y[i]) * F2;
+                    x[i] += t;
+                    y[i] += t;
+                }
+            }
+            break;
+            default:
+                break;
+        }
+
+        float[] noise = batch.noise;
+        float[] amp = batch.amp;
+        switch (mFractalType) {
+            default:
+                GenNoiseSingleBatch(mSeed, batch, count);
+                System.arraycopy(noise, 0, output, offset, count);
+                return;
+            case FBm:
+            case Ridged:
+            case PingPong:
+                break;
+        }
+
+        for (int i = 0; i < count; i++) {
+            output[offset + i] = 0;
+            amp[i] = mFractalBounding;
+        }
+
+        int seed = mSeed;
+        for (int octave = 0; octave < mOctaves; octave++) {
+            GenNoiseSingleBatch(seed++, batch, count);
+            switch (mFractalType) {
+                case FBm:
+                    for (int i = 0; i < count; i++) {
+                        float n = noise[i];
+                        output[offset + i] += n * amp[i];
+                        amp[i] *= Lerp(1.0f, FastMin(n + 1, 2) * 0.5f, mWeightedStrength);
+                    }
+                    break;
+                case Ridged:
+                    for (int i = 0; i < count; i++) {
+                        float n = FastAbs(noise[i]);
+                        output[offset + i] += (n * -2 + 1) * amp[i];
+                        amp[i] *= Lerp(1.0f, 1 - n, mWeightedStrength);
+                    }
+                    break;
+                case PingPong:
+                    for (int i = 0; i < count; i++) {
+                        float n = PingPong((noise[i] + 1) * mPingPongStrength);
+                        output[offset + i] += (n - 0.5f) * 2 * amp[i];
+                        amp[i] *= Lerp(1.0f, n, mWeightedStrength);
+                    }
+                    break;
+            }
+
+            for (int i = 0; i < count; i++) {
+                x[i] *= mLacunarity;
+                y[i] *= mLacunarity;
+                amp[i] *= mGain;
+            }
+        }
+    }
+
+    private void GenBatch3D(Batch batch, float[] output, int offset, int count) {
+        /*FNLfloat*/ float[] x = batch.x;
+        /*FNLfloat*/ float[] y = batch.y;
+        /*FNLfloat*/ float[] z = batch.z;
+        for (int i = 0; i < count; i++) {
+            x[i] *= mFrequency;
+            y[i] *= mFrequency;
+            z[i] *= mFrequency;
+        }
+
+        switch (mTransformType3D) {
+            case ImproveXYPlanes:
+                for (int i = 0; i < count; i++) {
+                    /*FNLfloat*/
+                    float xy = x[i] + y[i];
+                    /*FNLfloat*/
+                    float s2 = xy * -(/*FNLfloat*/ float) 0.211324865405187;
+                    z[i] *= (/*FNLfloat*/ float) 0.577350269189626;
+                    x[i] += s2 - z[i];
+                    y[i] = y[i] + s2 - z[i];
+                    z[i] += xy * (/*FNLfloat*/ float) 0.577350269189626;
+                }
+                break;
+            case ImproveXZPlanes:
+                for (int i = 0; i < count; i++) {
+                    /*FNLfloat*/
+                    float xz = x[i] + z[i];
+                    /*FNLfloat*/
+                    float s2 = xz * -(/*FNLfloat*/ float) 0.211324865405187;
+                    y[i] *= (/*FNLfloat*/ float) 0.577350269189626;
+                    x[i] += s2 - y[i];
+                    z[i] += s2 - y[i];
+                    y[i] += xz * (/*FNLfloat*/ float) 0.577350269189626;
+                }
+                break;
+            case DefaultOpenSimplex2: {
+                final /*FNLfloat*/ float R3 = (/*FNLfloat*/ float) (2.0 / 3.0);
+                for (int i = 0; i < count; i++) {
+                    /*FNLfloat*/
+                    float r = (x[i] + y[i] + z[i]) * R3; // Rotation, not skew
+                    x[i] = r - x[i];
+                    y[i] = r - y[i];
+                    z[i] = r - z[i];
+                }
+            }
+            break;
+            default:
+                break;
+        }
+
+        float[] noise = batch.noise;
+        float[] amp = batch.amp;
+        switch (mFractalType) {
+            default:
+                GenNoiseSingleBatch3D(mSeed, batch, count);
+                System.arraycopy(noise, 0, output, offset, count);
+                return;
+            case FBm:
+            case Ridged:
+            case PingPong:
+                break;
+        }
+
+        for (int i = 0; i < count; i++) {
+            output[offset + i] = 0;
+            amp[i] = mFractalBounding;
+        }
+
+        int seed = mSeed;
+        for (int octave = 0; octave < mOctaves; octave++) {
+            GenNoiseSingleBatch3D(seed++, batch, count);
+            switch (mFractalType) {
+                case FBm:
+                    for (int i = 0; i < count; i++) {
+                        float n = noise[i];
+                        output[offset + i] += n * amp[i];
+                        amp[i] *= Lerp(1.0f, (n + 1) * 0.5f, mWeightedStrength);
+                    }
+                    break;
+                case Ridged:
+                    for (int i = 0; i < count; i++) {
+                        float n = FastAbs(noise[i]);
+                        output[offset + i] += (n * -2 + 1) * amp[i];
+                        amp[i] *= Lerp(1.0f, 1 - n, mWeightedStrength);
+                    }
+                    break;
+                case PingPong:
+                    for (int i = 0; i < count; i++) {
+                        float n = PingPong((noise[i] + 1) * mPingPongStrength);
+                        output[offset + i] += (n - 0.5f) * 2 * amp[i];
+                        amp[i] *= Lerp(1.0f, n, mWeightedStrength);
+                    }
+                    break;
+            }
+
+            for (int i = 0; i < count; i++) {
+                x[i] *= mLacunarity;
+                y[i] *= mLacunarity;
+                z[i] *= mLacunarity;
+                amp[i] *= mGain;
+            }
+        }
+    }
+
+    private void GenNoiseSingleBatch(int seed, Batch batch, int count) {
+        /*FNLfloat*/ float[] x = batch.x;
+        /*FNLfloat*/ float[] y = batch.y;
+        float[] noise = batch.noise;
+        switch (mNoiseType) {
+            case OpenSimplex2:
+                for (int i = 0; i < count; i++) {
+                    noise[i] = SingleSimplex(seed, x[i], y[i]);
+                }
+                break;
+            case OpenSimplex2S:
+                for (int i = 0; i < count; i++) {
+                    noise[i] = SingleOpenSimplex2S(seed, x[i], y[i]);
+                }
+                break;
+            case Cellular:
+                for (int i = 0; i < count; i++) {
+                    noise[i] = SingleCellular(seed, x[i], y[i]);
+                }
+                break;
+            case Perlin:
+                for (int i = 0; i < count; i++) {
+                    noise[i] = SinglePerlin(seed, x[i], y[i]);
+                }
+                break;
+            case ValueCubic:
+                for (int i = 0; i < count; i++) {
+                    noise[i] = SingleValueCubic(seed, x[i], y[i]);
+                }
+                break;
+            case Value:
+                for (int i = 0; i < count; i++) {
+                    noise[i] = SingleValue(seed, x[i], y[i]);
+                }
+                break;
+            default:
+                Arrays.fill(noise, 0, count, 0);
+                break;
+        }
+    }
+
+    private void GenNoiseSingleBatch3D(int seed, Batch batch, int count) {
+        /*FNLfloat*/ float[] x = batch.x;
+        /*FNLfloat*/ float[] y = batch.y;
+        /*FNLfloat*/ float[] z = batch.z;
+        float[] noise = batch.noise;
+        switch (mNoiseType) {
+            case OpenSimplex2:
+                for (int i = 0; i < count; i++) {
+                    noise[i] = SingleOpenSimplex2(seed, x[i], y[i], z[i]);
+                }
+                break;
+            case OpenSimplex2S:
+                for (int i = 0; i < count; i++) {
+                    noise[i] = SingleOpenSimplex2S(seed, x[i], y[i], z[i]);
+                }
+                break;
+            case Cellular:
+                for (int i = 0; i < count; i++) {
+                    noise[i] = SingleCellular(seed, x[i], y[i], z[i]);
+                }
+                break;
+            case Perlin:
+                for (int i = 0; i < count; i++) {
+                    noise[i] = SinglePerlin(seed, x[i], y[i], z[i]);
+                }
+                break;
+            case ValueCubic:
+                for (int i = 0; i < count; i++) {
+                    noise[i] = SingleValueCubic(seed, x[i], y[i], z[i]);
+                }
+                break;
+            case Value:
+                for (int i = 0; i < count; i++) {
+                    noise[i] = SingleValue(seed, x[i], y[i], z[i]);
+                }
+                break;
+            default:
+                Arrays.fill(noise, 0, count, 0);
+                break;
+        }
+    }
+
+
     // Simplex/OpenSimplex2 Noise
 
     private float SingleSimplex(int seed, /*FNLfloat*/ float x, /*FNLfloat*/ float y) {
@@ -4,19 +4,35 @@ import com.mojang.datafixers.util.Either;
 import com.mojang.serialization.Codec;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
 import foundry.veil.api.util.CodecUtil;
+import net.minecraft.util.FastColor;
 import net.minecraft.util.Mth;
 import net.minecraft.world.phys.Vec3;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector4f;
 import org.joml.Vector4fc;
 
 import java.util.List;
 
+/**
+ * <p>A color that changes over the range <code>0</code> to <code>1</code>.</p>
+ * <p>When the gradient is created it is baked into a lookup table of packed ARGB colors, so sampling only has to find
+ * two neighbouring entries and interpolate between them. The number of entries can be set with
+ * <code>"resolution"</code>. Gradients with colors outside the range <code>0</code> to <code>1</code> can't be packed,
+ * so they are always evaluated from their points.</p>
+ */
 public class ColorGradient {
 
+    /**
+     * The number of steps a gradient is baked into when no resolution is specified.
+     */
+    public static final int DEFAULT_RESOLUTION = 256;
+    public static final int MAX_RESOLUTION = 4096;
+
     private static final Codec<Vector4fc> SINGLE_COLOR_CODEC = CodecUtil.VECTOR4F_CODEC.fieldOf("color").codec();
     private static final Codec<ColorGradient> FULL_CODEC = RecordCodecBuilder.create(instance -> instance.group(
             RGBPoint.CODEC.listOf().fieldOf("rgb_points").forGetter(ColorGradient::getPoints),
-            AlphaPoint.CODEC.listOf().fieldOf("alpha_points").forGetter(ColorGradient::getAlphaPoints)
+            AlphaPoint.CODEC.listOf().fieldOf("alpha_points").forGetter(ColorGradient::getAlphaPoints),
+            Codec.intRange(1, MAX_RESOLUTION).optionalFieldOf("resolution", DEFAULT_RESOLUTION).forGetter(ColorGradient::getResolution)
     ).apply(instance, ColorGradient::new));
 
     public static final Codec<ColorGradient> CODEC = Codec.either(SINGLE_COLOR_CODEC, FULL_CODEC)
@@ -31,15 +47,32 @@ public class ColorGradient {
 
     private final RGBPoint[] points;
     private final AlphaPoint[] alphaPoints;
+    private final int resolution;
+    private final int[] lut;
 
     public ColorGradient(float red, float green, float blue, float alpha) {
-        this.points = new RGBPoint[]{new RGBPoint(0.0F, new Vec3(red, green, blue))};
-        this.alphaPoints = new AlphaPoint[]{new AlphaPoint(0.0F, alpha)};
+        this(new RGBPoint[]{new RGBPoint(0.0F, new Vec3(red, green, blue))}, new AlphaPoint[]{new AlphaPoint(0.0F, alpha)}, 1);
     }
 
     public ColorGradient(RGBPoint[] points, AlphaPoint[] alphaPoints) {
+        this(points, alphaPoints, DEFAULT_RESOLUTION);
+    }
+
+    /**
+     * Creates a gradient baked into the specified number of steps.
+     *
+     * @param points      The color points
+     * @param alphaPoints The alpha points
+     * @param resolution  The number of steps between <code>0</code> and <code>1</code> to bake
+     */
+    public ColorGradient(RGBPoint[] points, AlphaPoint[] alphaPoints, int resolution) {
+        if (resolution < 1 || resolution > MAX_RESOLUTION) {
+            throw new IllegalArgumentException("Invalid gradient resolution: " + resolution);
+        }
         this.points = points;
         this.alphaPoints = alphaPoints;
+        this.resolution = resolution;
+        this.lut = this.bake();
     }
 
     public ColorGradient(RGBPoint[] points) {
@@ -47,7 +80,11 @@ public class ColorGradient {
     }
 
     public ColorGradient(List<RGBPoint> points, List<AlphaPoint> alphaPoints) {
-        this(points.toArray(new RGBPoint[0]), alphaPoints.toArray(new AlphaPoint[0]));
+        this(points, alphaPoints, DEFAULT_RESOLUTION);
+    }
+
+    public ColorGradient(List<RGBPoint> points, List<AlphaPoint> alphaPoints, int resolution) {
+        this(points.toArray(new RGBPoint[0]), alphaPoints.toArray(new AlphaPoint[0]), resolution);
     }
 
     public ColorGradient(Vec3 startColor, Vec3 endColor, float startAlpha, float endAlpha) {
@@ -58,18 +95,118 @@ public class ColorGradient {
         this(new RGBPoint[]{new RGBPoint(0, startColor), new RGBPoint(1, endColor)});
     }
 
+    private @Nullable int[] bake() {
+        for (RGBPoint point : this.points) {
+            Vec3 color = point.color;
+            if (!isPackable(color.x) || !isPackable(color.y) || !isPackable(color.z)) {
+                return null;
+            }
+        }
+        for (AlphaPoint point : this.alphaPoints) {
+            if (!isPackable(point.alpha)) {
+                return null;
+            }
+        }
+
+        int[] lut = new int[this.resolution + 1];
+        Vector4f color = new Vector4f();
+        for (int i = 0; i < lut.length; i++) {
+            this.getExactColor((float) i / this.resolution, color);
+            lut[i] = FastColor.ARGB32.color(pack(color.w), pack(color.x), pack(color.y), pack(color.z));
+        }
+        return lut;
+    }
+
+    private static boolean isPackable(double value) {
+        return value >= 0.0 && value <= 1.0;
+    }
+
+    private static int pack(float value) {
+        return Math.round(value * 255.0F);
+    }
+
+    private static int lerpChannel(int from, int to, int delta) {
+        return from + ((to - from) * delta + 128 >> 8);
+    }
+
     public boolean isConstant() {
         return this.points.length == 1 && this.alphaPoints.length == 1;
     }
 
+    /**
+     * @return Whether this gradient is sampled from a lookup table instead of its points
+     */
+    public boolean isBaked() {
+        return this.lut != null;
+    }
+
     public Vector4f getColor(float percentage) {
         return this.getColor(percentage, new Vector4f());
     }
 
+    /**
+     * Samples the color of this gradient from the baked lookup table.
+     *
+     * @param percentage The position in the gradient from <code>0</code> to <code>1</code>
+     * @param store      The vector to store the color in
+     * @return The color at the specified position
+     */
     public Vector4f getColor(float percentage, Vector4f store) {
-        Vec3 rgb = this.getRGB(percentage);
-        float alpha = this.getAlpha(percentage);
-        return store.set(rgb.x, rgb.y, rgb.z, alpha);
+        int[] lut = this.lut;
+        if (lut == null || !(percentage >= 0.0F && percentage <= 1.0F)) {
+            return this.getExactColor(percentage, store);
+        }
+
+        float position = percentage * this.resolution;
+        int index = Math.min((int) position, this.resolution - 1);
+        float delta = position - index;
+        int from = lut[index];
+        int to = lut[index + 1];
+        return store.set(
+                Mth.lerp(delta, FastColor.ARGB32.red(from), FastColor.ARGB32.red(to)),
+                Mth.lerp(delta, FastColor.ARGB32.green(from), FastColor.ARGB32.green(to)),
+                Mth.lerp(delta, FastColor.ARGB32.blue(from), FastColor.ARGB32.blue(to)),
+                Mth.lerp(delta, FastColor.ARGB32.alpha(from), FastColor.ARGB32.alpha(to))
+        ).div(255.0F);
+    }
+
+    /**
+     * Samples the color of this gradient from the baked lookup table as a packed ARGB color.
+     *
+     * @param percentage The position in the gradient from <code>0</code> to <code>1</code>
+     * @return The packed color at the specified position
+     */
+    public int getARGB(float percentage) {
+        int[] lut = this.lut;
+        if (lut == null || !(percentage >= 0.0F && percentage <= 1.0F)) {
+            Vector4f color = this.getExactColor(percentage, new Vector4f());
+            return FastColor.ARGB32.color(pack(Mth.clamp(color.w, 0.0F, 1.0F)), pack(Mth.clamp(color.x, 0.0F, 1.0F)), pack(Mth.clamp(color.y, 0.0F, 1.0F)), pack(Mth.clamp(color.z, 0.0F, 1.0F)));
+        }
+
+        float position = percentage * this.resolution;
+        int index = Math.min((int) position, this.resolution - 1);
+        int delta = (int) ((position - index) * 256.0F);
+        int from = lut[index];
+        int to = lut[index + 1];
+        return FastColor.ARGB32.color(
+                lerpChannel(FastColor.ARGB32.alpha(from), FastColor.ARGB32.alpha(to), delta),
+                lerpChannel(FastColor.ARGB32.red(from), FastColor.ARGB32.red(to), delta),
+                lerpChannel(FastColor.ARGB32.green(from), FastColor.ARGB32.green(to), delta),
+                lerpChannel(FastColor.ARGB32.blue(from), FastColor.ARGB32.blue(to), delta)
+        );
+    }
+
+    /**
+     * Evaluates the color of this gradient directly from its points, ignoring the lookup table.
+     *
+     * @param percentage The position in the gradient
+     * @param store      The vector to store the color in
+     * @return The color at the specified position
+     */
+    public Vector4f getExactColor(float percentage, Vector4f store) {
+        this.getRGB(percentage, store);
+        store.w = this.getAlpha(percentage);
+        return store;
     }
 
     private float getAlpha(float percentage) {
@@ -92,20 +229,34 @@ public class ColorGradient {
         return this.alphaPoints[this.alphaPoints.length - 1].alpha;
     }
 
-    private Vec3 getRGB(float percentage) {
+    private void getRGB(float percentage, Vector4f store) {
         // if there is only one point, return that color
         if (this.points.length == 1) {
-            return this.points[0].color;
+            Vec3 color = this.points[0].color;
+            store.set((float) color.x, (float) color.y, (float) color.z, store.w);
+            return;
         }
         // loop over the points to find the two points that the percentage is between
         for (int i = 0; i < this.points.length - 1; i++) {
             if (percentage >= this.points[i].percent && percentage <= this.points[i + 1].percent) {
                 // if the percentage is between two points, interpolate between them
-                return this.points[i].color.lerp(this.points[i + 1].color, (percentage - this.points[i].percent) / (this.points[i + 1].percent - this.points[i].percent));
+                Vec3 from = this.points[i].color;
+                Vec3 to = this.points[i + 1].color;
+                double delta = (percentage - this.points[i].percent) / (this.points[i + 1].percent - this.points[i].percent);
+                store.set((float) Mth.lerp(delta, from.x, to.x), (float) Mth.lerp(delta, from.y, to.y), (float) Mth.lerp(delta, from.z, to.z), store.w);
+                return;
             }
         }
         // if the percentage is outside of the range of the points, return the default color
-        return this.points[this.points.length - 1].color;
+        Vec3 color = this.points[this.points.length - 1].color;
+        store.set((float) color.x, (float) color.y, (float) color.z, store.w);
+    }
+
+    /**
+     * @return The number of steps between <code>0</code> and <code>1</code> this gradient is baked into
+     */
+    public int getResolution() {
+        return this.resolution;
     }
 
     public List<RGBPoint> getPoints() {
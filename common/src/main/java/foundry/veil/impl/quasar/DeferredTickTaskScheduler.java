@@ -0,0 +1,105 @@
+package foundry.veil.impl.quasar;
+
+import foundry.veil.api.TickTaskScheduler;
+import foundry.veil.api.quasar.particle.ParticleSystemManager;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Wraps a scheduler so submissions made while emitters are ticking in parallel are delayed until the serial commit phase.
+ *
+ * @see ParticleSystemManager#runOrDefer(Runnable)
+ */
+@ApiStatus.Internal
+public class DeferredTickTaskScheduler implements TickTaskScheduler {
+
+    private final TickTaskScheduler delegate;
+    private final ParticleSystemManager particleManager;
+
+    public DeferredTickTaskScheduler(TickTaskScheduler delegate, ParticleSystemManager particleManager) {
+        this.delegate = delegate;
+        this.particleManager = particleManager;
+    }
+
+    private void validate(Object command) {
+        Objects.requireNonNull(command);
+        if (this.delegate.isShutdown()) {
+            throw new RejectedExecutionException();
+        }
+    }
+
+    private <V> CompletableFuture<V> defer(Supplier<CompletableFuture<V>> submit) {
+        if (!this.particleManager.isDeferring()) {
+            return submit.get();
+        }
+
+        CompletableFuture<V> future = new CompletableFuture<>();
+        this.particleManager.runOrDefer(() -> {
+            // The task may have been cancelled before it was ever submitted
+            if (future.isDone()) {
+                return;
+            }
+
+            CompletableFuture<V> delegateFuture = submit.get();
+            delegateFuture.whenComplete((value, error) -> {
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(value);
+                }
+            });
+            future.exceptionally(e -> {
+                if (future.isCancelled()) {
+                    delegateFuture.cancel(false);
+                }
+                return null;
+            });
+        });
+        return future;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        this.validate(command);
+        this.particleManager.runOrDefer(() -> this.delegate.execute(command));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public CompletableFuture<?> schedule(Runnable command, int delay) {
+        this.validate(command);
+        if (delay < 0) {
+            throw new IllegalArgumentException();
+        }
+        return this.defer(() -> (CompletableFuture<Object>) this.delegate.schedule(command, delay));
+    }
+
+    @Override
+    public <V> CompletableFuture<V> schedule(Callable<V> callable, int delay) {
+        this.validate(callable);
+        if (delay < 0) {
+            throw new IllegalArgumentException();
+        }
+        return this.defer(() -> this.delegate.schedule(callable, delay));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public CompletableFuture<?> scheduleAtFixedRate(Runnable command, int initialDelay, int period) {
+        this.validate(command);
+        if (initialDelay < 0 || period < 0) {
+            throw new IllegalArgumentException();
+        }
+        return this.defer(() -> (CompletableFuture<Object>) this.delegate.scheduleAtFixedRate(command, initialDelay, period));
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return this.delegate.isShutdown();
+    }
+}
@@ -1,8 +1,10 @@
 package foundry.veil.mixin.accessor;
 
 import com.mojang.blaze3d.vertex.BufferBuilder;
+import com.mojang.blaze3d.vertex.VertexFormat;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.gen.Accessor;
+import org.spongepowered.asm.mixin.gen.Invoker;
 
 import java.nio.ByteBuffer;
 
@@ -11,4 +13,25 @@ public interface BufferBuilderAccessor {
 
     @Accessor
     ByteBuffer getBuffer();
+
+    @Accessor
+    int getNextElementByte();
+
+    @Accessor
+    void setNextElementByte(int nextElementByte);
+
+    @Accessor
+    int getVertices();
+
+    @Accessor
+    void setVertices(int vertices);
+
+    @Accessor
+    VertexFormat getFormat();
+
+    @Accessor
+    boolean isBuilding();
+
+    @Invoker
+    void invokeEnsureCapacity(int increaseAmount);
 }
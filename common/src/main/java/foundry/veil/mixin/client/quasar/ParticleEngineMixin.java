@@ -14,6 +14,6 @@ public class ParticleEngineMixin {
     @Inject(method = "countParticles", at = @At("RETURN"), cancellable = true)
     public void countParticles(CallbackInfoReturnable<String> cir) {
         ParticleSystemManager particleManager = VeilRenderSystem.renderer().getParticleManager();
-        cir.setReturnValue(cir.getReturnValue() + ". VE: " + particleManager.getEmitterCount() + ". VP: " + particleManager.getParticleCount());
+        cir.setReturnValue(cir.getReturnValue() + ". VE: " + particleManager.getEmitterCount() + " (" + particleManager.getSleepingEmitterCount() + " asleep). VP: " + particleManager.getParticleCount());
     }
 }
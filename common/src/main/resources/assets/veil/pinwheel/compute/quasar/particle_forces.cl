@@ -0,0 +1,74 @@
+#define FORCE_CONSTANT 0
+#define FORCE_SCALE 1
+#define FORCE_POINT 2
+#define FORCE_POINT_ATTRACTOR 3
+#define FORCE_VORTEX 4
+
+#define FORCE_SIZE 12
+
+#define ATTRACTOR_BY_DISTANCE 1
+#define ATTRACTOR_INVERTED 2
+
+// Particles are stored as planes of position x, y, z followed by velocity x, y, z. Positions are relative to the
+// same origin as the forces.
+void kernel apply_forces(global const float* particles,
+                         global float* velocity_change,
+                         global const float* forces,
+                         int force_count,
+                         int stride,
+                         int count) {
+    int i = get_global_id(0);
+    if (i >= count) {
+        return;
+    }
+
+    float3 position = (float3)(particles[i], particles[stride + i], particles[stride * 2 + i]);
+    float3 start = (float3)(particles[stride * 3 + i], particles[stride * 4 + i], particles[stride * 5 + i]);
+    float3 velocity = start;
+
+    for (int f = 0; f < force_count; f++) {
+        global const float* force = forces + f * FORCE_SIZE;
+        int type = (int) force[0];
+        float3 value = (float3)(force[1], force[2], force[3]);
+        if (type == FORCE_CONSTANT) {
+            velocity += value;
+            continue;
+        }
+        if (type == FORCE_SCALE) {
+            velocity *= value;
+            continue;
+        }
+
+        float3 delta = value - position;
+        float distanceSq = dot(delta, delta);
+        float rangeSq = force[4];
+        if (distanceSq >= rangeSq) {
+            continue;
+        }
+
+        float strength = force[5];
+        if (type == FORCE_VORTEX) {
+            // Remove the component along the axis, then rotate around it
+            float3 axis = (float3)(force[6], force[7], force[8]);
+            float3 radial = delta - axis * dot(delta, axis);
+            radial *= rsqrt(dot(radial, radial));
+            velocity += cross(radial, axis) * strength;
+            continue;
+        }
+
+        if (type == FORCE_POINT_ATTRACTOR) {
+            int mode = (int) force[9];
+            if (mode == ATTRACTOR_INVERTED) {
+                strength *= (distanceSq / rangeSq) * 2.0f;
+            } else if (mode == ATTRACTOR_BY_DISTANCE) {
+                strength *= 1.0f - distanceSq / rangeSq;
+            }
+        }
+        velocity += delta * (strength * rsqrt(distanceSq));
+    }
+
+    float3 change = velocity - start;
+    velocity_change[i] = change.x;
+    velocity_change[stride + i] = change.y;
+    velocity_change[stride * 2 + i] = change.z;
+}
@@ -0,0 +1,87 @@
+import foundry.veil.api.quasar.emitters.module.update.BakedVectorField;
+import foundry.veil.api.quasar.emitters.module.update.VectorField;
+import foundry.veil.api.util.FastNoiseLite;
+import org.joml.Vector3d;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class BakedVectorFieldTest {
+
+    private static final int SAMPLES = 20_000;
+
+    @Test
+    void testErrorWithinTolerance() {
+        for (float frequency : new float[]{0.01F, 0.05F, 0.2F}) {
+            for (float tolerance : new float[]{0.1F, 0.05F, 0.01F}) {
+                FastNoiseLite noise = new FastNoiseLite(1337);
+                noise.SetFrequency(frequency);
+                VectorField field = new VectorField(noise, 1.0F, new BakedVectorField.Settings(1.0F, 0, tolerance));
+                BakedVectorField baked = field.getBaked();
+                Assertions.assertNotNull(baked);
+                Assertions.assertFalse(baked.isDirect());
+
+                float error = this.measureError(field, baked, 200.0);
+                Assertions.assertTrue(error <= tolerance, "Error " + error + " exceeds tolerance " + tolerance + " at frequency " + frequency);
+            }
+        }
+    }
+
+    @Test
+    void testRefinesSpacing() {
+        FastNoiseLite noise = new FastNoiseLite(1337);
+        noise.SetFrequency(0.2F);
+        BakedVectorField coarse = new VectorField(noise, 1.0F, new BakedVectorField.Settings(1.0F, 0, 0.5F)).getBaked();
+        BakedVectorField fine = new VectorField(noise, 1.0F, new BakedVectorField.Settings(1.0F, 0, 0.01F)).getBaked();
+        Assertions.assertNotNull(coarse);
+        Assertions.assertNotNull(fine);
+        Assertions.assertTrue(fine.getSpacing() < coarse.getSpacing());
+        Assertions.assertTrue(fine.getError() <= 0.01F);
+    }
+
+    @Test
+    void testRebake() {
+        FastNoiseLite noise = new FastNoiseLite(1337);
+        VectorField field = new VectorField(noise, 1.0F, new BakedVectorField.Settings(1.0F, 20, 0.05F));
+        BakedVectorField baked = field.getBaked();
+        Assertions.assertNotNull(baked);
+        BakedVectorField.Sampler sampler = baked.sampler();
+
+        Vector3d first = sampler.sampleNoise(3.5, 2.25, -7.75, 0, new Vector3d());
+        Vector3d unchanged = sampler.sampleNoise(3.5, 2.25, -7.75, 40, new Vector3d());
+        Assertions.assertEquals(first, unchanged);
+        Assertions.assertEquals(1, baked.getTileCount());
+
+        // Changes are only picked up once the interval has passed since the last check
+        noise.SetSeed(7);
+        Assertions.assertEquals(first, sampler.sampleNoise(3.5, 2.25, -7.75, 50, new Vector3d()));
+
+        Vector3d rebaked = sampler.sampleNoise(3.5, 2.25, -7.75, 60, new Vector3d());
+        Vector3d direct = field.getNoise(3.5F, 2.25F, -7.75F, new Vector3d());
+        Assertions.assertNotEquals(first, rebaked);
+        Assertions.assertEquals(direct.x, rebaked.x, 0.1);
+        Assertions.assertEquals(direct.y, rebaked.y, 0.1);
+        Assertions.assertEquals(direct.z, rebaked.z, 0.1);
+        Assertions.assertEquals(1, baked.getTileCount());
+    }
+
+    private float measureError(VectorField field, BakedVectorField baked, double range) {
+        Random random = new Random(42);
+        BakedVectorField.Sampler sampler = baked.sampler();
+        Vector3d expected = new Vector3d();
+        Vector3d actual = new Vector3d();
+        float error = 0.0F;
+        for (int i = 0; i < SAMPLES; i++) {
+            double x = (random.nextDouble() * 2.0 - 1.0) * range;
+            double y = (random.nextDouble() * 2.0 - 1.0) * range;
+            double z = (random.nextDouble() * 2.0 - 1.0) * range;
+            field.getNoise((float) x, (float) y, (float) z, expected);
+            sampler.sampleNoise(x, y, z, 0, actual);
+            error = Math.max(error, (float) Math.abs(expected.x - actual.x));
+            error = Math.max(error, (float) Math.abs(expected.y - actual.y));
+            error = Math.max(error, (float) Math.abs(expected.z - actual.z));
+        }
+        return error;
+    }
+}
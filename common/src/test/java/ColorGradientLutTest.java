@@ -0,0 +1,81 @@
+import foundry.veil.impl.quasar.ColorGradient;
+import net.minecraft.util.FastColor;
+import net.minecraft.world.phys.Vec3;
+import org.joml.Vector4f;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ColorGradientLutTest {
+
+    private static final int SAMPLES = 100_000;
+    private static final ColorGradient.RGBPoint[] POINTS = {
+            new ColorGradient.RGBPoint(0.0F, new Vec3(1.0, 0.9, 0.2)),
+            new ColorGradient.RGBPoint(0.15F, new Vec3(1.0, 0.4, 0.0)),
+            new ColorGradient.RGBPoint(0.6F, new Vec3(0.3, 0.3, 0.3)),
+            new ColorGradient.RGBPoint(1.0F, new Vec3(0.1, 0.1, 0.1))
+    };
+    private static final ColorGradient.AlphaPoint[] ALPHA_POINTS = {
+            new ColorGradient.AlphaPoint(0.0F, 0.0F),
+            new ColorGradient.AlphaPoint(0.05F, 1.0F),
+            new ColorGradient.AlphaPoint(0.8F, 0.8F),
+            new ColorGradient.AlphaPoint(1.0F, 0.0F)
+    };
+    // The steepest segment is the alpha fade in, which changes by 1 over 0.05
+    private static final float MAX_SLOPE = 20.0F;
+
+    @Test
+    void testMaxErrorWithinBound() {
+        for (int resolution : new int[]{16, 64, ColorGradient.DEFAULT_RESOLUTION, 1024}) {
+            ColorGradient gradient = new ColorGradient(POINTS, ALPHA_POINTS, resolution);
+            Assertions.assertTrue(gradient.isBaked());
+
+            // Rounding to 8 bits plus the corner cut off by interpolating across a point
+            float bound = 0.5F / 255.0F + MAX_SLOPE / (2.0F * resolution) + 1.0E-5F;
+            float error = maxError(gradient);
+            Assertions.assertTrue(error <= bound, "Resolution " + resolution + " error " + error + " exceeds " + bound);
+        }
+    }
+
+    @Test
+    void testResolutionImprovesPrecision() {
+        float coarse = maxError(new ColorGradient(POINTS, ALPHA_POINTS, 16));
+        float fine = maxError(new ColorGradient(POINTS, ALPHA_POINTS, 1024));
+        Assertions.assertTrue(fine < coarse, "Higher resolution should be more precise");
+    }
+
+    @Test
+    void testPackedMatchesFloat() {
+        ColorGradient gradient = new ColorGradient(POINTS, ALPHA_POINTS);
+        Vector4f color = new Vector4f();
+        for (int i = 0; i <= SAMPLES; i++) {
+            float percentage = (float) i / SAMPLES;
+            int argb = gradient.getARGB(percentage);
+            gradient.getColor(percentage, color);
+            Assertions.assertEquals(color.x * 255.0F, FastColor.ARGB32.red(argb), 1.0F);
+            Assertions.assertEquals(color.y * 255.0F, FastColor.ARGB32.green(argb), 1.0F);
+            Assertions.assertEquals(color.z * 255.0F, FastColor.ARGB32.blue(argb), 1.0F);
+            Assertions.assertEquals(color.w * 255.0F, FastColor.ARGB32.alpha(argb), 1.0F);
+        }
+    }
+
+    @Test
+    void testUnpackableColorsAreExact() {
+        ColorGradient gradient = new ColorGradient(new Vec3(4.0, 2.0, 1.0), new Vec3(0.0, 0.5, 1.0));
+        Assertions.assertFalse(gradient.isBaked());
+        Assertions.assertEquals(0.0F, maxError(gradient));
+    }
+
+    private static float maxError(ColorGradient gradient) {
+        Vector4f sampled = new Vector4f();
+        Vector4f exact = new Vector4f();
+        float error = 0;
+        for (int i = 0; i <= SAMPLES; i++) {
+            float percentage = (float) i / SAMPLES;
+            gradient.getColor(percentage, sampled);
+            gradient.getExactColor(percentage, exact);
+            sampled.sub(exact).absolute();
+            error = Math.max(error, Math.max(Math.max(sampled.x, sampled.y), Math.max(sampled.z, sampled.w)));
+        }
+        return error;
+    }
+}
@@ -0,0 +1,42 @@
+import foundry.veil.api.quasar.emitters.shape.*;
+import net.minecraft.util.RandomSource;
+import org.joml.Vector3d;
+import org.joml.Vector3dc;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class EmitterShapePointsTest {
+
+    private static final int COUNT = 1000;
+
+    @Test
+    void testBatchMatchesSinglePoints() {
+        EmitterShape[] shapes = {new Sphere(), new Cube(), new Cylinder(), new Disc(), new Hemisphere(), new Plane(), new Torus(), new Point()};
+        Vector3f[] rotations = {new Vector3f(), new Vector3f(30, 45, 60), new Vector3f(-90, 0, 180)};
+        Vector3dc position = new Vector3d(12.5, -3, 100.25);
+        Vector3f dimensions = new Vector3f(1.5F, 0.5F, 2.0F);
+
+        for (EmitterShape shape : shapes) {
+            for (Vector3f rotation : rotations) {
+                for (boolean fromSurface : new boolean[]{false, true}) {
+                    RandomSource single = RandomSource.create(1337);
+                    RandomSource batch = RandomSource.create(1337);
+
+                    // Leave a gap between points to check the stride is respected
+                    double[] points = new double[COUNT * 4];
+                    shape.getPoints(batch, COUNT, points, 0, 4, dimensions, rotation, position, fromSurface);
+                    for (int i = 0; i < COUNT; i++) {
+                        Vector3d expected = shape.getPoint(single, dimensions, rotation, position, fromSurface);
+                        String message = shape.getClass().getSimpleName() + " point " + i + " rotation " + rotation + " fromSurface " + fromSurface;
+                        Assertions.assertEquals(expected.x, points[i * 4], 1.0E-9, message);
+                        Assertions.assertEquals(expected.y, points[i * 4 + 1], 1.0E-9, message);
+                        Assertions.assertEquals(expected.z, points[i * 4 + 2], 1.0E-9, message);
+                        Assertions.assertEquals(0.0, points[i * 4 + 3], message);
+                    }
+                    Assertions.assertEquals(single.nextLong(), batch.nextLong(), "Random sources diverged");
+                }
+            }
+        }
+    }
+}
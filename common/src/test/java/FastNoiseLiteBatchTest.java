@@ -0,0 +1,129 @@
+import foundry.veil.api.util.FastNoiseLite;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class FastNoiseLiteBatchTest {
+
+    private static final int GRID_SIZE = 64;
+    private static final int ITERATIONS = 10;
+
+    @Test
+    void testGridMatchesScalar() {
+        for (FastNoiseLite noise : this.createNoises()) {
+            int width = 13;
+            int height = 7;
+            int depth = 5;
+            float spacing = 0.37F;
+            float[] output = new float[width * height * depth];
+
+            noise.GetNoiseGrid(output, -4.2F, 1.5F, width, height, spacing);
+            for (int j = 0; j < height; j++) {
+                for (int i = 0; i < width; i++) {
+                    float expected = noise.GetNoise(-4.2F + i * spacing, 1.5F + j * spacing);
+                    this.assertBitEquals(expected, output[i + width * j], noise);
+                }
+            }
+
+            noise.GetNoiseGrid(output, -4.2F, 1.5F, 30.0F, width, height, depth, spacing);
+            for (int k = 0; k < depth; k++) {
+                for (int j = 0; j < height; j++) {
+                    for (int i = 0; i < width; i++) {
+                        float expected = noise.GetNoise(-4.2F + i * spacing, 1.5F + j * spacing, 30.0F + k * spacing);
+                        this.assertBitEquals(expected, output[i + width * (j + height * k)], noise);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testPositionsMatchScalar() {
+        Random random = new Random(42);
+        int count = 1000;
+        float[] xs = new float[count];
+        float[] ys = new float[count];
+        float[] zs = new float[count];
+        for (int i = 0; i < count; i++) {
+            xs[i] = random.nextFloat() * 2000.0F - 1000.0F;
+            ys[i] = random.nextFloat() * 2000.0F - 1000.0F;
+            zs[i] = random.nextFloat() * 2000.0F - 1000.0F;
+        }
+
+        float[] output = new float[count];
+        for (FastNoiseLite noise : this.createNoises()) {
+            noise.GetNoise(xs, ys, output, count);
+            for (int i = 0; i < count; i++) {
+                this.assertBitEquals(noise.GetNoise(xs[i], ys[i]), output[i], noise);
+            }
+
+            noise.GetNoise(xs, ys, zs, output, count);
+            for (int i = 0; i < count; i++) {
+                this.assertBitEquals(noise.GetNoise(xs[i], ys[i], zs[i]), output[i], noise);
+            }
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmarkGrid() {
+        for (FastNoiseLite.NoiseType type : new FastNoiseLite.NoiseType[]{FastNoiseLite.NoiseType.OpenSimplex2, FastNoiseLite.NoiseType.Perlin}) {
+            FastNoiseLite noise = new FastNoiseLite(1337);
+            noise.SetNoiseType(type);
+            noise.SetFractalType(FastNoiseLite.FractalType.FBm);
+            noise.SetFractalOctaves(3);
+
+            float[] output = new float[GRID_SIZE * GRID_SIZE * GRID_SIZE];
+            long scalarTime = 0;
+            long batchTime = 0;
+            for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+                long start = System.nanoTime();
+                for (int k = 0; k < GRID_SIZE; k++) {
+                    for (int j = 0; j < GRID_SIZE; j++) {
+                        for (int i = 0; i < GRID_SIZE; i++) {
+                            output[i + GRID_SIZE * (j + GRID_SIZE * k)] = noise.GetNoise(i * 0.5F, j * 0.5F, k * 0.5F);
+                        }
+                    }
+                }
+                scalarTime += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                noise.GetNoiseGrid(output, 0.0F, 0.0F, 0.0F, GRID_SIZE, GRID_SIZE, GRID_SIZE, 0.5F);
+                batchTime += System.nanoTime() - start;
+            }
+
+            System.out.printf("%s scalar: %.3fms per %d^3 grid%n", type, scalarTime / 1_000_000.0 / ITERATIONS, GRID_SIZE);
+            System.out.printf("%s batch: %.3fms per %d^3 grid%n", type, batchTime / 1_000_000.0 / ITERATIONS, GRID_SIZE);
+        }
+    }
+
+    private FastNoiseLite[] createNoises() {
+        FastNoiseLite.NoiseType[] noiseTypes = FastNoiseLite.NoiseType.values();
+        FastNoiseLite.FractalType[] fractalTypes = FastNoiseLite.FractalType.values();
+        FastNoiseLite.RotationType3D[] rotationTypes = FastNoiseLite.RotationType3D.values();
+        FastNoiseLite[] noises = new FastNoiseLite[noiseTypes.length * fractalTypes.length * rotationTypes.length];
+
+        int index = 0;
+        for (FastNoiseLite.NoiseType noiseType : noiseTypes) {
+            for (FastNoiseLite.FractalType fractalType : fractalTypes) {
+                for (FastNoiseLite.RotationType3D rotationType : rotationTypes) {
+                    FastNoiseLite noise = new FastNoiseLite(index);
+                    noise.SetFrequency(0.07F);
+                    noise.SetNoiseType(noiseType);
+                    noise.SetFractalType(fractalType);
+                    noise.SetRotationType3D(rotationType);
+                    noise.SetFractalOctaves(4);
+                    noise.SetFractalWeightedStrength(0.3F);
+                    noises[index++] = noise;
+                }
+            }
+        }
+        return noises;
+    }
+
+    private void assertBitEquals(float expected, float actual, FastNoiseLite noise) {
+        Assertions.assertEquals(Float.floatToRawIntBits(expected), Float.floatToRawIntBits(actual), () -> noise.GetNoiseType() + " " + noise.GetFractalType() + " " + noise.GetRotationType3D());
+    }
+}
@@ -0,0 +1,89 @@
+import com.google.gson.JsonParser;
+import com.mojang.serialization.JsonOps;
+import foundry.veil.api.quasar.data.ParticleEmitterData;
+import foundry.veil.api.quasar.particle.ParticleSystemManager;
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.level.LightLayer;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import org.junit.jupiter.api.Assertions;
+import sun.misc.Unsafe;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+/**
+ * A flat world of stone below y=0 that is lit by the sky everywhere.
+ * Created without running any constructor, so only the overridden methods may be called.
+ */
+class HeadlessLevel extends ClientLevel {
+
+    private HeadlessLevel() {
+        super(null, null, null, null, 0, 0, null, null, false, 0);
+    }
+
+    static HeadlessLevel create() {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (HeadlessLevel) ((Unsafe) field.get(null)).allocateInstance(HeadlessLevel.class);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError("Failed to create headless level", e);
+        }
+    }
+
+    /**
+     * Creates a manager that ticks in a new headless level without level of detail.
+     *
+     * @param seed The seed to spawn particles with
+     * @return A new manager
+     */
+    static ParticleSystemManager createManager(long seed) {
+        ParticleSystemManager manager = new ParticleSystemManager();
+        manager.setLevel(create());
+        manager.setRandomSeed(seed);
+        manager.setLod(false);
+        return manager;
+    }
+
+    static ParticleEmitterData loadEmitter(String path) throws IOException {
+        try (InputStream stream = HeadlessLevel.class.getResourceAsStream(path)) {
+            Assertions.assertNotNull(stream, "Missing " + path);
+            try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+                return ParticleEmitterData.DIRECT_CODEC.parse(JsonOps.INSTANCE, JsonParser.parseReader(reader)).getOrThrow(false, Assertions::fail);
+            }
+        }
+    }
+
+    @Override
+    public BlockState getBlockState(BlockPos pos) {
+        return pos.getY() < 0 ? Blocks.STONE.defaultBlockState() : Blocks.AIR.defaultBlockState();
+    }
+
+    @Override
+    public int getBrightness(LightLayer lightLayer, BlockPos pos) {
+        return lightLayer == LightLayer.SKY && pos.getY() >= 0 ? 15 : 0;
+    }
+
+    @Override
+    public boolean hasChunk(int x, int z) {
+        return true;
+    }
+
+    @Override
+    public Iterable<Entity> entitiesForRendering() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public long getGameTime() {
+        return 0;
+    }
+}
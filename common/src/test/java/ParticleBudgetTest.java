@@ -0,0 +1,99 @@
+import foundry.veil.api.quasar.data.EmitterPriority;
+import foundry.veil.api.quasar.data.ParticleEmitterData;
+import foundry.veil.api.quasar.particle.ParticleBudget;
+import foundry.veil.api.quasar.particle.ParticleEmitter;
+import foundry.veil.api.quasar.particle.ParticleSystemManager;
+import net.minecraft.SharedConstants;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.Bootstrap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+public class ParticleBudgetTest {
+
+    private static final ResourceLocation SMOKE = new ResourceLocation("veil", "benchmark_smoke");
+
+    private static ParticleEmitterData smoke;
+
+    @BeforeAll
+    static void bootstrap() throws IOException {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+        smoke = HeadlessLevel.loadEmitter("/quasar/benchmark_smoke.json");
+    }
+
+    @Test
+    void testEvictsLowestPriorityFirst() {
+        ParticleSystemManager manager = HeadlessLevel.createManager(1337);
+        ParticleEmitter normal = createEmitter(manager, EmitterPriority.NORMAL, 16);
+        ParticleEmitter low = createEmitter(manager, EmitterPriority.LOW, 16);
+        // Stays well within its share, so the others can be over their quota without all of it being evicted
+        ParticleEmitter high = createEmitter(manager, EmitterPriority.HIGH, 4);
+        for (int i = 0; i < 4; i++) {
+            manager.tick(0, 8, 0);
+        }
+
+        int normalCount = normal.getParticleCount();
+        int lowCount = low.getParticleCount();
+        int highCount = high.getParticleCount();
+        Assertions.assertEquals(normalCount, lowCount);
+        Assertions.assertTrue(highCount > 0 && highCount < lowCount);
+
+        // Both the normal and low emitter are over their quota, but only the low one should lose particles
+        ParticleBudget budget = manager.getBudget();
+        int total = normalCount + lowCount + highCount;
+        int excess = lowCount / 2;
+        budget.setBudget(total - excess);
+        budget.allocate(List.of(normal, low, high), 0, 8, 0);
+
+        Assertions.assertEquals(excess, budget.getEvictedParticles());
+        Assertions.assertEquals(total - excess, budget.getActiveParticles());
+        Assertions.assertEquals(lowCount - excess, low.getParticleCount());
+        Assertions.assertEquals(normalCount, normal.getParticleCount());
+        Assertions.assertEquals(highCount, high.getParticleCount());
+        manager.free();
+    }
+
+    @Test
+    void testEvictsOldestParticles() {
+        ParticleSystemManager manager = HeadlessLevel.createManager(1337);
+        manager.setPackedStorage(true);
+        ParticleEmitter emitter = createEmitter(manager, EmitterPriority.NORMAL, 16);
+        for (int i = 0; i < 4; i++) {
+            manager.tick(0, 8, 0);
+        }
+
+        int[] age = emitter.getStorage().getAge();
+        int count = emitter.getParticleCount();
+        int oldest = 0;
+        int youngest = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            oldest = Math.max(oldest, age[i]);
+            youngest = Math.min(youngest, age[i]);
+        }
+        Assertions.assertTrue(oldest > youngest);
+
+        // Every burst has the same age, so trimming all but one burst has to leave only the youngest
+        Assertions.assertEquals(count - 16, emitter.trim(count - 16));
+        Assertions.assertEquals(16, emitter.getParticleCount());
+        age = emitter.getStorage().getAge();
+        for (int i = 0; i < emitter.getStorage().size(); i++) {
+            Assertions.assertEquals(youngest, age[i]);
+        }
+        manager.free();
+    }
+
+    private static ParticleEmitter createEmitter(ParticleSystemManager manager, EmitterPriority priority, int maxParticles) {
+        ParticleEmitter emitter = manager.createEmitter(SMOKE, smoke);
+        Assertions.assertNotNull(emitter);
+        emitter.setPosition(0, 8, 0);
+        emitter.setPriority(priority);
+        emitter.setMaxParticles(maxParticles);
+        manager.addParticleSystem(emitter);
+        return emitter;
+    }
+}
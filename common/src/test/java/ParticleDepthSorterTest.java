@@ -0,0 +1,47 @@
+import foundry.veil.api.quasar.particle.ParticleDepthSorter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+public class ParticleDepthSorterTest {
+
+    @Test
+    void testRadixSort() {
+        Random random = new Random(1337);
+        ParticleDepthSorter sorter = new ParticleDepthSorter();
+        for (int count : new int[]{0, 1, 2, 100, 10_000}) {
+            int[] keys = new int[count];
+            int[] values = new int[count];
+            for (int i = 0; i < count; i++) {
+                // Few render types and many equal depths to check the sort is stable
+                keys[i] = random.nextInt(3) << 16 | random.nextInt(512);
+                values[i] = i;
+            }
+
+            Integer[] expected = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                expected[i] = i;
+            }
+            int[] originalKeys = keys.clone();
+            Arrays.sort(expected, Comparator.comparingInt(i -> originalKeys[i]));
+
+            sorter.radixSort(keys, values, count);
+            for (int i = 0; i < count; i++) {
+                Assertions.assertEquals(expected[i].intValue(), values[i]);
+                Assertions.assertEquals(originalKeys[expected[i]], keys[i]);
+            }
+        }
+    }
+
+    @Test
+    void testUnsignedKeys() {
+        ParticleDepthSorter sorter = new ParticleDepthSorter();
+        int[] keys = {-1, 0, Integer.MIN_VALUE, Integer.MAX_VALUE, 1};
+        int[] values = {0, 1, 2, 3, 4};
+        sorter.radixSort(keys, values, keys.length);
+        Assertions.assertArrayEquals(new int[]{1, 4, 3, 2, 0}, values);
+    }
+}
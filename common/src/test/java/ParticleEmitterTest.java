@@ -0,0 +1,225 @@
+import foundry.veil.api.quasar.data.EmitterSleepPolicy;
+import foundry.veil.api.quasar.data.ParticleEmitterData;
+import foundry.veil.api.quasar.particle.ParticleEmitter;
+import foundry.veil.api.quasar.particle.ParticleRenderSnapshot;
+import foundry.veil.api.quasar.particle.ParticleSystemManager;
+import net.minecraft.SharedConstants;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.Bootstrap;
+import org.joml.Vector3d;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+public class ParticleEmitterTest {
+
+    private static final long SEED = 1337;
+    private static final double TOLERANCE = 1.0E-6;
+    private static final ResourceLocation SMOKE = new ResourceLocation("veil", "benchmark_smoke");
+    private static final ResourceLocation ASYNC_SMOKE = new ResourceLocation("veil", "async_smoke");
+
+    private static ParticleEmitterData smoke;
+    private static ParticleEmitterData asyncSmoke;
+
+    @BeforeAll
+    static void bootstrap() throws IOException {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+        smoke = HeadlessLevel.loadEmitter("/quasar/benchmark_smoke.json");
+        asyncSmoke = HeadlessLevel.loadEmitter("/quasar/async_smoke.json");
+    }
+
+    @Test
+    void testPackedMatchesObjects() {
+        ParticleSystemManager objectManager = HeadlessLevel.createManager(SEED);
+        objectManager.setPackedStorage(false);
+        ParticleSystemManager packedManager = HeadlessLevel.createManager(SEED);
+        packedManager.setPackedStorage(true);
+
+        ParticleEmitter objectEmitter = createEmitter(objectManager);
+        ParticleEmitter packedEmitter = createEmitter(packedManager);
+        Assertions.assertFalse(objectEmitter.isPackedStorage());
+        Assertions.assertTrue(packedEmitter.isPackedStorage());
+
+        // Every particle outlives this, so rows are never swapped around by removals
+        for (int tick = 0; tick < 60; tick++) {
+            objectManager.tick(0, 0, 0);
+            packedManager.tick(0, 0, 0);
+            Assertions.assertEquals(objectManager.getParticleCount(), packedManager.getParticleCount(), "Particle count at tick " + tick);
+            assertSnapshotEquals(objectEmitter.getRenderSnapshot(), packedEmitter.getRenderSnapshot(), "tick " + tick);
+        }
+
+        Assertions.assertTrue(packedManager.getParticleCount() > 0);
+        Assertions.assertEquals(packedManager.getParticleCount(), packedEmitter.getStorage().size());
+        Assertions.assertEquals(0, objectEmitter.getStorage().size());
+        objectManager.free();
+        packedManager.free();
+    }
+
+    @Test
+    void testParallelMatchesSerial() {
+        ParticleSystemManager serialManager = HeadlessLevel.createManager(SEED);
+        ParticleSystemManager parallelManager = HeadlessLevel.createManager(SEED);
+        parallelManager.setParallelTick(true);
+
+        Random random = new Random(SEED);
+        ParticleEmitter[] serialEmitters = new ParticleEmitter[16];
+        ParticleEmitter[] parallelEmitters = new ParticleEmitter[serialEmitters.length];
+        for (int i = 0; i < serialEmitters.length; i++) {
+            double x = random.nextDouble() * 32 - 16;
+            double y = random.nextDouble() * 8;
+            double z = random.nextDouble() * 32 - 16;
+            serialEmitters[i] = createEmitter(serialManager, x, y, z);
+            parallelEmitters[i] = createEmitter(parallelManager, x, y, z);
+        }
+
+        for (int tick = 0; tick < 100; tick++) {
+            serialManager.tick(0, 0, 0);
+            parallelManager.tick(0, 0, 0);
+            Assertions.assertEquals(serialManager.getParticleCount(), parallelManager.getParticleCount(), "Particle count at tick " + tick);
+            Assertions.assertEquals(serialManager.getEmitterCount(), parallelManager.getEmitterCount(), "Emitter count at tick " + tick);
+            for (int i = 0; i < serialEmitters.length; i++) {
+                assertSnapshotEquals(serialEmitters[i].getRenderSnapshot(), parallelEmitters[i].getRenderSnapshot(), "emitter " + i + " at tick " + tick);
+            }
+        }
+
+        Assertions.assertTrue(serialManager.getParticleCount() > 0);
+        serialManager.free();
+        parallelManager.free();
+    }
+
+    @Test
+    void testAsyncMatchesSync() {
+        ParticleSystemManager syncManager = HeadlessLevel.createManager(SEED);
+        ParticleSystemManager asyncManager = HeadlessLevel.createManager(SEED);
+        asyncManager.setAsyncTick(true);
+
+        // Particles fall from the sky into the ground, so they keep moving into blocks that weren't prefetched
+        ParticleEmitter syncEmitter = createEmitter(syncManager, ASYNC_SMOKE, asyncSmoke, 0, 2, 0);
+        ParticleEmitter asyncEmitter = createEmitter(asyncManager, ASYNC_SMOKE, asyncSmoke, 0, 2, 0);
+        Assertions.assertFalse(asyncEmitter.getModulePlan().readsLevel());
+
+        for (int tick = 0; tick < 100; tick++) {
+            // Async ticks are committed by the next tick, so the async manager always shows the last synchronous tick
+            asyncManager.tick(0, 0, 0);
+            Assertions.assertEquals(syncManager.getParticleCount(), asyncManager.getParticleCount(), "Particle count at tick " + tick);
+
+            ParticleRenderSnapshot expected = syncEmitter.getRenderSnapshot();
+            ParticleRenderSnapshot actual = asyncEmitter.getRenderSnapshot();
+            assertSnapshotEquals(expected, actual, "tick " + tick);
+            for (int i = 0; i < expected.size(); i++) {
+                Assertions.assertEquals(expected.getLightColor(i), actual.getLightColor(i), "Light of particle " + i + " at tick " + tick);
+            }
+            syncManager.tick(0, 0, 0);
+        }
+
+        Assertions.assertTrue(syncManager.getParticleCount() > 0);
+        asyncManager.setAsyncTick(false);
+        syncManager.free();
+        asyncManager.free();
+    }
+
+    @Test
+    void testSleepKeepsLifetime() {
+        ParticleSystemManager manager = HeadlessLevel.createManager(SEED);
+        manager.setSleepDistance(64);
+        ParticleEmitter emitter = createSleepingEmitter(manager, EmitterSleepPolicy.FREEZE);
+        int frozen = manager.getParticleCount();
+
+        // The emitter would have expired long ago if it kept aging while asleep
+        for (int i = 0; i < 100; i++) {
+            manager.tick(1000, 0, 0);
+            Assertions.assertTrue(emitter.isSleeping());
+            Assertions.assertEquals(1, manager.getSleepingEmitterCount());
+            Assertions.assertEquals(frozen, manager.getParticleCount());
+        }
+
+        int[] counts = new int[46];
+        for (int i = 0; i < counts.length; i++) {
+            manager.tick(0, 0, 0);
+            counts[i] = manager.getParticleCount();
+        }
+        Assertions.assertFalse(emitter.isSleeping());
+        Assertions.assertEquals(0, manager.getSleepingEmitterCount());
+
+        // About 30 ticks of lifetime were left, so it still spawns for a while and then stops
+        Assertions.assertTrue(counts[25] > counts[0]);
+        Assertions.assertEquals(counts[35], counts[45]);
+
+        for (int i = 0; i < 200 && manager.getEmitterCount() > 0; i++) {
+            manager.tick(0, 0, 0);
+        }
+        Assertions.assertEquals(0, manager.getEmitterCount());
+        manager.free();
+    }
+
+    @Test
+    void testRemovedWhileAsleep() {
+        ParticleSystemManager manager = HeadlessLevel.createManager(SEED);
+        manager.setSleepDistance(64);
+        ParticleEmitter emitter = createSleepingEmitter(manager, EmitterSleepPolicy.FREEZE);
+        Assertions.assertTrue(manager.getParticleCount() > 0);
+
+        // Frozen particles never age, so they have to be released for the emitter to go away
+        emitter.remove();
+        manager.tick(1000, 0, 0);
+        Assertions.assertEquals(0, manager.getEmitterCount());
+        Assertions.assertEquals(0, manager.getSleepingEmitterCount());
+        Assertions.assertEquals(0, manager.getParticleCount());
+        manager.free();
+    }
+
+    /**
+     * Adds an emitter at the origin, ticks it for a bit and then puts it to sleep by moving the camera away.
+     */
+    private static ParticleEmitter createSleepingEmitter(ParticleSystemManager manager, EmitterSleepPolicy sleepPolicy) {
+        ParticleEmitter emitter = manager.createEmitter(SMOKE, smoke);
+        Assertions.assertNotNull(emitter);
+        emitter.setPosition(0, 8, 0);
+        emitter.setSleepPolicy(sleepPolicy);
+        manager.addParticleSystem(emitter);
+        for (int i = 0; i < 10; i++) {
+            manager.tick(0, 0, 0);
+        }
+        Assertions.assertFalse(emitter.isSleeping());
+
+        manager.tick(1000, 0, 0);
+        Assertions.assertTrue(emitter.isSleeping());
+        return emitter;
+    }
+
+    private static ParticleEmitter createEmitter(ParticleSystemManager manager) {
+        return createEmitter(manager, 0, 4, 0);
+    }
+
+    private static ParticleEmitter createEmitter(ParticleSystemManager manager, double x, double y, double z) {
+        return createEmitter(manager, SMOKE, smoke, x, y, z);
+    }
+
+    private static ParticleEmitter createEmitter(ParticleSystemManager manager, ResourceLocation name, ParticleEmitterData data, double x, double y, double z) {
+        ParticleEmitter emitter = manager.createEmitter(name, data);
+        Assertions.assertNotNull(emitter);
+        emitter.setPosition(x, y, z);
+        manager.addParticleSystem(emitter);
+        return emitter;
+    }
+
+    private static void assertSnapshotEquals(ParticleRenderSnapshot expected, ParticleRenderSnapshot actual, String message) {
+        Assertions.assertEquals(expected.size(), actual.size(), "Snapshot size of " + message);
+
+        Vector3d expectedPos = new Vector3d();
+        Vector3d actualPos = new Vector3d();
+        for (int i = 0; i < expected.size(); i++) {
+            expected.getRenderPosition(i, 1.0F, expectedPos);
+            actual.getRenderPosition(i, 1.0F, actualPos);
+            String particle = "Particle " + i + " of " + message;
+            Assertions.assertEquals(expectedPos.x, actualPos.x, TOLERANCE, particle);
+            Assertions.assertEquals(expectedPos.y, actualPos.y, TOLERANCE, particle);
+            Assertions.assertEquals(expectedPos.z, actualPos.z, TOLERANCE, particle);
+            Assertions.assertEquals(expected.getRenderAge(i, 0), actual.getRenderAge(i, 0), particle);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+import foundry.veil.api.opencl.CLEnvironment;
+import foundry.veil.api.opencl.VeilOpenCL;
+import foundry.veil.api.quasar.emitters.module.BulkForceParticleModule;
+import foundry.veil.api.quasar.emitters.module.ForceParticleModule;
+import foundry.veil.api.quasar.emitters.module.force.*;
+import foundry.veil.api.quasar.particle.ParticleForceSolver;
+import foundry.veil.api.quasar.particle.ParticleStorage;
+import foundry.veil.api.quasar.particle.QuasarParticle;
+import net.minecraft.server.packs.resources.Resource;
+import net.minecraft.server.packs.resources.ResourceProvider;
+import org.joml.Vector3d;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares the OpenCL force kernel against the Java force modules. Runs on any OpenCL device, including PoCL on the CPU.
+ */
+public class ParticleForceSolverTest {
+
+    private static final int PARTICLES = 5000;
+    private static final double TOLERANCE = 1.0E-5;
+    // Resources are loaded straight from the classpath instead of a resource manager
+    private static final ResourceProvider CLASSPATH = name -> Optional.of(new Resource(null, () -> ParticleForceSolverTest.class.getResourceAsStream("/assets/" + name.getNamespace() + "/" + name.getPath())));
+
+    @Test
+    void testMatchesJavaForces() throws Exception {
+        List<VeilOpenCL.DeviceInfo> devices = VeilOpenCL.get().getPriorityDevices();
+        if (devices.isEmpty()) {
+            return; // No OpenCL ):
+        }
+
+        // Far from the origin so the solver has to keep positions relative
+        Vector3d center = new Vector3d(30000.5, 64.0, -12000.25);
+        ForceParticleModule[] modules = {
+                new ConstantForceModule(new Vector3d(0, -0.04, 0)),
+                new PointForceModule(center.add(1, 0, 0, new Vector3d()), false, 3.0F, 0.01F),
+                new PointAttractorForceModule(center.add(-1, 1, 0, new Vector3d()), false, 4.0F, 0.02F, true, false),
+                new PointAttractorForceModule(center.add(0, -1, 1, new Vector3d()), false, 2.5F, 0.015F, true, true),
+                new PointAttractorForceModule(center, false, 1.5F, 0.005F, false, false),
+                new VortexForceModule(new Vector3d(0, 1, 0.3), center, false, 5.0, 0.03F),
+                new ScaleForceModule(0.98)
+        };
+
+        ParticleStorage expected = createStorage(center);
+        ParticleStorage actual = createStorage(center);
+        for (ForceParticleModule module : modules) {
+            ((BulkForceParticleModule) module).applyForce(expected, 0, expected.size());
+        }
+
+        CLEnvironment environment = new CLEnvironment(devices.get(0));
+        ParticleForceSolver solver = new ParticleForceSolver(environment, CLASSPATH);
+        try {
+            Assertions.assertTrue(solver.applyForces(actual, 0, actual.size(), modules));
+        } finally {
+            solver.free();
+            environment.free();
+        }
+
+        // Particles right at the edge of a force range may land on either side after rounding to floats
+        int mismatched = 0;
+        double maxError = 0;
+        for (int i = 0; i < PARTICLES; i++) {
+            double error = Math.max(Math.abs(expected.getVelocityX()[i] - actual.getVelocityX()[i]),
+                    Math.max(Math.abs(expected.getVelocityY()[i] - actual.getVelocityY()[i]),
+                            Math.abs(expected.getVelocityZ()[i] - actual.getVelocityZ()[i])));
+            if (error > TOLERANCE) {
+                mismatched++;
+            } else {
+                maxError = Math.max(maxError, error);
+            }
+        }
+        Assertions.assertTrue(mismatched <= PARTICLES / 500, mismatched + " particles differ");
+        Assertions.assertTrue(maxError <= TOLERANCE, "Max error " + maxError);
+    }
+
+    @Test
+    void testConcurrentThreads() throws Exception {
+        List<VeilOpenCL.DeviceInfo> devices = VeilOpenCL.get().getPriorityDevices();
+        if (devices.isEmpty()) {
+            return; // No OpenCL ):
+        }
+
+        Vector3d center = new Vector3d();
+        ForceParticleModule[] modules = {
+                new ConstantForceModule(new Vector3d(0, -0.04, 0)),
+                new ScaleForceModule(0.98)
+        };
+        ParticleStorage expected = createStorage(center);
+        for (ForceParticleModule module : modules) {
+            ((BulkForceParticleModule) module).applyForce(expected, 0, expected.size());
+        }
+
+        int threads = 4;
+        ParticleStorage[] actual = new ParticleStorage[threads];
+        for (int i = 0; i < threads; i++) {
+            actual[i] = createStorage(center);
+        }
+
+        CLEnvironment environment = new CLEnvironment(devices.get(0));
+        ParticleForceSolver solver = new ParticleForceSolver(environment, CLASSPATH);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (ParticleStorage storage : actual) {
+                results.add(executor.submit(() -> solver.applyForces(storage, 0, storage.size(), modules)));
+            }
+            for (Future<Boolean> result : results) {
+                Assertions.assertTrue(result.get());
+            }
+            Assertions.assertTrue(solver.getWorkerCount() <= threads);
+        } finally {
+            executor.shutdown();
+            solver.free();
+            environment.free();
+        }
+
+        // Every thread has to get the same result no matter which kernel it used
+        for (ParticleStorage storage : actual) {
+            Assertions.assertArrayEquals(actual[0].getVelocityX(), storage.getVelocityX());
+            Assertions.assertArrayEquals(actual[0].getVelocityY(), storage.getVelocityY());
+            Assertions.assertArrayEquals(actual[0].getVelocityZ(), storage.getVelocityZ());
+        }
+        for (int i = 0; i < PARTICLES; i++) {
+            Assertions.assertEquals(expected.getVelocityY()[i], actual[0].getVelocityY()[i], TOLERANCE);
+        }
+    }
+
+    @Test
+    void testUnsupportedForceFallsBack() throws Exception {
+        List<VeilOpenCL.DeviceInfo> devices = VeilOpenCL.get().getPriorityDevices();
+        if (devices.isEmpty()) {
+            return; // No OpenCL ):
+        }
+
+        BulkForceParticleModule custom = new BulkForceParticleModule() {
+            @Override
+            public void applyForce(ParticleStorage storage, int from, int to) {
+            }
+
+            @Override
+            public void applyForce(QuasarParticle particle) {
+            }
+
+            @Override
+            public void setStrength(float strength) {
+            }
+        };
+
+        Vector3d center = new Vector3d();
+        ParticleStorage storage = createStorage(center);
+        double[] velocityX = storage.getVelocityX().clone();
+        CLEnvironment environment = new CLEnvironment(devices.get(0));
+        ParticleForceSolver solver = new ParticleForceSolver(environment, CLASSPATH);
+        try {
+            Assertions.assertFalse(solver.applyForces(storage, 0, storage.size(), new ForceParticleModule[]{new ConstantForceModule(new Vector3d(0, -1, 0)), custom}));
+            Assertions.assertArrayEquals(velocityX, storage.getVelocityX());
+            Assertions.assertFalse(solver.isFailed());
+        } finally {
+            solver.free();
+            environment.free();
+        }
+    }
+
+    /**
+     * Fills a storage without an emitter. Only the position and velocity columns are used by forces that aren't relative
+     * to the emitter.
+     */
+    private static ParticleStorage createStorage(Vector3d center) throws ReflectiveOperationException {
+        ParticleStorage storage = new ParticleStorage(null);
+        Method ensureCapacity = ParticleStorage.class.getDeclaredMethod("ensureCapacity", int.class);
+        ensureCapacity.setAccessible(true);
+        ensureCapacity.invoke(storage, PARTICLES);
+        Field size = ParticleStorage.class.getDeclaredField("size");
+        size.setAccessible(true);
+        size.setInt(storage, PARTICLES);
+
+        Random random = new Random(1337);
+        for (int i = 0; i < PARTICLES; i++) {
+            storage.getX()[i] = center.x + random.nextGaussian() * 2.0;
+            storage.getY()[i] = center.y + random.nextGaussian() * 2.0;
+            storage.getZ()[i] = center.z + random.nextGaussian() * 2.0;
+            storage.getVelocityX()[i] = random.nextGaussian() * 0.1;
+            storage.getVelocityY()[i] = random.nextGaussian() * 0.1;
+            storage.getVelocityZ()[i] = random.nextGaussian() * 0.1;
+        }
+        return storage;
+    }
+}
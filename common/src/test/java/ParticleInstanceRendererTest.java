@@ -0,0 +1,304 @@
+import foundry.veil.api.quasar.particle.ParticleInstanceRenderer;
+import foundry.veil.api.quasar.particle.ParticleVertexWriter;
+import foundry.veil.api.quasar.particle.RenderStyle;
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+import org.joml.Matrix3f;
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+
+import static org.lwjgl.glfw.GLFW.*;
+import static org.lwjgl.opengl.GL33C.*;
+
+/**
+ * Draws the same billboard particles through the vertex writer and the instance renderer and compares the results.
+ * This needs an OpenGL 4.1 context, which Mesa llvmpipe provides without a GPU. The test is skipped if no context can
+ * be created.
+ */
+public class ParticleInstanceRendererTest {
+
+    private static final int SIZE = 128;
+    private static final String FRAGMENT_SHADER = """
+            #version 410 core
+
+            in float vertexDistance;
+            in vec2 texCoord0;
+            in vec4 vertexColor;
+
+            out vec4 fragColor;
+
+            void main() {
+                fragColor = vec4(texCoord0, vertexColor.r, vertexColor.g);
+            }
+            """;
+
+    private static long window;
+
+    @BeforeAll
+    static void createContext() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        Assumptions.assumeTrue(glfwInit(), "GLFW could not be initialized");
+        glfwDefaultWindowHints();
+        glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 4);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 1);
+        glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
+        glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, GLFW_TRUE);
+        window = glfwCreateWindow(SIZE, SIZE, "Quasar Instancing Test", MemoryUtil.NULL, MemoryUtil.NULL);
+        if (window == MemoryUtil.NULL) {
+            glfwTerminate();
+        }
+        Assumptions.assumeTrue(window != MemoryUtil.NULL, "No OpenGL 4.1 context available");
+
+        glfwMakeContextCurrent(window);
+        GL.createCapabilities();
+    }
+
+    @AfterAll
+    static void destroyContext() {
+        if (window != MemoryUtil.NULL) {
+            GL.setCapabilities(null);
+            glfwDestroyWindow(window);
+            glfwTerminate();
+            window = MemoryUtil.NULL;
+        }
+    }
+
+    @Test
+    void testInstancedMatchesVertices() throws IOException {
+        Matrix4f pose = new Matrix4f();
+        Quaternionf cameraOrientation = new Quaternionf().rotateXYZ(0.3F, -0.5F, 0.2F);
+        // x, y, z, right scale, up scale, rotation x, y, z, u0, v0, u1, v1, color, light
+        float[][] particles = {
+                {0.0F, 0.0F, 0.0F, 0.5F, 0.5F, 0.0F, 0.0F, 0.0F, 0.0F, 0.0F, 1.0F, 1.0F},
+                {-1.0F, 0.8F, 0.5F, 0.6F, 0.3F, 0.0F, 0.0F, 0.0F, 0.25F, 0.5F, 0.5F, 0.75F},
+                {1.0F, -0.9F, -0.5F, 0.4F, 0.4F, 0.4F, -1.2F, 2.0F, 0.0F, 0.0F, 1.0F, 1.0F},
+                {0.9F, 1.0F, 1.0F, 0.9F, 0.3F, 1.5F, 0.0F, -0.7F, 1.0F, 0.0F, 0.0F, 1.0F}
+        };
+        int[] colors = {0xFFFFFFFF, 0x80FF4020, 0xFF20C0FF, 0xC0808080};
+        int[] lights = {0x00F000F0, 0x00000000, 0x00A00050, 0x00F00000};
+
+        ParticleVertexWriter writer = new ParticleVertexWriter();
+        ParticleInstanceRenderer instanceRenderer = new ParticleInstanceRenderer();
+        Matrix3f basis = new Matrix3f();
+        writer.begin(pose, cameraOrientation);
+        instanceRenderer.begin(null, pose, cameraOrientation);
+        for (int i = 0; i < particles.length; i++) {
+            float[] p = particles[i];
+            RenderStyle.Billboard.writeQuad(writer, basis, p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7], p[8], p[9], p[10], p[11], colors[i], lights[i]);
+            instanceRenderer.add(p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7], p[8], p[9], p[10], p[11], colors[i], lights[i]);
+        }
+        Assertions.assertEquals(particles.length * 4, writer.getVertexCount());
+        Assertions.assertEquals(particles.length, instanceRenderer.getInstanceCount());
+
+        int framebuffer = glGenFramebuffers();
+        int colorTexture = createTexture(SIZE, null);
+        glBindFramebuffer(GL_FRAMEBUFFER, framebuffer);
+        glFramebufferTexture2D(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, colorTexture, 0);
+        Assertions.assertEquals(GL_FRAMEBUFFER_COMPLETE, glCheckFramebufferStatus(GL_FRAMEBUFFER));
+        glViewport(0, 0, SIZE, SIZE);
+
+        // A lightmap where every coordinate is fully lit, so only the particle color reaches the output
+        ByteBuffer white = MemoryUtil.memAlloc(16 * 16 * 4);
+        while (white.hasRemaining()) {
+            white.put((byte) 0xFF);
+        }
+        white.flip();
+        int lightmap = createTexture(16, white);
+        MemoryUtil.memFree(white);
+        glActiveTexture(GL_TEXTURE0);
+        glBindTexture(GL_TEXTURE_2D, lightmap);
+
+        Matrix4f projection = new Matrix4f().setOrtho(-2, 2, -2, 2, -10, 10);
+        int vertexProgram = createProgram(loadShader("particle.vsh"));
+        int instanceProgram = createProgram(loadShader("particle_instanced.vsh"));
+
+        ByteBuffer vertexPixels = MemoryUtil.memAlloc(SIZE * SIZE * 4);
+        ByteBuffer instancePixels = MemoryUtil.memAlloc(SIZE * SIZE * 4);
+        try {
+            glClearColor(0, 0, 0, 0);
+            glClear(GL_COLOR_BUFFER_BIT);
+            glUseProgram(vertexProgram);
+            setUniforms(vertexProgram, projection, cameraOrientation);
+            drawVertices(writer.getPackedBuffer(), particles.length);
+            glReadPixels(0, 0, SIZE, SIZE, GL_RGBA, GL_UNSIGNED_BYTE, vertexPixels);
+
+            glClear(GL_COLOR_BUFFER_BIT);
+            glUseProgram(instanceProgram);
+            setUniforms(instanceProgram, projection, cameraOrientation);
+            drawInstances(instanceRenderer.getInstanceBuffer(), particles.length);
+            glReadPixels(0, 0, SIZE, SIZE, GL_RGBA, GL_UNSIGNED_BYTE, instancePixels);
+            Assertions.assertEquals(GL_NO_ERROR, glGetError());
+
+            int covered = 0;
+            int mismatched = 0;
+            for (int i = 0; i < SIZE * SIZE * 4; i += 4) {
+                int a = vertexPixels.getInt(i);
+                int b = instancePixels.getInt(i);
+                if (a != 0 || b != 0) {
+                    covered++;
+                }
+                for (int shift = 0; shift < Integer.SIZE; shift += 8) {
+                    if (Math.abs((a >>> shift & 0xFF) - (b >>> shift & 0xFF)) > 2) {
+                        mismatched++;
+                        break;
+                    }
+                }
+            }
+
+            Assertions.assertTrue(covered > SIZE * SIZE / 20, "Particles should cover part of the screen");
+            // Edges may rasterize differently since the corners are calculated with different precision
+            Assertions.assertTrue(mismatched <= covered / 50, mismatched + " of " + covered + " pixels differ");
+        } finally {
+            MemoryUtil.memFree(vertexPixels);
+            MemoryUtil.memFree(instancePixels);
+            glUseProgram(0);
+            glDeleteProgram(vertexProgram);
+            glDeleteProgram(instanceProgram);
+            glBindFramebuffer(GL_FRAMEBUFFER, 0);
+            glDeleteFramebuffers(framebuffer);
+            glDeleteTextures(colorTexture);
+            glDeleteTextures(lightmap);
+            writer.free();
+            instanceRenderer.free();
+        }
+    }
+
+    private static void drawVertices(ByteBuffer vertices, int quads) {
+        int vao = glGenVertexArrays();
+        int vbo = glGenBuffers();
+        int ibo = glGenBuffers();
+        glBindVertexArray(vao);
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        glBufferData(GL_ARRAY_BUFFER, vertices, GL_STREAM_DRAW);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ibo);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, quadIndices(quads), GL_STATIC_DRAW);
+
+        int stride = ParticleVertexWriter.VERTEX_SIZE;
+        glEnableVertexAttribArray(0);
+        glEnableVertexAttribArray(1);
+        glEnableVertexAttribArray(2);
+        glEnableVertexAttribArray(3);
+        glVertexAttribPointer(0, 3, GL_FLOAT, false, stride, 0);
+        glVertexAttribPointer(1, 2, GL_FLOAT, false, stride, 12);
+        glVertexAttribPointer(2, 4, GL_UNSIGNED_BYTE, true, stride, 20);
+        glVertexAttribIPointer(3, 2, GL_SHORT, stride, 24);
+        glDrawElements(GL_TRIANGLES, quads * 6, GL_UNSIGNED_INT, 0L);
+
+        glBindVertexArray(0);
+        glDeleteVertexArrays(vao);
+        glDeleteBuffers(vbo);
+        glDeleteBuffers(ibo);
+    }
+
+    private static void drawInstances(ByteBuffer instances, int count) {
+        int vao = glGenVertexArrays();
+        int quad = glGenBuffers();
+        int ibo = glGenBuffers();
+        int instanceVbo = glGenBuffers();
+        glBindVertexArray(vao);
+        glBindBuffer(GL_ARRAY_BUFFER, quad);
+        glBufferData(GL_ARRAY_BUFFER, new float[]{1, -1, 0, -1, -1, 0, -1, 1, 0, 1, 1, 0}, GL_STATIC_DRAW);
+        glEnableVertexAttribArray(0);
+        glVertexAttribPointer(0, 3, GL_FLOAT, false, 12, 0);
+        glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ibo);
+        glBufferData(GL_ELEMENT_ARRAY_BUFFER, quadIndices(1), GL_STATIC_DRAW);
+
+        glBindBuffer(GL_ARRAY_BUFFER, instanceVbo);
+        glBufferData(GL_ARRAY_BUFFER, instances, GL_STREAM_DRAW);
+        ParticleInstanceRenderer.setupBufferState();
+        glDrawElementsInstanced(GL_TRIANGLES, 6, GL_UNSIGNED_INT, 0L, count);
+
+        glBindVertexArray(0);
+        glDeleteVertexArrays(vao);
+        glDeleteBuffers(quad);
+        glDeleteBuffers(ibo);
+        glDeleteBuffers(instanceVbo);
+    }
+
+    private static int[] quadIndices(int quads) {
+        int[] indices = new int[quads * 6];
+        for (int i = 0; i < quads; i++) {
+            int vertex = i * 4;
+            indices[i * 6] = vertex;
+            indices[i * 6 + 1] = vertex + 1;
+            indices[i * 6 + 2] = vertex + 2;
+            indices[i * 6 + 3] = vertex + 2;
+            indices[i * 6 + 4] = vertex + 3;
+            indices[i * 6 + 5] = vertex;
+        }
+        return indices;
+    }
+
+    private static void setUniforms(int program, Matrix4f projection, Quaternionf cameraOrientation) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            FloatBuffer matrix = stack.mallocFloat(16);
+            glUniformMatrix4fv(glGetUniformLocation(program, "ModelViewMat"), false, new Matrix4f().get(matrix));
+            glUniformMatrix4fv(glGetUniformLocation(program, "ProjMat"), false, projection.get(matrix));
+            glUniformMatrix3fv(glGetUniformLocation(program, "CameraOrientation"), false, new Matrix3f().set(cameraOrientation).get(matrix));
+            glUniform1i(glGetUniformLocation(program, "Sampler2"), 0);
+        }
+    }
+
+    private static int createTexture(int size, ByteBuffer data) {
+        int texture = glGenTextures();
+        glBindTexture(GL_TEXTURE_2D, texture);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+        glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA8, size, size, 0, GL_RGBA, GL_UNSIGNED_BYTE, data);
+        return texture;
+    }
+
+    private static int createProgram(String vertexSource) {
+        int vertexShader = compileShader(GL_VERTEX_SHADER, vertexSource);
+        int fragmentShader = compileShader(GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
+        int program = glCreateProgram();
+        glAttachShader(program, vertexShader);
+        glAttachShader(program, fragmentShader);
+        glLinkProgram(program);
+        glDeleteShader(vertexShader);
+        glDeleteShader(fragmentShader);
+        Assertions.assertEquals(GL_TRUE, glGetProgrami(program, GL_LINK_STATUS), () -> glGetProgramInfoLog(program));
+        return program;
+    }
+
+    private static int compileShader(int type, String source) {
+        int shader = glCreateShader(type);
+        glShaderSource(shader, source);
+        glCompileShader(shader);
+        Assertions.assertEquals(GL_TRUE, glGetShaderi(shader, GL_COMPILE_STATUS), () -> glGetShaderInfoLog(shader));
+        return shader;
+    }
+
+    /**
+     * Loads a particle vertex shader the same way Veil would, except includes are removed since these don't use them.
+     */
+    private static String loadShader(String name) throws IOException {
+        String path = "/assets/veil/pinwheel/shaders/program/quasar/" + name;
+        try (InputStream stream = ParticleInstanceRendererTest.class.getResourceAsStream(path)) {
+            Assertions.assertNotNull(stream, "Missing " + path);
+            String source = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            return "#version 410 core\n" + source.lines()
+                    .filter(line -> !line.startsWith("#include"))
+                    .collect(Collectors.joining("\n"));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+import foundry.veil.api.quasar.particle.ParticleLightClusters;
+import org.joml.Vector3d;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ParticleLightClustersTest {
+
+    @Test
+    void testMergeIsWeightedByIntensity() {
+        ParticleLightClusters clusters = new ParticleLightClusters();
+        clusters.add(0.25, 0.5, 0.5, 1.0F, 0.0F, 0.0F, 3.0F, 2.0F, 1.0F);
+        clusters.add(0.75, 0.5, 0.5, 0.0F, 0.0F, 1.0F, 1.0F, 4.0F, 1.0F);
+        Assertions.assertEquals(1, clusters.size());
+
+        Vector3d position = clusters.getPosition(0, new Vector3d());
+        Assertions.assertEquals(0.375, position.x, 1.0E-9);
+        Assertions.assertEquals(0.5, position.y, 1.0E-9);
+        Assertions.assertEquals(0.75F, clusters.getRed(0), 1.0E-6F);
+        Assertions.assertEquals(0.25F, clusters.getBlue(0), 1.0E-6F);
+        Assertions.assertEquals(4.0F, clusters.getBrightness(0), 1.0E-6F);
+
+        // Weighted radius of 2.5 plus the standard deviation of the positions around the center
+        Assertions.assertEquals(2.5F + (float) Math.sqrt(0.1875 * 0.25), clusters.getRadius(0), 1.0E-5F);
+    }
+
+    @Test
+    void testSeparateCells() {
+        ParticleLightClusters clusters = new ParticleLightClusters();
+        clusters.add(0.5, 0.5, 0.5, 1.0F, 1.0F, 1.0F, 1.0F, 1.0F, 1.0F);
+        clusters.add(1.5, 0.5, 0.5, 1.0F, 1.0F, 1.0F, 1.0F, 1.0F, 1.0F);
+        clusters.add(-0.5, 0.5, 0.5, 1.0F, 1.0F, 1.0F, 1.0F, 1.0F, 1.0F);
+        clusters.add(1.5, 0.5, 0.5, 1.0F, 1.0F, 1.0F, 1.0F, 1.0F, 4.0F);
+        Assertions.assertEquals(4, clusters.size());
+
+        // Lights without a cluster size are never merged, and unlit lights are skipped
+        clusters.clear();
+        clusters.add(0.5, 0.5, 0.5, 1.0F, 1.0F, 1.0F, 1.0F, 1.0F, 0.0F);
+        clusters.add(0.5, 0.5, 0.5, 1.0F, 1.0F, 1.0F, 1.0F, 1.0F, 0.0F);
+        clusters.add(0.5, 0.5, 0.5, 1.0F, 1.0F, 1.0F, 0.0F, 1.0F, 1.0F);
+        Assertions.assertEquals(2, clusters.size());
+        Assertions.assertEquals(1.0F, clusters.getRadius(0), 1.0E-6F);
+    }
+}
@@ -0,0 +1,79 @@
+import foundry.veil.api.molang.VeilMolang;
+import foundry.veil.api.quasar.particle.ParticleMolangRuntime;
+import foundry.veil.api.quasar.particle.ParticleStorage;
+import gg.moonflower.molangcompiler.api.MolangExpression;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+public class ParticleMolangRuntimeTest {
+
+    private static final int PARTICLES = 64;
+
+    @Test
+    void testEvaluateMatchesBind() throws Exception {
+        ParticleStorage storage = createStorage();
+        ParticleMolangRuntime runtime = new ParticleMolangRuntime();
+        MolangExpression expression = VeilMolang.get().compile("query.age / query.lifetime + query.scale");
+
+        float[] result = new float[PARTICLES];
+        Arrays.fill(result, -1.0F);
+        runtime.evaluate(expression, storage, 8, PARTICLES - 8, result);
+        for (int i = 0; i < PARTICLES; i++) {
+            if (i < 8 || i >= PARTICLES - 8) {
+                Assertions.assertEquals(-1.0F, result[i]);
+                continue;
+            }
+
+            float expected = (float) storage.getAge()[i] / storage.getLifetime()[i] + storage.getRadius()[i];
+            Assertions.assertEquals(expected, result[i], 1.0E-5F);
+            Assertions.assertEquals(result[i], runtime.bind(storage, i).resolve(expression));
+        }
+    }
+
+    @Test
+    void testEvaluateConstant() throws Exception {
+        ParticleStorage storage = createStorage();
+        ParticleMolangRuntime runtime = new ParticleMolangRuntime();
+
+        // The result may be the storage itself, like the radius column written by the tick size module
+        runtime.evaluate(MolangExpression.of(0.25F), storage, 0, PARTICLES, storage.getRadius());
+        for (int i = 0; i < PARTICLES; i++) {
+            Assertions.assertEquals(0.25F, storage.getRadius()[i]);
+        }
+    }
+
+    @Test
+    void testLifetimeIsPerRow() throws Exception {
+        ParticleStorage storage = createStorage();
+        ParticleMolangRuntime runtime = new ParticleMolangRuntime();
+        MolangExpression expression = VeilMolang.get().compile("query.lifetime");
+        for (int i = 0; i < PARTICLES; i++) {
+            Assertions.assertEquals(storage.getLifetime()[i], runtime.bind(storage, i).resolve(expression));
+        }
+    }
+
+    /**
+     * Fills a storage without an emitter. Only the columns read by queries are set.
+     */
+    private static ParticleStorage createStorage() throws ReflectiveOperationException {
+        ParticleStorage storage = new ParticleStorage(null);
+        Method ensureCapacity = ParticleStorage.class.getDeclaredMethod("ensureCapacity", int.class);
+        ensureCapacity.setAccessible(true);
+        ensureCapacity.invoke(storage, PARTICLES);
+        Field size = ParticleStorage.class.getDeclaredField("size");
+        size.setAccessible(true);
+        size.setInt(storage, PARTICLES);
+
+        for (int i = 0; i < PARTICLES; i++) {
+            storage.getAge()[i] = i;
+            // Randomized lifetimes are different for every particle
+            storage.getLifetime()[i] = 40 + i % 7;
+            storage.getRadius()[i] = 0.1F * (i % 3);
+        }
+        return storage;
+    }
+}
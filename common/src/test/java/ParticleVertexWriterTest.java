@@ -0,0 +1,114 @@
+import com.mojang.blaze3d.vertex.BufferBuilder;
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import com.mojang.blaze3d.vertex.PoseStack;
+import com.mojang.blaze3d.vertex.VertexFormat;
+import com.mojang.math.Axis;
+import foundry.veil.api.quasar.data.ParticleEmitterData;
+import foundry.veil.api.quasar.particle.ParticleEmitter;
+import foundry.veil.api.quasar.particle.ParticleRenderSnapshot;
+import foundry.veil.api.quasar.particle.ParticleSystemManager;
+import foundry.veil.api.quasar.particle.ParticleVertexWriter;
+import foundry.veil.api.quasar.particle.RenderStyle;
+import net.minecraft.SharedConstants;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.Bootstrap;
+import org.joml.Quaternionf;
+import org.joml.Vector3d;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class ParticleVertexWriterTest {
+
+    private static final ResourceLocation SMOKE = new ResourceLocation("veil", "benchmark_smoke");
+    private static final float PARTIAL_TICKS = 0.35F;
+
+    private static ParticleSystemManager manager;
+    private static ParticleRenderSnapshot snapshot;
+
+    private final Quaternionf cameraOrientation = new Quaternionf().rotationYXZ(0.4F, -0.2F, 0.0F);
+    private final Vector3d cameraPos = new Vector3d(0.5, 6.0, -3.0);
+
+    @BeforeAll
+    static void bootstrap() throws IOException {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        ParticleEmitterData smoke = HeadlessLevel.loadEmitter("/quasar/benchmark_smoke.json");
+        manager = HeadlessLevel.createManager(1337);
+        ParticleEmitter emitter = manager.createEmitter(SMOKE, smoke);
+        Assertions.assertNotNull(emitter);
+        emitter.setPosition(0, 8, 0);
+        manager.addParticleSystem(emitter);
+        for (int i = 0; i < 10; i++) {
+            manager.tick(0, 8, 0);
+        }
+        snapshot = emitter.getRenderSnapshot();
+        Assertions.assertFalse(snapshot.isEmpty());
+    }
+
+    @AfterAll
+    static void free() {
+        manager.free();
+    }
+
+    @Test
+    void testBillboardMatchesConsumer() {
+        this.assertPackedMatchesConsumer(new RenderStyle.Billboard());
+    }
+
+    @Test
+    void testCubeMatchesConsumer() {
+        this.assertPackedMatchesConsumer(new RenderStyle.Cube());
+    }
+
+    /**
+     * Renders the snapshot through the packed writer and through a {@link BufferBuilder} like styles did before vertices
+     * were packed, and checks both produce the same bytes.
+     */
+    private void assertPackedMatchesConsumer(RenderStyle style) {
+        PoseStack poseStack = new PoseStack();
+        poseStack.translate(0.5F, -2.0F, 3.0F);
+        poseStack.mulPose(Axis.YP.rotation(0.7F));
+
+        ParticleVertexWriter writer = new ParticleVertexWriter();
+        ParticleVertexWriter consumerWriter = new ParticleVertexWriter();
+        BufferBuilder builder = new BufferBuilder(snapshot.size() * 24 * ParticleVertexWriter.VERTEX_SIZE);
+        try {
+            writer.begin(poseStack.last().pose(), this.cameraOrientation);
+            this.render(style, poseStack, writer);
+            ByteBuffer packed = writer.getPackedBuffer();
+
+            builder.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.PARTICLE);
+            consumerWriter.begin(builder, poseStack.last().pose(), this.cameraOrientation);
+            Assertions.assertFalse(consumerWriter.isPacked());
+            this.render(style, poseStack, consumerWriter);
+            consumerWriter.end();
+            BufferBuilder.RenderedBuffer rendered = builder.end();
+            ByteBuffer expected = rendered.vertexBuffer();
+
+            Assertions.assertTrue(packed.remaining() > 0);
+            Assertions.assertEquals(expected.remaining(), packed.remaining());
+            Assertions.assertEquals(expected, packed);
+            rendered.release();
+        } finally {
+            writer.free();
+            consumerWriter.free();
+        }
+    }
+
+    private void render(RenderStyle style, PoseStack poseStack, ParticleVertexWriter writer) {
+        Vector3d pos = new Vector3d();
+        Vector3f renderOffset = new Vector3f();
+        for (int i = 0; i < snapshot.size(); i++) {
+            snapshot.getRenderPosition(i, PARTIAL_TICKS, pos).sub(this.cameraPos);
+            renderOffset.set((float) pos.x, (float) pos.y, (float) pos.z);
+            style.render(poseStack, snapshot, i, renderOffset, writer, PARTIAL_TICKS);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+import foundry.veil.api.quasar.data.ParticleEmitterData;
+import foundry.veil.api.quasar.particle.ParticleEmitter;
+import foundry.veil.api.quasar.particle.ParticleSpawnRecording;
+import foundry.veil.api.quasar.particle.ParticleSystemManager;
+import net.minecraft.SharedConstants;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.Bootstrap;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Ticks Quasar particles without a window or a real level. The benchmark is tagged <code>benchmark</code> and only runs
+ * with the <code>benchmark</code> Gradle task. Set <code>-Dquasar.benchmark.ticks</code> to change how long the recorded
+ * workload is measured for.
+ */
+public class QuasarParticleBenchmarkTest {
+
+    private static final long SEED = 1337;
+    private static final int WARMUP_TICKS = 200;
+    private static final int BENCHMARK_TICKS = Integer.getInteger("quasar.benchmark.ticks", 1000);
+    private static final ResourceLocation SMOKE = new ResourceLocation("veil", "benchmark_smoke");
+
+    private static Map<ResourceLocation, ParticleEmitterData> emitters;
+
+    @BeforeAll
+    static void bootstrap() throws IOException {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+        emitters = Map.of(SMOKE, HeadlessLevel.loadEmitter("/quasar/benchmark_smoke.json"));
+    }
+
+    @Test
+    void testReplayIsDeterministic(@TempDir Path dir) throws IOException {
+        ParticleSystemManager manager = createManager();
+        Random random = new Random(SEED);
+        ParticleSpawnRecording recording = manager.startRecording();
+        int[] recorded = new int[200];
+        for (int i = 0; i < recorded.length; i++) {
+            if (i % 5 == 0 && i < 150) {
+                ParticleEmitter emitter = manager.createEmitter(SMOKE, emitters.get(SMOKE));
+                Assertions.assertNotNull(emitter);
+                emitter.setPosition(random.nextDouble() * 32 - 16, random.nextDouble() * 8, random.nextDouble() * 32 - 16);
+                manager.addParticleSystem(emitter);
+            }
+            manager.tick(0, 0, 0);
+            recorded[i] = manager.getParticleCount();
+        }
+        Assertions.assertSame(recording, manager.stopRecording());
+        manager.free();
+
+        Path file = dir.resolve("recording.json");
+        recording.write(file);
+        ParticleSpawnRecording loaded = ParticleSpawnRecording.read(file);
+        Assertions.assertEquals(recording.getEvents(), loaded.getEvents());
+
+        ParticleSystemManager replay = createManager();
+        Function<ResourceLocation, ParticleEmitter> factory = ParticleSpawnRecording.factory(replay, emitters::get);
+        int[] replayed = new int[recorded.length];
+        for (int i = 0; i < replayed.length; i++) {
+            loaded.replay(replay, i, factory);
+            replay.tick(0, 0, 0);
+            replayed[i] = replay.getParticleCount();
+        }
+        replay.free();
+
+        Assertions.assertTrue(recorded[recorded.length / 2] > 0);
+        Assertions.assertArrayEquals(recorded, replayed);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void benchmark() throws IOException, URISyntaxException {
+        ParticleSpawnRecording recording = ParticleSpawnRecording.read(Path.of(QuasarParticleBenchmarkTest.class.getResource("/quasar/benchmark_recording.json").toURI()));
+        ParticleSystemManager manager = createManager();
+        Function<ResourceLocation, ParticleEmitter> factory = ParticleSpawnRecording.factory(manager, emitters::get);
+        int length = recording.getLength();
+
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            recording.replay(manager, i % length, factory);
+            manager.tick(0, 0, 0);
+        }
+
+        long particleTicks = 0;
+        long startBytes = getAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_TICKS; i++) {
+            recording.replay(manager, i % length, factory);
+            manager.tick(0, 0, 0);
+            particleTicks += manager.getParticleCount();
+        }
+        long time = System.nanoTime() - start;
+        long bytes = getAllocatedBytes() - startBytes;
+        manager.free();
+
+        double seconds = time / 1_000_000_000.0;
+        System.out.printf("Ticked %d particles over %d ticks in %.3fs%n", particleTicks, BENCHMARK_TICKS, seconds);
+        System.out.printf("%.1f ticks/s, %.0f particles/s, %d bytes allocated/tick%n", BENCHMARK_TICKS / seconds, particleTicks / seconds, bytes / BENCHMARK_TICKS);
+        Assertions.assertTrue(particleTicks > 0);
+    }
+
+    private static ParticleSystemManager createManager() {
+        return HeadlessLevel.createManager(SEED);
+    }
+
+    /**
+     * Sums the bytes allocated by every thread, including particle workers.
+     */
+    private static long getAllocatedBytes() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long bytes : bean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+}
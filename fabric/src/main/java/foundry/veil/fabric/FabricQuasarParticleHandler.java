@@ -6,6 +6,7 @@ import foundry.veil.api.client.render.VeilRenderer;
 import foundry.veil.api.event.VeilRenderLevelStageEvent;
 import foundry.veil.fabric.event.FabricFreeNativeResourcesEvent;
 import foundry.veil.fabric.event.FabricVeilRenderLevelStageEvent;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientChunkEvents;
 import net.minecraft.client.multiplayer.ClientLevel;
 import org.jetbrains.annotations.ApiStatus;
 
@@ -37,5 +38,7 @@ public class FabricQuasarParticleHandler {
                 cachedBufferSource.endBatch();
             }
         });
+        ClientChunkEvents.CHUNK_LOAD.register((level, chunk) -> VeilRenderSystem.renderer().getParticleManager().onChunkLoaded(chunk.getPos().x, chunk.getPos().z));
+        ClientChunkEvents.CHUNK_UNLOAD.register((level, chunk) -> VeilRenderSystem.renderer().getParticleManager().onChunkUnloaded(chunk.getPos().x, chunk.getPos().z));
     }
 }
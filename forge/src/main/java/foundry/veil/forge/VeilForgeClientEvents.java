@@ -16,12 +16,14 @@ import net.minecraft.commands.arguments.coordinates.Vec3Argument;
 import net.minecraft.commands.arguments.coordinates.WorldCoordinates;
 import net.minecraft.network.chat.Component;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.phys.Vec3;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
 import net.minecraftforge.client.event.InputEvent;
 import net.minecraftforge.client.event.RegisterClientCommandsEvent;
 import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.level.ChunkEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.common.Mod;
 import org.jetbrains.annotations.ApiStatus;
@@ -46,6 +48,22 @@ public class VeilForgeClientEvents {
         }
     }
 
+    @SubscribeEvent
+    public static void chunkLoad(ChunkEvent.Load event) {
+        if (event.getLevel().isClientSide()) {
+            ChunkPos pos = event.getChunk().getPos();
+            VeilRenderSystem.renderer().getParticleManager().onChunkLoaded(pos.x, pos.z);
+        }
+    }
+
+    @SubscribeEvent
+    public static void chunkUnload(ChunkEvent.Unload event) {
+        if (event.getLevel().isClientSide()) {
+            ChunkPos pos = event.getChunk().getPos();
+            VeilRenderSystem.renderer().getParticleManager().onChunkUnloaded(pos.x, pos.z);
+        }
+    }
+
     @SubscribeEvent
     public static void keyPressed(InputEvent.Key event) {
         if (event.getAction() == GLFW_PRESS && VeilClient.EDITOR_KEY.matches(event.getKey(), event.getScanCode())) {